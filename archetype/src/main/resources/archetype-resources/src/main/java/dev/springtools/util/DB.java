@@ -13,6 +13,7 @@ import java.sql.*;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -127,6 +128,34 @@ public class DB
     }
   }
 
+  /**
+   * Executes the same statement once per parameter set using JDBC batching
+   * (one round trip per batch instead of one per row).
+   *
+   * @param sql
+   *          statement with positional parameters
+   * @param rows
+   *          one parameter array per execution
+   * @return total affected rows (drivers that do not report counts add 1 per row)
+   */
+  public int batch(String sql, List<Object[]> rows) throws Exception
+  {
+    Connection c = requireConnection();
+
+    try (PreparedStatement stmt = c.prepareStatement(sql)) {
+      for (Object[] params : rows) {
+        bindParameters(stmt, params);
+        stmt.addBatch();
+      }
+
+      int total = 0;
+      for (int count : stmt.executeBatch()) {
+        total += count == Statement.SUCCESS_NO_INFO ? 1 : Math.max(count, 0);
+      }
+      return total;
+    }
+  }
+
   public long lastInsertId() throws Exception
   {
     long id = lastGeneratedKey.get();
@@ -458,6 +487,46 @@ public class DB
       return rs.getObject(column);
     }
 
+    /** Value of the column at the given position (1-based, as in JDBC) */
+    public Object get(int column) throws Exception
+    {
+      return rs.getObject(column);
+    }
+
+    /** Column converted by the driver to a timestamp (e.g. SQLite epoch millis), 1-based */
+    public Timestamp getTimestamp(int column) throws Exception
+    {
+      return rs.getTimestamp(column);
+    }
+
+    /** Column converted by the driver to a date, 1-based */
+    public Date getDate(int column) throws Exception
+    {
+      return rs.getDate(column);
+    }
+
+    public int getColumnCount() throws Exception
+    {
+      return rs.getMetaData().getColumnCount();
+    }
+
+    /** Column labels (aliases when present), in select order */
+    public List<String> getColumnNames() throws Exception
+    {
+      ResultSetMetaData meta = rs.getMetaData();
+      List<String> names = new ArrayList<>(meta.getColumnCount());
+      for (int i = 1; i <= meta.getColumnCount(); i++) {
+        names.add(meta.getColumnLabel(i));
+      }
+      return names;
+    }
+
+    /** SQL type of the column (java.sql.Types), 1-based */
+    public int getColumnType(int column) throws Exception
+    {
+      return rs.getMetaData().getColumnType(column);
+    }
+
     public Record getRow() throws Exception
     {
       Record r = new Record();
@@ -1,20 +1,88 @@
 package dev.springtools.util;
 
 import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
 import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.interfaces.DecodedJWT;
 import java.time.Instant;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Token JWT firmati HMAC-SHA256.
+ *
+ * <p>
+ * Il verificatore viene costruito una sola volta (è immutabile e thread-safe). {@link #verify(String)}
+ * decodifica il token una volta sola in {@link Claims} e ricorda i token verificati fino alla loro
+ * scadenza (exp), al più maxCached: un token già visto non ricalcola la firma. Oltre il limite
+ * vengono tolti prima i token scaduti, poi fino a tre quarti della capienza.
+ */
 public class JwtUtil
 {
   private final Algorithm algorithm;
+  private final JWTVerifier verifier;
   private final long expirySeconds;
+  private final int maxCached;
+
+  private final Map<String, Claims> verified = new ConcurrentHashMap<>();
+  private final AtomicBoolean evicting = new AtomicBoolean();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  /** Contenuto di un token verificato */
+  public static final class Claims
+  {
+    /** jti: identifica il singolo token (es. per revocarlo) */
+    public final String id;
+    public final Long userId;
+    public final String username;
+    public final String ruolo;
+    public final Instant issuedAt;
+    public final Instant expiresAt;
+
+    private final long expiresAtMillis;
+
+    Claims(DecodedJWT jwt)
+    {
+      this.id = jwt.getId();
+      this.userId = Long.parseLong(jwt.getSubject());
+      this.username = jwt.getClaim("username").asString();
+      this.ruolo = jwt.getClaim("ruolo").asString();
+      this.issuedAt = jwt.getIssuedAtAsInstant();
+      this.expiresAt = jwt.getExpiresAtAsInstant();
+      this.expiresAtMillis = expiresAt != null ? expiresAt.toEpochMilli() : Long.MAX_VALUE;
+    }
+
+    /** Scadenza in millisecondi epoch (Long.MAX_VALUE se il token non scade) */
+    public long getExpiresAtMillis()
+    {
+      return expiresAtMillis;
+    }
+  }
 
   public JwtUtil(String secret, long expirySeconds)
   {
+    this(secret, expirySeconds, 10_000);
+  }
+
+  /**
+   * @param maxCached
+   *          token verificati da ricordare (0 = nessuna cache)
+   */
+  public JwtUtil(String secret, long expirySeconds, int maxCached)
+  {
+    if (secret == null || secret.isEmpty()) {
+      throw new IllegalArgumentException("Secret JWT mancante");
+    }
     this.algorithm = Algorithm.HMAC256(secret);
+    this.verifier = JWT.require(algorithm).build();
     this.expirySeconds = expirySeconds;
+    this.maxCached = maxCached;
   }
 
   public String generate(Long userId, String username, String ruolo)
@@ -27,6 +95,7 @@ public class JwtUtil
 
     return JWT.create()
         .withSubject(userId.toString())
+        .withJWTId(UUID.randomUUID().toString())
         .withClaim("username", username)
         .withClaim("ruolo", ruolo)
         .withIssuedAt(Date.from(now))
@@ -34,18 +103,93 @@ public class JwtUtil
         .sign(algorithm);
   }
 
+  /** Verifica firma e scadenza (sempre, senza cache) */
   public DecodedJWT validate(String token)
   {
-    return JWT.require(algorithm).build().verify(token);
+    return verifier.verify(token);
+  }
+
+  /**
+   * Verifica il token e ne restituisce il contenuto, dalla cache se già verificato e non scaduto.
+   *
+   * @throws com.auth0.jwt.exceptions.JWTVerificationException
+   *           se il token non è valido o è scaduto
+   */
+  public Claims verify(String token)
+  {
+    long now;
+    Claims claims;
+
+    now = System.currentTimeMillis();
+    claims = verified.get(token);
+    if (claims != null) {
+      if (now < claims.expiresAtMillis) {
+        hits.increment();
+        return claims;
+      }
+      verified.remove(token, claims);
+    }
+
+    misses.increment();
+    claims = new Claims(validate(token));
+    if (maxCached > 0) {
+      verified.put(token, claims);
+      if (verified.size() > maxCached) {
+        evict(now);
+      }
+    }
+    return claims;
   }
 
   public Long getUserId(String token)
   {
-    return Long.parseLong(validate(token).getSubject());
+    return verify(token).userId;
   }
 
   public String getRuolo(String token)
   {
-    return validate(token).getClaim("ruolo").asString();
+    return verify(token).ruolo;
+  }
+
+  /** Token verificati in cache */
+  public int cached()
+  {
+    return verified.size();
+  }
+
+  /** Verifiche risolte dalla cache */
+  public long getHits()
+  {
+    return hits.sum();
+  }
+
+  /** Verifiche con calcolo della firma */
+  public long getMisses()
+  {
+    return misses.sum();
+  }
+
+  /** Durata dei token emessi, in secondi */
+  public long getExpirySeconds()
+  {
+    return expirySeconds;
+  }
+
+  private void evict(long now)
+  {
+    if (!evicting.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      int target = maxCached - maxCached / 4;
+      verified.values().removeIf(claims -> now >= claims.expiresAtMillis);
+      Iterator<Claims> it = verified.values().iterator();
+      while (verified.size() > target && it.hasNext()) {
+        it.next();
+        it.remove();
+      }
+    } finally {
+      evicting.set(false);
+    }
   }
 }
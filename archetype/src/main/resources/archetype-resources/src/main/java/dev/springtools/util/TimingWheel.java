@@ -0,0 +1,217 @@
+package dev.springtools.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Timing wheel gerarchica per scadenze numerose e con granularità grossolana (sessioni, cache).
+ *
+ * <p>
+ * Il tempo è diviso in tick; ogni livello ha SLOTS caselle e copre SLOTS volte l'intervallo del
+ * livello inferiore (con 64 caselle e tick di un secondo: 64 s, 68 min, 3 giorni, 6 mesi).
+ * Programmare e annullare una scadenza costa O(1): il timer viene inserito nella casella del
+ * livello più basso che la contiene. Ad ogni giro di un livello la casella corrente del livello
+ * superiore viene ridistribuita verso il basso, quindi ogni timer viene spostato al più una volta
+ * per livello.
+ *
+ * <p>
+ * Gli istanti sono in millisecondi di un orologio monotono scelto dal chiamante (es.
+ * System.nanoTime() / 1_000_000). Thread-safe; i timer scaduti vengono passati al consumer fuori
+ * dal lock, quindi il consumer può riprogrammarli.
+ */
+public final class TimingWheel<T>
+{
+
+  private static final int BITS = 6;
+  private static final int SLOTS = 1 << BITS;
+  private static final int MASK = SLOTS - 1;
+  private static final int LEVELS = 4;
+
+  /** Distanza massima rappresentabile, in tick */
+  private static final long MAX_TICKS = (1L << (BITS * LEVELS)) - 1;
+
+  private final long tickMillis;
+  private final long originMillis;
+  private final Timer<T>[][] wheel;
+
+  /** Ultimo tick elaborato */
+  private long currentTick;
+  private int size;
+
+  /**
+   * @param tickMillis
+   *          risoluzione: le scadenze scattano entro un tick dall'istante richiesto
+   * @param nowMillis
+   *          istante corrente dell'orologio usato
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  public TimingWheel(long tickMillis, long nowMillis)
+  {
+    if (tickMillis <= 0) {
+      throw new IllegalArgumentException("tickMillis deve essere positivo");
+    }
+    this.tickMillis = tickMillis;
+    this.originMillis = nowMillis;
+    this.wheel = new Timer[LEVELS][SLOTS];
+    for (Timer<T>[] level : wheel) {
+      for (int i = 0; i < SLOTS; i++) {
+        // Sentinella della lista circolare della casella
+        level[i] = new Timer<>(null);
+        level[i].prev = level[i];
+        level[i].next = level[i];
+      }
+    }
+  }
+
+  /**
+   * Programma una scadenza.
+   *
+   * @param value
+   *          oggetto restituito alla scadenza
+   * @param deadlineMillis
+   *          istante di scadenza (se già passato scatta al prossimo tick)
+   * @return timer, da usare per annullare
+   */
+  public Timer<T> schedule(T value, long deadlineMillis)
+  {
+    Timer<T> timer = new Timer<>(value);
+    synchronized (this) {
+      long ticks = Math.max(0, deadlineMillis - originMillis);
+      timer.deadlineTick = (ticks + tickMillis - 1) / tickMillis;
+      // La casella del tick corrente è già stata elaborata
+      insert(timer, currentTick + 1);
+      size++;
+    }
+    return timer;
+  }
+
+  /**
+   * Annulla un timer.
+   *
+   * @return false se il timer è già scaduto o annullato
+   */
+  public synchronized boolean cancel(Timer<T> timer)
+  {
+    if (timer == null || timer.prev == null) {
+      return false;
+    }
+    unlink(timer);
+    size--;
+    return true;
+  }
+
+  /**
+   * Avanza fino all'istante indicato e consegna i timer scaduti.
+   *
+   * @param nowMillis
+   *          istante corrente
+   * @param expired
+   *          riceve il valore dei timer scaduti, nell'ordine di scadenza
+   * @return timer scaduti
+   */
+  public int advance(long nowMillis, Consumer<T> expired)
+  {
+    List<T> due = new ArrayList<>();
+    synchronized (this) {
+      long targetTick = Math.max(0, nowMillis - originMillis) / tickMillis;
+      while (currentTick < targetTick) {
+        currentTick++;
+
+        // Ridistribuisce i livelli superiori al loro cambio di casella, dall'alto verso il basso
+        for (int level = LEVELS - 1; level > 0; level--) {
+          if ((currentTick & ((1L << (BITS * level)) - 1)) == 0) {
+            cascade(wheel[level][(int) (currentTick >>> (BITS * level)) & MASK]);
+          }
+        }
+
+        Timer<T> slot = wheel[0][(int) currentTick & MASK];
+        while (slot.next != slot) {
+          Timer<T> timer = slot.next;
+          unlink(timer);
+          if (timer.deadlineTick > currentTick) {
+            // Oltre l'orizzonte della ruota al momento dell'inserimento
+            insert(timer, currentTick + 1);
+          } else {
+            size--;
+            due.add(timer.value);
+          }
+        }
+      }
+    }
+
+    for (T value : due) {
+      expired.accept(value);
+    }
+    return due.size();
+  }
+
+  /** Timer programmati */
+  public synchronized int size()
+  {
+    return size;
+  }
+
+  public long getTickMillis()
+  {
+    return tickMillis;
+  }
+
+  private void cascade(Timer<T> slot)
+  {
+    while (slot.next != slot) {
+      Timer<T> timer = slot.next;
+      unlink(timer);
+      insert(timer, currentTick);
+    }
+  }
+
+  /** Inserisce nella casella del livello più basso che contiene la scadenza */
+  private void insert(Timer<T> timer, long earliestTick)
+  {
+    long deadline = Math.max(timer.deadlineTick, earliestTick);
+    long delta = Math.min(deadline - currentTick, MAX_TICKS);
+
+    int level = 0;
+    while (level < LEVELS - 1 && delta >= (1L << (BITS * (level + 1)))) {
+      level++;
+    }
+    long slotTick = level == LEVELS - 1 && deadline - currentTick > MAX_TICKS
+        ? currentTick + MAX_TICKS
+        : deadline;
+    int index = (int) (slotTick >>> (BITS * level)) & MASK;
+
+    Timer<T> head = wheel[level][index];
+    timer.prev = head.prev;
+    timer.next = head;
+    head.prev.next = timer;
+    head.prev = timer;
+  }
+
+  private static <T> void unlink(Timer<T> timer)
+  {
+    timer.prev.next = timer.next;
+    timer.next.prev = timer.prev;
+    timer.prev = null;
+    timer.next = null;
+  }
+
+  /** Scadenza programmata; i collegamenti sono protetti dal lock della ruota */
+  public static final class Timer<T>
+  {
+    private final T value;
+    private long deadlineTick;
+    private Timer<T> prev;
+    private Timer<T> next;
+
+    private Timer(T value)
+    {
+      this.value = value;
+    }
+
+    public T getValue()
+    {
+      return value;
+    }
+  }
+}
@@ -0,0 +1,458 @@
+package dev.springtools.util.excel;
+
+import dev.springtools.util.Env;
+import dev.springtools.util.excel.ExcelAnalyzer.AnalysisResult;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ref.Cleaner;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.poi.poifs.filesystem.FileMagic;
+
+/**
+ * Cache tra analisi e importazione, indicizzata per hash del contenuto del file.
+ *
+ * <p>
+ * L'analisi legge il file una sola volta: oltre all'{@link AnalysisResult} salva le righe lette in
+ * un file binario compatto nella directory della cache. L'importazione rilegge quel file invece
+ * di ripetere il parsing della cartella di lavoro; un nuovo upload con lo stesso contenuto salta
+ * anche l'analisi. Le voci meno usate vengono eliminate quando lo spazio su disco supera il budget.
+ *
+ * <p>
+ * Configurazione (variabili d'ambiente): IMPORT_CACHE_DIR directory dei file (default
+ * excel-cache nella directory temporanea), IMPORT_CACHE_MAX_MB budget su disco (default 1024).
+ * Ogni cache usa una propria sottodirectory, eliminata da {@link #close()}: più istanze (anche di
+ * applicazioni diverse) possono condividere la stessa directory.
+ *
+ * <pre>
+ * // Anteprima
+ * AnalysisCache.Entry entry = cache.analyze(upload, null, 10);
+ * return HttpResponse.create().out(Map.of("hash", entry.getKey(), "analysis", entry.getAnalysis()));
+ *
+ * // Importazione (anche in una richiesta successiva)
+ * AnalysisCache.Entry entry = cache.get(hash);
+ * RowReader rows = entry != null ? entry.getRows() : null;
+ * ImportResult result = rows != null
+ *     ? new ExcelImporter(rows, mapping, normalization).execute(consumer)
+ *     : new ExcelImporter(upload.getFile(), mapping, normalization).execute(consumer);
+ * </pre>
+ */
+public class AnalysisCache implements AutoCloseable
+{
+
+  private static final String PREFIX = "rows-";
+  private static final String SUFFIX = ".bin";
+
+  /** Rilascia i file delle voci eliminate trattenuti da RowReader mai letti */
+  private static final Cleaner CLEANER = Cleaner.create();
+
+  private final Path directory;
+  private final long maxBytes;
+
+  /** Voci in ordine di accesso (LRU) */
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long totalBytes;
+
+  public AnalysisCache() throws Exception
+  {
+    this(
+        Path.of(Env.get("IMPORT_CACHE_DIR", defaultDirectory())),
+        Env.getLong("IMPORT_CACHE_MAX_MB", 1024L) * 1024 * 1024);
+  }
+
+  /**
+   * @param directory
+   *          directory in cui creare la sottodirectory dei file di righe di questa cache
+   * @param maxBytes
+   *          spazio massimo su disco
+   */
+  public AnalysisCache(Path directory, long maxBytes) throws Exception
+  {
+    Files.createDirectories(directory);
+    this.directory = Files.createTempDirectory(directory, "cache-");
+    this.maxBytes = maxBytes;
+  }
+
+  /** Voce in cache per il primo foglio (o per un file CSV) */
+  public Entry get(String hash)
+  {
+    return get(hash, null);
+  }
+
+  /**
+   * @param hash
+   *          hash del contenuto (vedi {@link SpooledUpload})
+   * @param sheetName
+   *          foglio analizzato (null per il primo)
+   * @return voce in cache o null
+   */
+  public synchronized Entry get(String hash, String sheetName)
+  {
+    return entries.get(key(hash, sheetName));
+  }
+
+  /**
+   * Analizza l'upload, o restituisce l'analisi in cache se il contenuto è già stato analizzato.
+   * XLSX e XLS vengono letti come cartella di lavoro, gli altri file come CSV.
+   *
+   * @param upload
+   *          file caricato
+   * @param sheetName
+   *          foglio da analizzare (null per il primo)
+   * @param previewRowCount
+   *          numero di righe di anteprima
+   */
+  public Entry analyze(SpooledUpload upload, String sheetName, int previewRowCount) throws Exception
+  {
+    String key = key(upload.getSha256(), sheetName);
+    Entry cached = get(upload.getSha256(), sheetName);
+    if (cached != null) {
+      return cached;
+    }
+
+    FileMagic magic = FileMagic.valueOf(upload.getFile());
+    if (magic != FileMagic.OOXML && magic != FileMagic.OLE2) {
+      return analyze(key, new CsvReader(upload.getPath()), previewRowCount);
+    }
+
+    try (WorkbookSheets workbook = WorkbookSheets.open(upload.getFile())) {
+      List<String> names = sheetName != null
+          ? Collections.singletonList(sheetName)
+          : workbook.getSheetNames().subList(0, 1);
+      return analyze(key, workbook.select(names).get(0), previewRowCount);
+    }
+  }
+
+  /**
+   * Analizza una sorgente qualsiasi salvandone le righe sotto la chiave indicata.
+   *
+   * @param key
+   *          chiave della voce (es. hash del contenuto)
+   * @param source
+   *          righe da analizzare
+   * @param previewRowCount
+   *          numero di righe di anteprima
+   */
+  public Entry analyze(String key, RowReader source, int previewRowCount) throws Exception
+  {
+    Path file = Files.createTempFile(directory, PREFIX, SUFFIX);
+    Collector collector;
+
+    try {
+      CountingOutputStream out = new CountingOutputStream(Files.newOutputStream(file), maxBytes);
+      collector = new Collector(new RowCodec.Writer(out), out, previewRowCount);
+      try {
+        source.read(collector);
+      } finally {
+        collector.close();
+      }
+    } catch (Exception e) {
+      Files.deleteIfExists(file);
+      throw e;
+    }
+
+    if (collector.overflow) {
+      // Righe troppo grandi per la cache: resta solo l'analisi
+      Files.deleteIfExists(file);
+      file = null;
+    }
+
+    Entry entry = new Entry(key, collector.result(), file, file != null ? Files.size(file) : 0);
+    return put(entry);
+  }
+
+  /** Elimina una voce */
+  public synchronized void invalidate(String hash, String sheetName)
+  {
+    Entry entry = entries.remove(key(hash, sheetName));
+    if (entry != null) {
+      delete(entry);
+    }
+  }
+
+  /** Elimina tutte le voci e la directory della cache */
+  @Override
+  public synchronized void close() throws IOException
+  {
+    for (Entry entry : entries.values()) {
+      delete(entry);
+    }
+    entries.clear();
+    // Anche i file trattenuti da letture non ancora iniziate
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+      for (Path file : files) {
+        deleteQuietly(file);
+      }
+    }
+    Files.deleteIfExists(directory);
+  }
+
+  /** Spazio su disco occupato dalle voci */
+  public synchronized long getTotalBytes()
+  {
+    return totalBytes;
+  }
+
+  private synchronized Entry put(Entry entry)
+  {
+    Entry existing = entries.get(entry.key);
+    if (existing != null) {
+      // Analisi concorrente dello stesso contenuto: si tiene la prima
+      if (entry.file != null) {
+        deleteQuietly(entry.file);
+      }
+      return existing;
+    }
+
+    entries.put(entry.key, entry);
+    totalBytes += entry.sizeBytes;
+
+    Iterator<Entry> lru = entries.values().iterator();
+    while (totalBytes > maxBytes && lru.hasNext()) {
+      Entry eldest = lru.next();
+      if (eldest == entry) {
+        continue;
+      }
+      lru.remove();
+      delete(eldest);
+    }
+    return entry;
+  }
+
+  private void delete(Entry entry)
+  {
+    totalBytes -= entry.sizeBytes;
+    entry.evict();
+  }
+
+  private static void deleteQuietly(Path file)
+  {
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException ignored) {
+      // Resta nella directory della cache fino a close()
+    }
+  }
+
+  private static String defaultDirectory()
+  {
+    return Path.of(System.getProperty("java.io.tmpdir"), "excel-cache").toString();
+  }
+
+  private static String key(String hash, String sheetName)
+  {
+    return sheetName == null ? hash : hash + "/" + sheetName;
+  }
+
+  /** Analisi in cache con le righe già lette */
+  public static class Entry
+  {
+    private final String key;
+    private final AnalysisResult analysis;
+    private final Path file;
+    private final long sizeBytes;
+
+    /** RowReader restituiti e non ancora aperti: il file resta finché non li aprono */
+    private int pending;
+    private boolean evicted;
+
+    Entry(String key, AnalysisResult analysis, Path file, long sizeBytes)
+    {
+      this.key = key;
+      this.analysis = analysis;
+      this.file = file;
+      this.sizeBytes = sizeBytes;
+    }
+
+    public String getKey()
+    {
+      return key;
+    }
+
+    public AnalysisResult getAnalysis()
+    {
+      return analysis;
+    }
+
+    /**
+     * Righe lette durante l'analisi, con intestazioni e tipi delle colonne, da usare come sorgente
+     * di {@link ExcelImporter}. Null se le righe superavano il budget della cache o se la voce è
+     * stata eliminata: in quel caso va riletto il file originale.
+     *
+     * <p>
+     * Il file viene aperto alla lettura. La prima lettura non risente di un'eliminazione della
+     * voce avvenuta nel frattempo: il file resta su disco finché non viene aperto, o finché il
+     * RowReader non viene raccolto dal garbage collector. Le letture successive riaprono il file.
+     */
+    public RowReader getRows()
+    {
+      if (file == null) {
+        return null;
+      }
+      synchronized (this) {
+        if (evicted) {
+          return null;
+        }
+        pending++;
+      }
+      AtomicBoolean opened = new AtomicBoolean();
+      Runnable release = () -> {
+        if (opened.compareAndSet(false, true)) {
+          released();
+        }
+      };
+      RowReader reader = consumer -> {
+        InputStream in;
+        try {
+          in = Files.newInputStream(file);
+        } finally {
+          // Su Linux la lettura prosegue anche se il file viene eliminato
+          release.run();
+        }
+        try (RowCodec.Reader rows = new RowCodec.Reader(in)) {
+          rows.readAll(consumer);
+        }
+      };
+      CLEANER.register(reader, release);
+      return reader;
+    }
+
+    public long getSizeBytes()
+    {
+      return sizeBytes;
+    }
+
+    /** Voce tolta dalla cache: il file viene eliminato appena nessun RowReader lo attende */
+    synchronized void evict()
+    {
+      evicted = true;
+      if (pending == 0 && file != null) {
+        deleteQuietly(file);
+      }
+    }
+
+    private synchronized void released()
+    {
+      pending--;
+      if (pending == 0 && evicted) {
+        deleteQuietly(file);
+      }
+    }
+  }
+
+  /** Costruisce l'analisi e salva le righe in un'unica lettura */
+  private static final class Collector implements HeaderAwareConsumer
+  {
+    private final RowCodec.Writer writer;
+    private final CountingOutputStream out;
+    private final int previewRowCount;
+
+    private List<String> headers = new ArrayList<>();
+    private final List<Map<String, Object>> previewRows = new ArrayList<>();
+    private final List<String> warnings = new ArrayList<>();
+    private int totalRows;
+    private boolean overflow;
+
+    Collector(RowCodec.Writer writer, CountingOutputStream out, int previewRowCount)
+    {
+      this.writer = writer;
+      this.out = out;
+      this.previewRowCount = previewRowCount;
+    }
+
+    @Override
+    public void headers(List<String> headers, List<Integer> ignoredColumns) throws IOException
+    {
+      this.headers = headers;
+      if (!ignoredColumns.isEmpty()) {
+        warnings.add(ExcelAnalyzer.emptyColumnsWarning(ignoredColumns));
+      }
+      writer.headers(headers, ignoredColumns);
+      overflow = out.isOverflow();
+    }
+
+    @Override
+    public void columnTypes(Map<String, ColumnType> types) throws IOException
+    {
+      writer.columnTypes(types);
+      overflow = out.isOverflow();
+    }
+
+    @Override
+    public void accept(Map<String, Object> row) throws Exception
+    {
+      totalRows++;
+      if (totalRows == 1 && headers.isEmpty()) {
+        // Sorgente senza notifica delle intestazioni
+        headers = new ArrayList<>(row.keySet());
+      }
+
+      if (previewRows.size() < previewRowCount) {
+        Map<String, Object> preview = new HashMap<>();
+        for (Map.Entry<String, Object> entry : row.entrySet()) {
+          preview.put(entry.getKey(), ExcelAnalyzer.previewValue(entry.getValue()));
+        }
+        previewRows.add(preview);
+      }
+
+      if (!overflow) {
+        writer.accept(row);
+        overflow = out.isOverflow();
+      }
+    }
+
+    void close() throws IOException
+    {
+      writer.close();
+    }
+
+    AnalysisResult result()
+    {
+      return new AnalysisResult(headers, previewRows, totalRows, warnings);
+    }
+  }
+
+  /** Conta i byte scritti e smette di scrivere oltre il limite */
+  private static final class CountingOutputStream extends FilterOutputStream
+  {
+    private final long limit;
+    private long count;
+
+    CountingOutputStream(OutputStream out, long limit)
+    {
+      super(out);
+      this.limit = limit;
+    }
+
+    @Override
+    public void write(int b) throws IOException
+    {
+      write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException
+    {
+      count += len;
+      if (count <= limit) {
+        out.write(b, off, len);
+      }
+    }
+
+    boolean isOverflow()
+    {
+      return count > limit;
+    }
+  }
+}
@@ -37,4 +37,10 @@ public class ColumnMapper
 
     return mapped;
   }
+
+  /** Campo logico di una singola intestazione (null se la colonna è ignorata) */
+  public String mapHeader(String header)
+  {
+    return strategy.mapHeader(header);
+  }
 }
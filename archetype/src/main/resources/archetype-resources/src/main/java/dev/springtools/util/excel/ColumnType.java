@@ -0,0 +1,123 @@
+package dev.springtools.util.excel;
+
+import dev.springtools.util.DB;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Tipo di una colonna dedotto da un campione di righe (vedi {@link HeaderAwareConsumer}): permette
+ * al consumer di passare al database valori già tipizzati con {@link #toSqlValue(Object)}. I
+ * lettori non lo usano per leggere le celle, perché una colonna può contenere valori di tipo
+ * diverso oltre il campione.
+ */
+public enum ColumnType
+{
+  DATE, INTEGER, DECIMAL, BOOLEAN, TEXT;
+
+  /** Righe esaminate per dedurre i tipi */
+  static final int SAMPLE_ROWS = 100;
+
+  /**
+   * Combina il tipo dedotto finora con un nuovo valore del campione.
+   *
+   * @param current
+   *          tipo dedotto finora (null se non ci sono ancora valori)
+   * @param value
+   *          valore letto (i null non cambiano il tipo)
+   */
+  static ColumnType merge(ColumnType current, Object value)
+  {
+    ColumnType type = of(value);
+    if (type == null || type == current) {
+      return current;
+    }
+    if (current == null) {
+      return type;
+    }
+    if ((current == INTEGER && type == DECIMAL) || (current == DECIMAL && type == INTEGER)) {
+      return DECIMAL;
+    }
+    return TEXT;
+  }
+
+  /** Tipo di un singolo valore letto (null per i valori vuoti) */
+  static ColumnType of(Object value)
+  {
+    if (value == null || (value instanceof String && ((String) value).isEmpty())) {
+      return null;
+    }
+    if (value instanceof LocalDateTime || value instanceof LocalDate) {
+      return DATE;
+    }
+    if (value instanceof Double || value instanceof Float) {
+      double d = ((Number) value).doubleValue();
+      return d == Math.rint(d) && Math.abs(d) < 1e15 ? INTEGER : DECIMAL;
+    }
+    if (value instanceof Long || value instanceof Integer) {
+      return INTEGER;
+    }
+    if (value instanceof Boolean) {
+      return BOOLEAN;
+    }
+    return TEXT;
+  }
+
+  /**
+   * Converte un valore nel tipo JDBC della colonna. I valori che non corrispondono al tipo
+   * vengono restituiti invariati.
+   */
+  public Object toSqlValue(Object value)
+  {
+    if (value == null) {
+      return null;
+    }
+
+    switch (this) {
+      case DATE :
+        if (value instanceof LocalDateTime) {
+          return DB.toSqlTimestamp((LocalDateTime) value);
+        }
+        if (value instanceof LocalDate) {
+          return DB.toSqlDate((LocalDate) value);
+        }
+        return value;
+
+      case INTEGER :
+        if (value instanceof Number) {
+          return ((Number) value).longValue();
+        }
+        if (value instanceof String) {
+          try {
+            return Long.parseLong(((String) value).trim());
+          } catch (NumberFormatException e) {
+            return value;
+          }
+        }
+        return value;
+
+      case DECIMAL :
+        if (value instanceof Number) {
+          return ((Number) value).doubleValue();
+        }
+        if (value instanceof String) {
+          try {
+            return Double.parseDouble(((String) value).trim());
+          } catch (NumberFormatException e) {
+            return value;
+          }
+        }
+        return value;
+
+      case BOOLEAN :
+        return value;
+
+      default :
+        if (value instanceof Double) {
+          double d = (Double) value;
+          // Evita "123.0" per i codici numerici in colonne di testo
+          return d == Math.rint(d) && Math.abs(d) < 1e15 ? String.valueOf((long) d) : value.toString();
+        }
+        return value.toString();
+    }
+  }
+}
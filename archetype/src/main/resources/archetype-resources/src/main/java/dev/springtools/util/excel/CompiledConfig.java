@@ -0,0 +1,169 @@
+package dev.springtools.util.excel;
+
+import dev.springtools.util.excel.strategy.MappingStrategy;
+import dev.springtools.util.excel.strategy.NormalizationStrategy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * Compila un {@link ImportConfig} nelle strategie usate da {@link ExcelImporter}, una volta per
+ * importazione.
+ *
+ * <p>
+ * Mapping: mappa esplicita, poi strategia della configurazione, poi (se ignoreUnknownColumns è
+ * disattivato) il nome della colonna; il risultato viene memorizzato per intestazione, quindi la
+ * risoluzione avviene una volta per colonna e non per cella.
+ *
+ * <p>
+ * Normalizzazione: le regole di ogni campo vengono composte in un'unica funzione; per ogni cella
+ * serve una sola ricerca per campo. Seguono i valori di default e i controlli di obbligatorietà
+ * dei campi assenti dal file, infine l'eventuale strategia di normalizzazione della
+ * configurazione.
+ */
+final class CompiledConfig
+{
+
+  /** Segnaposto per le intestazioni ignorate (ConcurrentHashMap non ammette null) */
+  private static final String IGNORED = new String("");
+
+  private CompiledConfig()
+  {
+  }
+
+  static MappingStrategy mapping(ImportConfig config)
+  {
+    Map<String, String> explicit = new HashMap<>();
+    if (config.getColumnMapping() != null) {
+      for (Map.Entry<String, String> entry : config.getColumnMapping().entrySet()) {
+        explicit.put(key(entry.getKey()), entry.getValue());
+      }
+    }
+    boolean hasExplicit = config.getColumnMapping() != null;
+    MappingStrategy fallback = config.getMappingStrategy();
+    boolean ignoreUnknown = config.isIgnoreUnknownColumns();
+
+    // Le strategie possono essere usate da più thread (importazione multi-foglio)
+    Map<String, String> resolved = new ConcurrentHashMap<>();
+
+    return header -> {
+      String field = resolved.get(header);
+      if (field == null) {
+        field = explicit.get(key(header));
+        if (field == null && fallback != null) {
+          field = fallback.mapHeader(header);
+        }
+        if (field == null && (!ignoreUnknown || (!hasExplicit && fallback == null))) {
+          field = header;
+        }
+        resolved.put(header, field != null ? field : IGNORED);
+        return field;
+      }
+      return field == IGNORED ? null : field;
+    };
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  static NormalizationStrategy normalization(ImportConfig config)
+  {
+    Map<String, UnaryOperator<Object>> byField = new HashMap<>();
+    List<String> checkedFields = new ArrayList<>();
+    List<UnaryOperator<Object>> checkedRules = new ArrayList<>();
+
+    for (FieldRules rules : config.getRules().values()) {
+      UnaryOperator<Object> rule = compile(rules);
+      byField.put(rules.getField(), rule);
+      if (rules.getDefaultValue() != null || rules.isRequired()) {
+        checkedFields.add(rules.getField());
+        checkedRules.add(rule);
+      }
+    }
+
+    NormalizationStrategy custom = config.getNormalizationStrategy();
+    if (byField.isEmpty()) {
+      return custom;
+    }
+
+    String[] fields = checkedFields.toArray(new String[0]);
+    UnaryOperator<Object>[] missing = checkedRules.toArray(new UnaryOperator[0]);
+
+    return row -> {
+      Map<String, Object> normalized = new HashMap<>((row.size() + fields.length) * 4 / 3 + 1);
+      for (Map.Entry<String, Object> entry : row.entrySet()) {
+        UnaryOperator<Object> rule = byField.get(entry.getKey());
+        normalized.put(entry.getKey(), rule != null ? rule.apply(entry.getValue()) : entry.getValue());
+      }
+      for (int i = 0; i < fields.length; i++) {
+        if (!normalized.containsKey(fields[i])) {
+          normalized.put(fields[i], missing[i].apply(null));
+        }
+      }
+      return custom != null ? custom.normalize(normalized) : normalized;
+    };
+  }
+
+  /** Compone le regole di un campo in una sola funzione */
+  private static UnaryOperator<Object> compile(FieldRules rules)
+  {
+    UnaryOperator<Object> chain = chain(rules.getSteps());
+    UnaryOperator<Object> nullSafe = value -> value != null ? chain.apply(value) : null;
+
+    Object defaultValue = rules.getDefaultValue();
+    boolean required = rules.isRequired();
+    if (defaultValue == null && !required) {
+      return nullSafe;
+    }
+
+    String field = rules.getField();
+    return value -> {
+      Object result = nullSafe.apply(value);
+      if (isBlank(result)) {
+        result = defaultValue;
+      }
+      if (required && isBlank(result)) {
+        throw new RowRejectedException("Campo obbligatorio mancante: " + field);
+      }
+      return result;
+    };
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static UnaryOperator<Object> chain(List<UnaryOperator<Object>> rules)
+  {
+    UnaryOperator<Object>[] steps = rules.toArray(new UnaryOperator[0]);
+
+    // Catene corte senza ciclo: la forma più semplice da inlineare per il JIT
+    switch (steps.length) {
+      case 0 :
+        return value -> value;
+      case 1 :
+        return steps[0];
+      case 2 :
+        UnaryOperator<Object> first = steps[0];
+        UnaryOperator<Object> second = steps[1];
+        return value -> second.apply(first.apply(value));
+      default :
+        return value -> {
+          for (UnaryOperator<Object> step : steps) {
+            value = step.apply(value);
+          }
+          return value;
+        };
+    }
+  }
+
+  private static boolean isBlank(Object value)
+  {
+    return value == null || (value instanceof String && ((String) value).isBlank());
+  }
+
+  /** Chiave di confronto delle intestazioni della mappa esplicita */
+  private static String key(String header)
+  {
+    return header.trim().toLowerCase(Locale.ROOT);
+  }
+}
@@ -0,0 +1,567 @@
+package dev.springtools.util.excel;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lettore CSV/TSV ad alte prestazioni compatibile con la pipeline di {@link ExcelImporter}.
+ *
+ * <p>
+ * Il file viene mappato in memoria (finestre da 256MB) e analizzato con una macchina a stati a
+ * livello di byte: gestisce campi tra virgolette, virgolette raddoppiate, newline all'interno dei
+ * campi e terminatori LF/CRLF/CR. Le stringhe vengono create solo per i campi delle colonne con
+ * intestazione.
+ *
+ * <p>
+ * Charset: BOM UTF-8/UTF-16 se presente, altrimenti UTF-8 se il campione iniziale è UTF-8 valido,
+ * altrimenti windows-1252. I file UTF-16 vengono transcodificati una volta in un file temporaneo
+ * UTF-8, perché i delimitatori ASCII non sono riconoscibili byte per byte.
+ *
+ * <p>
+ * Semantica allineata a {@link ExcelReader}: la prima riga contiene le intestazioni, le colonne
+ * senza intestazione vengono ignorate, i campi vuoti diventano null. Le righe vuote vengono
+ * saltate. Tutti i valori sono stringhe.
+ *
+ * <pre>
+ * ExcelImporter importer = new ExcelImporter(
+ *     new CsvReader(path).delimiter(';'),
+ *     mappingStrategy,
+ *     new ContactNormalizationStrategy());
+ * </pre>
+ */
+public class CsvReader implements RowReader
+{
+
+  /** Dimensione massima di una finestra mappata (e quindi di un singolo record) */
+  private static final int WINDOW_SIZE = 256 * 1024 * 1024;
+
+  /** Byte analizzati per rilevare charset e delimitatore */
+  private static final int SAMPLE_SIZE = 64 * 1024;
+
+  private static final byte[] DELIMITER_CANDIDATES = {',', ';', '\t', '|'};
+
+  private static final Charset WINDOWS_1252 = Charset.forName("windows-1252");
+
+  private final Path file;
+  private byte delimiter = 0;
+  private byte quote = '"';
+  private Charset charset;
+
+  // Stato del record corrente
+  private String[] fields = new String[32];
+  private int fieldCount;
+  private byte[] scratch = new byte[1024];
+  private int[] slotOf = new int[0];
+
+  public CsvReader(Path file)
+  {
+    this.file = file;
+  }
+
+  /** Crea un lettore per file TSV (delimitatore tab) */
+  public static CsvReader tsv(Path file)
+  {
+    return new CsvReader(file).delimiter('\t');
+  }
+
+  /**
+   * Imposta il delimitatore di campo (default: rilevato dalla prima riga tra , ; tab |).
+   *
+   * @param delimiter
+   *          carattere ASCII delimitatore
+   * @return this per chaining
+   */
+  public CsvReader delimiter(char delimiter)
+  {
+    this.delimiter = toAsciiByte(delimiter);
+    return this;
+  }
+
+  /**
+   * Imposta il carattere di quoting (default: virgolette doppie).
+   *
+   * @param quote
+   *          carattere ASCII di quoting
+   * @return this per chaining
+   */
+  public CsvReader quote(char quote)
+  {
+    this.quote = toAsciiByte(quote);
+    return this;
+  }
+
+  /**
+   * Forza il charset del file, disabilitando il rilevamento automatico.
+   *
+   * @param charset
+   *          charset del file
+   * @return this per chaining
+   */
+  public CsvReader charset(Charset charset)
+  {
+    this.charset = charset;
+    return this;
+  }
+
+  /** Charset effettivamente usato (disponibile dopo la lettura se rilevato automaticamente) */
+  public Charset getCharset()
+  {
+    return charset;
+  }
+
+  @Override
+  public void read(RowConsumer consumer) throws Exception
+  {
+    byte[] sample = readSample(file);
+    int bomLength = 0;
+
+    if (charset == null) {
+      if (startsWith(sample, 0xEF, 0xBB, 0xBF)) {
+        charset = StandardCharsets.UTF_8;
+        bomLength = 3;
+      } else if (startsWith(sample, 0xFF, 0xFE)) {
+        charset = StandardCharsets.UTF_16LE;
+      } else if (startsWith(sample, 0xFE, 0xFF)) {
+        charset = StandardCharsets.UTF_16BE;
+      } else {
+        charset = isValidUtf8(sample) ? StandardCharsets.UTF_8 : WINDOWS_1252;
+      }
+    } else if (charset.equals(StandardCharsets.UTF_8) && startsWith(sample, 0xEF, 0xBB, 0xBF)) {
+      bomLength = 3;
+    }
+
+    if (isUtf16(charset)) {
+      Path transcoded = transcodeToUtf8(file, charset);
+      try {
+        parse(transcoded, 0, readSample(transcoded), StandardCharsets.UTF_8, consumer);
+      } finally {
+        Files.deleteIfExists(transcoded);
+      }
+      return;
+    }
+
+    parse(file, bomLength, sample, charset, consumer);
+  }
+
+  private void parse(Path path, int offset, byte[] sample, Charset cs, RowConsumer consumer)
+      throws Exception
+  {
+    if (delimiter == 0) {
+      delimiter = detectDelimiter(sample, offset);
+    }
+
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      long windowStart = offset;
+      List<String> headers = null;
+      int maxHeaderIndex = -1;
+      int rowNumber = 0;
+
+      while (windowStart < size) {
+        int windowLength = (int) Math.min(WINDOW_SIZE, size - windowStart);
+        boolean eof = windowStart + windowLength == size;
+        MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowLength);
+        int pos = 0;
+
+        while (pos < windowLength) {
+          int next = parseRecord(buf, pos, windowLength, eof, cs, headers == null);
+          if (next < 0) {
+            break;
+          }
+          pos = next;
+
+          // Riga vuota: nessun campo o un unico campo vuoto
+          if (fieldCount == 0 || (fieldCount == 1 && fields[0] == null)) {
+            continue;
+          }
+          rowNumber++;
+
+          if (headers == null) {
+            headers = buildHeaders();
+            maxHeaderIndex = slotOf.length - 1;
+            while (maxHeaderIndex >= 0 && slotOf[maxHeaderIndex] < 0) {
+              maxHeaderIndex--;
+            }
+            if (consumer instanceof HeaderAwareConsumer) {
+              List<Integer> ignored = new ArrayList<>();
+              for (int i = 0; i < slotOf.length; i++) {
+                if (slotOf[i] < 0) {
+                  ignored.add(i);
+                }
+              }
+              ((HeaderAwareConsumer) consumer).headers(new ArrayList<>(headers), ignored);
+            }
+            continue;
+          }
+
+          // Verifica che la riga abbia abbastanza colonne per tutte le colonne con header
+          if (fieldCount < maxHeaderIndex + 1) {
+            throw new Exception(
+                String.format(
+                    "Errore di struttura del file: la riga %d ha solo %d colonne, "
+                        + "ma sono necessarie almeno %d colonne per le intestazioni presenti. "
+                        + "Verificare che tutte le righe abbiano dati per tutte le colonne.",
+                    rowNumber,
+                    fieldCount,
+                    maxHeaderIndex + 1));
+          }
+
+          Map<String, Object> record = new HashMap<>(headers.size() * 4 / 3 + 1);
+          int limit = Math.min(fieldCount, slotOf.length);
+          for (int i = 0; i < limit; i++) {
+            int slot = slotOf[i];
+            if (slot >= 0) {
+              record.put(headers.get(slot), fields[i]);
+            }
+          }
+          for (int i = limit; i < slotOf.length; i++) {
+            if (slotOf[i] >= 0) {
+              record.put(headers.get(slotOf[i]), null);
+            }
+          }
+
+          consumer.accept(record);
+        }
+
+        if (pos == 0 && !eof) {
+          throw new Exception(
+              String.format("Record alla riga %d più grande del limite di %d byte", rowNumber + 1, WINDOW_SIZE));
+        }
+        windowStart += pos;
+        if (eof) {
+          break;
+        }
+      }
+    }
+  }
+
+  /**
+   * Analizza un record a partire da {@code pos}. Popola {@code fields}/{@code fieldCount}.
+   *
+   * @return posizione successiva al terminatore, oppure -1 se il record continua oltre la finestra
+   */
+  private int parseRecord(ByteBuffer buf, int pos, int limit, boolean eof, Charset cs, boolean header)
+      throws Exception
+  {
+    final byte delim = delimiter;
+    final byte q = quote;
+    fieldCount = 0;
+
+    int i = pos;
+    while (true) {
+      // Inizio campo
+      if (i < limit && buf.get(i) == q) {
+        // Campo tra virgolette: copia in scratch risolvendo le virgolette raddoppiate
+        int len = 0;
+        i++;
+        while (true) {
+          if (i >= limit) {
+            if (!eof) {
+              return -1;
+            }
+            throw new Exception("Virgolette non chiuse alla fine del file");
+          }
+          byte b = buf.get(i);
+          if (b == q) {
+            if (i + 1 < limit && buf.get(i + 1) == q) {
+              len = put(len, q);
+              i += 2;
+              continue;
+            }
+            if (i + 1 >= limit && !eof) {
+              return -1;
+            }
+            i++;
+            break;
+          }
+          len = put(len, b);
+          i++;
+        }
+        // Eventuali caratteri dopo la virgoletta di chiusura vengono accodati (tolleranza)
+        while (i < limit) {
+          byte b = buf.get(i);
+          if (b == delim || b == '\n' || b == '\r') {
+            break;
+          }
+          len = put(len, b);
+          i++;
+        }
+        addField(len == 0 || !wanted(header) ? null : decode(len, cs), header);
+      } else {
+        // Campo semplice: individua la fine e copia in blocco
+        int start = i;
+        i = scanUnquoted(buf, i, limit);
+        while (i < limit) {
+          byte b = buf.get(i);
+          if (b == delim || b == '\n' || b == '\r') {
+            break;
+          }
+          i++;
+        }
+        int len = i - start;
+        if (len == 0 || !wanted(header)) {
+          addField(null, header);
+        } else {
+          ensureScratch(len);
+          buf.get(start, scratch, 0, len);
+          addField(decode(len, cs), header);
+        }
+      }
+
+      if (i >= limit) {
+        return eof ? limit : -1;
+      }
+
+      byte b = buf.get(i);
+      if (b == delim) {
+        i++;
+        continue;
+      }
+      if (b == '\r') {
+        if (i + 1 >= limit) {
+          return eof ? limit : -1;
+        }
+        return buf.get(i + 1) == '\n' ? i + 2 : i + 1;
+      }
+      // '\n'
+      return i + 1;
+    }
+  }
+
+  /**
+   * Salta 8 byte alla volta (SWAR) finché il blocco non contiene delimitatore, CR o LF. Ritorna
+   * la posizione del primo blocco che può contenerli; il byte esatto viene cercato dal chiamante.
+   */
+  private int scanUnquoted(ByteBuffer buf, int i, int limit)
+  {
+    final long delims = broadcast(delimiter);
+    final long lfs = 0x0A0A0A0A0A0A0A0AL;
+    final long crs = 0x0D0D0D0D0D0D0D0DL;
+
+    while (i + 8 <= limit) {
+      long word = buf.getLong(i);
+      if (hasByte(word, delims) || hasByte(word, lfs) || hasByte(word, crs)) {
+        break;
+      }
+      i += 8;
+    }
+    return i;
+  }
+
+  private static long broadcast(byte b)
+  {
+    return (b & 0xFFL) * 0x0101010101010101L;
+  }
+
+  private static boolean hasByte(long word, long pattern)
+  {
+    long x = word ^ pattern;
+    return ((x - 0x0101010101010101L) & ~x & 0x8080808080808080L) != 0;
+  }
+
+  /** True se il campo corrente appartiene a una colonna con intestazione */
+  private boolean wanted(boolean header)
+  {
+    return header || (fieldCount < slotOf.length && slotOf[fieldCount] >= 0);
+  }
+
+  private void addField(String value, boolean header)
+  {
+    if (fieldCount == fields.length) {
+      String[] grown = new String[fields.length * 2];
+      System.arraycopy(fields, 0, grown, 0, fields.length);
+      fields = grown;
+    }
+    fields[fieldCount] = wanted(header) ? value : null;
+    fieldCount++;
+  }
+
+  private int put(int len, byte b)
+  {
+    if (len == scratch.length) {
+      ensureScratch(len + 1);
+    }
+    scratch[len] = b;
+    return len + 1;
+  }
+
+  private void ensureScratch(int len)
+  {
+    if (len > scratch.length) {
+      byte[] grown = new byte[Math.max(len, scratch.length * 2)];
+      System.arraycopy(scratch, 0, grown, 0, scratch.length);
+      scratch = grown;
+    }
+  }
+
+  private String decode(int len, Charset cs)
+  {
+    return new String(scratch, 0, len, cs);
+  }
+
+  private List<String> buildHeaders() throws Exception
+  {
+    List<String> headers = new ArrayList<>();
+    slotOf = new int[fieldCount];
+
+    for (int i = 0; i < fieldCount; i++) {
+      String header = fields[i] == null ? "" : fields[i].trim();
+      if (header.isEmpty()) {
+        slotOf[i] = -1;
+      } else {
+        slotOf[i] = headers.size();
+        headers.add(header);
+      }
+    }
+
+    // Verifica che ci siano header
+    if (headers.isEmpty()) {
+      throw new Exception("Il file non contiene intestazioni valide nella prima riga");
+    }
+    return headers;
+  }
+
+  // =========================
+  // RILEVAMENTO FORMATO
+  // =========================
+
+  private static byte[] readSample(Path path) throws Exception
+  {
+    try (InputStream in = Files.newInputStream(path)) {
+      return in.readNBytes(SAMPLE_SIZE);
+    }
+  }
+
+  private static boolean startsWith(byte[] data, int... prefix)
+  {
+    if (data.length < prefix.length) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length; i++) {
+      if ((data[i] & 0xFF) != prefix[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Verifica UTF-8 sul campione, tollerando una sequenza troncata alla fine */
+  private static boolean isValidUtf8(byte[] sample)
+  {
+    int i = 0;
+    while (i < sample.length) {
+      int b = sample[i] & 0xFF;
+      int extra;
+      if (b < 0x80) {
+        i++;
+        continue;
+      } else if (b >= 0xC2 && b <= 0xDF) {
+        extra = 1;
+      } else if (b >= 0xE0 && b <= 0xEF) {
+        extra = 2;
+      } else if (b >= 0xF0 && b <= 0xF4) {
+        extra = 3;
+      } else {
+        return false;
+      }
+      for (int k = 1; k <= extra; k++) {
+        if (i + k >= sample.length) {
+          return true;
+        }
+        if ((sample[i + k] & 0xC0) != 0x80) {
+          return false;
+        }
+      }
+      i += extra + 1;
+    }
+    return true;
+  }
+
+  /** Sceglie il candidato più frequente nella prima riga (fuori dalle virgolette) */
+  private byte detectDelimiter(byte[] sample, int offset)
+  {
+    int[] counts = new int[DELIMITER_CANDIDATES.length];
+    boolean quoted = false;
+
+    for (int i = offset; i < sample.length; i++) {
+      byte b = sample[i];
+      if (b == quote) {
+        quoted = !quoted;
+      } else if (!quoted && (b == '\n' || b == '\r')) {
+        break;
+      } else if (!quoted) {
+        for (int k = 0; k < DELIMITER_CANDIDATES.length; k++) {
+          if (b == DELIMITER_CANDIDATES[k]) {
+            counts[k]++;
+          }
+        }
+      }
+    }
+
+    int best = 0;
+    for (int k = 1; k < counts.length; k++) {
+      if (counts[k] > counts[best]) {
+        best = k;
+      }
+    }
+    return DELIMITER_CANDIDATES[best];
+  }
+
+  private static boolean isUtf16(Charset cs)
+  {
+    return cs.equals(StandardCharsets.UTF_16)
+        || cs.equals(StandardCharsets.UTF_16LE)
+        || cs.equals(StandardCharsets.UTF_16BE);
+  }
+
+  private static Path transcodeToUtf8(Path source, Charset cs) throws Exception
+  {
+    Path target = Files.createTempFile("csv-utf8-", ".csv");
+    CharsetDecoder decoder = cs.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    char[] buffer = new char[64 * 1024];
+
+    try (BufferedReader in = new BufferedReader(new InputStreamReader(Files.newInputStream(source), decoder));
+        Writer out = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(target), StandardCharsets.UTF_8))) {
+      int n = in.read(buffer);
+      // Rimuove il BOM
+      int start = n > 0 && buffer[0] == '\uFEFF' ? 1 : 0;
+      while (n > 0) {
+        out.write(buffer, start, n - start);
+        start = 0;
+        n = in.read(buffer);
+      }
+    } catch (Exception e) {
+      Files.deleteIfExists(target);
+      throw e;
+    }
+    return target;
+  }
+
+  private static byte toAsciiByte(char c)
+  {
+    if (c == 0 || c > 0x7F || c == '\n' || c == '\r') {
+      throw new IllegalArgumentException("Carattere non valido come separatore CSV: " + (int) c);
+    }
+    return (byte) c;
+  }
+}
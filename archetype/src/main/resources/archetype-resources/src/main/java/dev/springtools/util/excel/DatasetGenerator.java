@@ -0,0 +1,736 @@
+package dev.springtools.util.excel;
+
+import dev.springtools.util.DB;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.regex.Pattern;
+import javax.sql.DataSource;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+/**
+ * Generatore di dati sintetici per test di scala, benchmark e popolamento del database: file XLSX
+ * (in streaming), XLS e CSV, oppure righe inserite direttamente in una tabella.
+ *
+ * <p>
+ * Le righe sono riproducibili (stesso seed, stesso risultato) e prodotte una alla volta: la
+ * memoria usata non dipende dal numero di righe, tranne che per XLS, il cui modello resta in
+ * memoria fino alla scrittura. Le colonne predefinite imitano un'anagrafica contatti, con una
+ * quota di valori "sporchi" come quelli gestiti da ContactNormalizationStrategy (telefoni con
+ * prefissi e separatori o in celle numeriche, email in maiuscolo con spazi, nomi in maiuscolo),
+ * righe duplicate e righe vuote.
+ *
+ * <pre>
+ * // 1M di righe per un test di importazione
+ * new DatasetGenerator().rows(1_000_000).duplicateRate(0.05).write(path, DatasetGenerator.Format.XLSX);
+ *
+ * // Popolamento di status_logs
+ * DatasetGenerator.statusLogs().rows(500_000).seed(dataSource, "status_logs");
+ * </pre>
+ *
+ * Da riga di comando: bin/cmd data generate (vedi main).
+ */
+public final class DatasetGenerator
+{
+
+  public enum Format
+  {
+    XLSX, XLS, CSV
+  }
+
+  /** Tipi di colonna */
+  public enum Kind
+  {
+    /** Progressivo a partire da 1 */
+    ID,
+    NAME,
+    SURNAME,
+    /** Email derivata da nome e cognome della stessa riga */
+    EMAIL,
+    PHONE,
+    CITY,
+    /** Breve frase */
+    TEXT,
+    INTEGER,
+    DECIMAL,
+    DATE,
+    TIMESTAMP,
+    BOOLEAN
+  }
+
+  /** Righe recenti tra cui scegliere i duplicati */
+  private static final int DUPLICATE_WINDOW = 256;
+
+  /** Righe mantenute in memoria da SXSSF */
+  private static final int ROW_WINDOW = 100;
+
+  private static final int CSV_BUFFER = 1 << 20;
+
+  private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+  private static final LocalDate BIRTH_FROM = LocalDate.of(1950, 1, 1);
+  private static final int BIRTH_DAYS = 20_000;
+  private static final LocalDateTime TIMESTAMP_FROM = LocalDateTime.of(2025, 1, 1, 0, 0);
+  private static final int TIMESTAMP_SECONDS = 365 * 24 * 3600;
+
+  private static final String[] NAMES = {
+      "Mario", "Luigi", "Giulia", "Francesca", "Marco", "Anna", "Giuseppe", "Chiara", "Luca", "Sara",
+      "Andrea", "Elena", "Paolo", "Laura", "Stefano", "Valentina", "Davide", "Martina", "Matteo",
+      "Federica", "John", "Mary", "James", "Emma", "Pierre", "Camille", "Hans", "Sophie", "Carlos",
+      "Lucía", "Niccolò", "Zoë"};
+
+  private static final String[] SURNAMES = {
+      "Rossi", "Russo", "Ferrari", "Esposito", "Bianchi", "Romano", "Colombo", "Ricci", "Marino",
+      "Greco", "Bruno", "Gallo", "Conti", "De Luca", "Mancini", "Costa", "Giordano", "Rizzo",
+      "Lombardi", "Moretti", "D'Angelo", "Dell'Acqua", "Smith", "Johnson", "Martin", "Dubois",
+      "Müller", "Schmidt", "García", "Fernández"};
+
+  private static final String[] CITIES = {
+      "Roma", "Milano", "Napoli", "Torino", "Palermo", "Genova", "Bologna", "Firenze", "Bari",
+      "Catania", "Venezia", "Verona", "Messina", "Padova", "Trieste", "Forlì", "Reggio Emilia"};
+
+  private static final String[] DOMAINS = {
+      "gmail.com", "libero.it", "hotmail.it", "yahoo.it", "outlook.com", "tiscali.it", "virgilio.it",
+      "example.com"};
+
+  private static final String[] WORDS = {
+      "controllo", "stato", "servizio", "richiesta", "completata", "avviato", "errore", "timeout",
+      "utente", "sessione", "importazione", "contatto", "aggiornato", "sincronizzazione", "ok",
+      "coda", "elaborazione", "database"};
+
+  private final Map<String, Kind> columns = new LinkedHashMap<>();
+  private long rows = 1000;
+  private long seed = 42;
+  private double duplicateRate;
+  private double emptyRowRate;
+  private double messyRate;
+
+  /** Generatore con le colonne di un'anagrafica contatti */
+  public DatasetGenerator()
+  {
+    this(true);
+  }
+
+  private DatasetGenerator(boolean contacts)
+  {
+    if (contacts) {
+      column("id", Kind.ID);
+      column("nome", Kind.NAME);
+      column("cognome", Kind.SURNAME);
+      column("email", Kind.EMAIL);
+      column("telefono", Kind.PHONE);
+      column("citta", Kind.CITY);
+      column("data_nascita", Kind.DATE);
+      column("importo", Kind.DECIMAL);
+      column("attivo", Kind.BOOLEAN);
+      duplicateRate = 0.02;
+      emptyRowRate = 0.01;
+      messyRate = 0.3;
+    }
+  }
+
+  /** Generatore senza colonne, da definire con column */
+  public static DatasetGenerator empty()
+  {
+    return new DatasetGenerator(false);
+  }
+
+  /** Righe per la tabella status_logs (message, created_at), senza duplicati né righe vuote */
+  public static DatasetGenerator statusLogs()
+  {
+    return empty().column("message", Kind.TEXT).column("created_at", Kind.TIMESTAMP);
+  }
+
+  /** Aggiunge una colonna (o ne cambia il tipo) */
+  public DatasetGenerator column(String header, Kind kind)
+  {
+    columns.put(header, kind);
+    return this;
+  }
+
+  /** Righe da generare, escluse le intestazioni (default 1000) */
+  public DatasetGenerator rows(long rows)
+  {
+    if (rows < 0) {
+      throw new IllegalArgumentException("Numero di righe non valido: " + rows);
+    }
+    this.rows = rows;
+    return this;
+  }
+
+  /** Seme del generatore casuale (default 42) */
+  public DatasetGenerator randomSeed(long seed)
+  {
+    this.seed = seed;
+    return this;
+  }
+
+  /** Quota di righe che ripetono una riga recente (default 0.02) */
+  public DatasetGenerator duplicateRate(double duplicateRate)
+  {
+    this.duplicateRate = rate(duplicateRate);
+    return this;
+  }
+
+  /** Quota di righe completamente vuote (default 0.01) */
+  public DatasetGenerator emptyRowRate(double emptyRowRate)
+  {
+    this.emptyRowRate = rate(emptyRowRate);
+    return this;
+  }
+
+  /** Quota di nomi, email e telefoni in forma non normalizzata (default 0.3) */
+  public DatasetGenerator messyRate(double messyRate)
+  {
+    this.messyRate = rate(messyRate);
+    return this;
+  }
+
+  public List<String> getHeaders()
+  {
+    return new ArrayList<>(columns.keySet());
+  }
+
+  // =========================
+  // DESTINAZIONI
+  // =========================
+
+  /**
+   * Scrive il file nel formato richiesto.
+   *
+   * @return righe scritte, escluse le intestazioni
+   */
+  public long write(Path file, Format format) throws Exception
+  {
+    switch (format) {
+      case CSV :
+        return writeCsv(file);
+      case XLS :
+        try (Workbook workbook = new HSSFWorkbook()) {
+          return writeWorkbook(workbook, file, SpreadsheetVersion.EXCEL97);
+        }
+      default :
+        SXSSFWorkbook workbook = new SXSSFWorkbook(ROW_WINDOW);
+        try {
+          return writeWorkbook(workbook, file, SpreadsheetVersion.EXCEL2007);
+        } finally {
+          workbook.close();
+          workbook.dispose();
+        }
+    }
+  }
+
+  /**
+   * Passa le righe al consumer senza scrivere file (benchmark della pipeline di importazione).
+   * Le righe vuote hanno tutti i valori null.
+   */
+  public void generate(RowConsumer consumer) throws Exception
+  {
+    Rows source = new Rows();
+    String[] headers = columns.keySet().toArray(new String[0]);
+    for (long i = 0; i < rows; i++) {
+      Object[] values = source.next();
+      Map<String, Object> row = new HashMap<>(headers.length * 4 / 3 + 1);
+      for (int c = 0; c < headers.length; c++) {
+        row.put(headers[c], values[c]);
+      }
+      consumer.accept(row);
+    }
+  }
+
+  /**
+   * Inserisce le righe nella tabella, con inserimenti batch in transazioni da batchSize righe. Le
+   * colonne della tabella devono avere i nomi delle intestazioni; le righe vuote vengono saltate.
+   *
+   * @return righe inserite
+   */
+  public long seed(DataSource dataSource, String table, int batchSize) throws Exception
+  {
+    if (!IDENTIFIER.matcher(table).matches()) {
+      throw new IllegalArgumentException("Nome tabella non valido: " + table);
+    }
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("batchSize deve essere positivo");
+    }
+    StringBuilder sql = new StringBuilder("INSERT INTO ").append(table).append(" (");
+    StringBuilder marks = new StringBuilder();
+    for (String header : columns.keySet()) {
+      if (!IDENTIFIER.matcher(header).matches()) {
+        throw new IllegalArgumentException("Nome colonna non valido: " + header);
+      }
+      if (marks.length() > 0) {
+        sql.append(", ");
+        marks.append(", ");
+      }
+      sql.append(header);
+      marks.append('?');
+    }
+    sql.append(") VALUES (").append(marks).append(')');
+
+    Rows source = new Rows();
+    List<Object[]> batch = new ArrayList<>(batchSize);
+    long inserted = 0;
+
+    DB db = new DB(dataSource);
+    try {
+      db.open();
+      for (long i = 0; i < rows; i++) {
+        Object[] values = source.next();
+        if (source.lastEmpty) {
+          continue;
+        }
+        Object[] params = new Object[values.length];
+        for (int c = 0; c < values.length; c++) {
+          params[c] = toSql(values[c]);
+        }
+        batch.add(params);
+        if (batch.size() == batchSize) {
+          inserted += flush(db, sql.toString(), batch);
+        }
+      }
+      if (!batch.isEmpty()) {
+        inserted += flush(db, sql.toString(), batch);
+      }
+    } finally {
+      db.close();
+    }
+    return inserted;
+  }
+
+  public long seed(DataSource dataSource, String table) throws Exception
+  {
+    return seed(dataSource, table, 1000);
+  }
+
+  private static int flush(DB db, String sql, List<Object[]> batch) throws Exception
+  {
+    db.begin();
+    try {
+      int count = db.batch(sql, batch);
+      db.commit();
+      batch.clear();
+      return count;
+    } catch (Exception e) {
+      db.rollback();
+      throw e;
+    }
+  }
+
+  private static Object toSql(Object value)
+  {
+    if (value instanceof LocalDateTime) {
+      return DB.toSqlTimestamp((LocalDateTime) value);
+    }
+    if (value instanceof LocalDate) {
+      return DB.toSqlDate((LocalDate) value);
+    }
+    return value;
+  }
+
+  // =========================
+  // SCRITTURA FILE
+  // =========================
+
+  private long writeCsv(Path file) throws IOException
+  {
+    Rows source = new Rows();
+    StringBuilder line = new StringBuilder(256);
+
+    try (Writer out = new BufferedWriter(
+        new OutputStreamWriter(Files.newOutputStream(file), StandardCharsets.UTF_8), CSV_BUFFER)) {
+      for (String header : columns.keySet()) {
+        if (line.length() > 0) {
+          line.append(';');
+        }
+        appendCsv(line, header);
+      }
+      out.append(line).append('\n');
+
+      for (long i = 0; i < rows; i++) {
+        Object[] values = source.next();
+        line.setLength(0);
+        for (int c = 0; c < values.length; c++) {
+          if (c > 0) {
+            line.append(';');
+          }
+          Object value = values[c];
+          if (value instanceof Double && source.kinds[c] == Kind.PHONE) {
+            // Telefono finito in una cella numerica ed esportato senza decimali
+            line.append((long) (double) (Double) value);
+          } else if (value instanceof LocalDateTime) {
+            LocalDateTime t = (LocalDateTime) value;
+            line.append(t.toLocalDate()).append(' ').append(t.toLocalTime());
+          } else if (value != null) {
+            appendCsv(line, value.toString());
+          }
+        }
+        out.append(line).append('\n');
+      }
+    }
+    return rows;
+  }
+
+  private static void appendCsv(StringBuilder line, String value)
+  {
+    boolean quote = false;
+    for (int i = 0; i < value.length() && !quote; i++) {
+      char c = value.charAt(i);
+      quote = c == ';' || c == '"' || c == '\n' || c == '\r';
+    }
+    if (!quote) {
+      line.append(value);
+      return;
+    }
+    line.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"') {
+        line.append('"');
+      }
+      line.append(c);
+    }
+    line.append('"');
+  }
+
+  /** Scrive nel workbook, proseguendo su nuovi fogli oltre il limite di righe del formato */
+  private long writeWorkbook(Workbook workbook, Path file, SpreadsheetVersion version)
+      throws IOException
+  {
+    int maxDataRows = version.getMaxRows() - 1;
+    String[] headers = columns.keySet().toArray(new String[0]);
+
+    CellStyle dateStyle = workbook.createCellStyle();
+    dateStyle.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat("dd/mm/yyyy"));
+    CellStyle timestampStyle = workbook.createCellStyle();
+    timestampStyle.setDataFormat(
+        workbook.getCreationHelper().createDataFormat().getFormat("dd/mm/yyyy hh:mm:ss"));
+
+    Rows source = new Rows();
+    Sheet sheet = null;
+    int rowIndex = 0;
+
+    for (long i = 0; i < rows; i++) {
+      if (sheet == null || rowIndex > maxDataRows) {
+        sheet = workbook.createSheet(workbook.getNumberOfSheets() == 0
+            ? "Dati"
+            : "Dati " + (workbook.getNumberOfSheets() + 1));
+        Row header = sheet.createRow(0);
+        for (int c = 0; c < headers.length; c++) {
+          header.createCell(c).setCellValue(headers[c]);
+        }
+        rowIndex = 1;
+      }
+
+      Object[] values = source.next();
+      Row row = sheet.createRow(rowIndex++);
+      if (source.lastEmpty) {
+        continue;
+      }
+      for (int c = 0; c < values.length; c++) {
+        Object value = values[c];
+        if (value == null) {
+          continue;
+        }
+        Cell cell = row.createCell(c);
+        if (value instanceof String) {
+          cell.setCellValue((String) value);
+        } else if (value instanceof Number) {
+          cell.setCellValue(((Number) value).doubleValue());
+        } else if (value instanceof Boolean) {
+          cell.setCellValue((Boolean) value);
+        } else if (value instanceof LocalDateTime) {
+          cell.setCellValue((LocalDateTime) value);
+          cell.setCellStyle(timestampStyle);
+        } else if (value instanceof LocalDate) {
+          cell.setCellValue((LocalDate) value);
+          cell.setCellStyle(dateStyle);
+        }
+      }
+    }
+
+    try (OutputStream out = Files.newOutputStream(file)) {
+      workbook.write(out);
+    }
+    return rows;
+  }
+
+  private static double rate(double rate)
+  {
+    if (rate < 0 || rate > 1) {
+      throw new IllegalArgumentException("La quota deve essere compresa tra 0 e 1: " + rate);
+    }
+    return rate;
+  }
+
+  // =========================
+  // GENERAZIONE
+  // =========================
+
+  /** Sequenza di righe di una singola generazione */
+  private final class Rows
+  {
+    private final SplittableRandom random = new SplittableRandom(seed);
+    private final Kind[] kinds = columns.values().toArray(new Kind[0]);
+    private final Object[][] recent = new Object[DUPLICATE_WINDOW][];
+    private final StringBuilder text = new StringBuilder(64);
+    private int recentCount;
+    private long id;
+    private boolean lastEmpty;
+
+    Object[] next()
+    {
+      lastEmpty = false;
+      double draw = random.nextDouble();
+
+      if (draw < emptyRowRate) {
+        lastEmpty = true;
+        return new Object[kinds.length];
+      }
+      if (draw < emptyRowRate + duplicateRate && recentCount > 0) {
+        return recent[random.nextInt(Math.min(recentCount, DUPLICATE_WINDOW))];
+      }
+
+      Object[] values = new Object[kinds.length];
+      String name = null;
+      String surname = null;
+      for (int c = 0; c < kinds.length; c++) {
+        switch (kinds[c]) {
+          case ID :
+            values[c] = ++id;
+            break;
+          case NAME :
+            name = pick(NAMES);
+            values[c] = messy() ? messyName(name) : name;
+            break;
+          case SURNAME :
+            surname = pick(SURNAMES);
+            values[c] = messy() ? messyName(surname) : surname;
+            break;
+          case EMAIL :
+            values[c] = email(name != null ? name : pick(NAMES), surname != null ? surname : pick(SURNAMES));
+            break;
+          case PHONE :
+            values[c] = phone();
+            break;
+          case CITY :
+            values[c] = pick(CITIES);
+            break;
+          case TEXT :
+            values[c] = sentence();
+            break;
+          case INTEGER :
+            values[c] = (long) random.nextInt(1_000_000);
+            break;
+          case DECIMAL :
+            values[c] = random.nextInt(10_000_000) / 100.0;
+            break;
+          case DATE :
+            values[c] = BIRTH_FROM.plusDays(random.nextInt(BIRTH_DAYS));
+            break;
+          case TIMESTAMP :
+            values[c] = TIMESTAMP_FROM.plusSeconds(random.nextInt(TIMESTAMP_SECONDS));
+            break;
+          default :
+            values[c] = random.nextBoolean();
+        }
+      }
+
+      recent[recentCount++ % DUPLICATE_WINDOW] = values;
+      return values;
+    }
+
+    private boolean messy()
+    {
+      return messyRate > 0 && random.nextDouble() < messyRate;
+    }
+
+    private String pick(String[] values)
+    {
+      return values[random.nextInt(values.length)];
+    }
+
+    private String messyName(String value)
+    {
+      switch (random.nextInt(3)) {
+        case 0 :
+          return value.toUpperCase(Locale.ROOT);
+        case 1 :
+          return "  " + value.toLowerCase(Locale.ROOT) + " ";
+        default :
+          return value.toLowerCase(Locale.ROOT);
+      }
+    }
+
+    private String email(String name, String surname)
+    {
+      text.setLength(0);
+      appendLetters(name);
+      text.append(random.nextBoolean() ? '.' : '_');
+      appendLetters(surname);
+      if (random.nextInt(4) == 0) {
+        text.append(random.nextInt(100));
+      }
+      text.append('@').append(pick(DOMAINS));
+      String email = text.toString();
+
+      if (!messy()) {
+        return email;
+      }
+      switch (random.nextInt(3)) {
+        case 0 :
+          return email.toUpperCase(Locale.ROOT);
+        case 1 :
+          return " " + email + "  ";
+        default :
+          return Character.toUpperCase(email.charAt(0)) + email.substring(1, email.indexOf('@'))
+              + email.substring(email.indexOf('@')).toUpperCase(Locale.ROOT);
+      }
+    }
+
+    /** Solo lettere ASCII minuscole (accenti e apostrofi rimossi come farebbe un utente) */
+    private void appendLetters(String value)
+    {
+      for (int i = 0; i < value.length(); i++) {
+        char c = Character.toLowerCase(value.charAt(i));
+        if (c >= 'a' && c <= 'z') {
+          text.append(c);
+        } else if (c > 0x7F) {
+          char base = java.text.Normalizer.normalize(String.valueOf(c), java.text.Normalizer.Form.NFD)
+              .charAt(0);
+          if (base >= 'a' && base <= 'z') {
+            text.append(base);
+          }
+        }
+      }
+    }
+
+    private Object phone()
+    {
+      // Cellulare italiano: 3 + 9 cifre
+      long number = 3_000_000_000L + random.nextInt(1_000_000_000);
+      if (!messy()) {
+        return Long.toString(number);
+      }
+      String digits = Long.toString(number);
+      switch (random.nextInt(6)) {
+        case 0 :
+          return "+39 " + digits.substring(0, 3) + " " + digits.substring(3, 6) + " " + digits.substring(6);
+        case 1 :
+          return "0039-" + digits.substring(0, 3) + "-" + digits.substring(3);
+        case 2 :
+          return digits.substring(0, 3) + "." + digits.substring(3, 6) + "." + digits.substring(6, 8) + "."
+              + digits.substring(8);
+        case 3 :
+          return " (" + digits.substring(0, 3) + ") " + digits.substring(3) + " ";
+        case 4 :
+          return digits.substring(0, 3) + "/" + digits.substring(3);
+        default :
+          // Numero digitato in una cella numerica
+          return (double) number;
+      }
+    }
+
+    private String sentence()
+    {
+      text.setLength(0);
+      int words = 3 + random.nextInt(6);
+      for (int w = 0; w < words; w++) {
+        if (w > 0) {
+          text.append(' ');
+        }
+        text.append(pick(WORDS));
+      }
+      text.append(' ').append(random.nextInt(100_000));
+      return text.toString();
+    }
+  }
+
+  // =========================
+  // RIGA DI COMANDO
+  // =========================
+
+  /**
+   * Uso: DatasetGenerator --rows N [--format xlsx|xls|csv --out FILE] [--table NOME --db-url URL
+   * [--db-user U --db-password P --batch 1000]] [--seed N] [--duplicates 0.02] [--empty 0.01]
+   * [--messy 0.3]
+   *
+   * <p>
+   * Con --table le righe vengono inserite nella tabella; per status_logs si usano le sue colonne,
+   * per le altre tabelle le colonne dei contatti.
+   */
+  public static void main(String[] args) throws Exception
+  {
+    Map<String, String> options = new HashMap<>();
+    for (int i = 0; i + 1 < args.length; i += 2) {
+      if (!args[i].startsWith("--")) {
+        throw new IllegalArgumentException("Opzione non valida: " + args[i]);
+      }
+      options.put(args[i].substring(2), args[i + 1]);
+    }
+    if (args.length % 2 != 0) {
+      throw new IllegalArgumentException("Valore mancante per l'opzione: " + args[args.length - 1]);
+    }
+
+    String table = options.get("table");
+    DatasetGenerator generator = "status_logs".equals(table) ? statusLogs() : new DatasetGenerator();
+    generator.rows(Long.parseLong(options.getOrDefault("rows", "1000")));
+    if (options.containsKey("seed")) {
+      generator.randomSeed(Long.parseLong(options.get("seed")));
+    }
+    if (options.containsKey("duplicates")) {
+      generator.duplicateRate(Double.parseDouble(options.get("duplicates")));
+    }
+    if (options.containsKey("empty")) {
+      generator.emptyRowRate(Double.parseDouble(options.get("empty")));
+    }
+    if (options.containsKey("messy")) {
+      generator.messyRate(Double.parseDouble(options.get("messy")));
+    }
+
+    long started = System.nanoTime();
+    long count;
+    String target;
+
+    if (table != null) {
+      String url = options.get("db-url");
+      if (url == null) {
+        throw new IllegalArgumentException("--db-url obbligatorio con --table");
+      }
+      DriverManagerDataSource dataSource =
+          new DriverManagerDataSource(url, options.get("db-user"), options.get("db-password"));
+      count = generator.seed(dataSource, table, Integer.parseInt(options.getOrDefault("batch", "1000")));
+      target = table;
+    } else {
+      Format format = Format.valueOf(options.getOrDefault("format", "xlsx").toUpperCase(Locale.ROOT));
+      Path out = Path.of(options.getOrDefault("out", "dataset." + format.name().toLowerCase(Locale.ROOT)));
+      count = generator.write(out, format);
+      target = out + " (" + Files.size(out) / 1024 + " KB)";
+    }
+
+    double seconds = (System.nanoTime() - started) / 1e9;
+    System.out.printf(
+        Locale.ROOT, "%d righe -> %s in %.1f s (%.0f righe/s)%n", count, target, seconds, count / seconds);
+  }
+}
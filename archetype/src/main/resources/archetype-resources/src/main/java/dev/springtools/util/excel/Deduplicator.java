@@ -0,0 +1,360 @@
+package dev.springtools.util.excel;
+
+import dev.springtools.util.DB;
+import dev.springtools.util.excel.strategy.NormalizationStrategy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Fase di deduplicazione per {@link ExcelImporter}: scarta le righe che hanno almeno un campo
+ * chiave (es. telefono o email normalizzati) già presente nella tabella di destinazione o in una
+ * riga precedente del file.
+ *
+ * <p>
+ * Le chiavi vengono ridotte a impronte a 128 bit, conservate fuori dall'heap in un filtro di Bloom
+ * (scarta in un solo accesso in memoria le chiavi nuove) e in un insieme esatto che conferma i
+ * positivi del filtro. La memoria è fissata alla creazione in base al numero massimo di chiavi
+ * (tra 22 e 44 byte per chiave, secondo l'arrotondamento della tabella a potenze di 2) e non
+ * dipende dall'heap; viene liberata dal GC quando il deduplicatore non è più referenziato.
+ *
+ * <p>
+ * Non è thread-safe: nell'importazione multi-foglio la deduplicazione avviene sul thread del
+ * consumer.
+ *
+ * <pre>
+ * Deduplicator dedup = new Deduplicator(20_000_000, "telefono", "email");
+ * DB.Cursor cursor = db.cursor("SELECT phone AS telefono, email FROM contacts");
+ * try {
+ *   dedup.seed(cursor, null);
+ * } finally {
+ *   cursor.close();
+ * }
+ * ImportResult result = new ExcelImporter(in, mapping, new ContactNormalizationStrategy())
+ *     .deduplicate(dedup)
+ *     .execute(consumer);
+ * </pre>
+ */
+public class Deduplicator
+{
+
+  private final String[] fields;
+  private final OffHeapBloomFilter bloom;
+  private final OffHeapFingerprintSet keys;
+
+  private final long[] pending1;
+  private final long[] pending2;
+
+  /** Impronta calcolata dall'ultima chiamata a fingerprint */
+  private long fp1;
+  private long fp2;
+
+  private long keysSeeded;
+  private long rowsChecked;
+  private long duplicatesExisting;
+  private long duplicatesInFile;
+  private long bloomNegatives;
+  private long bloomFalsePositives;
+
+  /**
+   * @param maxKeys
+   *          numero massimo di chiavi (precaricate più quelle del file, un valore per campo)
+   * @param fields
+   *          campi chiave del record normalizzato
+   */
+  public Deduplicator(long maxKeys, String... fields)
+  {
+    if (fields == null || fields.length == 0) {
+      throw new IllegalArgumentException("Almeno un campo chiave è obbligatorio");
+    }
+    this.fields = fields.clone();
+    this.bloom = new OffHeapBloomFilter(maxKeys);
+    this.keys = new OffHeapFingerprintSet(maxKeys);
+    this.pending1 = new long[fields.length];
+    this.pending2 = new long[fields.length];
+  }
+
+  /**
+   * Precarica le chiavi esistenti. Le colonne del cursore devono avere i nomi dei campi chiave
+   * (usare alias nella query).
+   *
+   * @param cursor
+   *          righe della tabella di destinazione (non viene chiuso)
+   * @param strategy
+   *          normalizzazione da applicare ai valori (null se già normalizzati nel database)
+   * @return chiavi aggiunte
+   */
+  public long seed(DB.Cursor cursor, NormalizationStrategy strategy) throws Exception
+  {
+    long added = 0;
+    while (cursor.next()) {
+      if (strategy != null) {
+        Map<String, Object> row = strategy.normalize(cursor.getRow());
+        for (int f = 0; f < fields.length; f++) {
+          added += seedValue(f, row.get(fields[f]));
+        }
+      } else {
+        for (int f = 0; f < fields.length; f++) {
+          added += seedValue(f, cursor.get(fields[f]));
+        }
+      }
+    }
+    keysSeeded += added;
+    return added;
+  }
+
+  /**
+   * Verifica una riga normalizzata e, se non è un duplicato, ne registra le chiavi.
+   *
+   * @return true se almeno un campo chiave era già presente
+   */
+  public boolean isDuplicate(Map<String, Object> row)
+  {
+    rowsChecked++;
+    int count = 0;
+
+    for (int f = 0; f < fields.length; f++) {
+      Object value = row.get(fields[f]);
+      if (!fingerprint(f, value)) {
+        continue;
+      }
+      if (!bloom.mightContain(fp1, fp2)) {
+        bloomNegatives++;
+      } else {
+        int origin = keys.get(fp1, fp2);
+        if (origin == OffHeapFingerprintSet.ORIGIN_SEEDED) {
+          duplicatesExisting++;
+          return true;
+        }
+        if (origin == OffHeapFingerprintSet.ORIGIN_FILE) {
+          duplicatesInFile++;
+          return true;
+        }
+        bloomFalsePositives++;
+      }
+      pending1[count] = fp1;
+      pending2[count] = fp2;
+      count++;
+    }
+
+    // Le chiavi di una riga scartata non vengono registrate
+    for (int i = 0; i < count; i++) {
+      if (keys.putIfAbsent(pending1[i], pending2[i], OffHeapFingerprintSet.ORIGIN_FILE) < 0) {
+        bloom.add(pending1[i], pending2[i]);
+      }
+    }
+    return false;
+  }
+
+  /** Istantanea dei contatori */
+  public Stats getStats()
+  {
+    return new Stats(
+        keysSeeded,
+        keys.size(),
+        keys.capacity(),
+        rowsChecked,
+        duplicatesExisting,
+        duplicatesInFile,
+        bloomNegatives,
+        bloomFalsePositives,
+        bloom.sizeInBytes() + keys.sizeInBytes());
+  }
+
+  private int seedValue(int field, Object value)
+  {
+    if (!fingerprint(field, value)) {
+      return 0;
+    }
+    if (keys.putIfAbsent(fp1, fp2, OffHeapFingerprintSet.ORIGIN_SEEDED) >= 0) {
+      return 0;
+    }
+    bloom.add(fp1, fp2);
+    return 1;
+  }
+
+  /**
+   * Calcola l'impronta a 128 bit di (campo, valore) in fp1, fp2 (schema MurmurHash3 x64 sui
+   * caratteri). Ritorna false per i valori vuoti, che non sono chiavi.
+   */
+  private boolean fingerprint(int field, Object value)
+  {
+    if (value == null) {
+      return false;
+    }
+    String s = value instanceof String ? (String) value : value.toString();
+    if (s.isEmpty()) {
+      return false;
+    }
+
+    final long c1 = 0x87c37b91114253d5L;
+    final long c2 = 0x4cf5ad432745937fL;
+    long a = 0x9E3779B97F4A7C15L ^ field;
+    long b = 0xC2B2AE3D27D4EB4FL ^ field;
+    int length = s.length();
+    int i = 0;
+
+    // Blocchi di 8 caratteri (128 bit)
+    for (; i + 8 <= length; i += 8) {
+      long k1 = pack(s, i);
+      long k2 = pack(s, i + 4);
+      a ^= Long.rotateLeft(k1 * c1, 31) * c2;
+      a = Long.rotateLeft(a, 27) + b;
+      a = a * 5 + 0x52dce729;
+      b ^= Long.rotateLeft(k2 * c2, 33) * c1;
+      b = Long.rotateLeft(b, 31) + a;
+      b = b * 5 + 0x38495ab5;
+    }
+
+    long k1 = 0;
+    long k2 = 0;
+    for (int j = 0; i < length; i++, j++) {
+      long c = s.charAt(i);
+      if (j < 4) {
+        k1 |= c << (j << 4);
+      } else {
+        k2 |= c << ((j - 4) << 4);
+      }
+    }
+    a ^= Long.rotateLeft(k1 * c1, 31) * c2;
+    b ^= Long.rotateLeft(k2 * c2, 33) * c1;
+
+    a ^= length;
+    b ^= length;
+    a += b;
+    b += a;
+    a = fmix(a);
+    b = fmix(b);
+    a += b;
+    b += a;
+
+    fp1 = a;
+    fp2 = b;
+    return true;
+  }
+
+  private static long pack(String s, int i)
+  {
+    return s.charAt(i)
+        | (long) s.charAt(i + 1) << 16
+        | (long) s.charAt(i + 2) << 32
+        | (long) s.charAt(i + 3) << 48;
+  }
+
+  private static long fmix(long k)
+  {
+    k ^= k >>> 33;
+    k *= 0xff51afd7ed558ccdL;
+    k ^= k >>> 33;
+    k *= 0xc4ceb9fe1a85ec53L;
+    k ^= k >>> 33;
+    return k;
+  }
+
+  /** Contatori della deduplicazione */
+  public static class Stats
+  {
+    private final long keysSeeded;
+    private final long keys;
+    private final long maxKeys;
+    private final long rowsChecked;
+    private final long duplicatesExisting;
+    private final long duplicatesInFile;
+    private final long bloomNegatives;
+    private final long bloomFalsePositives;
+    private final long offHeapBytes;
+
+    Stats(
+        long keysSeeded,
+        long keys,
+        long maxKeys,
+        long rowsChecked,
+        long duplicatesExisting,
+        long duplicatesInFile,
+        long bloomNegatives,
+        long bloomFalsePositives,
+        long offHeapBytes)
+    {
+      this.keysSeeded = keysSeeded;
+      this.keys = keys;
+      this.maxKeys = maxKeys;
+      this.rowsChecked = rowsChecked;
+      this.duplicatesExisting = duplicatesExisting;
+      this.duplicatesInFile = duplicatesInFile;
+      this.bloomNegatives = bloomNegatives;
+      this.bloomFalsePositives = bloomFalsePositives;
+      this.offHeapBytes = offHeapBytes;
+    }
+
+    /** Chiavi precaricate dalla tabella di destinazione */
+    public long getKeysSeeded()
+    {
+      return keysSeeded;
+    }
+
+    /** Chiavi registrate in totale */
+    public long getKeys()
+    {
+      return keys;
+    }
+
+    public long getMaxKeys()
+    {
+      return maxKeys;
+    }
+
+    public long getRowsChecked()
+    {
+      return rowsChecked;
+    }
+
+    /** Righe scartate perché già presenti nella tabella */
+    public long getDuplicatesExisting()
+    {
+      return duplicatesExisting;
+    }
+
+    /** Righe scartate perché ripetute nel file */
+    public long getDuplicatesInFile()
+    {
+      return duplicatesInFile;
+    }
+
+    /** Chiavi escluse dal solo filtro di Bloom */
+    public long getBloomNegatives()
+    {
+      return bloomNegatives;
+    }
+
+    /** Positivi del filtro smentiti dall'insieme esatto */
+    public long getBloomFalsePositives()
+    {
+      return bloomFalsePositives;
+    }
+
+    public long getOffHeapBytes()
+    {
+      return offHeapBytes;
+    }
+
+    public Map<String, Object> toMap()
+    {
+      Map<String, Object> map = new LinkedHashMap<>();
+      map.put("keysSeeded", keysSeeded);
+      map.put("keys", keys);
+      map.put("maxKeys", maxKeys);
+      map.put("rowsChecked", rowsChecked);
+      map.put("duplicatesExisting", duplicatesExisting);
+      map.put("duplicatesInFile", duplicatesInFile);
+      map.put("bloomNegatives", bloomNegatives);
+      map.put("bloomFalsePositives", bloomFalsePositives);
+      map.put("offHeapBytes", offHeapBytes);
+      return map;
+    }
+
+    @Override
+    public String toString()
+    {
+      return "Deduplicator.Stats" + toMap();
+    }
+  }
+}
@@ -1,5 +1,6 @@
 package dev.springtools.util.excel;
 
+import java.io.File;
 import java.io.InputStream;
 import java.util.*;
 import org.apache.poi.ss.usermodel.*;
@@ -9,14 +10,68 @@ public class ExcelAnalyzer
 {
 
   private final InputStream excel;
+  private final File file;
 
   public ExcelAnalyzer(InputStream excel)
   {
     this.excel = excel;
+    this.file = null;
   }
 
-  /** Analizza il file e restituisce le informazioni di base */
+  /** Analizza un file su disco senza copiarlo in memoria (vedi {@link SpooledUpload}) */
+  public ExcelAnalyzer(File file)
+  {
+    this.excel = null;
+    this.file = file;
+  }
+
+  /** Analizza il primo foglio e restituisce le informazioni di base */
   public AnalysisResult analyze(int previewRowCount) throws Exception
+  {
+    return analyze(previewRowCount, null);
+  }
+
+  /**
+   * Analizza un foglio specifico.
+   *
+   * @param previewRowCount
+   *          numero di righe di anteprima
+   * @param sheetName
+   *          nome del foglio (null per il primo foglio)
+   */
+  public AnalysisResult analyze(int previewRowCount, String sheetName) throws Exception
+  {
+    try (Workbook workbook = ExcelReader.openWorkbook(excel, file)) {
+      Sheet sheet = sheetName != null ? workbook.getSheet(sheetName) : workbook.getSheetAt(0);
+      if (sheet == null) {
+        throw new Exception("Foglio non trovato: " + sheetName);
+      }
+      return analyzeSheet(sheet, previewRowCount);
+    }
+  }
+
+  /**
+   * Analizza tutti i fogli, ognuno con la propria rilevazione delle intestazioni.
+   *
+   * @return risultati per nome del foglio, nell'ordine della cartella di lavoro
+   */
+  public Map<String, AnalysisResult> analyzeSheets(int previewRowCount) throws Exception
+  {
+    Map<String, AnalysisResult> results = new LinkedHashMap<>();
+
+    try (Workbook workbook = ExcelReader.openWorkbook(excel, file)) {
+      for (Sheet sheet : workbook) {
+        try {
+          results.put(sheet.getSheetName(), analyzeSheet(sheet, previewRowCount));
+        } catch (Exception e) {
+          throw new Exception("Foglio '" + sheet.getSheetName() + "': " + e.getMessage(), e);
+        }
+      }
+    }
+    return results;
+  }
+
+  private AnalysisResult analyzeSheet(Sheet sheet, int previewRowCount) throws Exception
   {
     List<String> headers = new ArrayList<>();
     List<Integer> validColumnIndices = new ArrayList<>();
@@ -24,98 +79,116 @@ public class ExcelAnalyzer
     List<String> warnings = new ArrayList<>();
     int totalRows = 0;
 
-    try (Workbook workbook = WorkbookFactory.create(excel)) {
-      Sheet sheet = workbook.getSheetAt(0);
-      Iterator<Row> iterator = sheet.iterator();
+    Iterator<Row> iterator = sheet.iterator();
 
-      if (!iterator.hasNext()) {
-        return new AnalysisResult(headers, previewRows, 0, new ArrayList<>());
-      }
-
-      // Leggi header (prima riga) e traccia gli indici delle colonne valide
-      Row headerRow = iterator.next();
-      int totalColumns = headerRow.getLastCellNum();
+    if (!iterator.hasNext()) {
+      return new AnalysisResult(headers, previewRows, 0, new ArrayList<>());
+    }
 
-      // Itera su tutte le colonne usando indici (non solo celle esistenti)
-      List<Integer> emptyColumnIndices = new ArrayList<>();
+    // Leggi header (prima riga) e traccia gli indici delle colonne valide
+    Row headerRow = iterator.next();
+    int totalColumns = headerRow.getLastCellNum();
 
-      for (int columnIndex = 0; columnIndex < totalColumns; columnIndex++) {
-        Cell cell = headerRow.getCell(columnIndex);
-        String header = "";
+    // Itera su tutte le colonne usando indici (non solo celle esistenti)
+    List<Integer> emptyColumnIndices = new ArrayList<>();
 
-        if (cell != null) {
-          try {
-            header = cell.getStringCellValue();
-          } catch (Exception e) {
-            // Se non è una stringa, ignora
-          }
-        }
+    for (int columnIndex = 0; columnIndex < totalColumns; columnIndex++) {
+      Cell cell = headerRow.getCell(columnIndex);
+      String header = "";
 
-        if (header != null && !header.trim().isEmpty()) {
-          headers.add(header.trim());
-          validColumnIndices.add(columnIndex);
-        } else {
-          emptyColumnIndices.add(columnIndex);
+      if (cell != null) {
+        try {
+          header = cell.getStringCellValue();
+        } catch (Exception e) {
+          // Se non è una stringa, ignora
         }
       }
 
-      // Aggiungi warning se ci sono colonne senza header
-      if (!emptyColumnIndices.isEmpty()) {
-        String columnsList = emptyColumnIndices.stream()
-            .map(i -> String.valueOf((char)('A' + i)))
-            .reduce((a, b) -> a + ", " + b)
-            .orElse("");
-        warnings.add(
-            String.format(
-                "Rilevate %d colonne senza intestazione (colonne: %s). "
-                    + "Queste colonne verranno ignorate durante l'importazione.",
-                emptyColumnIndices.size(),
-                columnsList));
+      if (header != null && !header.trim().isEmpty()) {
+        headers.add(header.trim());
+        validColumnIndices.add(columnIndex);
+      } else {
+        emptyColumnIndices.add(columnIndex);
       }
+    }
 
-      // Verifica che ci siano header
-      if (headers.isEmpty()) {
-        throw new Exception("Il file non contiene intestazioni valide nella prima riga");
-      }
+    // Aggiungi warning se ci sono colonne senza header
+    if (!emptyColumnIndices.isEmpty()) {
+      warnings.add(emptyColumnsWarning(emptyColumnIndices));
+    }
 
-      // Leggi righe di preview e conta il totale
-      int maxHeaderIndex = validColumnIndices.isEmpty() ? -1 : validColumnIndices.get(validColumnIndices.size() - 1);
-
-      while (iterator.hasNext()) {
-        Row row = iterator.next();
-        totalRows++;
-
-        // Verifica che la riga abbia abbastanza colonne per tutte le colonne con header (controlla prime 20 righe)
-        if (totalRows <= 20 && maxHeaderIndex >= 0) {
-          int rowColumns = row.getLastCellNum();
-          if (rowColumns < maxHeaderIndex + 1) {
-            throw new Exception(
-                String.format(
-                    "Errore di struttura del file: la riga %d ha solo %d colonne, "
-                        + "ma sono necessarie almeno %d colonne per le intestazioni presenti. "
-                        + "Verificare che tutte le righe abbiano dati per tutte le colonne.",
-                    totalRows + 1,
-                    rowColumns,
-                    maxHeaderIndex + 1));
-          }
+    // Verifica che ci siano header
+    if (headers.isEmpty()) {
+      throw new Exception("Il file non contiene intestazioni valide nella prima riga");
+    }
+
+    // Leggi righe di preview e conta il totale
+    int maxHeaderIndex = validColumnIndices.isEmpty() ? -1 : validColumnIndices.get(validColumnIndices.size() - 1);
+
+    while (iterator.hasNext()) {
+      Row row = iterator.next();
+      totalRows++;
+
+      // Verifica che la riga abbia abbastanza colonne per tutte le colonne con header (controlla prime 20 righe)
+      if (totalRows <= 20 && maxHeaderIndex >= 0) {
+        int rowColumns = row.getLastCellNum();
+        if (rowColumns < maxHeaderIndex + 1) {
+          throw new Exception(
+              String.format(
+                  "Errore di struttura del file: la riga %d ha solo %d colonne, "
+                      + "ma sono necessarie almeno %d colonne per le intestazioni presenti. "
+                      + "Verificare che tutte le righe abbiano dati per tutte le colonne.",
+                  totalRows + 1,
+                  rowColumns,
+                  maxHeaderIndex + 1));
         }
+      }
 
-        // Aggiungi solo le prime N righe al preview
-        if (previewRows.size() < previewRowCount) {
-          Map<String, Object> record = new HashMap<>();
-          for (int i = 0; i < headers.size(); i++) {
-            int actualColumnIndex = validColumnIndices.get(i);
-            Cell cell = row.getCell(actualColumnIndex, Row.MissingCellPolicy.RETURN_BLANK_AS_NULL);
-            record.put(headers.get(i), readCell(cell));
-          }
-          previewRows.add(record);
+      // Aggiungi solo le prime N righe al preview
+      if (previewRows.size() < previewRowCount) {
+        Map<String, Object> record = new HashMap<>();
+        for (int i = 0; i < headers.size(); i++) {
+          int actualColumnIndex = validColumnIndices.get(i);
+          Cell cell = row.getCell(actualColumnIndex, Row.MissingCellPolicy.RETURN_BLANK_AS_NULL);
+          record.put(headers.get(i), readCell(cell));
         }
+        previewRows.add(record);
       }
     }
 
     return new AnalysisResult(headers, previewRows, totalRows, warnings);
   }
 
+  /** Warning per le colonne senza intestazione, che l'importazione ignora */
+  static String emptyColumnsWarning(List<Integer> emptyColumnIndices)
+  {
+    String columnsList = emptyColumnIndices.stream()
+        .map(i -> String.valueOf((char)('A' + i)))
+        .reduce((a, b) -> a + ", " + b)
+        .orElse("");
+    return String.format(
+        "Rilevate %d colonne senza intestazione (colonne: %s). "
+            + "Queste colonne verranno ignorate durante l'importazione.",
+        emptyColumnIndices.size(),
+        columnsList);
+  }
+
+  /** Valore di anteprima di una cella già letta (stesse regole di readCell) */
+  static Object previewValue(Object value)
+  {
+    if (value instanceof Double) {
+      double numValue = (Double) value;
+      if (numValue == (long) numValue) {
+        return String.valueOf((long) numValue);
+      }
+      return String.valueOf(numValue);
+    }
+    if (value instanceof java.time.LocalDateTime) {
+      return value.toString();
+    }
+    return value;
+  }
+
   private Object readCell(Cell cell)
   {
     if (cell == null) {
@@ -123,7 +196,16 @@ public class ExcelAnalyzer
     }
 
     try {
-      switch (cell.getCellType()) {
+      // Per le formule si usa il risultato salvato nel file, senza valutarle
+      CellType type = cell.getCellType();
+      if (type == CellType.FORMULA) {
+        if (!ExcelReader.hasCachedResult(cell)) {
+          return null;
+        }
+        type = cell.getCachedFormulaResultType();
+      }
+
+      switch (type) {
         case STRING :
           return cell.getStringCellValue();
         case NUMERIC :
@@ -138,8 +220,6 @@ public class ExcelAnalyzer
           return String.valueOf(numValue);
         case BOOLEAN :
           return cell.getBooleanCellValue();
-        case FORMULA :
-          return cell.getCellFormula();
         default :
           return null;
       }
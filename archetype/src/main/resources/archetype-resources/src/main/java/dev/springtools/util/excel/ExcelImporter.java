@@ -1,40 +1,639 @@
 package dev.springtools.util.excel;
 
+import dev.springtools.util.Env;
 import dev.springtools.util.excel.strategy.MappingStrategy;
 import dev.springtools.util.excel.strategy.NormalizationStrategy;
+import java.io.File;
 import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class ExcelImporter
 {
 
-  private final ExcelReader reader;
+  /** Righe per blocco passato dai thread dei fogli al consumer */
+  private static final int BATCH_SIZE = 256;
+
+  /** Blocchi in attesa di essere consumati (limita la memoria in caso di consumer lento) */
+  private static final int QUEUE_CAPACITY = 64;
+
+  private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+  private final RowReader reader;
+  private final List<SheetReader> sheets;
   private final ColumnMapper mapper;
   private final Normalizer normalizer;
 
+  private Deduplicator deduplicator;
+  private boolean skipEmptyRows = true;
+  private int internMaxValues = Env.getInt("IMPORT_INTERN_MAX_VALUES", 1024);
+  private String[] sortFields;
+  private long memoryBudget = Env.getLong("IMPORT_MEMORY_BUDGET_MB", 128L) * 1024 * 1024;
+
+  /** Righe lette dalla sorgente (aggiornato durante l'esecuzione, leggibile da altri thread) */
+  private final AtomicLong rowsRead = new AtomicLong();
+
   public ExcelImporter(
       InputStream excel,
       MappingStrategy mappingStrategy,
       NormalizationStrategy normalizationStrategy)
   {
-    this.reader = new ExcelReader(excel);
+    this(new ExcelReader(excel), mappingStrategy, normalizationStrategy);
+  }
+
+  /** Importa il primo foglio di un file su disco (vedi {@link SpooledUpload}) */
+  public ExcelImporter(
+      File excel,
+      MappingStrategy mappingStrategy,
+      NormalizationStrategy normalizationStrategy)
+  {
+    this(new ExcelReader(excel), mappingStrategy, normalizationStrategy);
+  }
+
+  /**
+   * Importa da una sorgente qualsiasi (es. {@link CsvReader}) riusando le fasi di mapping,
+   * normalizzazione e consumo.
+   */
+  public ExcelImporter(
+      RowReader reader,
+      MappingStrategy mappingStrategy,
+      NormalizationStrategy normalizationStrategy)
+  {
+    this.reader = reader;
+    this.sheets = null;
     this.mapper = new ColumnMapper(mappingStrategy);
     this.normalizer = new Normalizer(normalizationStrategy);
   }
 
+  /**
+   * Importa con una configurazione dichiarativa: mapping, regole per campo e opzioni (vedi {@link
+   * ImportConfig}).
+   */
+  public ExcelImporter(RowReader reader, ImportConfig config)
+  {
+    this(reader, CompiledConfig.mapping(config), CompiledConfig.normalization(config));
+    this.skipEmptyRows = config.isSkipEmptyRows();
+  }
+
+  /**
+   * Importa più fogli in parallelo (vedi {@link WorkbookSheets}). Lettura, mapping e
+   * normalizzazione di ogni foglio avvengono su un thread dedicato; il consumer viene invocato
+   * solo dal thread chiamante, quindi può usare connessioni e transazioni di {@link
+   * dev.springtools.util.DB} aperte prima dell'importazione. Le strategie devono essere
+   * thread-safe. Un {@link HeaderAwareConsumer} riceve intestazioni e tipi di ogni foglio, sempre
+   * su quel thread, prima delle righe del foglio (le righe dei fogli si alternano).
+   */
+  public ExcelImporter(
+      List<? extends SheetReader> sheets,
+      MappingStrategy mappingStrategy,
+      NormalizationStrategy normalizationStrategy)
+  {
+    this.reader = null;
+    this.sheets = new ArrayList<>(sheets);
+    this.mapper = new ColumnMapper(mappingStrategy);
+    this.normalizer = new Normalizer(normalizationStrategy);
+  }
+
+  /** Importa più fogli in parallelo con una configurazione dichiarativa */
+  public ExcelImporter(List<? extends SheetReader> sheets, ImportConfig config)
+  {
+    this(sheets, CompiledConfig.mapping(config), CompiledConfig.normalization(config));
+    this.skipEmptyRows = config.isSkipEmptyRows();
+  }
+
+  /**
+   * Attiva la deduplicazione: le righe normalizzate con un campo chiave già visto non vengono
+   * passate al consumer.
+   *
+   * @return this per chaining
+   */
+  public ExcelImporter deduplicate(Deduplicator deduplicator)
+  {
+    this.deduplicator = deduplicator;
+    return this;
+  }
+
+  /**
+   * Canonicalizzazione dei valori testuali ripetuti (città, provincia, ruolo...): le righe lette
+   * e normalizzate condividono un'unica istanza per valore, riducendo la memoria trattenuta dai
+   * blocchi in coda e dalle cache a valle. Una colonna smette di essere canonicalizzata quando
+   * supera il numero indicato di valori distinti. Default: variabile d'ambiente
+   * IMPORT_INTERN_MAX_VALUES (1024).
+   *
+   * @param maxValuesPerColumn
+   *          valori distinti per colonna (0 per disattivare)
+   * @return this per chaining
+   */
+  public ExcelImporter internValues(int maxValuesPerColumn)
+  {
+    this.internMaxValues = maxValuesPerColumn;
+    return this;
+  }
+
+  /**
+   * Ordina le righe normalizzate per i campi indicati prima di passarle al consumer (es. per
+   * codice cliente). Le righe restano in memoria entro il budget di memoryBudget,
+   * oltre il quale vengono scaricate su disco in sequenze ordinate (directory IMPORT_SORT_DIR,
+   * default la directory temporanea) e fuse a lettura completata. Il consumer riceve le righe
+   * solo dopo la lettura dell'intero file; i valori null vanno in fondo.
+   *
+   * @param fields
+   *          campi normalizzati di ordinamento, in ordine di priorità
+   * @return this per chaining
+   */
+  public ExcelImporter sortBy(String... fields)
+  {
+    this.sortFields = fields.length > 0 ? fields.clone() : null;
+    return this;
+  }
+
+  /**
+   * Memoria stimata che le righe trattenute dall'importazione possono occupare: blocchi in coda
+   * tra i fogli e il consumer e buffer dell'ordinamento. Quando il consumer resta indietro la
+   * lettura dei fogli si ferma, quindi l'heap non cresce con la dimensione del file. Default:
+   * variabile d'ambiente IMPORT_MEMORY_BUDGET_MB (128).
+   *
+   * @param bytes
+   *          budget in byte
+   * @return this per chaining
+   */
+  public ExcelImporter memoryBudget(long bytes)
+  {
+    if (bytes < 1) {
+      throw new IllegalArgumentException("Il budget di memoria deve essere positivo");
+    }
+    this.memoryBudget = bytes;
+    return this;
+  }
+
+  /**
+   * Esegue l'importazione. Le righe vuote vengono saltate; le righe per cui la normalizzazione o il
+   * consumer lanciano {@link RowRejectedException} vengono scartate senza interrompere
+   * l'importazione. Il risultato riporta i tempi di ogni fase.
+   */
   public ImportResult execute(RowConsumer consumer) throws Exception
   {
-    List<Map<String, Object>> rows = reader.read();
-    int imported = 0;
+    return execute(consumer, 0);
+  }
+
+  /**
+   * Esegue l'importazione saltando le prime righe dati, senza mapparle né normalizzarle (ripresa
+   * da un checkpoint). Non supportato per l'importazione multi-foglio, dove l'ordine di arrivo
+   * delle righe non è deterministico, né con l'ordinamento attivo, dove le righe lette non sono
+   * ancora state consegnate.
+   *
+   * @param consumer
+   *          destinazione dei record normalizzati
+   * @param fromRow
+   *          numero di righe dati da saltare
+   */
+  public ImportResult execute(RowConsumer consumer, long fromRow) throws Exception
+  {
+    rowsRead.set(0);
 
-    for (Map<String, Object> row : rows) {
-      Map<String, Object> mapped = mapper.map(row);
+    if (sheets != null) {
+      if (fromRow > 0) {
+        throw new IllegalStateException("Ripresa da checkpoint non supportata per l'importazione multi-foglio");
+      }
+      return executeSheets(consumer);
+    }
+    if (sortFields != null && fromRow > 0) {
+      throw new IllegalStateException("Ripresa da checkpoint non supportata con l'ordinamento attivo");
+    }
+
+    ImportMetrics metrics = new ImportMetrics();
+    ValueInterner interner = newInterner();
+    MemoryGovernor governor = new MemoryGovernor(memoryBudget);
+    ExternalSorter sorter = newSorter(governor);
+    long start = System.nanoTime();
+    long[] lastExit = {start};
+
+    RowConsumer rows = row -> {
+      long entered = System.nanoTime();
+      metrics.readNanos += entered - lastExit[0];
+      long rowNumber = rowsRead.incrementAndGet();
+      if (rowNumber > fromRow) {
+        Map<String, Object> normalized = prepare(row, rowNumber, metrics, interner, entered);
+        if (normalized != null) {
+          consume(consumer, sorter, normalized, row, rowNumber, 0, metrics);
+        }
+      }
+      lastExit[0] = System.nanoTime();
+    };
+
+    try {
+      reader.read(
+          consumer instanceof HeaderAwareConsumer
+              ? new MappedHeaders(mapper, (HeaderAwareConsumer) consumer, rows)
+              : rows);
+      if (sorter != null) {
+        sorter.drain((sorted, rowNumber, sheet) -> deliver(consumer, sorted, sorted, rowNumber, metrics));
+        metrics.sortNanos = sorter.getNanos();
+        metrics.sortRuns = sorter.getRuns();
+      }
+    } finally {
+      if (sorter != null) {
+        sorter.close();
+      }
+    }
+
+    metrics.bufferedPeakBytes = governor.getPeak();
+    metrics.totalNanos = System.nanoTime() - start;
+    metrics.sampleHeapNow();
+    if (deduplicator != null) {
+      metrics.deduplication = deduplicator.getStats();
+    }
+    return new ImportResult(metrics, Collections.emptyMap());
+  }
+
+  /** Ordinamento esterno sul thread del consumer (null se non richiesto) */
+  private ExternalSorter newSorter(MemoryGovernor governor)
+  {
+    if (sortFields == null) {
+      return null;
+    }
+    Path directory = Path.of(Env.get("IMPORT_SORT_DIR", System.getProperty("java.io.tmpdir")));
+    return new ExternalSorter(sortFields, governor, directory);
+  }
+
+  /** Dizionari dei valori per un thread di lettura (null se disattivati) */
+  private ValueInterner newInterner()
+  {
+    return internMaxValues > 0 ? new ValueInterner(internMaxValues) : null;
+  }
+
+  /** Vero se le righe vengono ordinate e consegnate solo a lettura completata */
+  public boolean isSorted()
+  {
+    return sortFields != null;
+  }
+
+  /**
+   * Vero se l'importazione può riprendere da un checkpoint (vedi {@link #execute(RowConsumer,
+   * long)}): né multi-foglio né con l'ordinamento attivo
+   */
+  public boolean isResumable()
+  {
+    return sheets == null && sortFields == null;
+  }
+
+  /** Righe lette finora dalla sorgente, incluse quelle saltate */
+  public long getRowsRead()
+  {
+    return rowsRead.get();
+  }
+
+  /**
+   * Mapping e normalizzazione di una riga, con misura dei tempi. Ritorna null per le righe vuote o
+   * rifiutate.
+   */
+  private Map<String, Object> prepare(
+      Map<String, Object> row,
+      long rowNumber,
+      ImportMetrics metrics,
+      ValueInterner interner,
+      long entered)
+  {
+    metrics.rowsRead++;
+    metrics.sampleHeap();
+    // Le righe vuote non attraversano le fasi successive
+    if (skipEmptyRows && ImportMetrics.isEmpty(row)) {
+      metrics.skippedEmptyRows++;
+      return null;
+    }
+
+    if (interner != null) {
+      interner.internValues(row);
+    }
+    Map<String, Object> mapped = mapper.map(row);
+    long mappedAt = System.nanoTime();
+    metrics.mapNanos += mappedAt - entered;
+
+    try {
       Map<String, Object> normalized = normalizer.apply(mapped);
+      if (interner != null && normalized != null) {
+        // La normalizzazione può aver prodotto nuove stringhe
+        interner.internValues(normalized);
+      }
+      return normalized;
+    } catch (RowRejectedException e) {
+      metrics.reject(rowNumber, e.getMessage(), row);
+      return null;
+    } finally {
+      metrics.normalizeNanos += System.nanoTime() - mappedAt;
+    }
+  }
+
+  /**
+   * Deduplicazione e consumo di una riga normalizzata (sempre sul thread del consumer). Con
+   * l'ordinamento attivo la riga viene trattenuta dal sorter e consegnata a fine lettura.
+   */
+  private void consume(
+      RowConsumer consumer,
+      ExternalSorter sorter,
+      Map<String, Object> normalized,
+      Map<String, Object> row,
+      long rowNumber,
+      int sheet,
+      ImportMetrics metrics)
+      throws Exception
+  {
+    if (deduplicator != null) {
+      long started = System.nanoTime();
+      boolean duplicate = deduplicator.isDuplicate(normalized);
+      metrics.dedupNanos += System.nanoTime() - started;
+      if (duplicate) {
+        metrics.rowsDuplicate++;
+        return;
+      }
+    }
+    if (sorter != null) {
+      sorter.add(normalized, rowNumber, sheet);
+      return;
+    }
+    deliver(consumer, normalized, row, rowNumber, metrics);
+  }
+
+  /** Passa una riga al consumer contando le righe importate e rifiutate */
+  private static void deliver(
+      RowConsumer consumer,
+      Map<String, Object> normalized,
+      Map<String, Object> row,
+      long rowNumber,
+      ImportMetrics metrics)
+      throws Exception
+  {
+    long started = System.nanoTime();
+    try {
       consumer.accept(normalized);
-      imported++;
+      metrics.rowsImported++;
+    } catch (RowRejectedException e) {
+      metrics.reject(rowNumber, e.getMessage(), row);
+    } finally {
+      metrics.consumeNanos += System.nanoTime() - started;
     }
+  }
+
+  private ImportResult executeSheets(RowConsumer consumer) throws Exception
+  {
+    int parallelism = Math.max(1, Math.min(sheets.size(), Runtime.getRuntime().availableProcessors()));
+    BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    AtomicBoolean aborted = new AtomicBoolean();
+    MemoryGovernor governor = new MemoryGovernor(memoryBudget);
+    ExternalSorter sorter = newSorter(governor);
+    // Solo intestazioni e tipi: le righe passano da consume
+    MappedHeaders headers = consumer instanceof HeaderAwareConsumer
+        ? new MappedHeaders(mapper, (HeaderAwareConsumer) consumer, null)
+        : null;
+    ImportMetrics total = new ImportMetrics();
+    ImportMetrics[] sheetMetrics = new ImportMetrics[sheets.size()];
+    ImportMetrics[] consumerMetrics = new ImportMetrics[sheets.size()];
+    long start = System.nanoTime();
+
+    ExecutorService executor = Executors.newFixedThreadPool(parallelism, task -> {
+      Thread thread = new Thread(task, "excel-import-" + THREAD_COUNTER.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+
+    try {
+      for (int i = 0; i < sheets.size(); i++) {
+        int index = i;
+        consumerMetrics[i] = new ImportMetrics();
+        executor.execute(() -> readSheet(index, queue, governor, aborted, sheetMetrics, headers != null));
+      }
+
+      // Il consumer viene eseguito solo su questo thread
+      int pending = sheets.size();
+      while (pending > 0) {
+        Batch batch = queue.take();
+        if (batch.error != null) {
+          throw batch.error;
+        }
+        ImportMetrics metrics = consumerMetrics[batch.sheet];
+        if (batch.headers != null) {
+          headers.headers(batch.headers, batch.ignoredColumns);
+        }
+        if (batch.types != null) {
+          headers.columnTypes(batch.types);
+        }
+        for (int i = 0; i < batch.rows.size(); i++) {
+          consume(
+              consumer,
+              sorter,
+              batch.rows.get(i),
+              batch.raw.get(i),
+              batch.rowNumbers[i],
+              batch.sheet,
+              metrics);
+        }
+        governor.release(batch.bytes);
+        total.sampleHeapNow();
+        if (batch.last) {
+          pending--;
+        }
+      }
 
-    return new ImportResult(imported);
+      if (sorter != null) {
+        sorter.drain(
+            (sorted, rowNumber, sheet) ->
+                deliver(consumer, sorted, sorted, rowNumber, consumerMetrics[sheet]));
+        total.sortNanos = sorter.getNanos();
+        total.sortRuns = sorter.getRuns();
+      }
+    } finally {
+      aborted.set(true);
+      executor.shutdownNow();
+      if (sorter != null) {
+        sorter.close();
+      }
+    }
+
+    // Tutti i fogli hanno consegnato l'ultimo blocco: i contatori dei thread sono visibili
+    Map<String, ImportResult> bySheet = new LinkedHashMap<>();
+    for (int i = 0; i < sheets.size(); i++) {
+      sheetMetrics[i].merge(consumerMetrics[i]);
+      bySheet.put(sheets.get(i).getName(), new ImportResult(sheetMetrics[i], Collections.emptyMap()));
+      total.merge(sheetMetrics[i]);
+    }
+    total.bufferedPeakBytes = governor.getPeak();
+    total.totalNanos = System.nanoTime() - start;
+    if (deduplicator != null) {
+      total.deduplication = deduplicator.getStats();
+    }
+    return new ImportResult(total, bySheet);
+  }
+
+  private void readSheet(
+      int index,
+      BlockingQueue<Batch> queue,
+      MemoryGovernor governor,
+      AtomicBoolean aborted,
+      ImportMetrics[] sheetMetrics,
+      boolean headerAware)
+  {
+    SheetReader sheet = sheets.get(index);
+    ImportMetrics metrics = new ImportMetrics();
+    sheetMetrics[index] = metrics;
+    ValueInterner interner = newInterner();
+    Batch[] current = {new Batch(index)};
+    long start = System.nanoTime();
+    long[] lastExit = {start};
+
+    RowConsumer rows = row -> {
+      if (aborted.get()) {
+        throw new CancellationException();
+      }
+      long entered = System.nanoTime();
+      metrics.readNanos += entered - lastExit[0];
+      rowsRead.incrementAndGet();
+      Map<String, Object> normalized = prepare(row, metrics.rowsRead + 1, metrics, interner, entered);
+      if (normalized != null) {
+        current[0].add(normalized, row, metrics.rowsRead);
+        if (current[0].rows.size() == BATCH_SIZE) {
+          // Attende se i blocchi non ancora consumati esauriscono il budget
+          governor.acquire(current[0].bytes);
+          queue.put(current[0]);
+          current[0] = new Batch(index);
+        }
+      }
+      lastExit[0] = System.nanoTime();
+    };
+
+    try {
+      // Intestazioni e tipi arrivano prima delle righe: viaggiano con il primo blocco del foglio
+      sheet.read(!headerAware ? rows : new HeaderAwareConsumer()
+      {
+        @Override
+        public void headers(List<String> headers, List<Integer> ignoredColumns)
+        {
+          current[0].headers = headers;
+          current[0].ignoredColumns = ignoredColumns;
+        }
+
+        @Override
+        public void columnTypes(Map<String, ColumnType> types)
+        {
+          current[0].types = types;
+        }
+
+        @Override
+        public void accept(Map<String, Object> row) throws Exception
+        {
+          rows.accept(row);
+        }
+      });
+      metrics.totalNanos = System.nanoTime() - start;
+      metrics.sampleHeapNow();
+      current[0].last = true;
+      governor.acquire(current[0].bytes);
+      queue.put(current[0]);
+    } catch (Throwable e) {
+      // Anche gli Error: senza l'ultimo blocco il thread del consumer attenderebbe per sempre
+      if (aborted.get()) {
+        return;
+      }
+      Batch failed = new Batch(index);
+      failed.error = new Exception(
+          "Foglio '" + sheet.getName() + "': " + (e.getMessage() != null ? e.getMessage() : e), e);
+      try {
+        queue.put(failed);
+      } catch (InterruptedException ignored) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Inoltra al consumer intestazioni e tipi delle colonne con i nomi dei campi logici, così da
+   * poter legare i parametri SQL con il tipo già dedotto.
+   */
+  private static final class MappedHeaders implements HeaderAwareConsumer
+  {
+    private final ColumnMapper mapper;
+    private final HeaderAwareConsumer target;
+    private final RowConsumer rows;
+
+    MappedHeaders(ColumnMapper mapper, HeaderAwareConsumer target, RowConsumer rows)
+    {
+      this.mapper = mapper;
+      this.target = target;
+      this.rows = rows;
+    }
+
+    @Override
+    public void headers(List<String> headers, List<Integer> ignoredColumns) throws Exception
+    {
+      List<String> mapped = new ArrayList<>();
+      for (String header : headers) {
+        String field = mapper.mapHeader(header);
+        if (field != null) {
+          mapped.add(field);
+        }
+      }
+      target.headers(mapped, ignoredColumns);
+    }
+
+    @Override
+    public void columnTypes(Map<String, ColumnType> types) throws Exception
+    {
+      Map<String, ColumnType> mapped = new LinkedHashMap<>();
+      for (Map.Entry<String, ColumnType> entry : types.entrySet()) {
+        String field = mapper.mapHeader(entry.getKey());
+        if (field != null) {
+          mapped.put(field, entry.getValue());
+        }
+      }
+      target.columnTypes(mapped);
+    }
+
+    @Override
+    public void accept(Map<String, Object> row) throws Exception
+    {
+      rows.accept(row);
+    }
+  }
+
+  /** Blocco di righe normalizzate di un foglio */
+  private static final class Batch
+  {
+    final int sheet;
+    final List<Map<String, Object>> rows = new ArrayList<>(BATCH_SIZE);
+    /** Righe lette, per il campione delle righe rifiutate dal consumer */
+    final List<Map<String, Object>> raw = new ArrayList<>(BATCH_SIZE);
+    final long[] rowNumbers = new long[BATCH_SIZE];
+    /** Memoria stimata delle righe, riservata nel {@link MemoryGovernor} */
+    long bytes;
+    boolean last;
+    Exception error;
+    /** Intestazioni e tipi del foglio, solo nel primo blocco */
+    List<String> headers;
+    List<Integer> ignoredColumns;
+    Map<String, ColumnType> types;
+
+    Batch(int sheet)
+    {
+      this.sheet = sheet;
+    }
+
+    void add(Map<String, Object> normalized, Map<String, Object> row, long rowNumber)
+    {
+      rowNumbers[rows.size()] = rowNumber;
+      rows.add(normalized);
+      raw.add(row);
+      bytes += MemoryGovernor.estimate(normalized) + MemoryGovernor.estimate(row);
+    }
   }
 }
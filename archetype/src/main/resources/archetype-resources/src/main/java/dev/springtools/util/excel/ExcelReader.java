@@ -1,120 +1,386 @@
 package dev.springtools.util.excel;
 
+import java.io.File;
 import java.io.InputStream;
 import java.util.*;
 import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.usermodel.XSSFCell;
 
-public class ExcelReader
+public class ExcelReader implements RowReader
 {
 
   private final InputStream excel;
+  private final File file;
+  private final String sheetName;
+  private boolean evaluateFormulas;
 
   public ExcelReader(InputStream excel)
+  {
+    this(excel, null);
+  }
+
+  /**
+   * @param excel
+   *          contenuto del file
+   * @param sheetName
+   *          nome del foglio da leggere (null per il primo foglio)
+   */
+  public ExcelReader(InputStream excel, String sheetName)
   {
     this.excel = excel;
+    this.file = null;
+    this.sheetName = sheetName;
   }
 
-  public List<Map<String, Object>> read() throws Exception
+  /**
+   * Legge da un file su disco (vedi {@link SpooledUpload}) senza copiarlo in memoria: l'archivio
+   * viene aperto in sola lettura con accesso diretto alle sue parti.
+   *
+   * @param file
+   *          file XLSX o XLS
+   * @param sheetName
+   *          nome del foglio da leggere (null per il primo foglio)
+   */
+  public ExcelReader(File file, String sheetName)
   {
+    this.excel = null;
+    this.file = file;
+    this.sheetName = sheetName;
+  }
 
-    List<Map<String, Object>> rows = new ArrayList<>();
+  public ExcelReader(File file)
+  {
+    this(file, null);
+  }
 
-    try (Workbook workbook = WorkbookFactory.create(excel)) {
-      Sheet sheet = workbook.getSheetAt(0);
-      Iterator<Row> iterator = sheet.iterator();
+  /**
+   * Le celle formula restituiscono sempre il risultato salvato nel file. Con questa opzione le
+   * formule senza risultato salvato (es. file generati da librerie) vengono valutate
+   * singolarmente; i risultati intermedi restano nella cache del valutatore. Senza l'opzione il
+   * valore di quelle celle è null.
+   *
+   * @return this per chaining
+   */
+  public ExcelReader evaluateFormulas(boolean evaluateFormulas)
+  {
+    this.evaluateFormulas = evaluateFormulas;
+    return this;
+  }
 
-      if (!iterator.hasNext()) {
-        return rows;
+  public List<Map<String, Object>> read() throws Exception
+  {
+    List<Map<String, Object>> rows = new ArrayList<>();
+    read(rows::add);
+    return rows;
+  }
+
+  /** Legge il foglio passando ogni record al consumer, senza accumularli in memoria */
+  @Override
+  public void read(RowConsumer consumer) throws Exception
+  {
+    try (Workbook workbook = openWorkbook(excel, file)) {
+      Sheet sheet = sheetName != null ? workbook.getSheet(sheetName) : workbook.getSheetAt(0);
+      if (sheet == null) {
+        throw new Exception("Foglio non trovato: " + sheetName);
       }
+      FormulaEvaluator evaluator =
+          evaluateFormulas ? workbook.getCreationHelper().createFormulaEvaluator() : null;
+      readSheet(sheet, consumer, evaluator);
+    }
+  }
 
-      // Header - traccia gli indici delle colonne valide
-      Row headerRow = iterator.next();
-      List<String> headers = new ArrayList<>();
-      List<Integer> validColumnIndices = new ArrayList<>();
-      int totalColumns = headerRow.getLastCellNum();
+  /** Apre la cartella di lavoro dal file (sola lettura) o, in mancanza, dallo stream */
+  static Workbook openWorkbook(InputStream excel, File file) throws Exception
+  {
+    if (file != null) {
+      return WorkbookFactory.create(file, null, true);
+    }
+    return WorkbookFactory.create(excel);
+  }
 
-      // Itera su tutte le colonne usando indici (non solo celle esistenti)
-      for (int columnIndex = 0; columnIndex < totalColumns; columnIndex++) {
-        Cell cell = headerRow.getCell(columnIndex);
-        String header = "";
+  /**
+   * Verifica se una cella formula contiene il risultato salvato da Excel. Nei file XLS il
+   * risultato è sempre presente, nei file XLSX può mancare l'elemento v.
+   */
+  static boolean hasCachedResult(Cell cell)
+  {
+    if (cell instanceof XSSFCell) {
+      return ((XSSFCell) cell).getCTCell().isSetV();
+    }
+    return true;
+  }
 
-        if (cell != null) {
-          try {
-            header = cell.getStringCellValue().trim();
-          } catch (Exception e) {
-            // Se non è una stringa, ignora
-          }
-        }
+  /** Legge un foglio del modello DOM applicando la rilevazione delle intestazioni */
+  static void readSheet(Sheet sheet, RowConsumer consumer) throws Exception
+  {
+    readSheet(sheet, consumer, null);
+  }
+
+  /**
+   * @param evaluator
+   *          valutatore per le formule senza risultato salvato (null per lasciarle vuote)
+   */
+  static void readSheet(Sheet sheet, RowConsumer consumer, FormulaEvaluator evaluator)
+      throws Exception
+  {
+    Iterator<Row> iterator = sheet.iterator();
+
+    if (!iterator.hasNext()) {
+      return;
+    }
+
+    // Header - traccia gli indici delle colonne valide
+    Row headerRow = iterator.next();
+    List<String> headers = new ArrayList<>();
+    List<Integer> validColumnIndices = new ArrayList<>();
+    List<Integer> ignoredColumns = new ArrayList<>();
+    int totalColumns = headerRow.getLastCellNum();
+
+    // Itera su tutte le colonne usando indici (non solo celle esistenti)
+    for (int columnIndex = 0; columnIndex < totalColumns; columnIndex++) {
+      Cell cell = headerRow.getCell(columnIndex);
+      String header = "";
 
-        if (!header.isEmpty()) {
-          headers.add(header);
-          validColumnIndices.add(columnIndex);
+      if (cell != null) {
+        try {
+          header = cell.getStringCellValue().trim();
+        } catch (Exception e) {
+          // Se non è una stringa, ignora
         }
       }
 
-      // Verifica che ci siano header
-      if (headers.isEmpty()) {
-        throw new Exception("Il file non contiene intestazioni valide nella prima riga");
-      }
-
-      // Data rows - leggi solo le colonne valide
-      int maxHeaderIndex = validColumnIndices.isEmpty() ? -1 : validColumnIndices.get(validColumnIndices.size() - 1);
-      int rowNumber = 1;
-
-      while (iterator.hasNext()) {
-        Row row = iterator.next();
-        rowNumber++;
-
-        // Verifica che la riga abbia abbastanza colonne per tutte le colonne con header
-        if (maxHeaderIndex >= 0) {
-          int rowColumns = row.getLastCellNum();
-          if (rowColumns > 0 && rowColumns < maxHeaderIndex + 1) {
-            throw new Exception(
-                String.format(
-                    "Errore di struttura del file: la riga %d ha solo %d colonne, "
-                        + "ma sono necessarie almeno %d colonne per le intestazioni presenti. "
-                        + "Verificare che tutte le righe abbiano dati per tutte le colonne.",
-                    rowNumber,
-                    rowColumns,
-                    maxHeaderIndex + 1));
-          }
-        }
+      if (!header.isEmpty()) {
+        headers.add(header);
+        validColumnIndices.add(columnIndex);
+      } else {
+        ignoredColumns.add(columnIndex);
+      }
+    }
+
+    // Verifica che ci siano header
+    if (headers.isEmpty()) {
+      throw new Exception("Il file non contiene intestazioni valide nella prima riga");
+    }
+
+    // Ogni colonna ha il proprio lettore; i tipi sono dedotti da un campione di righe
+    DateStyles dateStyles = new DateStyles();
+    Workbook workbook = sheet.getWorkbook();
+    boolean date1904 =
+        workbook instanceof Date1904Support && ((Date1904Support) workbook).isDate1904();
+    ColumnReader[] readers = new ColumnReader[headers.size()];
+    for (int i = 0; i < readers.length; i++) {
+      readers[i] = new ColumnReader(dateStyles, evaluator, date1904);
+    }
+    List<Map<String, Object>> sample = inferTypes(sheet, headerRow.getRowNum(), headers, validColumnIndices, readers);
+
+    if (consumer instanceof HeaderAwareConsumer) {
+      HeaderAwareConsumer headerAware = (HeaderAwareConsumer) consumer;
+      headerAware.headers(new ArrayList<>(headers), ignoredColumns);
+      Map<String, ColumnType> types = new LinkedHashMap<>();
+      for (int i = 0; i < readers.length; i++) {
+        types.put(headers.get(i), readers[i].type);
+      }
+      headerAware.columnTypes(types);
+    }
+
+    // Data rows - leggi solo le colonne valide
+    int maxHeaderIndex = validColumnIndices.isEmpty() ? -1 : validColumnIndices.get(validColumnIndices.size() - 1);
+    int rowNumber = 1;
 
-        Map<String, Object> record = new HashMap<>();
+    while (iterator.hasNext()) {
+      Row row = iterator.next();
+      rowNumber++;
 
-        for (int i = 0; i < headers.size(); i++) {
-          int actualColumnIndex = validColumnIndices.get(i);
-          Cell cell = row.getCell(actualColumnIndex, Row.MissingCellPolicy.RETURN_BLANK_AS_NULL);
-          record.put(headers.get(i), readCell(cell));
+      // Verifica che la riga abbia abbastanza colonne per tutte le colonne con header
+      if (maxHeaderIndex >= 0) {
+        int rowColumns = row.getLastCellNum();
+        if (rowColumns > 0 && rowColumns < maxHeaderIndex + 1) {
+          throw new Exception(
+              String.format(
+                  "Errore di struttura del file: la riga %d ha solo %d colonne, "
+                      + "ma sono necessarie almeno %d colonne per le intestazioni presenti. "
+                      + "Verificare che tutte le righe abbiano dati per tutte le colonne.",
+                  rowNumber,
+                  rowColumns,
+                  maxHeaderIndex + 1));
         }
+      }
 
-        rows.add(record);
+      // Le righe del campione sono già state lette
+      int sampleIndex = row.getRowNum() - headerRow.getRowNum() - 1;
+      Map<String, Object> record = sampleIndex < sample.size() ? sample.get(sampleIndex) : null;
+      if (record == null) {
+        record = readRecord(row, headers, validColumnIndices, readers);
       }
+
+      consumer.accept(record);
     }
+  }
 
-    return rows;
+  /**
+   * Deduce il tipo di ogni colonna dalle prime righe dati.
+   *
+   * @return righe lette, per posizione dopo l'intestazione (null per le righe assenti)
+   */
+  private static List<Map<String, Object>> inferTypes(
+      Sheet sheet, int headerRowNum, List<String> headers, List<Integer> columns, ColumnReader[] readers)
+  {
+    List<Map<String, Object>> sample = new ArrayList<>();
+    int last = Math.min(sheet.getLastRowNum(), headerRowNum + ColumnType.SAMPLE_ROWS);
+    for (int r = headerRowNum + 1; r <= last; r++) {
+      Row row = sheet.getRow(r);
+      if (row == null) {
+        sample.add(null);
+        continue;
+      }
+      Map<String, Object> record = readRecord(row, headers, columns, readers);
+      for (int i = 0; i < readers.length; i++) {
+        readers[i].type = ColumnType.merge(readers[i].type, record.get(headers.get(i)));
+      }
+      sample.add(record);
+    }
+    for (ColumnReader reader : readers) {
+      if (reader.type == null) {
+        reader.type = ColumnType.TEXT;
+      }
+    }
+    return sample;
   }
 
-  private Object readCell(Cell cell)
+  private static Map<String, Object> readRecord(
+      Row row, List<String> headers, List<Integer> columns, ColumnReader[] readers)
   {
-    if (cell == null) {
-      return null;
+    Map<String, Object> record = new HashMap<>();
+    for (int i = 0; i < headers.size(); i++) {
+      Cell cell = row.getCell(columns.get(i), Row.MissingCellPolicy.RETURN_BLANK_AS_NULL);
+      record.put(headers.get(i), readers[i].read(cell));
     }
+    return record;
+  }
 
-    switch (cell.getCellType()) {
-      case STRING :
-        return cell.getStringCellValue();
-      case NUMERIC :
-        if (DateUtil.isCellDateFormatted(cell)) {
-          return cell.getLocalDateTimeCellValue();
-        }
-        return cell.getNumericCellValue();
-      case BOOLEAN :
-        return cell.getBooleanCellValue();
-      case FORMULA :
-        return cell.getCellFormula();
-      default :
+  /**
+   * Lettore di una colonna. Il riconoscimento delle date avviene per stile di cella, non per
+   * cella: lo stile dell'ultima cella numerica viene ricordato (in una colonna omogenea è sempre lo
+   * stesso) e gli altri stili vengono risolti una volta sola tramite {@link DateStyles}. Le celle
+   * formula restituiscono il risultato salvato nel file.
+   */
+  private static final class ColumnReader
+  {
+    private final DateStyles dateStyles;
+    private final FormulaEvaluator evaluator;
+    private final boolean date1904;
+    private ColumnType type;
+    private int lastStyle = -1;
+    private boolean lastStyleIsDate;
+
+    ColumnReader(DateStyles dateStyles, FormulaEvaluator evaluator, boolean date1904)
+    {
+      this.dateStyles = dateStyles;
+      this.evaluator = evaluator;
+      this.date1904 = date1904;
+    }
+
+    Object read(Cell cell)
+    {
+      if (cell == null) {
         return null;
+      }
+
+      switch (cell.getCellType()) {
+        case STRING :
+          return cell.getStringCellValue();
+        case NUMERIC :
+          return number(cell, cell.getNumericCellValue());
+        case BOOLEAN :
+          return cell.getBooleanCellValue();
+        case FORMULA :
+          return formula(cell);
+        default :
+          return null;
+      }
+    }
+
+    private Object number(Cell cell, double value)
+    {
+      if (isDateStyle(cell) && DateUtil.isValidExcelDate(value)) {
+        return DateUtil.getLocalDateTime(value, date1904);
+      }
+      return value;
+    }
+
+    /** Risultato salvato della formula, o valutazione della sola cella se manca */
+    private Object formula(Cell cell)
+    {
+      if (!hasCachedResult(cell)) {
+        return evaluator != null ? evaluate(cell) : null;
+      }
+
+      switch (cell.getCachedFormulaResultType()) {
+        case STRING :
+          return cell.getStringCellValue();
+        case NUMERIC :
+          return number(cell, cell.getNumericCellValue());
+        case BOOLEAN :
+          return cell.getBooleanCellValue();
+        default :
+          // Errore (#DIV/0!, #N/A...)
+          return null;
+      }
+    }
+
+    private Object evaluate(Cell cell)
+    {
+      CellValue value;
+      try {
+        value = evaluator.evaluate(cell);
+      } catch (RuntimeException e) {
+        // Funzione non supportata o riferimento a un'altra cartella di lavoro
+        return null;
+      }
+      if (value == null) {
+        return null;
+      }
+
+      switch (value.getCellType()) {
+        case STRING :
+          return value.getStringValue();
+        case NUMERIC :
+          return number(cell, value.getNumberValue());
+        case BOOLEAN :
+          return value.getBooleanValue();
+        default :
+          return null;
+      }
+    }
+
+    private boolean isDateStyle(Cell cell)
+    {
+      CellStyle style = cell.getCellStyle();
+      int index = style.getIndex() & 0xFFFF;
+      if (index != lastStyle) {
+        lastStyle = index;
+        lastStyleIsDate = dateStyles.isDate(index, style);
+      }
+      return lastStyleIsDate;
+    }
+  }
+
+  /** Formati data per indice di stile, calcolati una volta per foglio */
+  private static final class DateStyles
+  {
+    /** 0 = non calcolato, 1 = data, 2 = non data */
+    private byte[] cache = new byte[64];
+
+    boolean isDate(int index, CellStyle style)
+    {
+      if (index >= cache.length) {
+        cache = Arrays.copyOf(cache, Math.max(index + 1, cache.length * 2));
+      }
+      if (cache[index] == 0) {
+        boolean date = DateUtil.isADateFormat(style.getDataFormat(), style.getDataFormatString());
+        cache[index] = date ? (byte) 1 : (byte) 2;
+      }
+      return cache[index] == 1;
     }
   }
 }
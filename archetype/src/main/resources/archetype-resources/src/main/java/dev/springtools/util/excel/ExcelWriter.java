@@ -0,0 +1,274 @@
+package dev.springtools.util.excel;
+
+import dev.springtools.util.DB;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.Temporal;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.util.WorkbookUtil;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+/**
+ * Esportazione XLSX in streaming da un {@link DB.Cursor}.
+ *
+ * <p>
+ * Usa il workbook SXSSF di POI: in memoria resta solo una finestra fissa di righe, le altre
+ * vengono scritte su un file temporaneo compresso. Gli stili (intestazione, date) vengono creati
+ * una sola volta per workbook. Superato il limite di righe di un foglio, l'esportazione prosegue
+ * su un nuovo foglio con le stesse intestazioni.
+ *
+ * <p>
+ * Tipi delle celle: numeri, booleani, date (LocalDate, java.sql.Date) e date/ora
+ * (LocalDateTime, java.sql.Timestamp) vengono scritti nel tipo nativo, il resto come testo.
+ *
+ * <pre>
+ * return ResponseEntity.ok()
+ *     .header("Content-Disposition", "attachment; filename=contatti.xlsx")
+ *     .contentType(MediaType.parseMediaType(ExcelWriter.CONTENT_TYPE))
+ *     .body((StreamingResponseBody) out -> {
+ *       DB db = new DB(dataSource); // aperto sul thread che scrive la risposta
+ *       try {
+ *         db.open();
+ *         DB.Cursor cursor = db.cursor("SELECT nome, email, created_at FROM contacts");
+ *         try {
+ *           new ExcelWriter().sheetName("Contatti").write(cursor, out);
+ *         } finally {
+ *           cursor.close();
+ *         }
+ *       } catch (Exception e) {
+ *         throw new IOException(e);
+ *       } finally {
+ *         db.close();
+ *       }
+ *     });
+ * </pre>
+ */
+public class ExcelWriter
+{
+
+  public static final String CONTENT_TYPE =
+      "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+
+  /** Righe mantenute in memoria da SXSSF */
+  private static final int DEFAULT_ROW_WINDOW = 100;
+
+  /** Righe dati per foglio (limite del formato, esclusa l'intestazione) */
+  private static final int MAX_DATA_ROWS = SpreadsheetVersion.EXCEL2007.getMaxRows() - 1;
+
+  private static final int MAX_TEXT_LENGTH = SpreadsheetVersion.EXCEL2007.getMaxTextLength();
+
+  private final int rowWindow;
+  private String sheetName = "Dati";
+  private int maxRowsPerSheet = MAX_DATA_ROWS;
+  private final Map<String, String> titles = new HashMap<>();
+
+  public ExcelWriter()
+  {
+    this(DEFAULT_ROW_WINDOW);
+  }
+
+  /**
+   * @param rowWindow
+   *          righe mantenute in memoria prima di essere scritte su disco
+   */
+  public ExcelWriter(int rowWindow)
+  {
+    if (rowWindow < 1) {
+      throw new IllegalArgumentException("La finestra di righe deve essere positiva");
+    }
+    this.rowWindow = rowWindow;
+  }
+
+  /** Nome del foglio (i fogli successivi vengono numerati) */
+  public ExcelWriter sheetName(String sheetName)
+  {
+    this.sheetName = sheetName;
+    return this;
+  }
+
+  /** Intestazione da usare per una colonna al posto del suo nome */
+  public ExcelWriter title(String column, String title)
+  {
+    titles.put(column, title);
+    return this;
+  }
+
+  /** Righe dati per foglio prima di passare al foglio successivo */
+  public ExcelWriter maxRowsPerSheet(int maxRowsPerSheet)
+  {
+    if (maxRowsPerSheet < 1 || maxRowsPerSheet > MAX_DATA_ROWS) {
+      throw new IllegalArgumentException("Righe per foglio non valide: " + maxRowsPerSheet);
+    }
+    this.maxRowsPerSheet = maxRowsPerSheet;
+    return this;
+  }
+
+  /**
+   * Scrive tutte le righe del cursore. Il cursore non viene chiuso, lo stream di output nemmeno.
+   *
+   * @param cursor
+   *          righe da esportare
+   * @param out
+   *          destinazione (es. output stream della risposta)
+   * @return righe esportate
+   */
+  public long write(DB.Cursor cursor, OutputStream out) throws Exception
+  {
+    SXSSFWorkbook workbook = new SXSSFWorkbook(rowWindow);
+    workbook.setCompressTempFiles(true);
+
+    try {
+      Styles styles = new Styles(workbook);
+      List<String> columns = cursor.getColumnNames();
+      int columnCount = columns.size();
+      int[] types = new int[columnCount];
+      for (int i = 0; i < columnCount; i++) {
+        types[i] = cursor.getColumnType(i + 1);
+      }
+
+      long written = 0;
+      int sheetIndex = 0;
+      SXSSFSheet sheet = null;
+      int rowIndex = 0;
+
+      while (cursor.next()) {
+        if (sheet == null || rowIndex > maxRowsPerSheet) {
+          sheet = createSheet(workbook, ++sheetIndex, columns, styles);
+          rowIndex = 1;
+        }
+
+        Row row = sheet.createRow(rowIndex++);
+        for (int i = 0; i < columnCount; i++) {
+          Object value = read(cursor, i + 1, types[i]);
+          if (value != null) {
+            setValue(row.createCell(i), value, styles);
+          }
+        }
+        written++;
+      }
+
+      if (sheet == null) {
+        createSheet(workbook, 1, columns, styles);
+      }
+
+      workbook.write(out);
+      out.flush();
+      return written;
+    } finally {
+      workbook.close();
+      // Elimina i file temporanei delle righe
+      workbook.dispose();
+    }
+  }
+
+  private SXSSFSheet createSheet(
+      SXSSFWorkbook workbook, int index, List<String> columns, Styles styles)
+  {
+    String name = index == 1 ? sheetName : sheetName + " (" + index + ")";
+    SXSSFSheet sheet = workbook.createSheet(WorkbookUtil.createSafeSheetName(name));
+
+    Row header = sheet.createRow(0);
+    for (int i = 0; i < columns.size(); i++) {
+      String column = columns.get(i);
+      String title = titles.getOrDefault(column, column);
+      Cell cell = header.createCell(i);
+      cell.setCellValue(title);
+      cell.setCellStyle(styles.header);
+      // La larghezza automatica richiederebbe di tracciare tutte le righe
+      sheet.setColumnWidth(i, Math.min(255, Math.max(12, title.length() + 2)) * 256);
+    }
+    sheet.createFreezePane(0, 1);
+    return sheet;
+  }
+
+  /**
+   * Legge una colonna. Per le colonne dichiarate come data la conversione è affidata al driver,
+   * perché alcuni database (es. SQLite) restituiscono numeri o testo.
+   */
+  private static Object read(DB.Cursor cursor, int column, int type) throws Exception
+  {
+    Object value = cursor.get(column);
+    if (value == null || value instanceof Date || value instanceof Temporal) {
+      return value;
+    }
+    try {
+      if (type == Types.TIMESTAMP || type == Types.TIMESTAMP_WITH_TIMEZONE) {
+        return cursor.getTimestamp(column);
+      }
+      if (type == Types.DATE) {
+        return cursor.getDate(column);
+      }
+    } catch (Exception ignored) {
+      // Formato non riconosciuto dal driver: esportato com'è
+    }
+    return value;
+  }
+
+  private static void setValue(Cell cell, Object value, Styles styles)
+  {
+    if (value instanceof String) {
+      String text = (String) value;
+      cell.setCellValue(text.length() > MAX_TEXT_LENGTH ? text.substring(0, MAX_TEXT_LENGTH) : text);
+    } else if (value instanceof BigDecimal) {
+      cell.setCellValue(((BigDecimal) value).doubleValue());
+    } else if (value instanceof Number) {
+      cell.setCellValue(((Number) value).doubleValue());
+    } else if (value instanceof Boolean) {
+      cell.setCellValue((Boolean) value);
+    } else if (value instanceof java.sql.Timestamp) {
+      cell.setCellValue(((java.sql.Timestamp) value).toLocalDateTime());
+      cell.setCellStyle(styles.dateTime);
+    } else if (value instanceof LocalDateTime) {
+      cell.setCellValue((LocalDateTime) value);
+      cell.setCellStyle(styles.dateTime);
+    } else if (value instanceof java.sql.Date) {
+      cell.setCellValue(((java.sql.Date) value).toLocalDate());
+      cell.setCellStyle(styles.date);
+    } else if (value instanceof LocalDate) {
+      cell.setCellValue((LocalDate) value);
+      cell.setCellStyle(styles.date);
+    } else if (value instanceof Date) {
+      cell.setCellValue((Date) value);
+      cell.setCellStyle(styles.dateTime);
+    } else {
+      String text = value.toString();
+      cell.setCellValue(text.length() > MAX_TEXT_LENGTH ? text.substring(0, MAX_TEXT_LENGTH) : text);
+    }
+  }
+
+  /** Stili condivisi da tutte le celle del workbook */
+  private static final class Styles
+  {
+    final CellStyle header;
+    final CellStyle date;
+    final CellStyle dateTime;
+
+    Styles(SXSSFWorkbook workbook)
+    {
+      Font bold = workbook.createFont();
+      bold.setBold(true);
+      header = workbook.createCellStyle();
+      header.setFont(bold);
+
+      short dateFormat = workbook.createDataFormat().getFormat("dd/mm/yyyy");
+      date = workbook.createCellStyle();
+      date.setDataFormat(dateFormat);
+
+      short dateTimeFormat = workbook.createDataFormat().getFormat("dd/mm/yyyy hh:mm:ss");
+      dateTime = workbook.createCellStyle();
+      dateTime.setDataFormat(dateTimeFormat);
+    }
+  }
+}
@@ -0,0 +1,331 @@
+package dev.springtools.util.excel;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Ordinamento esterno delle righe normalizzate per uno o più campi, entro il budget di un {@link
+ * MemoryGovernor}.
+ *
+ * <p>
+ * Le righe restano in memoria finché il budget lo consente; poi vengono ordinate e scaricate su
+ * disco in una sequenza ordinata nel formato di {@link RowCodec}. A lettura completata le
+ * sequenze vengono fuse (k-way merge) direttamente nel consumer. L'ordinamento è stabile: a
+ * parità di chiave le righe mantengono l'ordine di arrivo. I valori null vanno in fondo.
+ *
+ * <p>
+ * Non è thread-safe: viene usato solo dal thread del consumer.
+ */
+final class ExternalSorter implements AutoCloseable
+{
+
+  /** Sequenze fuse in un solo passaggio (limita file aperti e buffer) */
+  private static final int MAX_FAN_IN = 64;
+
+  /** Chiavi riservate con cui numero di riga e foglio viaggiano nelle sequenze su disco */
+  private static final String ROW_NUMBER_KEY = "\u0000row";
+  private static final String SHEET_KEY = "\u0000sheet";
+
+  /** Destinazione delle righe ordinate */
+  interface Sink
+  {
+    void accept(Map<String, Object> row, long rowNumber, int sheet) throws Exception;
+  }
+
+  private final String[] fields;
+  private final MemoryGovernor governor;
+  private final Path directory;
+  private final Comparator<Item> order;
+
+  private final List<Item> buffer = new ArrayList<>();
+  private long bufferedBytes;
+  private final List<Path> runs = new ArrayList<>();
+  private int runsWritten;
+  private long nanos;
+
+  /**
+   * @param fields
+   *          campi di ordinamento, in ordine di priorità
+   * @param governor
+   *          budget condiviso con le altre fasi dell'importazione
+   * @param directory
+   *          directory delle sequenze su disco
+   */
+  ExternalSorter(String[] fields, MemoryGovernor governor, Path directory)
+  {
+    this.fields = fields.clone();
+    this.governor = governor;
+    this.directory = directory;
+    this.order = (a, b) -> compareRows(a.row, b.row);
+  }
+
+  void add(Map<String, Object> row, long rowNumber, int sheet) throws IOException
+  {
+    long started = System.nanoTime();
+    long bytes = MemoryGovernor.estimate(row);
+    if (!governor.tryAcquire(bytes)) {
+      if (!buffer.isEmpty()) {
+        spill();
+      }
+      if (!governor.tryAcquire(bytes)) {
+        // Il budget è occupato dai blocchi in coda, che si liberano a breve
+        governor.force(bytes);
+      }
+    }
+    buffer.add(new Item(row, rowNumber, sheet));
+    bufferedBytes += bytes;
+    nanos += System.nanoTime() - started;
+  }
+
+  /** Consegna tutte le righe in ordine */
+  void drain(Sink sink) throws Exception
+  {
+    long started = System.nanoTime();
+    long[] sinkNanos = {0};
+    Sink timed = (row, rowNumber, sheet) -> {
+      long entered = System.nanoTime();
+      try {
+        sink.accept(row, rowNumber, sheet);
+      } finally {
+        sinkNanos[0] += System.nanoTime() - entered;
+      }
+    };
+
+    if (runs.isEmpty()) {
+      buffer.sort(order);
+      for (Item item : buffer) {
+        timed.accept(item.row, item.rowNumber, item.sheet);
+      }
+      clearBuffer();
+    } else {
+      if (!buffer.isEmpty()) {
+        spill();
+      }
+      while (runs.size() > MAX_FAN_IN) {
+        List<Path> group = new ArrayList<>(runs.subList(0, MAX_FAN_IN));
+        runs.subList(0, MAX_FAN_IN).clear();
+        Path merged = newRun();
+        try (RowCodec.Writer writer = new RowCodec.Writer(Files.newOutputStream(merged))) {
+          merge(group, (row, rowNumber, sheet) -> writer.accept(tagged(row, rowNumber, sheet)));
+        }
+        runs.add(0, merged);
+      }
+      List<Path> last = new ArrayList<>(runs);
+      runs.clear();
+      merge(last, timed);
+    }
+
+    nanos += System.nanoTime() - started - sinkNanos[0];
+  }
+
+  /** Sequenze scritte su disco (0 se l'ordinamento è avvenuto in memoria) */
+  int getRuns()
+  {
+    return runsWritten;
+  }
+
+  /** Tempo speso nell'ordinamento, escluso il consumer */
+  long getNanos()
+  {
+    return nanos;
+  }
+
+  /** Elimina le sequenze rimaste (importazione interrotta) e libera il budget */
+  @Override
+  public void close()
+  {
+    clearBuffer();
+    for (Path run : runs) {
+      deleteQuietly(run);
+    }
+    runs.clear();
+  }
+
+  private void spill() throws IOException
+  {
+    buffer.sort(order);
+    Path run = newRun();
+    try (RowCodec.Writer writer = new RowCodec.Writer(Files.newOutputStream(run))) {
+      for (Item item : buffer) {
+        writer.accept(tagged(item.row, item.rowNumber, item.sheet));
+      }
+    } catch (IOException e) {
+      deleteQuietly(run);
+      throw e;
+    }
+    runs.add(run);
+    clearBuffer();
+  }
+
+  private Path newRun() throws IOException
+  {
+    runsWritten++;
+    return Files.createTempFile(directory, "sort-", ".bin");
+  }
+
+  private void clearBuffer()
+  {
+    buffer.clear();
+    governor.release(bufferedBytes);
+    bufferedBytes = 0;
+  }
+
+  /** Fonde sequenze ordinate; le sequenze vengono eliminate al termine */
+  private void merge(List<Path> group, Sink sink) throws Exception
+  {
+    // A parità di chiave vince la sequenza più vecchia: l'ordinamento resta stabile
+    PriorityQueue<Run> heap = new PriorityQueue<>(group.size(), (a, b) -> {
+      int c = compareRows(a.current.row, b.current.row);
+      return c != 0 ? c : Integer.compare(a.index, b.index);
+    });
+    List<Run> open = new ArrayList<>();
+
+    try {
+      for (int i = 0; i < group.size(); i++) {
+        Run run = new Run(i, new RowCodec.Reader(Files.newInputStream(group.get(i))));
+        open.add(run);
+        if (run.advance()) {
+          heap.add(run);
+        }
+      }
+
+      while (!heap.isEmpty()) {
+        Run run = heap.poll();
+        Item item = run.current;
+        sink.accept(item.row, item.rowNumber, item.sheet);
+        if (run.advance()) {
+          heap.add(run);
+        }
+      }
+    } finally {
+      for (Run run : open) {
+        run.reader.close();
+      }
+      for (Path file : group) {
+        deleteQuietly(file);
+      }
+    }
+  }
+
+  private static Map<String, Object> tagged(Map<String, Object> row, long rowNumber, int sheet)
+  {
+    // Copia: la riga normalizzata può essere immutabile
+    Map<String, Object> copy = new HashMap<>((row.size() + 2) * 4 / 3 + 1);
+    copy.putAll(row);
+    copy.put(ROW_NUMBER_KEY, rowNumber);
+    copy.put(SHEET_KEY, sheet);
+    return copy;
+  }
+
+  private int compareRows(Map<String, Object> a, Map<String, Object> b)
+  {
+    for (String field : fields) {
+      int c = compareValues(a.get(field), b.get(field));
+      if (c != 0) {
+        return c;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Ordine totale anche su colonne con tipi misti (es. codici cliente numerici e testuali): prima i
+   * numeri (confrontati come double), poi i testi, poi gli altri tipi raggruppati per classe; i null
+   * in fondo. Confrontare un numero con la sua forma testuale non sarebbe transitivo.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  static int compareValues(Object a, Object b)
+  {
+    if (a == b) {
+      return 0;
+    }
+    if (a == null) {
+      return 1;
+    }
+    if (b == null) {
+      return -1;
+    }
+    int rank = Integer.compare(rank(a), rank(b));
+    if (rank != 0) {
+      return rank;
+    }
+    if (a instanceof Number) {
+      return Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+    }
+    if (a.getClass() != b.getClass()) {
+      return a.getClass().getName().compareTo(b.getClass().getName());
+    }
+    if (a instanceof Comparable) {
+      return ((Comparable) a).compareTo(b);
+    }
+    return a.toString().compareTo(b.toString());
+  }
+
+  private static int rank(Object value)
+  {
+    if (value instanceof Number) {
+      return 0;
+    }
+    return value instanceof String ? 1 : 2;
+  }
+
+  private static void deleteQuietly(Path file)
+  {
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException ignored) {
+      // File temporaneo: verrà eliminato dal sistema
+    }
+  }
+
+  private static final class Item
+  {
+    final Map<String, Object> row;
+    final long rowNumber;
+    final int sheet;
+
+    Item(Map<String, Object> row, long rowNumber, int sheet)
+    {
+      this.row = row;
+      this.rowNumber = rowNumber;
+      this.sheet = sheet;
+    }
+  }
+
+  /** Sequenza su disco in lettura, con la riga corrente */
+  private static final class Run
+  {
+    final int index;
+    final RowCodec.Reader reader;
+    Item current;
+
+    Run(int index, RowCodec.Reader reader)
+    {
+      this.index = index;
+      this.reader = reader;
+    }
+
+    boolean advance() throws IOException
+    {
+      Map<String, Object> row = reader.next();
+      if (row == null) {
+        current = null;
+        return false;
+      }
+      Object rowNumber = row.remove(ROW_NUMBER_KEY);
+      Object sheet = row.remove(SHEET_KEY);
+      current = new Item(
+          row,
+          rowNumber instanceof Number ? ((Number) rowNumber).longValue() : 0,
+          sheet instanceof Number ? ((Number) sheet).intValue() : 0);
+      return true;
+    }
+  }
+}
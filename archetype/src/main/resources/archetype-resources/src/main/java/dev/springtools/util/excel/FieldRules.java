@@ -0,0 +1,184 @@
+package dev.springtools.util.excel;
+
+import dev.springtools.util.excel.strategy.ContactNormalizers;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.UnaryOperator;
+import java.util.regex.Pattern;
+
+/**
+ * Regole di normalizzazione e validazione di un campo logico, dichiarate su {@link ImportConfig}.
+ * Le regole vengono applicate nell'ordine di dichiarazione; valore di default e obbligatorietà
+ * vengono verificati per ultimi, anche se la colonna manca dal file.
+ *
+ * <p>
+ * Le regole testuali non modificano i valori non testuali (numeri, date, booleani). Un valore che
+ * non rispetta una regola di validazione fa scartare la riga con {@link RowRejectedException}.
+ */
+public class FieldRules
+{
+
+  private final String field;
+  private final List<UnaryOperator<Object>> steps = new ArrayList<>();
+  private Object defaultValue;
+  private boolean required;
+
+  FieldRules(String field)
+  {
+    this.field = field;
+  }
+
+  public String getField()
+  {
+    return field;
+  }
+
+  /** Rimuove gli spazi iniziali e finali */
+  public FieldRules trim()
+  {
+    return text(ContactNormalizers::trim);
+  }
+
+  public FieldRules lowerCase()
+  {
+    return text(value -> value.toLowerCase(Locale.ROOT));
+  }
+
+  public FieldRules upperCase()
+  {
+    return text(value -> value.toUpperCase(Locale.ROOT));
+  }
+
+  /** Prima lettera maiuscola e resto minuscolo (nomi propri) */
+  public FieldRules capitalize()
+  {
+    steps.add(value -> value instanceof String ? ContactNormalizers.name(value) : value);
+    return this;
+  }
+
+  /** Sostituisce le corrispondenze dell'espressione regolare (compilata una sola volta) */
+  public FieldRules replace(String regex, String replacement)
+  {
+    Pattern pattern = Pattern.compile(regex);
+    return text(value -> pattern.matcher(value).replaceAll(replacement));
+  }
+
+  /** Scarta la riga se il valore non corrisponde interamente all'espressione regolare */
+  public FieldRules matches(String regex)
+  {
+    Pattern pattern = Pattern.compile(regex);
+    return text(value -> {
+      if (!value.isEmpty() && !pattern.matcher(value).matches()) {
+        throw new RowRejectedException("Campo '" + field + "' non valido: " + value);
+      }
+      return value;
+    });
+  }
+
+  /** Telefono senza spazi e separatori (anche da celle numeriche) */
+  public FieldRules phone()
+  {
+    steps.add(ContactNormalizers::phone);
+    return this;
+  }
+
+  /**
+   * Telefono in formato E.164.
+   *
+   * @param defaultCountryCode
+   *          prefisso internazionale senza + per i numeri nazionali (es. "39")
+   */
+  public FieldRules phone(String defaultCountryCode)
+  {
+    if (defaultCountryCode == null || defaultCountryCode.isEmpty()) {
+      throw new IllegalArgumentException("Prefisso internazionale obbligatorio per il formato E.164");
+    }
+    steps.add(value -> ContactNormalizers.phoneE164(value, defaultCountryCode));
+    return this;
+  }
+
+  /** Email ripulita e in minuscolo */
+  public FieldRules email()
+  {
+    steps.add(ContactNormalizers::email);
+    return this;
+  }
+
+  /**
+   * Converte il testo in LocalDate provando i formati nell'ordine; le date lette dalle celle
+   * vengono ridotte a LocalDate. Un testo non riconosciuto fa scartare la riga.
+   *
+   * @param patterns
+   *          formati di {@link DateTimeFormatter} (es. "dd/MM/yyyy")
+   */
+  public FieldRules date(String... patterns)
+  {
+    List<DateTimeFormatter> formatters = new ArrayList<>();
+    for (String pattern : patterns) {
+      formatters.add(DateTimeFormatter.ofPattern(pattern, Locale.ROOT));
+    }
+    if (formatters.isEmpty()) {
+      formatters.add(DateTimeFormatter.ISO_LOCAL_DATE);
+    }
+
+    steps.add(value -> {
+      if (value instanceof LocalDateTime) {
+        return ((LocalDateTime) value).toLocalDate();
+      }
+      if (!(value instanceof String) || ((String) value).isBlank()) {
+        return value;
+      }
+      String text = ((String) value).trim();
+      for (DateTimeFormatter formatter : formatters) {
+        try {
+          return LocalDate.parse(text, formatter);
+        } catch (DateTimeParseException ignored) {
+          // Prova il formato successivo
+        }
+      }
+      throw new RowRejectedException("Campo '" + field + "': data non valida: " + text);
+    });
+    return this;
+  }
+
+  /** Valore usato quando la cella è vuota o la colonna manca */
+  public FieldRules defaultValue(Object defaultValue)
+  {
+    this.defaultValue = defaultValue;
+    return this;
+  }
+
+  /** Scarta la riga se il valore finale è vuoto */
+  public FieldRules required()
+  {
+    this.required = true;
+    return this;
+  }
+
+  List<UnaryOperator<Object>> getSteps()
+  {
+    return Collections.unmodifiableList(steps);
+  }
+
+  Object getDefaultValue()
+  {
+    return defaultValue;
+  }
+
+  boolean isRequired()
+  {
+    return required;
+  }
+
+  private FieldRules text(UnaryOperator<String> rule)
+  {
+    steps.add(value -> value instanceof String ? rule.apply((String) value) : value);
+    return this;
+  }
+}
@@ -0,0 +1,29 @@
+package dev.springtools.util.excel;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Consumer che riceve anche le intestazioni rilevate dal lettore, prima della prima riga dati.
+ * Supportato da {@link ExcelReader}, {@link CsvReader} e dai lettori di {@link WorkbookSheets}.
+ */
+public interface HeaderAwareConsumer extends RowConsumer
+{
+
+  /**
+   * @param headers
+   *          intestazioni valide, nell'ordine delle colonne
+   * @param ignoredColumns
+   *          indici 0-based delle colonne senza intestazione testuale
+   */
+  void headers(List<String> headers, List<Integer> ignoredColumns) throws Exception;
+
+  /**
+   * Tipi delle colonne dedotti dalle prime righe, per intestazione. Invocato dopo headers dai
+   * lettori di cartelle di lavoro; i valori possono essere passati al database con {@link
+   * ColumnType#toSqlValue(Object)}.
+   */
+  default void columnTypes(Map<String, ColumnType> types) throws Exception
+  {
+  }
+}
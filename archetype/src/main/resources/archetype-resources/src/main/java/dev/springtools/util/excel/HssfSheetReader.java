@@ -0,0 +1,410 @@
+package dev.springtools.util.excel;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import org.apache.poi.hssf.eventusermodel.FormatTrackingHSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFEventFactory;
+import org.apache.poi.hssf.eventusermodel.HSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFRequest;
+import org.apache.poi.hssf.eventusermodel.MissingRecordAwareHSSFListener;
+import org.apache.poi.hssf.eventusermodel.dummyrecord.LastCellOfRowDummyRecord;
+import org.apache.poi.hssf.record.BOFRecord;
+import org.apache.poi.hssf.record.BlankRecord;
+import org.apache.poi.hssf.record.BoolErrRecord;
+import org.apache.poi.hssf.record.BoundSheetRecord;
+import org.apache.poi.hssf.record.CellValueRecordInterface;
+import org.apache.poi.hssf.record.DateWindow1904Record;
+import org.apache.poi.hssf.record.EOFRecord;
+import org.apache.poi.hssf.record.ExtendedFormatRecord;
+import org.apache.poi.hssf.record.FormatRecord;
+import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.record.LabelRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.RKRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.RowRecord;
+import org.apache.poi.hssf.record.SSTRecord;
+import org.apache.poi.hssf.record.StringRecord;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.poifs.filesystem.DocumentInputStream;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.DateUtil;
+
+/**
+ * Lettore in streaming di un foglio XLS (formato binario BIFF8) basato sulle API a eventi di POI.
+ * Non costruisce il modello HSSF della cartella di lavoro: la memoria usata è indipendente dal
+ * numero di righe.
+ *
+ * <p>
+ * I valori hanno gli stessi tipi di {@link XlsxSheetReader}: stringhe condivise risolte dalla
+ * tabella SST, date riconosciute dal formato dello stile (calcolato una volta per indice di
+ * stile), risultato salvato per le celle con formula.
+ *
+ * <p>
+ * I record globali che servono ai fogli (stringhe condivise, formati, sistema di date) vengono
+ * letti una sola volta da {@link #readGlobals(POIFSFileSystem)}; ogni foglio riparte dalla
+ * posizione del proprio BOF e legge solo i propri record, fino alla fine del foglio. I fogli di
+ * uno stesso file possono quindi essere letti in parallelo: il file system è condiviso e solo le
+ * letture dei blocchi sono sincronizzate, non le chiamate al consumer.
+ */
+final class HssfSheetReader implements SheetReader
+{
+
+  private final POIFSFileSystem fs;
+  private final Globals globals;
+  private final String name;
+
+  /** Posizione del BOF del foglio nel flusso della cartella di lavoro */
+  private final int offset;
+
+  HssfSheetReader(POIFSFileSystem fs, Globals globals, BoundSheetRecord sheet)
+  {
+    this.fs = fs;
+    this.globals = globals;
+    this.name = sheet.getSheetname();
+    this.offset = sheet.getPositionOfBof();
+  }
+
+  /** Record iniziali della cartella di lavoro, condivisi dai lettori dei fogli */
+  static final class Globals
+  {
+    /** Fogli nell'ordine delle schede */
+    final List<BoundSheetRecord> sheets = new ArrayList<>();
+
+    /** Record da ripetere prima di ogni foglio: SST, formati, stili, sistema di date */
+    private final List<Record> records = new ArrayList<>();
+
+    private String entry;
+  }
+
+  /** Legge i soli record iniziali della cartella di lavoro (fino al primo EOF) */
+  static Globals readGlobals(POIFSFileSystem fs) throws Exception
+  {
+    Globals globals = new Globals();
+    HSSFRequest request = new HSSFRequest();
+    request.addListenerForAllRecords(record -> {
+      if (record instanceof BoundSheetRecord) {
+        globals.sheets.add((BoundSheetRecord) record);
+      } else if (record instanceof SSTRecord
+          || record instanceof FormatRecord
+          || record instanceof ExtendedFormatRecord
+          || record instanceof DateWindow1904Record) {
+        globals.records.add(record);
+      } else if (record instanceof EOFRecord) {
+        // Fine dei record globali: i fogli sono tutti elencati
+        throw new Stop(null);
+      }
+    });
+
+    synchronized (fs) {
+      globals.entry = HSSFWorkbook.getWorkbookDirEntryName(fs.getRoot());
+      try {
+        new HSSFEventFactory().processWorkbookEvents(request, fs);
+      } catch (Stop ignored) {
+        // Interruzione voluta
+      }
+    }
+    return globals;
+  }
+
+  @Override
+  public String getName()
+  {
+    return name;
+  }
+
+  @Override
+  public void read(RowConsumer consumer) throws Exception
+  {
+    SheetRowAssembler assembler = new SheetRowAssembler(consumer);
+    Listener listener = new Listener(assembler);
+    FormatTrackingHSSFListener formats =
+        new FormatTrackingHSSFListener(new MissingRecordAwareHSSFListener(listener));
+    listener.formats = formats;
+
+    HSSFRequest request = new HSSFRequest();
+    request.addListenerForAllRecords(formats);
+
+    for (Record record : globals.records) {
+      formats.processRecord(record);
+    }
+    try (InputStream in = new SheetStream(fs, globals.entry, offset)) {
+      new HSSFEventFactory().processEvents(request, in);
+    } catch (Stop stop) {
+      if (stop.error != null) {
+        throw stop.error;
+      }
+    }
+    assembler.finish();
+  }
+
+  /**
+   * Flusso della cartella di lavoro a partire dal BOF di un foglio. Il file system condiviso non
+   * è thread-safe: ogni lettura dei blocchi avviene sotto il suo lock, per il tempo della sola
+   * lettura.
+   */
+  private static final class SheetStream extends InputStream
+  {
+    /** Blocco usato per raggiungere il BOF */
+    private static final int SKIP_BYTES = 16 * 1024;
+
+    private final POIFSFileSystem fs;
+    private final DocumentInputStream in;
+
+    SheetStream(POIFSFileSystem fs, String entry, int offset) throws IOException
+    {
+      this.fs = fs;
+      synchronized (fs) {
+        this.in = fs.createDocumentInputStream(entry);
+      }
+      // DocumentInputStream.skip alloca un array grande quanto il salto: si legge a blocchi
+      byte[] buffer = new byte[SKIP_BYTES];
+      for (int remaining = offset; remaining > 0;) {
+        int read = read(buffer, 0, Math.min(buffer.length, remaining));
+        if (read < 0) {
+          throw new EOFException("BOF del foglio oltre la fine della cartella di lavoro: " + offset);
+        }
+        remaining -= read;
+      }
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+      synchronized (fs) {
+        return in.read();
+      }
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+      synchronized (fs) {
+        return in.read(b, off, len);
+      }
+    }
+
+    @Override
+    public int available() throws IOException
+    {
+      synchronized (fs) {
+        return in.available();
+      }
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+      synchronized (fs) {
+        in.close();
+      }
+    }
+  }
+
+  /** Interrompe la lettura dei record, trasportando l'eventuale errore del consumer */
+  private static final class Stop extends RuntimeException
+  {
+    private static final long serialVersionUID = 1L;
+
+    private final Exception error;
+
+    Stop(Exception error)
+    {
+      super(null, error, false, false);
+      this.error = error;
+    }
+  }
+
+  private final class Listener implements HSSFListener
+  {
+    private final SheetRowAssembler assembler;
+    private FormatTrackingHSSFListener formats;
+
+    private SSTRecord sst;
+    private boolean date1904;
+
+    /** Cache per indice di stile: 0 = non calcolato, 1 = data, 2 = non data */
+    private byte[] dateStyles = new byte[64];
+
+    /** Profondità dei BOF dei fogli (i grafici incorporati aprono un BOF annidato) */
+    private int depth;
+    private boolean inSheet;
+
+    private int openRow = -1;
+
+    /** Righe presenti nel foglio (record ROW), anche senza celle */
+    private final BitSet rows = new BitSet();
+
+    /** Colonna della formula il cui risultato testuale arriva nel record successivo */
+    private int pendingStringColumn = -1;
+
+    Listener(SheetRowAssembler assembler)
+    {
+      this.assembler = assembler;
+    }
+
+    @Override
+    public void processRecord(Record record)
+    {
+      if (record instanceof BOFRecord) {
+        if (((BOFRecord) record).getType() != BOFRecord.TYPE_WORKBOOK) {
+          if (depth == 0) {
+            // Il flusso parte dal BOF del foglio
+            inSheet = true;
+          }
+          depth++;
+        }
+        return;
+      }
+
+      if (record instanceof EOFRecord) {
+        if (depth > 0 && --depth == 0 && inSheet) {
+          endRow();
+          throw new Stop(null);
+        }
+        return;
+      }
+
+      if (record instanceof SSTRecord) {
+        sst = (SSTRecord) record;
+        return;
+      }
+      if (record instanceof DateWindow1904Record) {
+        date1904 = ((DateWindow1904Record) record).getWindowing() == 1;
+        return;
+      }
+
+      if (!inSheet || depth != 1) {
+        return;
+      }
+
+      if (record instanceof RowRecord) {
+        rows.set(((RowRecord) record).getRowNumber());
+        return;
+      }
+
+      if (record instanceof StringRecord) {
+        if (pendingStringColumn >= 0) {
+          assembler.cell(pendingStringColumn, ((StringRecord) record).getString());
+          pendingStringColumn = -1;
+        }
+        return;
+      }
+
+      if (record instanceof LastCellOfRowDummyRecord) {
+        int row = ((LastCellOfRowDummyRecord) record).getRow();
+        if (openRow != row && rows.get(row)) {
+          // Riga presente senza celle: come nel modello DOM produce una riga vuota
+          endRow();
+          assembler.startRow();
+          openRow = row;
+        }
+        // Le righe mancanti non producono record
+        endRow();
+        return;
+      }
+
+      if (record instanceof CellValueRecordInterface) {
+        CellValueRecordInterface cell = (CellValueRecordInterface) record;
+        if (cell.getRow() != openRow) {
+          endRow();
+          assembler.startRow();
+          openRow = cell.getRow();
+        }
+        cell(cell);
+      }
+    }
+
+    private void cell(CellValueRecordInterface cell)
+    {
+      int column = cell.getColumn();
+
+      if (cell instanceof NumberRecord) {
+        assembler.cell(column, number(cell, ((NumberRecord) cell).getValue()));
+      } else if (cell instanceof RKRecord) {
+        assembler.cell(column, number(cell, ((RKRecord) cell).getRKNumber()));
+      } else if (cell instanceof LabelSSTRecord) {
+        int index = ((LabelSSTRecord) cell).getSSTIndex();
+        assembler.cell(column, sst != null ? sst.getString(index).getString() : null);
+      } else if (cell instanceof LabelRecord) {
+        assembler.cell(column, ((LabelRecord) cell).getValue());
+      } else if (cell instanceof BoolErrRecord) {
+        BoolErrRecord boolErr = (BoolErrRecord) cell;
+        // Gli errori (#DIV/0!, #N/A...) sono celle vuote
+        assembler.cell(column, boolErr.isBoolean() ? boolErr.getBooleanValue() : null);
+      } else if (cell instanceof FormulaRecord) {
+        formula((FormulaRecord) cell);
+      } else if (cell instanceof BlankRecord) {
+        assembler.cell(column, null);
+      }
+    }
+
+    /** Risultato salvato della formula */
+    private void formula(FormulaRecord formula)
+    {
+      int column = formula.getColumn();
+      CellType type = formula.getCachedResultTypeEnum();
+
+      if (type == CellType.NUMERIC) {
+        assembler.cell(column, number(formula, formula.getValue()));
+      } else if (type == CellType.BOOLEAN) {
+        assembler.cell(column, formula.getCachedBooleanValue());
+      } else if (type == CellType.STRING) {
+        if (formula.hasCachedResultString()) {
+          pendingStringColumn = column;
+          assembler.cell(column, null);
+        } else {
+          assembler.cell(column, "");
+        }
+      } else {
+        assembler.cell(column, null);
+      }
+    }
+
+    private Object number(CellValueRecordInterface cell, double value)
+    {
+      if (isDateStyle(cell) && DateUtil.isValidExcelDate(value)) {
+        return DateUtil.getLocalDateTime(value, date1904);
+      }
+      return value;
+    }
+
+    private boolean isDateStyle(CellValueRecordInterface cell)
+    {
+      int styleIndex = cell.getXFIndex() & 0xFFFF;
+      if (styleIndex >= dateStyles.length) {
+        byte[] grown = new byte[Math.max(styleIndex + 1, dateStyles.length * 2)];
+        System.arraycopy(dateStyles, 0, grown, 0, dateStyles.length);
+        dateStyles = grown;
+      }
+
+      byte cached = dateStyles[styleIndex];
+      if (cached == 0) {
+        boolean isDate =
+            DateUtil.isADateFormat(formats.getFormatIndex(cell), formats.getFormatString(cell));
+        cached = isDate ? (byte) 1 : (byte) 2;
+        dateStyles[styleIndex] = cached;
+      }
+      return cached == 1;
+    }
+
+    private void endRow()
+    {
+      if (openRow < 0) {
+        return;
+      }
+      openRow = -1;
+      try {
+        assembler.endRow();
+      } catch (Exception e) {
+        throw new Stop(e);
+      }
+    }
+  }
+}
@@ -2,8 +2,24 @@ package dev.springtools.util.excel;
 
 import dev.springtools.util.excel.strategy.MappingStrategy;
 import dev.springtools.util.excel.strategy.NormalizationStrategy;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
+/**
+ * Configurazione dichiarativa di un'importazione, compilata da {@link ExcelImporter} una volta per
+ * importazione.
+ *
+ * <pre>
+ * ImportConfig config = new ImportConfig();
+ * config.setColumnMapping(Map.of("Ragione sociale", "nome", "Tel.", "telefono"));
+ * config.field("telefono").phone("39").required();
+ * config.field("email").email();
+ * config.field("provincia").trim().upperCase().defaultValue("ND");
+ * config.field("nascita").date("dd/MM/yyyy", "yyyy-MM-dd");
+ * ImportResult result = new ExcelImporter(new ExcelReader(file), config).execute(consumer);
+ * </pre>
+ */
 public class ImportConfig
 {
 
@@ -20,6 +36,23 @@ public class ImportConfig
 
   private boolean skipEmptyRows = true;
 
+  /** Regole per campo logico, nell'ordine di dichiarazione */
+  private final Map<String, FieldRules> rules = new LinkedHashMap<>();
+
+  /**
+   * Regole del campo logico indicato (create alla prima richiesta). Le regole si applicano ai
+   * campi già mappati, prima dell'eventuale strategia di normalizzazione.
+   */
+  public FieldRules field(String field)
+  {
+    return rules.computeIfAbsent(field, FieldRules::new);
+  }
+
+  public Map<String, FieldRules> getRules()
+  {
+    return Collections.unmodifiableMap(rules);
+  }
+
   // =====================
   // Getter / Setter
   // =====================
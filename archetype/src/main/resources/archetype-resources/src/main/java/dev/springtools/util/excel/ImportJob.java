@@ -0,0 +1,280 @@
+package dev.springtools.util.excel;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Job di importazione gestito da {@link ImportJobManager}. Espone l'avanzamento in polling
+ * (getProgress) o tramite listener, invocati ad ogni checkpoint e ad ogni cambio di stato (es. per
+ * inoltrare l'avanzamento via SSE).
+ */
+public class ImportJob
+{
+
+  public enum Status
+  {
+    QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED, INTERRUPTED;
+
+    /** True per gli stati da cui il job non avanza più */
+    public boolean isFinal()
+    {
+      return this != QUEUED && this != RUNNING;
+    }
+  }
+
+  private final String id;
+  private final String source;
+  private final long expectedRows;
+  private final long startRow;
+  private final long previouslyWritten;
+
+  private final AtomicReference<Status> status = new AtomicReference<>(Status.QUEUED);
+  private final AtomicLong rowsWritten = new AtomicLong();
+  private final List<Consumer<ImportProgress>> listeners = new CopyOnWriteArrayList<>();
+  private final CountDownLatch done = new CountDownLatch(1);
+
+  private volatile boolean cancelRequested;
+  private volatile ExcelImporter importer;
+  private volatile long checkpointRow;
+  private volatile long checkpointWritten;
+  private volatile long startedNanos;
+  private volatile long finishedNanos;
+  private volatile long finishedAtMillis;
+  private volatile String error;
+  private volatile ImportResult result;
+  private volatile ImportScheduler.Ticket ticket;
+
+  ImportJob(String id, String source, long expectedRows, long startRow, long previouslyWritten)
+  {
+    this.id = id;
+    this.source = source;
+    this.expectedRows = expectedRows;
+    this.startRow = startRow;
+    this.previouslyWritten = previouslyWritten;
+    this.checkpointRow = startRow;
+    this.checkpointWritten = previouslyWritten;
+  }
+
+  public String getId()
+  {
+    return id;
+  }
+
+  public String getSource()
+  {
+    return source;
+  }
+
+  public Status getStatus()
+  {
+    return status.get();
+  }
+
+  /** Esito dell'esecuzione (null finché il job non è completato) */
+  public ImportResult getResult()
+  {
+    return result;
+  }
+
+  public boolean isCancelRequested()
+  {
+    return cancelRequested;
+  }
+
+  /**
+   * Registra un listener di avanzamento. Le eccezioni lanciate dal listener vengono ignorate.
+   *
+   * @param listener
+   *          invocato sul thread del job
+   */
+  public void addListener(Consumer<ImportProgress> listener)
+  {
+    listeners.add(listener);
+  }
+
+  public void removeListener(Consumer<ImportProgress> listener)
+  {
+    listeners.remove(listener);
+  }
+
+  /**
+   * Attende la fine del job, compreso il salvataggio dello stato finale.
+   *
+   * @return true se il job è terminato entro il timeout
+   */
+  public boolean await(long timeout, TimeUnit unit) throws InterruptedException
+  {
+    return done.await(timeout, unit);
+  }
+
+  public ImportProgress getProgress()
+  {
+    Status current = status.get();
+    ExcelImporter running = importer;
+    long read = running != null ? running.getRowsRead() : startRow;
+    long written = previouslyWritten + rowsWritten.get();
+    double rowsPerSecond = 0;
+    long eta = -1;
+
+    long started = startedNanos;
+    if (started > 0) {
+      long end = current.isFinal() && finishedNanos > 0 ? finishedNanos : System.nanoTime();
+      double seconds = (end - started) / 1e9;
+      if (seconds > 0) {
+        rowsPerSecond = Math.max(0, read - startRow) / seconds;
+      }
+    }
+    if (current == Status.COMPLETED) {
+      eta = 0;
+    } else if (!current.isFinal() && expectedRows > 0 && rowsPerSecond > 0) {
+      eta = (long) Math.ceil(Math.max(0, expectedRows - read) / rowsPerSecond);
+    }
+
+    ImportScheduler.Ticket queued = ticket;
+    int position = current == Status.QUEUED && queued != null ? queued.getPosition() : 0;
+
+    return new ImportProgress(
+        id,
+        source,
+        current,
+        read,
+        written,
+        checkpointRow,
+        expectedRows,
+        rowsPerSecond,
+        eta,
+        error,
+        position);
+  }
+
+  // =========================
+  // TRANSIZIONI (ImportJobManager)
+  // =========================
+
+  long getStartRow()
+  {
+    return startRow;
+  }
+
+  long getExpectedRows()
+  {
+    return expectedRows;
+  }
+
+  long getRowsWrittenTotal()
+  {
+    return previouslyWritten + rowsWritten.get();
+  }
+
+  long getCheckpointRow()
+  {
+    return checkpointRow;
+  }
+
+  /** Righe scritte fino al checkpoint (quelle successive verranno riconsegnate alla ripresa) */
+  long getCheckpointWritten()
+  {
+    return checkpointWritten;
+  }
+
+  String getError()
+  {
+    return error;
+  }
+
+  long getFinishedAtMillis()
+  {
+    return finishedAtMillis;
+  }
+
+  /** Ticket di ammissione dello scheduler */
+  void schedule(ImportScheduler.Ticket ticket)
+  {
+    this.ticket = ticket;
+  }
+
+  /** Richiede la cancellazione; ritorna true se il job era ancora in coda ed è stato annullato */
+  boolean requestCancel()
+  {
+    cancelRequested = true;
+    if (status.compareAndSet(Status.QUEUED, Status.CANCELLED)) {
+      ImportScheduler.Ticket queued = ticket;
+      if (queued != null) {
+        // Libera il posto in coda senza attendere l'ammissione
+        queued.cancel();
+      }
+      finish();
+      return true;
+    }
+    return false;
+  }
+
+  /** Passa da QUEUED a RUNNING; ritorna false se il job è stato annullato mentre era in coda */
+  boolean start()
+  {
+    if (!status.compareAndSet(Status.QUEUED, Status.RUNNING)) {
+      return false;
+    }
+    startedNanos = System.nanoTime();
+    return true;
+  }
+
+  void attach(ExcelImporter importer)
+  {
+    this.importer = importer;
+  }
+
+  void rowWritten()
+  {
+    rowsWritten.incrementAndGet();
+  }
+
+  void checkpoint(long row)
+  {
+    checkpointWritten = getRowsWrittenTotal();
+    checkpointRow = row;
+  }
+
+  void complete(ImportResult result)
+  {
+    this.result = result;
+    status.set(Status.COMPLETED);
+    finish();
+  }
+
+  void fail(Status finalStatus, String error)
+  {
+    this.error = error;
+    status.set(finalStatus);
+    finish();
+  }
+
+  /** Sblocca chi attende la fine del job: va chiamato dopo aver salvato lo stato finale */
+  void release()
+  {
+    done.countDown();
+  }
+
+  void notifyListeners()
+  {
+    ImportProgress progress = getProgress();
+    for (Consumer<ImportProgress> listener : listeners) {
+      try {
+        listener.accept(progress);
+      } catch (Exception ignored) {
+        // Un listener difettoso non deve interrompere l'importazione
+      }
+    }
+  }
+
+  private void finish()
+  {
+    finishedNanos = System.nanoTime();
+    finishedAtMillis = System.currentTimeMillis();
+  }
+}
@@ -0,0 +1,429 @@
+package dev.springtools.util.excel;
+
+import dev.springtools.util.DB;
+import dev.springtools.util.DB.Record;
+import dev.springtools.util.DB.Recordset;
+import dev.springtools.util.Env;
+import java.io.File;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+
+/**
+ * Esegue le importazioni in background, fuori dal thread della richiesta HTTP.
+ *
+ * <p>
+ * Ogni job viene registrato nella tabella {@code import_jobs}; durante l'esecuzione la posizione
+ * raggiunta nella sorgente viene salvata come checkpoint ogni N righe consumate. Un job fallito,
+ * annullato o interrotto da un riavvio può essere ripreso dall'ultimo checkpoint con {@link
+ * ImportJobManager}.resume: le righe successive al checkpoint possono essere consegnate due volte,
+ * quindi il consumer deve essere idempotente (es. upsert). Con l'ordinamento attivo (sortBy) le
+ * righe arrivano al consumer solo a lettura completata, con più fogli in ordine non deterministico:
+ * in entrambi i casi non viene salvato alcun checkpoint intermedio e la ripresa riparte
+ * dall'inizio.
+ *
+ * <p>
+ * Il consumer viene eseguito sul thread del job: le connessioni {@link DB} vanno aperte al suo
+ * interno. Configurazione (variabili d'ambiente): IMPORT_MAX_JOBS job in parallelo per nodo
+ * (default 2), IMPORT_CHECKPOINT_ROWS righe tra due checkpoint (default 1000).
+ *
+ * <p>
+ * Prima di occupare un thread ogni job passa dall'{@link ImportScheduler} condiviso del nodo: parte
+ * solo se la memoria stimata rientra nel budget, altrimenti resta in coda (a turno tra gli utenti)
+ * e ImportProgress riporta la posizione.
+ *
+ * <pre>
+ * ImportJob job = manager.submit(path.toString(), analysis.totalRows,
+ *     () -> new ExcelImporter(new CsvReader(path), mapping, normalization),
+ *     row -> dao.upsert(row));
+ * ...
+ * ImportProgress progress = manager.get(job.getId()).getProgress();
+ * </pre>
+ */
+public class ImportJobManager implements AutoCloseable
+{
+
+  /** Tempo di permanenza in memoria dei job terminati */
+  private static final long RETENTION_MILLIS = 60 * 60 * 1000L;
+
+  private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+  private final DataSource dataSource;
+  private final int checkpointInterval;
+  private final String node;
+  private final ExecutorService executor;
+  private final Map<String, ImportJob> jobs = new ConcurrentHashMap<>();
+  private volatile ImportScheduler scheduler = ImportScheduler.shared();
+
+  public ImportJobManager(DataSource dataSource) throws Exception
+  {
+    this(dataSource, Env.getInt("IMPORT_MAX_JOBS", 2), Env.getInt("IMPORT_CHECKPOINT_ROWS", 1000));
+  }
+
+  /**
+   * @param dataSource
+   *          database con la tabella import_jobs
+   * @param maxConcurrentJobs
+   *          job eseguiti in parallelo su questo nodo (gli altri restano in coda)
+   * @param checkpointInterval
+   *          righe consumate tra due checkpoint
+   */
+  public ImportJobManager(DataSource dataSource, int maxConcurrentJobs, int checkpointInterval)
+      throws Exception
+  {
+    if (maxConcurrentJobs < 1 || checkpointInterval < 1) {
+      throw new IllegalArgumentException("maxConcurrentJobs e checkpointInterval devono essere positivi");
+    }
+    this.dataSource = dataSource;
+    this.checkpointInterval = checkpointInterval;
+    this.node = Env.get("HOSTNAME", "local");
+    this.executor = Executors.newFixedThreadPool(maxConcurrentJobs, task -> {
+      Thread thread = new Thread(task, "import-job-" + THREAD_COUNTER.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+
+    markInterrupted();
+  }
+
+  /** Scheduler di ammissione (default quello condiviso del nodo) */
+  public ImportJobManager scheduler(ImportScheduler scheduler)
+  {
+    this.scheduler = scheduler != null ? scheduler : ImportScheduler.shared();
+    return this;
+  }
+
+  /**
+   * Accoda un nuovo job.
+   *
+   * @param source
+   *          descrizione della sorgente (es. percorso del file), salvata per la ripresa
+   * @param expectedRows
+   *          righe attese per il calcolo dell'ETA (0 se non note)
+   * @param task
+   *          crea l'importer sul thread del job
+   * @param consumer
+   *          destinazione dei record normalizzati
+   * @return job accodato
+   */
+  public ImportJob submit(String source, long expectedRows, ImportTask task, RowConsumer consumer)
+      throws Exception
+  {
+    return submit(null, source, expectedRows, estimate(source), task, consumer);
+  }
+
+  /**
+   * Accoda un nuovo job nella coda di un utente.
+   *
+   * @param user
+   *          utente proprietario, per la coda equa dello scheduler
+   * @param source
+   *          descrizione della sorgente (es. percorso del file), salvata per la ripresa
+   * @param expectedRows
+   *          righe attese per il calcolo dell'ETA (0 se non note)
+   * @param memoryBytes
+   *          memoria stimata (vedi ImportScheduler.estimate)
+   * @param task
+   *          crea l'importer sul thread del job
+   * @param consumer
+   *          destinazione dei record normalizzati
+   * @return job accodato
+   */
+  public ImportJob submit(
+      String user,
+      String source,
+      long expectedRows,
+      long memoryBytes,
+      ImportTask task,
+      RowConsumer consumer)
+      throws Exception
+  {
+    ImportJob job = new ImportJob(UUID.randomUUID().toString(), source, expectedRows, 0, 0);
+    insert(job);
+    enqueue(job, user, memoryBytes, task, consumer);
+    return job;
+  }
+
+  /**
+   * Riprende un job non completato dall'ultimo checkpoint salvato.
+   *
+   * @param jobId
+   *          id del job (vedi findResumable)
+   * @param task
+   *          crea l'importer sulla stessa sorgente del job originale
+   * @param consumer
+   *          destinazione dei record normalizzati
+   * @return job accodato
+   */
+  public ImportJob resume(String jobId, ImportTask task, RowConsumer consumer) throws Exception
+  {
+    ImportJob current = jobs.get(jobId);
+    if (current != null && !current.getStatus().isFinal()) {
+      throw new Exception("Job già in esecuzione: " + jobId);
+    }
+
+    DB db = new DB(dataSource);
+    Recordset rs;
+    try {
+      db.open();
+      rs = db.select(
+          "SELECT source, status, checkpoint_row, rows_written, expected_rows FROM import_jobs WHERE id = ?",
+          jobId);
+    } finally {
+      db.close();
+    }
+
+    if (rs.isEmpty()) {
+      throw new Exception("Job non trovato: " + jobId);
+    }
+    Record r = rs.get(0);
+    if (ImportJob.Status.COMPLETED.name().equals(DB.toString(r.get("status")))) {
+      throw new Exception("Job già completato: " + jobId);
+    }
+
+    ImportJob job = new ImportJob(
+        jobId,
+        DB.toString(r.get("source")),
+        DB.toLong(r.get("expected_rows")),
+        DB.toLong(r.get("checkpoint_row")),
+        DB.toLong(r.get("rows_written")));
+    update(job, ImportJob.Status.QUEUED);
+    enqueue(job, null, estimate(job.getSource()), task, consumer);
+    return job;
+  }
+
+  /** Job noto a questo nodo (in coda, in esecuzione o terminato da meno di un'ora) */
+  public ImportJob get(String jobId)
+  {
+    return jobs.get(jobId);
+  }
+
+  /**
+   * Richiede la cancellazione di un job. Un job in coda viene annullato subito; un job in
+   * esecuzione si ferma alla riga successiva, salvando il checkpoint.
+   *
+   * @return false se il job non è noto o è già terminato
+   */
+  public boolean cancel(String jobId) throws Exception
+  {
+    ImportJob job = jobs.get(jobId);
+    if (job == null || job.getStatus().isFinal()) {
+      return false;
+    }
+    if (job.requestCancel()) {
+      try {
+        update(job, ImportJob.Status.CANCELLED);
+        job.notifyListeners();
+      } finally {
+        job.release();
+      }
+    }
+    return true;
+  }
+
+  /** Job non completati di questo nodo che possono essere ripresi */
+  public List<ImportProgress> findResumable() throws Exception
+  {
+    List<ImportProgress> result = new ArrayList<>();
+    DB db = new DB(dataSource);
+    try {
+      db.open();
+      Recordset rs = db.select(
+          "SELECT id, source, status, checkpoint_row, rows_written, expected_rows, error FROM import_jobs "
+              + "WHERE node = ? AND status IN (?, ?, ?) ORDER BY created_at",
+          node,
+          ImportJob.Status.FAILED.name(),
+          ImportJob.Status.CANCELLED.name(),
+          ImportJob.Status.INTERRUPTED.name());
+      for (Record r : rs) {
+        String id = DB.toString(r.get("id"));
+        ImportJob active = jobs.get(id);
+        if (active != null && !active.getStatus().isFinal()) {
+          continue;
+        }
+        result.add(
+            new ImportProgress(
+                id,
+                DB.toString(r.get("source")),
+                ImportJob.Status.valueOf(DB.toString(r.get("status"))),
+                DB.toLong(r.get("checkpoint_row")),
+                DB.toLong(r.get("rows_written")),
+                DB.toLong(r.get("checkpoint_row")),
+                DB.toLong(r.get("expected_rows")),
+                0,
+                -1,
+                DB.toString(r.get("error"))));
+      }
+    } finally {
+      db.close();
+    }
+    return result;
+  }
+
+  /** Interrompe i job in esecuzione; lo stato resta ripristinabile al prossimo avvio */
+  @Override
+  public void close()
+  {
+    executor.shutdownNow();
+  }
+
+  // =========================
+  // ESECUZIONE
+  // =========================
+
+  private void enqueue(ImportJob job, String user, long memoryBytes, ImportTask task, RowConsumer consumer)
+  {
+    long now = System.currentTimeMillis();
+    jobs.values().removeIf(
+        j -> j.getStatus().isFinal() && now - j.getFinishedAtMillis() > RETENTION_MILLIS);
+    jobs.put(job.getId(), job);
+    job.schedule(scheduler.submit(user, memoryBytes, ticket -> executor.execute(() -> {
+      try {
+        run(job, task, consumer);
+      } finally {
+        ticket.close();
+      }
+    })));
+  }
+
+  /** Memoria stimata dalla sorgente, se è un file leggibile (0 altrimenti) */
+  private static long estimate(String source)
+  {
+    try {
+      File file = new File(source);
+      return file.isFile() ? ImportScheduler.estimate(file, ImportScheduler.Mode.STREAMING) : 0;
+    } catch (Exception e) {
+      return 0;
+    }
+  }
+
+  private void run(ImportJob job, ImportTask task, RowConsumer consumer)
+  {
+    if (!job.start()) {
+      // Annullato mentre era in coda
+      return;
+    }
+
+    try {
+      persist(job, ImportJob.Status.RUNNING);
+      job.notifyListeners();
+
+      ExcelImporter importer = task.open();
+      job.attach(importer);
+      // Con l'ordinamento le righe lette non sono ancora consegnate, con più fogli arrivano in
+      // ordine non deterministico: nessun checkpoint intermedio, la ripresa riparte dall'inizio
+      boolean checkpoints = importer.isResumable();
+      int[] sinceCheckpoint = {0};
+
+      ImportResult result = importer.execute(row -> {
+        if (job.isCancelRequested() || Thread.currentThread().isInterrupted()) {
+          throw new CancellationException();
+        }
+        consumer.accept(row);
+        job.rowWritten();
+        if (++sinceCheckpoint[0] == checkpointInterval) {
+          sinceCheckpoint[0] = 0;
+          if (checkpoints) {
+            job.checkpoint(importer.getRowsRead());
+          }
+          persist(job, ImportJob.Status.RUNNING);
+          job.notifyListeners();
+        }
+      }, checkpoints ? job.getStartRow() : 0);
+
+      job.checkpoint(importer.getRowsRead());
+      job.complete(result);
+    } catch (CancellationException e) {
+      job.fail(
+          job.isCancelRequested() ? ImportJob.Status.CANCELLED : ImportJob.Status.INTERRUPTED,
+          null);
+    } catch (Exception e) {
+      job.fail(ImportJob.Status.FAILED, e.getMessage() != null ? e.getMessage() : e.toString());
+    }
+
+    persist(job, job.getStatus());
+    job.notifyListeners();
+    job.release();
+  }
+
+  /** Salva lo stato ignorando gli errori: un checkpoint mancato non deve fermare l'importazione */
+  private void persist(ImportJob job, ImportJob.Status status)
+  {
+    try {
+      update(job, status);
+    } catch (Exception ignored) {
+      // Il prossimo checkpoint riproverà a salvare lo stato
+    }
+  }
+
+  // =========================
+  // PERSISTENZA
+  // =========================
+
+  private void insert(ImportJob job) throws Exception
+  {
+    DB db = new DB(dataSource);
+    try {
+      db.open();
+      java.sql.Timestamp now = DB.toSqlTimestamp(LocalDateTime.now());
+      db.query(
+          "INSERT INTO import_jobs (id, node, source, status, checkpoint_row, rows_written, expected_rows, "
+              + "created_at, updated_at) VALUES (?, ?, ?, ?, 0, 0, ?, ?, ?)",
+          job.getId(),
+          node,
+          job.getSource(),
+          ImportJob.Status.QUEUED.name(),
+          job.getExpectedRows(),
+          now,
+          now);
+    } finally {
+      db.close();
+    }
+  }
+
+  private void update(ImportJob job, ImportJob.Status status) throws Exception
+  {
+    DB db = new DB(dataSource);
+    try {
+      db.open();
+      db.query(
+          "UPDATE import_jobs SET node = ?, status = ?, checkpoint_row = ?, rows_written = ?, error = ?, "
+              + "updated_at = ? WHERE id = ?",
+          node,
+          status.name(),
+          job.getCheckpointRow(),
+          job.getCheckpointWritten(),
+          job.getError(),
+          DB.toSqlTimestamp(LocalDateTime.now()),
+          job.getId());
+    } finally {
+      db.close();
+    }
+  }
+
+  /** Marca come interrotti i job rimasti attivi dopo un arresto non pulito di questo nodo */
+  private void markInterrupted() throws Exception
+  {
+    DB db = new DB(dataSource);
+    try {
+      db.open();
+      db.query(
+          "UPDATE import_jobs SET status = ?, updated_at = ? WHERE node = ? AND status IN (?, ?)",
+          ImportJob.Status.INTERRUPTED.name(),
+          DB.toSqlTimestamp(LocalDateTime.now()),
+          node,
+          ImportJob.Status.QUEUED.name(),
+          ImportJob.Status.RUNNING.name());
+    } finally {
+      db.close();
+    }
+  }
+}
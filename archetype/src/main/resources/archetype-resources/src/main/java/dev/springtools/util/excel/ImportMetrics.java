@@ -0,0 +1,122 @@
+package dev.springtools.util.excel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Contatori di un'importazione (o di un foglio) raccolti da {@link ExcelImporter}. Non è
+ * thread-safe: ogni istanza viene aggiornata da un solo thread alla volta.
+ */
+final class ImportMetrics
+{
+
+  /** Righe rifiutate conservate come campione nel risultato */
+  static final int MAX_REJECTED_SAMPLE = 100;
+
+  /** Righe tra due campionamenti dell'heap */
+  private static final int HEAP_SAMPLE_ROWS = 1024;
+
+  private static final Runtime RUNTIME = Runtime.getRuntime();
+
+  int rowsImported;
+  long rowsRead;
+  long skippedEmptyRows;
+  long rowsRejected;
+  long rowsDuplicate;
+  long readNanos;
+  long mapNanos;
+  long normalizeNanos;
+  long dedupNanos;
+  long consumeNanos;
+  long sortNanos;
+  int sortRuns;
+  long bufferedPeakBytes;
+  long totalNanos;
+  Deduplicator.Stats deduplication;
+
+  final List<ImportResult.RejectedRow> rejected = new ArrayList<>();
+
+  private final long heapBaseline;
+  private long heapPeak;
+
+  ImportMetrics()
+  {
+    heapBaseline = usedHeap();
+    heapPeak = heapBaseline;
+  }
+
+  /** Campiona l'heap ogni HEAP_SAMPLE_ROWS righe lette */
+  void sampleHeap()
+  {
+    if ((rowsRead & (HEAP_SAMPLE_ROWS - 1)) == 0) {
+      sampleHeapNow();
+    }
+  }
+
+  void sampleHeapNow()
+  {
+    long used = usedHeap();
+    if (used > heapPeak) {
+      heapPeak = used;
+    }
+  }
+
+  void reject(long rowNumber, String reason, Map<String, Object> row)
+  {
+    rowsRejected++;
+    if (rejected.size() < MAX_REJECTED_SAMPLE) {
+      rejected.add(new ImportResult.RejectedRow(rowNumber, reason, row));
+    }
+  }
+
+  /** Somma i contatori di un'altra istanza (es. lato consumer di un foglio) */
+  void merge(ImportMetrics other)
+  {
+    rowsImported += other.rowsImported;
+    rowsRead += other.rowsRead;
+    skippedEmptyRows += other.skippedEmptyRows;
+    rowsRejected += other.rowsRejected;
+    rowsDuplicate += other.rowsDuplicate;
+    dedupNanos += other.dedupNanos;
+    readNanos += other.readNanos;
+    mapNanos += other.mapNanos;
+    normalizeNanos += other.normalizeNanos;
+    consumeNanos += other.consumeNanos;
+    sortNanos += other.sortNanos;
+    sortRuns += other.sortRuns;
+    for (ImportResult.RejectedRow row : other.rejected) {
+      if (rejected.size() == MAX_REJECTED_SAMPLE) {
+        break;
+      }
+      rejected.add(row);
+    }
+    if (other.heapPeak > heapPeak) {
+      heapPeak = other.heapPeak;
+    }
+  }
+
+  long peakHeapDelta()
+  {
+    return Math.max(0, heapPeak - heapBaseline);
+  }
+
+  /** True se tutte le celle sono vuote (null o stringhe di soli spazi) */
+  static boolean isEmpty(Map<String, Object> row)
+  {
+    for (Object value : row.values()) {
+      if (value == null) {
+        continue;
+      }
+      if (!(value instanceof String) || !((String) value).isBlank()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static long usedHeap()
+  {
+    return RUNTIME.totalMemory() - RUNTIME.freeMemory();
+  }
+}
@@ -0,0 +1,146 @@
+package dev.springtools.util.excel;
+
+/** Istantanea dello stato di avanzamento di un {@link ImportJob}. */
+public class ImportProgress
+{
+
+  private final String jobId;
+  private final String source;
+  private final ImportJob.Status status;
+  private final long rowsRead;
+  private final long rowsWritten;
+  private final long checkpointRow;
+  private final long expectedRows;
+  private final double rowsPerSecond;
+  private final long etaSeconds;
+  private final String error;
+  private final int queuePosition;
+
+  public ImportProgress(
+      String jobId,
+      String source,
+      ImportJob.Status status,
+      long rowsRead,
+      long rowsWritten,
+      long checkpointRow,
+      long expectedRows,
+      double rowsPerSecond,
+      long etaSeconds,
+      String error)
+  {
+    this(
+        jobId,
+        source,
+        status,
+        rowsRead,
+        rowsWritten,
+        checkpointRow,
+        expectedRows,
+        rowsPerSecond,
+        etaSeconds,
+        error,
+        0);
+  }
+
+  public ImportProgress(
+      String jobId,
+      String source,
+      ImportJob.Status status,
+      long rowsRead,
+      long rowsWritten,
+      long checkpointRow,
+      long expectedRows,
+      double rowsPerSecond,
+      long etaSeconds,
+      String error,
+      int queuePosition)
+  {
+    this.jobId = jobId;
+    this.source = source;
+    this.status = status;
+    this.rowsRead = rowsRead;
+    this.rowsWritten = rowsWritten;
+    this.checkpointRow = checkpointRow;
+    this.expectedRows = expectedRows;
+    this.rowsPerSecond = rowsPerSecond;
+    this.etaSeconds = etaSeconds;
+    this.error = error;
+    this.queuePosition = queuePosition;
+  }
+
+  public String getJobId()
+  {
+    return jobId;
+  }
+
+  public String getSource()
+  {
+    return source;
+  }
+
+  public ImportJob.Status getStatus()
+  {
+    return status;
+  }
+
+  /** Righe lette dalla sorgente, incluse quelle saltate in ripresa */
+  public long getRowsRead()
+  {
+    return rowsRead;
+  }
+
+  /** Righe passate con successo al consumer (incluse le esecuzioni precedenti del job) */
+  public long getRowsWritten()
+  {
+    return rowsWritten;
+  }
+
+  /** Ultima riga salvata come checkpoint: una ripresa riparte da qui */
+  public long getCheckpointRow()
+  {
+    return checkpointRow;
+  }
+
+  /** Righe attese (0 se non note) */
+  public long getExpectedRows()
+  {
+    return expectedRows;
+  }
+
+  public double getRowsPerSecond()
+  {
+    return rowsPerSecond;
+  }
+
+  /** Secondi stimati al termine, -1 se non stimabile */
+  public long getEtaSeconds()
+  {
+    return etaSeconds;
+  }
+
+  public String getError()
+  {
+    return error;
+  }
+
+  /** Posizione stimata nella coda dello scheduler (1 = prossimo ad essere avviato), 0 se non è in coda */
+  public int getQueuePosition()
+  {
+    return queuePosition;
+  }
+
+  @Override
+  public String toString()
+  {
+    return "ImportProgress{"
+        + "jobId=" + jobId
+        + ", status=" + status
+        + ", queuePosition=" + queuePosition
+        + ", rowsRead=" + rowsRead
+        + ", rowsWritten=" + rowsWritten
+        + ", checkpointRow=" + checkpointRow
+        + ", rowsPerSecond=" + rowsPerSecond
+        + ", etaSeconds=" + etaSeconds
+        + '}';
+  }
+}
@@ -1,14 +1,96 @@
 package dev.springtools.util.excel;
 
-/** Rappresenta l'esito di un'importazione Excel. */
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rappresenta l'esito di un'importazione Excel.
+ *
+ * <p>
+ * Oltre alle righe importate riporta i tempi per fase in nanosecondi (lettura, mapping,
+ * normalizzazione, deduplicazione, ordinamento, consumo), la velocità, l'aumento massimo dell'heap campionato
+ * durante l'importazione, le righe vuote saltate, quelle duplicate e un campione delle righe
+ * rifiutate (vedi {@link RowRejectedException}). toMap() ne restituisce la forma da inviare in
+ * risposta.
+ *
+ * <p>
+ * Nell'importazione multi-foglio lettura, mapping e normalizzazione avvengono in parallelo: i
+ * tempi per fase del totale sono la somma di quelli dei fogli, mentre totalNanos è il tempo reale.
+ */
 public class ImportResult
 {
 
   private final int rowsImported;
+  private final long rowsRead;
+  private final long skippedEmptyRows;
+  private final long rowsRejected;
+  private final long rowsDuplicate;
+  private final long readNanos;
+  private final long mapNanos;
+  private final long normalizeNanos;
+  private final long dedupNanos;
+  private final long consumeNanos;
+  private final long sortNanos;
+  private final int sortRuns;
+  private final long bufferedPeakBytes;
+  private final long totalNanos;
+  private final long peakHeapDeltaBytes;
+  private final List<RejectedRow> rejectedSample;
+  private final Deduplicator.Stats deduplication;
+
+  /** Dettaglio per foglio (vuoto per importazioni a foglio singolo) */
+  private final Map<String, ImportResult> sheets;
 
   public ImportResult(int rowsImported)
+  {
+    this(rowsImported, Collections.emptyMap());
+  }
+
+  public ImportResult(int rowsImported, Map<String, ImportResult> sheets)
   {
     this.rowsImported = rowsImported;
+    this.rowsRead = rowsImported;
+    this.skippedEmptyRows = 0;
+    this.rowsRejected = 0;
+    this.rowsDuplicate = 0;
+    this.readNanos = 0;
+    this.mapNanos = 0;
+    this.normalizeNanos = 0;
+    this.dedupNanos = 0;
+    this.consumeNanos = 0;
+    this.sortNanos = 0;
+    this.sortRuns = 0;
+    this.bufferedPeakBytes = 0;
+    this.totalNanos = 0;
+    this.peakHeapDeltaBytes = 0;
+    this.rejectedSample = Collections.emptyList();
+    this.deduplication = null;
+    this.sheets = Collections.unmodifiableMap(new LinkedHashMap<>(sheets));
+  }
+
+  ImportResult(ImportMetrics metrics, Map<String, ImportResult> sheets)
+  {
+    this.rowsImported = metrics.rowsImported;
+    this.rowsRead = metrics.rowsRead;
+    this.skippedEmptyRows = metrics.skippedEmptyRows;
+    this.rowsRejected = metrics.rowsRejected;
+    this.rowsDuplicate = metrics.rowsDuplicate;
+    this.readNanos = metrics.readNanos;
+    this.mapNanos = metrics.mapNanos;
+    this.normalizeNanos = metrics.normalizeNanos;
+    this.dedupNanos = metrics.dedupNanos;
+    this.consumeNanos = metrics.consumeNanos;
+    this.sortNanos = metrics.sortNanos;
+    this.sortRuns = metrics.sortRuns;
+    this.bufferedPeakBytes = metrics.bufferedPeakBytes;
+    this.totalNanos = metrics.totalNanos;
+    this.peakHeapDeltaBytes = metrics.peakHeapDelta();
+    this.rejectedSample = Collections.unmodifiableList(new ArrayList<>(metrics.rejected));
+    this.deduplication = metrics.deduplication;
+    this.sheets = Collections.unmodifiableMap(new LinkedHashMap<>(sheets));
   }
 
   public int getRowsImported()
@@ -16,9 +98,211 @@ public class ImportResult
     return rowsImported;
   }
 
+  /** Righe dati lette dalla sorgente (importate, vuote, rifiutate e duplicate) */
+  public long getRowsRead()
+  {
+    return rowsRead;
+  }
+
+  public long getSkippedEmptyRows()
+  {
+    return skippedEmptyRows;
+  }
+
+  public long getRowsRejected()
+  {
+    return rowsRejected;
+  }
+
+  /** Righe scartate dalla deduplicazione (vedi {@link Deduplicator}) */
+  public long getRowsDuplicate()
+  {
+    return rowsDuplicate;
+  }
+
+  /** Tempo speso nel lettore (parsing della sorgente) */
+  public long getReadNanos()
+  {
+    return readNanos;
+  }
+
+  public long getMapNanos()
+  {
+    return mapNanos;
+  }
+
+  public long getNormalizeNanos()
+  {
+    return normalizeNanos;
+  }
+
+  public long getDedupNanos()
+  {
+    return dedupNanos;
+  }
+
+  /** Tempo speso nel {@link RowConsumer} (tipicamente la scrittura su database) */
+  public long getConsumeNanos()
+  {
+    return consumeNanos;
+  }
+
+  /** Tempo speso nell'ordinamento, escluso il consumer (vedi ExcelImporter.sortBy) */
+  public long getSortNanos()
+  {
+    return sortNanos;
+  }
+
+  /** Sequenze ordinate scritte su disco (0 se l'ordinamento è avvenuto in memoria) */
+  public int getSortRuns()
+  {
+    return sortRuns;
+  }
+
+  /** Massimo stimato di memoria trattenuta da blocchi in coda e buffer di ordinamento */
+  public long getBufferedPeakBytes()
+  {
+    return bufferedPeakBytes;
+  }
+
+  public long getTotalNanos()
+  {
+    return totalNanos;
+  }
+
+  /** Righe lette al secondo sul tempo totale */
+  public double getRowsPerSecond()
+  {
+    return totalNanos > 0 ? rowsRead * 1e9 / totalNanos : 0;
+  }
+
+  /** Aumento massimo dell'heap usato rispetto all'inizio (campionato, indicativo) */
+  public long getPeakHeapDeltaBytes()
+  {
+    return peakHeapDeltaBytes;
+  }
+
+  /** Prime righe rifiutate con il motivo (al massimo 100) */
+  public List<RejectedRow> getRejectedSample()
+  {
+    return rejectedSample;
+  }
+
+  /** Contatori della deduplicazione (null se non attiva) */
+  public Deduplicator.Stats getDeduplication()
+  {
+    return deduplication;
+  }
+
+  public Map<String, ImportResult> getSheets()
+  {
+    return sheets;
+  }
+
+  /** Forma serializzabile (es. per {@code HttpResponse.out}) */
+  public Map<String, Object> toMap()
+  {
+    Map<String, Object> map = new LinkedHashMap<>();
+    map.put("rowsImported", rowsImported);
+    map.put("rowsRead", rowsRead);
+    map.put("skippedEmptyRows", skippedEmptyRows);
+    map.put("rowsRejected", rowsRejected);
+    map.put("rowsDuplicate", rowsDuplicate);
+    map.put("rowsPerSecond", Math.round(getRowsPerSecond()));
+    map.put("peakHeapDeltaBytes", peakHeapDeltaBytes);
+    map.put("bufferedPeakBytes", bufferedPeakBytes);
+    map.put("sortRuns", sortRuns);
+
+    Map<String, Object> timings = new LinkedHashMap<>();
+    timings.put("readNanos", readNanos);
+    timings.put("mapNanos", mapNanos);
+    timings.put("normalizeNanos", normalizeNanos);
+    timings.put("dedupNanos", dedupNanos);
+    timings.put("sortNanos", sortNanos);
+    timings.put("consumeNanos", consumeNanos);
+    timings.put("totalNanos", totalNanos);
+    map.put("timings", timings);
+
+    List<Map<String, Object>> rejected = new ArrayList<>();
+    for (RejectedRow row : rejectedSample) {
+      rejected.add(row.toMap());
+    }
+    map.put("rejected", rejected);
+
+    if (deduplication != null) {
+      map.put("deduplication", deduplication.toMap());
+    }
+
+    if (!sheets.isEmpty()) {
+      Map<String, Object> bySheet = new LinkedHashMap<>();
+      for (Map.Entry<String, ImportResult> entry : sheets.entrySet()) {
+        bySheet.put(entry.getKey(), entry.getValue().toMap());
+      }
+      map.put("sheets", bySheet);
+    }
+    return map;
+  }
+
   @Override
   public String toString()
   {
-    return "ImportResult{" + "rowsImported=" + rowsImported + '}';
+    String base = "ImportResult{"
+        + "rowsImported=" + rowsImported
+        + ", rowsRead=" + rowsRead
+        + ", skippedEmptyRows=" + skippedEmptyRows
+        + ", rowsRejected=" + rowsRejected
+        + ", rowsDuplicate=" + rowsDuplicate
+        + ", totalMillis=" + totalNanos / 1_000_000;
+    if (sheets.isEmpty()) {
+      return base + '}';
+    }
+    return base + ", sheets=" + sheets + '}';
+  }
+
+  /** Riga scartata durante l'importazione */
+  public static class RejectedRow
+  {
+    private final long rowNumber;
+    private final String reason;
+    private final Map<String, Object> row;
+
+    public RejectedRow(long rowNumber, String reason, Map<String, Object> row)
+    {
+      this.rowNumber = rowNumber;
+      this.reason = reason;
+      this.row = row;
+    }
+
+    /** Numero della riga dati (1 = prima riga dopo le intestazioni) */
+    public long getRowNumber()
+    {
+      return rowNumber;
+    }
+
+    public String getReason()
+    {
+      return reason;
+    }
+
+    /** Valori letti dalla sorgente */
+    public Map<String, Object> getRow()
+    {
+      return row;
+    }
+
+    public Map<String, Object> toMap()
+    {
+      Map<String, Object> map = new LinkedHashMap<>();
+      map.put("rowNumber", rowNumber);
+      map.put("reason", reason);
+      map.put("row", row);
+      return map;
+    }
+
+    @Override
+    public String toString()
+    {
+      return "RejectedRow{" + "rowNumber=" + rowNumber + ", reason='" + reason + '\'' + '}';
+    }
   }
 }
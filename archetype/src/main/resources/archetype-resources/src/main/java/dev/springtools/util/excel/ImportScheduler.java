@@ -0,0 +1,459 @@
+package dev.springtools.util.excel;
+
+import dev.springtools.util.Env;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import org.apache.poi.poifs.filesystem.FileMagic;
+
+/**
+ * Controllo di ammissione delle importazioni e delle analisi per l'intero nodo.
+ *
+ * <p>
+ * Ogni lavoro dichiara la memoria che gli serve (stimata con estimate da dimensione e formato del
+ * file) e parte solo se rientra nel budget del nodo; gli altri restano in coda. Le code sono
+ * separate per utente e servite a turno: un utente che carica molti file non blocca gli altri. Se
+ * il lavoro di turno non entra nel budget ne vengono ammessi di più piccoli, ma dopo MAX_SKIPS
+ * sorpassi il lavoro grande ha la precedenza e attende che si liberi la memoria. Un lavoro più
+ * grande dell'intero budget viene ammesso quando il nodo è libero.
+ *
+ * <p>
+ * Configurazione: IMPORT_NODE_MEMORY_MB budget del nodo (default 60% dell'heap massimo).
+ *
+ * <pre>
+ * // Analisi sincrona nel thread della richiesta
+ * try (ImportScheduler.Ticket ticket = ImportScheduler.shared().acquire(user,
+ *     ImportScheduler.estimate(upload.getFile(), ImportScheduler.Mode.DOM))) {
+ *   analysis = new ExcelAnalyzer(upload.getFile()).analyze(10);
+ * }
+ * </pre>
+ *
+ * Le importazioni di {@link ImportJobManager} passano dallo scheduler condiviso; la posizione in
+ * coda è esposta da {@link ImportProgress}.
+ */
+public class ImportScheduler
+{
+
+  /** Sorpassi subiti da un lavoro in attesa prima che la sua ammissione abbia la precedenza */
+  static final int MAX_SKIPS = 4;
+
+  private static final long MB = 1024L * 1024;
+
+  /** Modalità di lettura, da cui dipende la memoria richiesta */
+  public enum Mode
+  {
+    /** Modello completo della cartella di lavoro (ExcelReader, ExcelAnalyzer) */
+    DOM,
+    /** Lettura in streaming (WorkbookSheets, CsvReader) */
+    STREAMING
+  }
+
+  public enum State
+  {
+    QUEUED, ADMITTED, RELEASED, CANCELLED
+  }
+
+  private static volatile ImportScheduler shared;
+
+  private final long budget;
+  private final AtomicLong sequence = new AtomicLong();
+
+  /** Code per utente; l'ordine delle chiavi è l'ordine dei turni */
+  private final Map<String, ArrayDeque<Ticket>> queues = new LinkedHashMap<>();
+
+  private long used;
+  private long peak;
+  private int running;
+
+  /**
+   * @param budget
+   *          byte stimati che i lavori ammessi possono occupare contemporaneamente
+   */
+  public ImportScheduler(long budget)
+  {
+    if (budget <= 0) {
+      throw new IllegalArgumentException("Il budget di memoria deve essere positivo");
+    }
+    this.budget = budget;
+  }
+
+  /** Scheduler del nodo, configurato da IMPORT_NODE_MEMORY_MB */
+  public static ImportScheduler shared()
+  {
+    ImportScheduler scheduler = shared;
+    if (scheduler == null) {
+      synchronized (ImportScheduler.class) {
+        scheduler = shared;
+        if (scheduler == null) {
+          long defaultMb = Runtime.getRuntime().maxMemory() * 6 / 10 / MB;
+          scheduler = new ImportScheduler(Env.getLong("IMPORT_NODE_MEMORY_MB", defaultMb) * MB);
+          shared = scheduler;
+        }
+      }
+    }
+    return scheduler;
+  }
+
+  /**
+   * Stima la memoria necessaria per leggere il file. I coefficienti sono prudenti: un XLSX è un
+   * archivio compresso (circa 10:1) e il modello DOM occupa più volte l'XML; in streaming resta in
+   * memoria soprattutto la tabella delle stringhe condivise.
+   *
+   * @param file
+   *          file XLSX, XLS o CSV
+   * @param mode
+   *          modalità di lettura
+   * @return byte stimati
+   */
+  public static long estimate(File file, Mode mode) throws IOException
+  {
+    long size = file.length();
+    FileMagic magic = FileMagic.valueOf(file);
+
+    if (magic == FileMagic.OOXML) {
+      return mode == Mode.DOM ? 16 * MB + size * 50 : 32 * MB + size * 2;
+    }
+    if (magic == FileMagic.OLE2) {
+      return mode == Mode.DOM ? 16 * MB + size * 8 : 16 * MB + size;
+    }
+    // CSV: file mappato in memoria, in heap solo i blocchi di righe
+    return 16 * MB;
+  }
+
+  /**
+   * Accoda un lavoro. Quando viene ammesso, onAdmit viene invocato (sul thread che ha liberato la
+   * memoria o su quello corrente) e deve solo avviare il lavoro, ad esempio passandolo a un
+   * executor. Al termine il lavoro deve chiudere il ticket; se onAdmit fallisce il ticket viene
+   * chiuso subito.
+   *
+   * @param user
+   *          utente proprietario (null per le code anonime)
+   * @param bytes
+   *          memoria stimata
+   * @param onAdmit
+   *          avvio del lavoro
+   * @return ticket in coda o già ammesso
+   */
+  public Ticket submit(String user, long bytes, Consumer<Ticket> onAdmit)
+  {
+    if (bytes < 0) {
+      throw new IllegalArgumentException("Memoria stimata non valida: " + bytes);
+    }
+    Ticket ticket = new Ticket(user != null ? user : "", bytes, onAdmit);
+    List<Ticket> admitted;
+    synchronized (this) {
+      queues.computeIfAbsent(ticket.user, key -> new ArrayDeque<>()).addLast(ticket);
+      admitted = dispatch();
+    }
+    start(admitted);
+    return ticket;
+  }
+
+  /**
+   * Attende l'ammissione nel thread corrente.
+   *
+   * @return ticket ammesso, da chiudere al termine del lavoro
+   */
+  public Ticket acquire(String user, long bytes) throws InterruptedException
+  {
+    CountDownLatch admitted = new CountDownLatch(1);
+    Ticket ticket = submit(user, bytes, t -> admitted.countDown());
+    try {
+      admitted.await();
+    } catch (InterruptedException e) {
+      if (!ticket.cancel()) {
+        // Ammesso nel frattempo
+        ticket.close();
+      }
+      throw e;
+    }
+    return ticket;
+  }
+
+  /** Lavori in coda, nell'ordine stimato di ammissione */
+  public synchronized List<Ticket> getQueue()
+  {
+    List<Ticket> order = new ArrayList<>();
+    List<ArrayDeque<Ticket>> turns = new ArrayList<>(queues.values());
+    for (int round = 0; order.size() < countQueued(); round++) {
+      for (ArrayDeque<Ticket> queue : turns) {
+        if (queue.size() > round) {
+          order.add(get(queue, round));
+        }
+      }
+    }
+    return order;
+  }
+
+  public long getBudget()
+  {
+    return budget;
+  }
+
+  /** Memoria stimata dei lavori ammessi */
+  public synchronized long getUsed()
+  {
+    return used;
+  }
+
+  public synchronized long getPeak()
+  {
+    return peak;
+  }
+
+  public synchronized int getRunning()
+  {
+    return running;
+  }
+
+  public synchronized int getQueued()
+  {
+    return countQueued();
+  }
+
+  // =========================
+  // AMMISSIONE
+  // =========================
+
+  /** Ammette i lavori che rientrano nel budget, a turno tra gli utenti; chiamato con il lock */
+  private List<Ticket> dispatch()
+  {
+    List<Ticket> admitted = new ArrayList<>();
+    boolean progress = true;
+
+    while (progress && !queues.isEmpty()) {
+      progress = false;
+      List<Ticket> skipped = new ArrayList<>();
+
+      for (Iterator<Map.Entry<String, ArrayDeque<Ticket>>> it = queues.entrySet().iterator(); it.hasNext();) {
+        Map.Entry<String, ArrayDeque<Ticket>> entry = it.next();
+        Ticket head = entry.getValue().peekFirst();
+
+        if (running > 0 && used + head.bytes > budget) {
+          if (head.skips >= MAX_SKIPS) {
+            // Precedenza al lavoro grande: nessun altro sorpasso finché non si libera memoria
+            return admitted;
+          }
+          skipped.add(head);
+          continue;
+        }
+
+        entry.getValue().pollFirst();
+        it.remove();
+        if (!entry.getValue().isEmpty()) {
+          // L'utente servito passa in fondo al turno
+          queues.put(entry.getKey(), entry.getValue());
+        }
+
+        for (Ticket waiting : skipped) {
+          waiting.skips++;
+        }
+        head.state = State.ADMITTED;
+        head.admittedNanos = System.nanoTime();
+        used += head.bytes;
+        peak = Math.max(peak, used);
+        running++;
+        admitted.add(head);
+        progress = true;
+        break;
+      }
+    }
+    return admitted;
+  }
+
+  /** Avvia i lavori ammessi fuori dal lock */
+  private void start(List<Ticket> admitted)
+  {
+    for (Ticket ticket : admitted) {
+      try {
+        ticket.onAdmit.accept(ticket);
+      } catch (RuntimeException e) {
+        // Lavoro non avviabile (es. executor chiuso): la memoria torna disponibile
+        ticket.close();
+      }
+    }
+  }
+
+  private void release(Ticket ticket)
+  {
+    List<Ticket> admitted;
+    synchronized (this) {
+      if (ticket.state != State.ADMITTED) {
+        return;
+      }
+      ticket.state = State.RELEASED;
+      used -= ticket.bytes;
+      running--;
+      admitted = dispatch();
+    }
+    start(admitted);
+  }
+
+  private boolean cancel(Ticket ticket)
+  {
+    List<Ticket> admitted;
+    synchronized (this) {
+      if (ticket.state != State.QUEUED) {
+        return false;
+      }
+      ticket.state = State.CANCELLED;
+      ArrayDeque<Ticket> queue = queues.get(ticket.user);
+      queue.remove(ticket);
+      if (queue.isEmpty()) {
+        queues.remove(ticket.user);
+      }
+      // Il lavoro rimosso poteva bloccare i sorpassi
+      admitted = dispatch();
+    }
+    start(admitted);
+    return true;
+  }
+
+  /**
+   * Posizione stimata: lavori che verranno serviti prima di questo nei turni tra gli utenti, più
+   * uno. Chiamato con il lock.
+   */
+  private int positionOf(Ticket ticket)
+  {
+    ArrayDeque<Ticket> own = queues.get(ticket.user);
+    if (ticket.state != State.QUEUED || own == null) {
+      return 0;
+    }
+    int index = indexOf(own, ticket);
+    int position = 1;
+    boolean before = true;
+    for (ArrayDeque<Ticket> queue : queues.values()) {
+      if (queue == own) {
+        before = false;
+        position += index;
+      } else {
+        position += Math.min(queue.size(), before ? index + 1 : index);
+      }
+    }
+    return position;
+  }
+
+  private int countQueued()
+  {
+    int count = 0;
+    for (ArrayDeque<Ticket> queue : queues.values()) {
+      count += queue.size();
+    }
+    return count;
+  }
+
+  private static int indexOf(ArrayDeque<Ticket> queue, Ticket ticket)
+  {
+    int index = 0;
+    for (Ticket queued : queue) {
+      if (queued == ticket) {
+        return index;
+      }
+      index++;
+    }
+    return -1;
+  }
+
+  private static Ticket get(ArrayDeque<Ticket> queue, int index)
+  {
+    Iterator<Ticket> it = queue.iterator();
+    for (int i = 0; i < index; i++) {
+      it.next();
+    }
+    return it.next();
+  }
+
+  /** Lavoro in coda o ammesso. close() libera la memoria (o annulla il lavoro se è in coda). */
+  public final class Ticket implements AutoCloseable
+  {
+    private final long id = sequence.incrementAndGet();
+    private final String user;
+    private final long bytes;
+    private final Consumer<Ticket> onAdmit;
+    private final long queuedNanos = System.nanoTime();
+
+    // Protetti dal lock dello scheduler
+    private State state = State.QUEUED;
+    private int skips;
+    private long admittedNanos;
+
+    private Ticket(String user, long bytes, Consumer<Ticket> onAdmit)
+    {
+      this.user = user;
+      this.bytes = bytes;
+      this.onAdmit = onAdmit;
+    }
+
+    public long getId()
+    {
+      return id;
+    }
+
+    public String getUser()
+    {
+      return user;
+    }
+
+    /** Memoria stimata del lavoro */
+    public long getBytes()
+    {
+      return bytes;
+    }
+
+    public State getState()
+    {
+      synchronized (ImportScheduler.this) {
+        return state;
+      }
+    }
+
+    /** Posizione stimata in coda (1 = prossimo), 0 se non è in coda */
+    public int getPosition()
+    {
+      synchronized (ImportScheduler.this) {
+        return positionOf(this);
+      }
+    }
+
+    /** Attesa in coda, fino all'ammissione o ad ora */
+    public long getWaitMillis()
+    {
+      synchronized (ImportScheduler.this) {
+        long end = admittedNanos > 0 ? admittedNanos : System.nanoTime();
+        return (end - queuedNanos) / 1_000_000;
+      }
+    }
+
+    /**
+     * Toglie il lavoro dalla coda.
+     *
+     * @return false se il lavoro era già stato ammesso o chiuso
+     */
+    public boolean cancel()
+    {
+      return ImportScheduler.this.cancel(this);
+    }
+
+    @Override
+    public void close()
+    {
+      if (!cancel()) {
+        release(this);
+      }
+    }
+
+    @Override
+    public String toString()
+    {
+      return "Ticket{id=" + id + ", user=" + user + ", bytes=" + bytes + ", state=" + getState() + '}';
+    }
+  }
+}
@@ -0,0 +1,11 @@
+package dev.springtools.util.excel;
+
+/**
+ * Crea l'importer di un job. Viene invocato sul thread del job, ad ogni esecuzione o ripresa,
+ * così che il file venga riaperto da capo.
+ */
+@FunctionalInterface
+public interface ImportTask
+{
+  ExcelImporter open() throws Exception;
+}
@@ -0,0 +1,104 @@
+package dev.springtools.util.excel;
+
+import java.util.Map;
+
+/**
+ * Budget di heap per le righe trattenute da un'importazione: blocchi in coda tra i thread dei
+ * fogli e il consumer, buffer dell'ordinamento esterno. La dimensione delle righe è stimata.
+ *
+ * <p>
+ * I lettori chiamano acquire prima di accodare un blocco e restano fermi finché il consumer non
+ * libera spazio: se le fasi a valle rallentano, la lettura si ferma invece di accumulare righe in
+ * memoria. Il consumer non si blocca mai: usa tryAcquire e, se il budget è esaurito, scarica su
+ * disco le righe che sta trattenendo.
+ */
+final class MemoryGovernor
+{
+
+  /** Oggetto riga (HashMap) e tabella */
+  private static final int ROW_OVERHEAD = 64;
+
+  /** Nodo della mappa e slot della tabella */
+  private static final int ENTRY_OVERHEAD = 40;
+
+  /** Intestazione di String e del suo array */
+  private static final int STRING_OVERHEAD = 40;
+
+  /** Valori non testuali (Double, Boolean, LocalDateTime...) */
+  private static final int VALUE_SIZE = 24;
+
+  private final long budget;
+  private long used;
+  private long peak;
+
+  /**
+   * @param budget
+   *          byte stimati che le righe trattenute possono occupare
+   */
+  MemoryGovernor(long budget)
+  {
+    this.budget = budget;
+  }
+
+  /**
+   * Riserva spazio, attendendo che si liberi. Una richiesta viene sempre accolta se non c'è nulla
+   * di riservato, anche se supera da sola il budget.
+   */
+  synchronized void acquire(long bytes) throws InterruptedException
+  {
+    while (used > 0 && used + bytes > budget) {
+      wait();
+    }
+    reserve(bytes);
+  }
+
+  /** Riserva spazio solo se disponibile, senza attendere */
+  synchronized boolean tryAcquire(long bytes)
+  {
+    if (used > 0 && used + bytes > budget) {
+      return false;
+    }
+    reserve(bytes);
+    return true;
+  }
+
+  /** Riserva spazio anche oltre il budget (righe che non possono essere scaricate) */
+  synchronized void force(long bytes)
+  {
+    reserve(bytes);
+  }
+
+  synchronized void release(long bytes)
+  {
+    used -= bytes;
+    notifyAll();
+  }
+
+  /** Massimo stimato trattenuto contemporaneamente */
+  synchronized long getPeak()
+  {
+    return peak;
+  }
+
+  private void reserve(long bytes)
+  {
+    used += bytes;
+    if (used > peak) {
+      peak = used;
+    }
+  }
+
+  /** Stima della memoria occupata da una riga (le chiavi sono condivise e non vengono contate) */
+  static long estimate(Map<String, Object> row)
+  {
+    long bytes = ROW_OVERHEAD + (long) ENTRY_OVERHEAD * row.size();
+    for (Object value : row.values()) {
+      if (value instanceof String) {
+        bytes += STRING_OVERHEAD + ((String) value).length();
+      } else if (value != null) {
+        bytes += VALUE_SIZE;
+      }
+    }
+    return bytes;
+  }
+}
@@ -0,0 +1,71 @@
+package dev.springtools.util.excel;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Filtro di Bloom a blocchi fuori dall'heap. Ogni chiave usa un solo blocco di 512 bit (una linea
+ * di cache), su cui vengono impostati 7 bit: una verifica costa un accesso in memoria.
+ *
+ * <p>
+ * Con 10 bit per chiave la probabilità di falso positivo a pieno carico è circa l'1-2%.
+ */
+final class OffHeapBloomFilter
+{
+
+  private static final int BLOCK_BYTES = 64;
+  private static final int BITS_PER_KEY = 10;
+  private static final int HASHES = 7;
+
+  private final ByteBuffer bits;
+  private final long blocks;
+
+  OffHeapBloomFilter(long expectedKeys)
+  {
+    long needed = Math.max(1, (expectedKeys * BITS_PER_KEY + 511) / 512);
+    if (needed * BLOCK_BYTES > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Troppe chiavi per il filtro di Bloom: " + expectedKeys);
+    }
+    this.blocks = needed;
+    this.bits = ByteBuffer.allocateDirect((int) (needed * BLOCK_BYTES));
+  }
+
+  /** Aggiunge l'impronta (h1, h2) */
+  void add(long h1, long h2)
+  {
+    int base = block(h1);
+    long x = h2;
+    for (int i = 0; i < HASHES; i++) {
+      int bit = (int) (x & 511);
+      int index = base + ((bit >>> 6) << 3);
+      bits.putLong(index, bits.getLong(index) | (1L << (bit & 63)));
+      x >>>= 9;
+    }
+  }
+
+  /** False se l'impronta non è sicuramente presente */
+  boolean mightContain(long h1, long h2)
+  {
+    int base = block(h1);
+    long x = h2;
+    for (int i = 0; i < HASHES; i++) {
+      int bit = (int) (x & 511);
+      int index = base + ((bit >>> 6) << 3);
+      if ((bits.getLong(index) & (1L << (bit & 63))) == 0) {
+        return false;
+      }
+      x >>>= 9;
+    }
+    return true;
+  }
+
+  long sizeInBytes()
+  {
+    return bits.capacity();
+  }
+
+  /** Offset del blocco: riduzione moltiplicativa dei 32 bit alti di h1 */
+  private int block(long h1)
+  {
+    return (int) (((h1 >>> 32) * blocks) >>> 32) * BLOCK_BYTES;
+  }
+}
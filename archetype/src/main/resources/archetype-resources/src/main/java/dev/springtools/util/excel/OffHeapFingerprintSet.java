@@ -0,0 +1,131 @@
+package dev.springtools.util.excel;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Insieme esatto di impronte a 128 bit fuori dall'heap (indirizzamento aperto, scansione lineare).
+ * La capacità viene fissata alla creazione: nessun ridimensionamento e nessun oggetto per chiave.
+ *
+ * <p>
+ * Ogni slot occupa 16 byte (h1, h2). Il bit meno significativo di h2 memorizza l'origine della
+ * chiave (0 = precaricata, 1 = letta dal file) e non partecipa al confronto. La tabella è divisa
+ * in segmenti da al più 1 GB, limite di un singolo ByteBuffer.
+ */
+final class OffHeapFingerprintSet
+{
+
+  static final int ORIGIN_SEEDED = 0;
+  static final int ORIGIN_FILE = 1;
+
+  private static final int SLOT_BYTES = 16;
+  private static final int MAX_SEGMENT_SLOTS = 1 << 26;
+  private static final double LOAD_FACTOR = 0.75;
+
+  private final ByteBuffer[] segments;
+  private final int[] counts;
+  private final int segmentShift;
+  private final int slotMask;
+  private final long capacity;
+  private long size;
+
+  OffHeapFingerprintSet(long maxKeys)
+  {
+    long slots = Long.highestOneBit(Math.max(16, (long) Math.ceil(maxKeys / LOAD_FACTOR)) - 1) << 1;
+    int segmentCount = (int) Math.max(1, slots / MAX_SEGMENT_SLOTS);
+    int segmentSlots = (int) (slots / segmentCount);
+
+    this.segments = new ByteBuffer[segmentCount];
+    this.counts = new int[segmentCount];
+    for (int i = 0; i < segmentCount; i++) {
+      segments[i] = ByteBuffer.allocateDirect(segmentSlots * SLOT_BYTES);
+    }
+    this.segmentShift = segmentCount == 1 ? 64 : 64 - Integer.numberOfTrailingZeros(segmentCount);
+    this.slotMask = segmentSlots - 1;
+    this.capacity = maxKeys;
+  }
+
+  /**
+   * Cerca l'impronta.
+   *
+   * @return -1 se assente, altrimenti l'origine della chiave
+   */
+  int get(long h1, long h2)
+  {
+    h1 = nonZero(h1);
+    ByteBuffer table = segments[segment(h2)];
+    int offset = probe(table, h1, h2 & ~1L);
+    return table.getLong(offset) == 0 ? -1 : (int) (table.getLong(offset + 8) & 1);
+  }
+
+  /**
+   * Inserisce l'impronta se assente.
+   *
+   * @return -1 se inserita, altrimenti l'origine della chiave già presente
+   * @throws IllegalStateException
+   *           se la capacità dichiarata è esaurita
+   */
+  int putIfAbsent(long h1, long h2, int origin)
+  {
+    h1 = nonZero(h1);
+    long key2 = h2 & ~1L;
+    int segment = segment(h2);
+    ByteBuffer table = segments[segment];
+    int offset = probe(table, h1, key2);
+
+    if (table.getLong(offset) != 0) {
+      return (int) (table.getLong(offset + 8) & 1);
+    }
+    if (size >= capacity || counts[segment] >= slotMask) {
+      throw new IllegalStateException("Capacità del deduplicatore esaurita: " + capacity + " chiavi");
+    }
+    table.putLong(offset, h1);
+    table.putLong(offset + 8, key2 | origin);
+    counts[segment]++;
+    size++;
+    return -1;
+  }
+
+  long size()
+  {
+    return size;
+  }
+
+  long capacity()
+  {
+    return capacity;
+  }
+
+  long sizeInBytes()
+  {
+    long bytes = 0;
+    for (ByteBuffer segment : segments) {
+      bytes += segment.capacity();
+    }
+    return bytes;
+  }
+
+  /** Offset dello slot che contiene l'impronta o del primo slot vuoto della sequenza */
+  private int probe(ByteBuffer table, long h1, long key2)
+  {
+    int slot = (int) h1 & slotMask;
+    while (true) {
+      int offset = slot * SLOT_BYTES;
+      long s1 = table.getLong(offset);
+      if (s1 == 0 || (s1 == h1 && (table.getLong(offset + 8) & ~1L) == key2)) {
+        return offset;
+      }
+      slot = (slot + 1) & slotMask;
+    }
+  }
+
+  private int segment(long h2)
+  {
+    return segmentShift == 64 ? 0 : (int) (h2 >>> segmentShift);
+  }
+
+  /** 0 indica lo slot vuoto */
+  private static long nonZero(long h1)
+  {
+    return h1 == 0 ? 1 : h1;
+  }
+}
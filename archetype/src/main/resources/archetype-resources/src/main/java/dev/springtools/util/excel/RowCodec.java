@@ -0,0 +1,332 @@
+package dev.springtools.util.excel;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Formato binario compatto per salvare su disco righe già lette (cache dell'analisi, ordinamento
+ * esterno) e rileggerle senza ripetere il parsing della sorgente.
+ *
+ * <p>
+ * Ogni chiave viene scritta per esteso solo la prima volta, poi con il suo indice. I valori
+ * mantengono il tipo prodotto dai lettori (String, Double, Long, Integer, Boolean, LocalDateTime,
+ * LocalDate, BigDecimal); gli altri tipi vengono salvati come testo. Intestazioni e tipi delle
+ * colonne ricevuti come {@link HeaderAwareConsumer} vengono salvati nella stessa posizione e
+ * restituiti nello stesso ordine da {@link Reader#readAll(RowConsumer)}.
+ *
+ * <pre>
+ * riga    := 0x01 varint(campi) campo*      fine := 0x00
+ * campo   := varint(id chiave) [stringa se id nuovo] valore
+ * valore  := tag dati
+ * intest. := 0x02 varint(n) stringa* varint(n) varint(colonna ignorata)*
+ * tipi    := 0x03 varint(n) (stringa varint(ordinale ColumnType))*
+ * </pre>
+ */
+final class RowCodec
+{
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private static final int ROW = 1;
+  private static final int END = 0;
+  private static final int HEADERS = 2;
+  private static final int TYPES = 3;
+
+  private static final int NULL = 0;
+  private static final int STRING = 1;
+  private static final int DOUBLE = 2;
+  private static final int LONG = 3;
+  private static final int INTEGER = 4;
+  private static final int TRUE = 5;
+  private static final int FALSE = 6;
+  private static final int DATE_TIME = 7;
+  private static final int DATE = 8;
+  private static final int DECIMAL = 9;
+
+  private RowCodec()
+  {
+  }
+
+  /** Scrittura sequenziale di righe, intestazioni e tipi */
+  static final class Writer implements HeaderAwareConsumer, AutoCloseable
+  {
+    private final DataOutputStream out;
+    private final Map<String, Integer> keys = new HashMap<>();
+    private long rows;
+    private boolean closed;
+
+    Writer(OutputStream out)
+    {
+      this.out = new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+    }
+
+    @Override
+    public void accept(Map<String, Object> row) throws IOException
+    {
+      out.writeByte(ROW);
+      writeVarint(out, row.size());
+      for (Map.Entry<String, Object> entry : row.entrySet()) {
+        Integer id = keys.get(entry.getKey());
+        if (id == null) {
+          id = keys.size();
+          keys.put(entry.getKey(), id);
+          writeVarint(out, id);
+          writeString(out, entry.getKey());
+        } else {
+          writeVarint(out, id);
+        }
+        writeValue(out, entry.getValue());
+      }
+      rows++;
+    }
+
+    @Override
+    public void headers(List<String> headers, List<Integer> ignoredColumns) throws IOException
+    {
+      out.writeByte(HEADERS);
+      writeVarint(out, headers.size());
+      for (String header : headers) {
+        writeString(out, header);
+      }
+      writeVarint(out, ignoredColumns.size());
+      for (Integer column : ignoredColumns) {
+        writeVarint(out, column);
+      }
+    }
+
+    @Override
+    public void columnTypes(Map<String, ColumnType> types) throws IOException
+    {
+      out.writeByte(TYPES);
+      writeVarint(out, types.size());
+      for (Map.Entry<String, ColumnType> entry : types.entrySet()) {
+        writeString(out, entry.getKey());
+        writeVarint(out, entry.getValue().ordinal());
+      }
+    }
+
+    long getRows()
+    {
+      return rows;
+    }
+
+    /** Scrive il marcatore di fine e chiude lo stream */
+    @Override
+    public void close() throws IOException
+    {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      try {
+        out.writeByte(END);
+      } finally {
+        out.close();
+      }
+    }
+  }
+
+  /** Lettura sequenziale di righe */
+  static final class Reader implements AutoCloseable
+  {
+    private final DataInputStream in;
+    private final List<String> keys = new ArrayList<>();
+
+    Reader(InputStream in)
+    {
+      this.in = new DataInputStream(new BufferedInputStream(in, BUFFER_SIZE));
+    }
+
+    /** Riga successiva, null a fine file (file di sole righe) */
+    Map<String, Object> next() throws IOException
+    {
+      int marker = in.read();
+      if (marker == END) {
+        return null;
+      }
+      if (marker != ROW) {
+        throw new EOFException("File di righe troncato o non valido");
+      }
+      return readRow();
+    }
+
+    /** Passa al consumer tutto il contenuto del file, nell'ordine di scrittura */
+    void readAll(RowConsumer consumer) throws Exception
+    {
+      HeaderAwareConsumer headerAware = consumer instanceof HeaderAwareConsumer
+          ? (HeaderAwareConsumer) consumer
+          : null;
+      int marker;
+      while ((marker = in.read()) != END) {
+        if (marker == ROW) {
+          consumer.accept(readRow());
+        } else if (marker == HEADERS) {
+          List<String> headers = new ArrayList<>();
+          for (int i = readVarint(in); i > 0; i--) {
+            headers.add(readString(in));
+          }
+          List<Integer> ignoredColumns = new ArrayList<>();
+          for (int i = readVarint(in); i > 0; i--) {
+            ignoredColumns.add(readVarint(in));
+          }
+          if (headerAware != null) {
+            headerAware.headers(headers, ignoredColumns);
+          }
+        } else if (marker == TYPES) {
+          ColumnType[] values = ColumnType.values();
+          Map<String, ColumnType> types = new LinkedHashMap<>();
+          for (int i = readVarint(in); i > 0; i--) {
+            String header = readString(in);
+            int ordinal = readVarint(in);
+            if (ordinal >= values.length) {
+              throw new IOException("Tipo di colonna sconosciuto: " + ordinal);
+            }
+            types.put(header, values[ordinal]);
+          }
+          if (headerAware != null) {
+            headerAware.columnTypes(types);
+          }
+        } else {
+          throw new EOFException("File di righe troncato o non valido");
+        }
+      }
+    }
+
+    private Map<String, Object> readRow() throws IOException
+    {
+      int fields = readVarint(in);
+      Map<String, Object> row = new HashMap<>(fields * 4 / 3 + 1);
+      for (int i = 0; i < fields; i++) {
+        int id = readVarint(in);
+        if (id == keys.size()) {
+          keys.add(readString(in));
+        }
+        row.put(keys.get(id), readValue(in));
+      }
+      return row;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+      in.close();
+    }
+  }
+
+  private static void writeValue(DataOutputStream out, Object value) throws IOException
+  {
+    if (value == null) {
+      out.writeByte(NULL);
+    } else if (value instanceof String) {
+      out.writeByte(STRING);
+      writeString(out, (String) value);
+    } else if (value instanceof Double) {
+      out.writeByte(DOUBLE);
+      out.writeDouble((Double) value);
+    } else if (value instanceof Long) {
+      out.writeByte(LONG);
+      out.writeLong((Long) value);
+    } else if (value instanceof Integer) {
+      out.writeByte(INTEGER);
+      out.writeInt((Integer) value);
+    } else if (value instanceof Boolean) {
+      out.writeByte((Boolean) value ? TRUE : FALSE);
+    } else if (value instanceof LocalDateTime) {
+      LocalDateTime dateTime = (LocalDateTime) value;
+      out.writeByte(DATE_TIME);
+      out.writeLong(dateTime.toEpochSecond(ZoneOffset.UTC));
+      out.writeInt(dateTime.getNano());
+    } else if (value instanceof LocalDate) {
+      out.writeByte(DATE);
+      out.writeLong(((LocalDate) value).toEpochDay());
+    } else if (value instanceof BigDecimal) {
+      out.writeByte(DECIMAL);
+      writeString(out, value.toString());
+    } else {
+      out.writeByte(STRING);
+      writeString(out, value.toString());
+    }
+  }
+
+  private static Object readValue(DataInputStream in) throws IOException
+  {
+    int tag = in.readUnsignedByte();
+    switch (tag) {
+      case NULL :
+        return null;
+      case STRING :
+        return readString(in);
+      case DOUBLE :
+        return in.readDouble();
+      case LONG :
+        return in.readLong();
+      case INTEGER :
+        return in.readInt();
+      case TRUE :
+        return Boolean.TRUE;
+      case FALSE :
+        return Boolean.FALSE;
+      case DATE_TIME :
+        long seconds = in.readLong();
+        return LocalDateTime.ofEpochSecond(seconds, in.readInt(), ZoneOffset.UTC);
+      case DATE :
+        return LocalDate.ofEpochDay(in.readLong());
+      case DECIMAL :
+        return new BigDecimal(readString(in));
+      default :
+        throw new IOException("Tipo di valore sconosciuto: " + tag);
+    }
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException
+  {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    writeVarint(out, bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInputStream in) throws IOException
+  {
+    byte[] bytes = new byte[readVarint(in)];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static void writeVarint(DataOutputStream out, int value) throws IOException
+  {
+    while ((value & ~0x7F) != 0) {
+      out.writeByte((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte(value);
+  }
+
+  private static int readVarint(DataInputStream in) throws IOException
+  {
+    int value = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      int b = in.readUnsignedByte();
+      value |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Varint non valido");
+  }
+}
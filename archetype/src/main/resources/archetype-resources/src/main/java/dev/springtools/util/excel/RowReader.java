@@ -0,0 +1,11 @@
+package dev.springtools.util.excel;
+
+/**
+ * Sorgente di record grezzi (header → valore) per la pipeline di importazione. Le implementazioni
+ * leggono il file in streaming e passano ogni record al consumer nell'ordine del file.
+ */
+@FunctionalInterface
+public interface RowReader
+{
+  void read(RowConsumer consumer) throws Exception;
+}
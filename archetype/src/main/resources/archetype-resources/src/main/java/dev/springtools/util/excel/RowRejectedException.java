@@ -0,0 +1,23 @@
+package dev.springtools.util.excel;
+
+/**
+ * Scarta una singola riga senza interrompere l'importazione. Può essere lanciata dalla strategia
+ * di normalizzazione o dal {@link RowConsumer}: la riga viene conteggiata tra quelle rifiutate e
+ * il motivo riportato in {@link ImportResult}.
+ *
+ * <pre>
+ * if (row.get("email") == null) {
+ *   throw new RowRejectedException("Email mancante");
+ * }
+ * </pre>
+ */
+public class RowRejectedException extends RuntimeException
+{
+
+  private static final long serialVersionUID = 1L;
+
+  public RowRejectedException(String reason)
+  {
+    super(reason);
+  }
+}
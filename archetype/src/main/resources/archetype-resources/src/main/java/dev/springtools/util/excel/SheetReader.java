@@ -0,0 +1,12 @@
+package dev.springtools.util.excel;
+
+/**
+ * Lettore di un singolo foglio di una cartella di lavoro. Ogni foglio ha la propria rilevazione
+ * delle intestazioni; lettori di fogli diversi possono essere eseguiti in parallelo.
+ */
+public interface SheetReader extends RowReader
+{
+
+  /** Nome del foglio */
+  String getName();
+}
@@ -0,0 +1,166 @@
+package dev.springtools.util.excel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Costruisce i record di un foglio a partire da eventi di cella (lettori in streaming). Applica le
+ * stesse regole di {@link ExcelReader}: la prima riga presente contiene le intestazioni, le
+ * colonne senza intestazione testuale vengono ignorate e le righe con meno colonne delle
+ * intestazioni generano un errore di struttura.
+ *
+ * <p>
+ * Se il consumer è un {@link HeaderAwareConsumer}, le prime {@link ColumnType#SAMPLE_ROWS} righe
+ * vengono trattenute per dedurre i tipi delle colonne, notificati prima della prima riga. Dopo
+ * l'ultimo evento va invocato finish().
+ */
+final class SheetRowAssembler
+{
+
+  private final RowConsumer consumer;
+
+  private List<String> headers;
+  private int[] validColumnIndices;
+  private int maxHeaderIndex = -1;
+  private int rowNumber;
+
+  private Object[] cells = new Object[16];
+  private int lastColumn = -1;
+
+  /** Righe trattenute per la deduzione dei tipi (null quando non serve o è già avvenuta) */
+  private List<Map<String, Object>> sample;
+
+  SheetRowAssembler(RowConsumer consumer)
+  {
+    this.consumer = consumer;
+  }
+
+  void startRow()
+  {
+    if (lastColumn >= 0) {
+      Arrays.fill(cells, 0, lastColumn + 1, null);
+    }
+    lastColumn = -1;
+  }
+
+  /** Registra una cella della riga corrente (value null per celle presenti ma vuote) */
+  void cell(int column, Object value)
+  {
+    if (column >= cells.length) {
+      cells = Arrays.copyOf(cells, Math.max(column + 1, cells.length * 2));
+    }
+    cells[column] = value;
+    if (column > lastColumn) {
+      lastColumn = column;
+    }
+  }
+
+  void endRow() throws Exception
+  {
+    rowNumber++;
+
+    if (headers == null) {
+      buildHeaders();
+      if (consumer instanceof HeaderAwareConsumer) {
+        List<Integer> ignored = new ArrayList<>();
+        for (int column = 0, next = 0; column <= lastColumn; column++) {
+          if (next < validColumnIndices.length && validColumnIndices[next] == column) {
+            next++;
+          } else {
+            ignored.add(column);
+          }
+        }
+        ((HeaderAwareConsumer) consumer).headers(new ArrayList<>(headers), ignored);
+        sample = new ArrayList<>(ColumnType.SAMPLE_ROWS);
+      }
+      return;
+    }
+
+    // Verifica che la riga abbia abbastanza colonne per tutte le colonne con header
+    int rowColumns = lastColumn + 1;
+    if (rowColumns > 0 && rowColumns < maxHeaderIndex + 1) {
+      throw new Exception(
+          String.format(
+              "Errore di struttura del file: la riga %d ha solo %d colonne, "
+                  + "ma sono necessarie almeno %d colonne per le intestazioni presenti. "
+                  + "Verificare che tutte le righe abbiano dati per tutte le colonne.",
+              rowNumber,
+              rowColumns,
+              maxHeaderIndex + 1));
+    }
+
+    Map<String, Object> record = new HashMap<>(headers.size() * 4 / 3 + 1);
+    for (int i = 0; i < headers.size(); i++) {
+      int column = validColumnIndices[i];
+      record.put(headers.get(i), column <= lastColumn ? cells[column] : null);
+    }
+
+    if (sample == null) {
+      consumer.accept(record);
+      return;
+    }
+    sample.add(record);
+    if (sample.size() == ColumnType.SAMPLE_ROWS) {
+      flushSample();
+    }
+  }
+
+  /** Consegna le righe ancora trattenute per la deduzione dei tipi */
+  void finish() throws Exception
+  {
+    if (sample != null) {
+      flushSample();
+    }
+  }
+
+  private void flushSample() throws Exception
+  {
+    List<Map<String, Object>> rows = sample;
+    sample = null;
+
+    Map<String, ColumnType> types = new LinkedHashMap<>();
+    for (String header : headers) {
+      ColumnType type = null;
+      for (Map<String, Object> row : rows) {
+        type = ColumnType.merge(type, row.get(header));
+      }
+      types.put(header, type != null ? type : ColumnType.TEXT);
+    }
+    ((HeaderAwareConsumer) consumer).columnTypes(types);
+
+    for (Map<String, Object> row : rows) {
+      consumer.accept(row);
+    }
+  }
+
+  private void buildHeaders() throws Exception
+  {
+    headers = new ArrayList<>();
+    List<Integer> indices = new ArrayList<>();
+
+    for (int column = 0; column <= lastColumn; column++) {
+      // Solo le celle testuali sono intestazioni valide
+      Object value = cells[column];
+      String header = value instanceof String ? ((String) value).trim() : "";
+      if (!header.isEmpty()) {
+        headers.add(header);
+        indices.add(column);
+      }
+    }
+
+    // Verifica che ci siano header
+    if (headers.isEmpty()) {
+      throw new Exception("Il file non contiene intestazioni valide nella prima riga");
+    }
+
+    validColumnIndices = new int[indices.size()];
+    for (int i = 0; i < indices.size(); i++) {
+      validColumnIndices[i] = indices.get(i);
+    }
+    maxHeaderIndex = validColumnIndices[validColumnIndices.length - 1];
+  }
+}
@@ -0,0 +1,102 @@
+package dev.springtools.util.excel;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+/**
+ * File caricato copiato una sola volta su disco, con l'hash SHA-256 del contenuto calcolato
+ * durante la copia.
+ *
+ * <p>
+ * Analisi e importazione aprono lo stesso file per percorso ({@link ExcelAnalyzer}, {@link
+ * ExcelReader}, {@link WorkbookSheets}, {@link CsvReader}): l'archivio XLSX viene letto con
+ * accesso diretto alle sue parti invece di essere bufferizzato in memoria, e l'upload non va
+ * riletto. Il file temporaneo viene eliminato da close().
+ *
+ * <pre>
+ * try (SpooledUpload upload = SpooledUpload.spool(multipartFile.getInputStream())) {
+ *   AnalysisResult analysis = new ExcelAnalyzer(upload.getFile()).analyze(10);
+ *   ImportResult result = new ExcelImporter(upload.getFile(), mapping, normalization)
+ *       .execute(consumer);
+ * }
+ * </pre>
+ */
+public class SpooledUpload implements AutoCloseable
+{
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final Path path;
+  private final String sha256;
+  private final long size;
+
+  private SpooledUpload(Path path, String sha256, long size)
+  {
+    this.path = path;
+    this.sha256 = sha256;
+    this.size = size;
+  }
+
+  /**
+   * Copia lo stream in un file temporaneo. Lo stream non viene chiuso.
+   *
+   * @param in
+   *          contenuto dell'upload
+   * @return file su disco, da chiudere per eliminarlo
+   */
+  public static SpooledUpload spool(InputStream in) throws Exception
+  {
+    Path path = Files.createTempFile("upload-", ".tmp");
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      byte[] buffer = new byte[BUFFER_SIZE];
+      long size = 0;
+
+      try (OutputStream out = Files.newOutputStream(path)) {
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+          digest.update(buffer, 0, n);
+          out.write(buffer, 0, n);
+          size += n;
+        }
+      }
+      return new SpooledUpload(path, HexFormat.of().formatHex(digest.digest()), size);
+    } catch (Exception e) {
+      Files.deleteIfExists(path);
+      throw e;
+    }
+  }
+
+  public Path getPath()
+  {
+    return path;
+  }
+
+  public File getFile()
+  {
+    return path.toFile();
+  }
+
+  /** Hash SHA-256 del contenuto (esadecimale minuscolo) */
+  public String getSha256()
+  {
+    return sha256;
+  }
+
+  public long getSize()
+  {
+    return size;
+  }
+
+  /** Elimina il file temporaneo */
+  @Override
+  public void close() throws Exception
+  {
+    Files.deleteIfExists(path);
+  }
+}
@@ -0,0 +1,88 @@
+package dev.springtools.util.excel;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Canonicalizza i valori testuali ripetuti delle colonne a bassa cardinalità (città, provincia,
+ * ruolo...): invece di una stringa per cella, tutte le righe condividono la stessa istanza.
+ *
+ * <p>
+ * Ogni colonna ha un dizionario limitato. Quando una colonna supera il numero massimo di valori
+ * distinti viene considerata ad alta cardinalità (nomi, email, note): il dizionario viene
+ * rilasciato e i suoi valori passano invariati. I testi lunghi non vengono mai canonicalizzati.
+ *
+ * <p>
+ * Non è thread-safe: ogni thread di lettura usa la propria istanza.
+ */
+final class ValueInterner
+{
+
+  /** Oltre questa lunghezza un valore è testo libero, non un codice o un nome ripetuto */
+  private static final int MAX_LENGTH = 64;
+
+  private final int maxValues;
+  private final Map<String, Column> columns = new HashMap<>();
+
+  /**
+   * @param maxValues
+   *          valori distinti per colonna oltre i quali la colonna non viene più canonicalizzata
+   */
+  ValueInterner(int maxValues)
+  {
+    this.maxValues = maxValues;
+  }
+
+  /**
+   * Sostituisce sul posto i valori testuali della riga con le istanze canoniche. Le righe non
+   * modificabili (es. restituite da una strategia con Map.of) restano invariate.
+   */
+  void internValues(Map<String, Object> row)
+  {
+    try {
+      for (Map.Entry<String, Object> entry : row.entrySet()) {
+        Object value = entry.getValue();
+        if (value instanceof String) {
+          String canonical = intern(entry.getKey(), (String) value);
+          if (canonical != value) {
+            entry.setValue(canonical);
+          }
+        }
+      }
+    } catch (UnsupportedOperationException e) {
+      // Riga immutabile
+    }
+  }
+
+  String intern(String column, String value)
+  {
+    if (value.length() > MAX_LENGTH) {
+      return value;
+    }
+
+    Column dictionary = columns.get(column);
+    if (dictionary == null) {
+      dictionary = new Column();
+      columns.put(column, dictionary);
+    }
+    if (dictionary.values == null) {
+      return value;
+    }
+
+    String canonical = dictionary.values.putIfAbsent(value, value);
+    if (canonical != null) {
+      return canonical;
+    }
+    if (dictionary.values.size() > maxValues) {
+      // Cardinalità alta: il dizionario costerebbe più di quanto fa risparmiare
+      dictionary.values = null;
+    }
+    return value;
+  }
+
+  private static final class Column
+  {
+    /** Valori canonici, null dopo il superamento del limite */
+    private Map<String, String> values = new HashMap<>();
+  }
+}
@@ -0,0 +1,230 @@
+package dev.springtools.util.excel;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import org.apache.poi.hssf.record.BoundSheetRecord;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.poifs.filesystem.FileMagic;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Accesso ai fogli di una cartella di lavoro per l'importazione multi-foglio.
+ *
+ * <p>
+ * I file XLSX vengono letti in streaming: ogni foglio è un {@link SheetReader} indipendente che
+ * può essere eseguito in parallelo agli altri (stringhe condivise e stili vengono caricati una
+ * sola volta). Anche i file XLS vengono letti in streaming con le API a eventi di POI (vedi {@link
+ * HssfSheetReader}): ogni foglio legge solo i propri record.
+ *
+ * <pre>
+ * try (WorkbookSheets workbook = WorkbookSheets.open(in)) {
+ *   ImportResult result = new ExcelImporter(workbook.select(null), mapping, normalization)
+ *       .execute(consumer);
+ * }
+ * </pre>
+ */
+public class WorkbookSheets implements AutoCloseable
+{
+
+  private final OPCPackage pkg;
+  private final XSSFReader xssf;
+  private final ReadOnlySharedStringsTable sharedStrings;
+  private final StylesTable styles;
+  private final boolean date1904;
+  private final POIFSFileSystem fs;
+  private final List<String> sheetNames = new ArrayList<>();
+
+  /** Record iniziali e fogli di un file XLS */
+  private final HssfSheetReader.Globals globals;
+
+  private WorkbookSheets(OPCPackage pkg) throws Exception
+  {
+    this.pkg = pkg;
+    this.xssf = new XSSFReader(pkg);
+    this.sharedStrings = new ReadOnlySharedStringsTable(pkg);
+    this.styles = xssf.getStylesTable();
+    this.date1904 = readDate1904(xssf);
+    this.fs = null;
+    this.globals = null;
+
+    XSSFReader.SheetIterator it = (XSSFReader.SheetIterator) xssf.getSheetsData();
+    while (it.hasNext()) {
+      it.next().close();
+      sheetNames.add(it.getSheetName());
+    }
+  }
+
+  private WorkbookSheets(POIFSFileSystem fs) throws Exception
+  {
+    this.pkg = null;
+    this.xssf = null;
+    this.sharedStrings = null;
+    this.styles = null;
+    this.date1904 = false;
+    this.fs = fs;
+
+    this.globals = HssfSheetReader.readGlobals(fs);
+    for (BoundSheetRecord sheet : globals.sheets) {
+      sheetNames.add(sheet.getSheetname());
+    }
+  }
+
+  /**
+   * Apre la cartella di lavoro rilevandone il formato (XLSX o XLS).
+   *
+   * @param excel
+   *          contenuto del file
+   * @return accesso ai fogli, da chiudere al termine dell'importazione
+   */
+  public static WorkbookSheets open(InputStream excel) throws Exception
+  {
+    InputStream in = FileMagic.prepareToCheckMagic(excel);
+
+    if (FileMagic.valueOf(in) == FileMagic.OOXML) {
+      OPCPackage pkg = OPCPackage.open(in);
+      try {
+        return new WorkbookSheets(pkg);
+      } catch (Exception e) {
+        pkg.revert();
+        throw e;
+      }
+    }
+
+    return openXls(new POIFSFileSystem(in));
+  }
+
+  /**
+   * Apre la cartella di lavoro da un file su disco in sola lettura: le parti dell'archivio XLSX
+   * vengono lette direttamente dal file, senza copiarlo in memoria.
+   *
+   * @param file
+   *          file XLSX o XLS (vedi {@link SpooledUpload})
+   * @return accesso ai fogli, da chiudere al termine dell'importazione
+   */
+  public static WorkbookSheets open(File file) throws Exception
+  {
+    if (FileMagic.valueOf(file) == FileMagic.OOXML) {
+      OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ);
+      try {
+        return new WorkbookSheets(pkg);
+      } catch (Exception e) {
+        pkg.revert();
+        throw e;
+      }
+    }
+
+    return openXls(new POIFSFileSystem(file, true));
+  }
+
+  private static WorkbookSheets openXls(POIFSFileSystem fs) throws Exception
+  {
+    try {
+      return new WorkbookSheets(fs);
+    } catch (Exception e) {
+      fs.close();
+      throw e;
+    }
+  }
+
+  /** Nomi dei fogli nell'ordine della cartella di lavoro */
+  public List<String> getSheetNames()
+  {
+    return new ArrayList<>(sheetNames);
+  }
+
+  /**
+   * Restituisce i lettori dei fogli richiesti, nell'ordine della cartella di lavoro.
+   *
+   * @param names
+   *          nomi dei fogli da leggere (null o vuoto per tutti)
+   * @return un lettore per foglio
+   * @throws Exception
+   *           se un foglio richiesto non esiste
+   */
+  public List<SheetReader> select(Collection<String> names) throws Exception
+  {
+    Set<String> wanted = new LinkedHashSet<>();
+    if (names == null || names.isEmpty()) {
+      wanted.addAll(sheetNames);
+    } else {
+      for (String name : names) {
+        if (!sheetNames.contains(name)) {
+          throw new Exception("Foglio non trovato: " + name);
+        }
+        wanted.add(name);
+      }
+    }
+
+    List<SheetReader> readers = new ArrayList<>();
+
+    if (fs != null) {
+      for (BoundSheetRecord sheet : globals.sheets) {
+        if (wanted.contains(sheet.getSheetname())) {
+          readers.add(new HssfSheetReader(fs, globals, sheet));
+        }
+      }
+      return readers;
+    }
+
+    XSSFReader.SheetIterator it = (XSSFReader.SheetIterator) xssf.getSheetsData();
+    while (it.hasNext()) {
+      InputStream data = it.next();
+      String name = it.getSheetName();
+      if (wanted.contains(name)) {
+        readers.add(new XlsxSheetReader(name, data, sharedStrings, styles, date1904));
+      } else {
+        data.close();
+      }
+    }
+    return readers;
+  }
+
+  @Override
+  public void close() throws Exception
+  {
+    if (pkg != null) {
+      // Apertura in sola lettura: nessuna modifica da salvare
+      pkg.revert();
+    }
+    if (fs != null) {
+      fs.close();
+    }
+  }
+
+  /** Legge l'attributo date1904 di workbookPr (sistema di date del file) */
+  private static boolean readDate1904(XSSFReader xssf) throws Exception
+  {
+    boolean[] date1904 = {false};
+
+    try (InputStream in = xssf.getWorkbookData()) {
+      XMLReader parser = XMLHelper.newXMLReader();
+      parser.setContentHandler(new DefaultHandler()
+      {
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes)
+        {
+          if ("workbookPr".equals(localName)) {
+            String value = attributes.getValue("date1904");
+            date1904[0] = "1".equals(value) || "true".equals(value);
+          }
+        }
+      });
+      parser.parse(new InputSource(in));
+    }
+    return date1904[0];
+  }
+}
@@ -0,0 +1,251 @@
+package dev.springtools.util.excel;
+
+import java.io.InputStream;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.model.SharedStrings;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Lettore in streaming (SAX) di un foglio XLSX. Non costruisce il modello DOM del foglio: la
+ * memoria usata è indipendente dal numero di righe.
+ *
+ * <p>
+ * I valori hanno gli stessi tipi di {@link ExcelReader} (String, Double, LocalDateTime, Boolean).
+ * Il riconoscimento delle date viene calcolato una volta per stile di cella. Per le celle con
+ * formula viene restituito il valore calcolato memorizzato nel file.
+ */
+final class XlsxSheetReader implements SheetReader
+{
+
+  private final String name;
+  private final InputStream data;
+  private final SharedStrings sharedStrings;
+  private final StylesTable styles;
+  private final boolean date1904;
+
+  /** Cache per indice di stile: 0 = non calcolato, 1 = data, 2 = non data */
+  private byte[] dateStyles = new byte[64];
+
+  XlsxSheetReader(
+      String name, InputStream data, SharedStrings sharedStrings, StylesTable styles, boolean date1904)
+  {
+    this.name = name;
+    this.data = data;
+    this.sharedStrings = sharedStrings;
+    this.styles = styles;
+    this.date1904 = date1904;
+  }
+
+  @Override
+  public String getName()
+  {
+    return name;
+  }
+
+  @Override
+  public void read(RowConsumer consumer) throws Exception
+  {
+    try (InputStream in = data) {
+      XMLReader parser = XMLHelper.newXMLReader();
+      SheetRowAssembler assembler = new SheetRowAssembler(consumer);
+      parser.setContentHandler(new Handler(assembler));
+      parser.parse(new InputSource(in));
+      assembler.finish();
+    } catch (ConsumerException e) {
+      throw e.error;
+    }
+  }
+
+  private boolean isDateStyle(int styleIndex)
+  {
+    if (styleIndex >= dateStyles.length) {
+      byte[] grown = new byte[Math.max(styleIndex + 1, dateStyles.length * 2)];
+      System.arraycopy(dateStyles, 0, grown, 0, dateStyles.length);
+      dateStyles = grown;
+    }
+
+    byte cached = dateStyles[styleIndex];
+    if (cached == 0) {
+      boolean isDate = false;
+      if (styles != null) {
+        // StylesTable è condivisa tra i lettori dei fogli
+        synchronized (styles) {
+          if (styleIndex < styles.getNumCellStyles()) {
+            XSSFCellStyle style = styles.getStyleAt(styleIndex);
+            isDate = DateUtil.isADateFormat(style.getDataFormat(), style.getDataFormatString());
+          }
+        }
+      }
+      cached = isDate ? (byte) 1 : (byte) 2;
+      dateStyles[styleIndex] = cached;
+    }
+    return cached == 1;
+  }
+
+  /** Converte il riferimento di cella (es. "AB12") nell'indice di colonna 0-based */
+  private static int columnOf(String ref)
+  {
+    int column = 0;
+    for (int i = 0; i < ref.length(); i++) {
+      char c = ref.charAt(i);
+      if (c < 'A' || c > 'Z') {
+        break;
+      }
+      column = column * 26 + (c - 'A' + 1);
+    }
+    return column - 1;
+  }
+
+  /** Trasporta le eccezioni del consumer attraverso il parser SAX */
+  private static final class ConsumerException extends SAXException
+  {
+    private static final long serialVersionUID = 1L;
+
+    private final Exception error;
+
+    ConsumerException(Exception error)
+    {
+      super(error);
+      this.error = error;
+    }
+  }
+
+  private final class Handler extends DefaultHandler
+  {
+    private final SheetRowAssembler assembler;
+    private final StringBuilder text = new StringBuilder();
+
+    private boolean collecting;
+    private boolean inInlineString;
+    private int column;
+    private String type;
+    private int style;
+    private String value;
+
+    Handler(SheetRowAssembler assembler)
+    {
+      this.assembler = assembler;
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attributes)
+    {
+      switch (localName) {
+        case "row" :
+          assembler.startRow();
+          column = -1;
+          break;
+
+        case "c" :
+          String ref = attributes.getValue("r");
+          column = ref != null ? columnOf(ref) : column + 1;
+          type = attributes.getValue("t");
+          String s = attributes.getValue("s");
+          style = s != null ? Integer.parseInt(s) : 0;
+          value = null;
+          text.setLength(0);
+          break;
+
+        case "v" :
+          collecting = true;
+          text.setLength(0);
+          break;
+
+        case "is" :
+          inInlineString = true;
+          text.setLength(0);
+          break;
+
+        case "t" :
+          collecting = inInlineString;
+          break;
+
+        default :
+          break;
+      }
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) throws SAXException
+    {
+      switch (localName) {
+        case "v" :
+          value = text.toString();
+          collecting = false;
+          break;
+
+        case "t" :
+          // Le stringhe inline con formattazione sono composte da più nodi t
+          collecting = false;
+          break;
+
+        case "is" :
+          value = text.toString();
+          inInlineString = false;
+          break;
+
+        case "c" :
+          assembler.cell(column, convert());
+          break;
+
+        case "row" :
+          try {
+            assembler.endRow();
+          } catch (Exception e) {
+            throw new ConsumerException(e);
+          }
+          break;
+
+        default :
+          break;
+      }
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length)
+    {
+      if (collecting) {
+        text.append(ch, start, length);
+      }
+    }
+
+    private Object convert()
+    {
+      if (value == null) {
+        return null;
+      }
+
+      if (type == null || "n".equals(type)) {
+        if (value.isEmpty()) {
+          return null;
+        }
+        double number = Double.parseDouble(value);
+        if (isDateStyle(style) && DateUtil.isValidExcelDate(number)) {
+          return DateUtil.getLocalDateTime(number, date1904);
+        }
+        return number;
+      }
+
+      switch (type) {
+        case "s" :
+          return sharedStrings.getItemAt(Integer.parseInt(value)).getString();
+        case "inlineStr" :
+        case "str" :
+        case "d" :
+          return value;
+        case "b" :
+          return "1".equals(value) || "true".equals(value);
+        default :
+          // "e": errore
+          return null;
+      }
+    }
+  }
+}
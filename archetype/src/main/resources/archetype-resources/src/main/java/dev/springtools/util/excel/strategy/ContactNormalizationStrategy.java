@@ -1,19 +1,72 @@
 package dev.springtools.util.excel.strategy;
 
 import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map;
 
 /**
  * Strategia di normalizzazione per contatti CRM. Normalizza telefoni, email, nomi, cognomi secondo
  * le regole del dominio.
+ *
+ * <p>
+ * La normalizzazione dei singoli valori è delegata a {@link ContactNormalizers}, che lavora in
+ * un'unica scansione senza regex. Opzionalmente i telefoni possono essere prodotti in formato
+ * E.164.
  */
 public class ContactNormalizationStrategy implements NormalizationStrategy
 {
 
+  private enum Field
+  {
+    PHONE, EMAIL, NAME
+  }
+
+  /** Campi riconosciuti (chiavi lowercase), risolti una volta per header */
+  private static final Map<String, Field> FIELDS = new HashMap<>();
+
+  static {
+    FIELDS.put("telefono", Field.PHONE);
+    FIELDS.put("phone", Field.PHONE);
+    FIELDS.put("tel", Field.PHONE);
+    FIELDS.put("email", Field.EMAIL);
+    FIELDS.put("mail", Field.EMAIL);
+    FIELDS.put("nome", Field.NAME);
+    FIELDS.put("name", Field.NAME);
+    FIELDS.put("first_name", Field.NAME);
+    FIELDS.put("firstname", Field.NAME);
+    FIELDS.put("cognome", Field.NAME);
+    FIELDS.put("surname", Field.NAME);
+    FIELDS.put("last_name", Field.NAME);
+    FIELDS.put("lastname", Field.NAME);
+  }
+
+  private final boolean e164;
+  private final String defaultCountryCode;
+
+  public ContactNormalizationStrategy()
+  {
+    this(false, null);
+  }
+
+  /**
+   * @param e164
+   *          true per produrre i telefoni in formato E.164
+   * @param defaultCountryCode
+   *          prefisso internazionale senza {@code +} usato per i numeri nazionali (es. "39")
+   */
+  public ContactNormalizationStrategy(boolean e164, String defaultCountryCode)
+  {
+    if (e164 && (defaultCountryCode == null || defaultCountryCode.isEmpty())) {
+      throw new IllegalArgumentException("Prefisso internazionale obbligatorio per il formato E.164");
+    }
+    this.e164 = e164;
+    this.defaultCountryCode = defaultCountryCode;
+  }
+
   @Override
   public Map<String, Object> normalize(Map<String, Object> row)
   {
-    Map<String, Object> normalized = new HashMap<>();
+    Map<String, Object> normalized = new HashMap<>(Math.max(16, row.size() * 4 / 3 + 1));
 
     for (Map.Entry<String, Object> entry : row.entrySet()) {
       String key = entry.getKey();
@@ -25,39 +78,28 @@ public class ContactNormalizationStrategy implements NormalizationStrategy
       }
 
       // Normalizzazione specifica per campo
-      switch (key.toLowerCase()) {
-        case "telefono" :
-        case "phone" :
-        case "tel" :
-          normalized.put(key, normalizePhone(value));
-          break;
-
-        case "email" :
-        case "mail" :
-          normalized.put(key, normalizeEmail(value));
-          break;
+      Field field = fieldOf(key);
+      if (field == null) {
+        // Per altri campi: trim se stringa
+        if (value instanceof String) {
+          normalized.put(key, ContactNormalizers.trim((String) value));
+        } else {
+          normalized.put(key, value);
+        }
+        continue;
+      }
 
-        case "nome" :
-        case "name" :
-        case "first_name" :
-        case "firstname" :
-          normalized.put(key, normalizeName(value));
+      switch (field) {
+        case PHONE :
+          normalized.put(key, normalizePhone(value));
           break;
 
-        case "cognome" :
-        case "surname" :
-        case "last_name" :
-        case "lastname" :
-          normalized.put(key, normalizeName(value));
+        case EMAIL :
+          normalized.put(key, ContactNormalizers.email(value));
           break;
 
         default :
-          // Per altri campi: trim se stringa
-          if (value instanceof String) {
-            normalized.put(key, ((String) value).trim());
-          } else {
-            normalized.put(key, value);
-          }
+          normalized.put(key, ContactNormalizers.name(value));
       }
     }
 
@@ -66,45 +108,23 @@ public class ContactNormalizationStrategy implements NormalizationStrategy
 
   /**
    * Normalizza numero di telefono. - Converte numeri (double/float) in stringhe senza decimali -
-   * Rimuove spazi e caratteri speciali
+   * Rimuove spazi e caratteri speciali - Se richiesto produce il formato E.164
    */
   private String normalizePhone(Object value)
   {
-    String phone;
-
-    if (value instanceof Number) {
-      // Converte numeri in stringhe senza decimali
-      long longValue = ((Number) value).longValue();
-      phone = String.valueOf(longValue);
-    } else {
-      phone = value.toString();
+    if (e164) {
+      return ContactNormalizers.phoneE164(value, defaultCountryCode);
     }
-
-    // Rimuove spazi, trattini, parentesi
-    phone = phone.replaceAll("[\\s\\-\\(\\)\\.]", "");
-
-    // Rimuove prefisso +39 o 0039 per numeri italiani (opzionale)
-    // phone = phone.replaceFirst("^(\\+39|0039)", "");
-
-    return phone.isEmpty() ? null : phone;
+    return ContactNormalizers.phone(value);
   }
 
-  /** Normalizza email: trim e lowercase */
-  private String normalizeEmail(Object value)
+  private static Field fieldOf(String key)
   {
-    String email = value.toString().trim().toLowerCase();
-    return email.isEmpty() ? null : email;
-  }
-
-  /** Normalizza nome/cognome: trim e capitalize */
-  private String normalizeName(Object value)
-  {
-    String name = value.toString().trim();
-    if (name.isEmpty()) {
-      return null;
+    // Le chiavi sono quasi sempre già lowercase: evita la conversione
+    Field field = FIELDS.get(key);
+    if (field == null) {
+      field = FIELDS.get(key.toLowerCase(Locale.ROOT));
     }
-
-    // Capitalize: prima lettera maiuscola, resto minuscolo
-    return name.substring(0, 1).toUpperCase() + name.substring(1).toLowerCase();
+    return field;
   }
 }
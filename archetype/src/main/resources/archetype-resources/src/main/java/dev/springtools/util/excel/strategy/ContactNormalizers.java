@@ -0,0 +1,320 @@
+package dev.springtools.util.excel.strategy;
+
+import java.util.Locale;
+
+/**
+ * Normalizzatori ad alte prestazioni per i campi contatto (telefono, email, nome).
+ *
+ * <p>
+ * Tutti i metodi lavorano con una singola scansione dei caratteri, senza regex, e restituiscono
+ * la stessa istanza di input quando il valore è già normalizzato (nessuna allocazione). Le
+ * conversioni di maiuscole/minuscole hanno un percorso veloce per il testo ASCII; per il testo
+ * non ASCII si ricade sulle conversioni standard di {@link String}.
+ *
+ * <p>
+ * La classe è stateless e thread-safe.
+ */
+public final class ContactNormalizers
+{
+
+  /** Massimo numero di cifre ammesso da E.164 (prefisso internazionale incluso) */
+  private static final int E164_MAX_DIGITS = 15;
+
+  private ContactNormalizers()
+  {
+  }
+
+  // =========================
+  // TELEFONO
+  // =========================
+
+  /**
+   * Normalizza un numero di telefono rimuovendo spazi, trattini, parentesi e punti. I valori
+   * numerici (es. celle Excel lette come double) vengono convertiti senza decimali.
+   *
+   * @param value
+   *          valore della cella
+   * @return telefono ripulito, oppure null se vuoto
+   */
+  public static String phone(Object value)
+  {
+    if (value == null) {
+      return null;
+    }
+    if (value instanceof Number) {
+      return String.valueOf(((Number) value).longValue());
+    }
+    return phone(value.toString());
+  }
+
+  /**
+   * Normalizza un numero di telefono rimuovendo spazi, trattini, parentesi e punti.
+   *
+   * @param phone
+   *          telefono grezzo
+   * @return telefono ripulito (stessa istanza se già pulito), oppure null se vuoto
+   */
+  public static String phone(String phone)
+  {
+    int len = phone.length();
+    int i = 0;
+
+    // Fast path: scorre finché non trova un separatore
+    while (i < len && !isPhoneSeparator(phone.charAt(i))) {
+      i++;
+    }
+    if (i == len) {
+      return len == 0 ? null : phone;
+    }
+
+    char[] out = new char[len];
+    phone.getChars(0, i, out, 0);
+    int n = i;
+    for (i++; i < len; i++) {
+      char c = phone.charAt(i);
+      if (!isPhoneSeparator(c)) {
+        out[n++] = c;
+      }
+    }
+    return n == 0 ? null : new String(out, 0, n);
+  }
+
+  /**
+   * Normalizza un numero di telefono in formato E.164 ({@code +<prefisso><numero>}).
+   *
+   * <p>
+   * Regole: un {@code +} iniziale viene mantenuto, il prefisso {@code 00} viene convertito in
+   * {@code +}, altrimenti viene anteposto il prefisso internazionale di default. Lo zero iniziale
+   * (prefisso di trunk) viene rimosso, tranne per l'Italia (39) dove fa parte del numero. Se il
+   * valore contiene caratteri non numerici o supera le 15 cifre viene restituita la sola forma
+   * ripulita, senza perdita di dati.
+   *
+   * @param value
+   *          valore della cella
+   * @param defaultCountryCode
+   *          prefisso internazionale senza {@code +} (es. "39")
+   * @return telefono E.164, telefono ripulito se non convertibile, oppure null se vuoto
+   */
+  public static String phoneE164(Object value, String defaultCountryCode)
+  {
+    String cleaned = phone(value);
+    if (cleaned == null) {
+      return null;
+    }
+
+    int len = cleaned.length();
+    int start = 0;
+    boolean international = false;
+
+    if (cleaned.charAt(0) == '+') {
+      start = 1;
+      international = true;
+    } else if (len > 2 && cleaned.charAt(0) == '0' && cleaned.charAt(1) == '0') {
+      start = 2;
+      international = true;
+    }
+
+    for (int i = start; i < len; i++) {
+      char c = cleaned.charAt(i);
+      if (c < '0' || c > '9') {
+        return cleaned;
+      }
+    }
+    if (start == len) {
+      return null;
+    }
+
+    if (international) {
+      if (len - start > E164_MAX_DIGITS) {
+        return cleaned;
+      }
+      // Già in formato E.164: nessuna allocazione
+      if (start == 1) {
+        return cleaned;
+      }
+      return "+" + cleaned.substring(start);
+    }
+
+    if (!"39".equals(defaultCountryCode) && cleaned.charAt(0) == '0') {
+      start = 1;
+    }
+    if (defaultCountryCode.length() + len - start > E164_MAX_DIGITS) {
+      return cleaned;
+    }
+
+    StringBuilder sb = new StringBuilder(1 + defaultCountryCode.length() + len - start);
+    sb.append('+').append(defaultCountryCode).append(cleaned, start, len);
+    return sb.toString();
+  }
+
+  private static boolean isPhoneSeparator(char c)
+  {
+    // Equivalente alla classe regex [\s\-\(\)\.]
+    switch (c) {
+      case ' ' :
+      case '\t' :
+      case '\n' :
+      case '\u000B' :
+      case '\f' :
+      case '\r' :
+      case '-' :
+      case '(' :
+      case ')' :
+      case '.' :
+        return true;
+      default :
+        return false;
+    }
+  }
+
+  // =========================
+  // EMAIL
+  // =========================
+
+  /**
+   * Normalizza un indirizzo email: trim e lowercase.
+   *
+   * @param value
+   *          valore della cella
+   * @return email normalizzata (stessa istanza se già normalizzata), oppure null se vuota
+   */
+  public static String email(Object value)
+  {
+    if (value == null) {
+      return null;
+    }
+
+    String email = value.toString();
+    int start = trimStart(email);
+    int end = trimEnd(email, start);
+    if (start == end) {
+      return null;
+    }
+
+    boolean ascii = true;
+    boolean lower = true;
+    for (int i = start; i < end; i++) {
+      char c = email.charAt(i);
+      if (c >= 0x80) {
+        ascii = false;
+        break;
+      }
+      if (c >= 'A' && c <= 'Z') {
+        lower = false;
+      }
+    }
+
+    if (!ascii) {
+      return email.substring(start, end).toLowerCase(Locale.ROOT);
+    }
+    if (lower) {
+      return start == 0 && end == email.length() ? email : email.substring(start, end);
+    }
+
+    char[] out = new char[end - start];
+    for (int i = start; i < end; i++) {
+      char c = email.charAt(i);
+      out[i - start] = c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+    return new String(out);
+  }
+
+  // =========================
+  // NOME / COGNOME
+  // =========================
+
+  /**
+   * Normalizza un nome o cognome: trim, prima lettera maiuscola e resto minuscolo.
+   *
+   * @param value
+   *          valore della cella
+   * @return nome normalizzato (stessa istanza se già normalizzato), oppure null se vuoto
+   */
+  public static String name(Object value)
+  {
+    if (value == null) {
+      return null;
+    }
+
+    String name = value.toString();
+    int start = trimStart(name);
+    int end = trimEnd(name, start);
+    if (start == end) {
+      return null;
+    }
+
+    boolean ascii = true;
+    boolean canonical = !isAsciiLower(name.charAt(start));
+    for (int i = start; i < end; i++) {
+      char c = name.charAt(i);
+      if (c >= 0x80) {
+        ascii = false;
+        break;
+      }
+      if (i > start && c >= 'A' && c <= 'Z') {
+        canonical = false;
+      }
+    }
+
+    if (!ascii) {
+      String trimmed = name.substring(start, end);
+      return trimmed.substring(0, 1).toUpperCase(Locale.ROOT)
+          + trimmed.substring(1).toLowerCase(Locale.ROOT);
+    }
+    if (canonical) {
+      return start == 0 && end == name.length() ? name : name.substring(start, end);
+    }
+
+    char[] out = new char[end - start];
+    char first = name.charAt(start);
+    out[0] = isAsciiLower(first) ? (char) (first - ('a' - 'A')) : first;
+    for (int i = start + 1; i < end; i++) {
+      char c = name.charAt(i);
+      out[i - start] = c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+    return new String(out);
+  }
+
+  // =========================
+  // GENERICI
+  // =========================
+
+  /**
+   * Trim senza allocazioni quando la stringa non ha spazi ai bordi.
+   *
+   * @param value
+   *          stringa da ripulire
+   * @return stringa senza spazi iniziali/finali (stessa istanza se invariata)
+   */
+  public static String trim(String value)
+  {
+    int start = trimStart(value);
+    int end = trimEnd(value, start);
+    return start == 0 && end == value.length() ? value : value.substring(start, end);
+  }
+
+  private static boolean isAsciiLower(char c)
+  {
+    return c >= 'a' && c <= 'z';
+  }
+
+  /** Stessa semantica di String.trim(): sono spazi tutti i caratteri {@code <= ' '} */
+  private static int trimStart(String s)
+  {
+    int i = 0;
+    int len = s.length();
+    while (i < len && s.charAt(i) <= ' ') {
+      i++;
+    }
+    return i;
+  }
+
+  private static int trimEnd(String s, int start)
+  {
+    int end = s.length();
+    while (end > start && s.charAt(end - 1) <= ' ') {
+      end--;
+    }
+    return end;
+  }
+}
@@ -0,0 +1,353 @@
+package dev.springtools.util.excel.strategy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Mapping delle intestazioni tramite dizionario di sinonimi (anche multilingua) con tolleranza
+ * agli errori di battitura.
+ *
+ * <p>
+ * Intestazioni e sinonimi vengono confrontati in forma compatta: minuscole, senza accenti, spazi
+ * e punteggiatura ("Data di nascita", "data_nascita" e "DATA-DI-NASCITA" coincidono). Se non c'è
+ * una corrispondenza esatta, i candidati vengono estratti da un indice di trigrammi costruito al
+ * caricamento e verificati con la distanza di Levenshtein, calcolata solo entro la distanza
+ * massima ammessa. Un'intestazione equidistante da sinonimi di campi diversi non viene mappata.
+ *
+ * <p>
+ * Il risultato è memorizzato per intestazione: il costo della ricerca si paga una volta per
+ * colonna distinta, non per cella. L'istanza è thread-safe e può essere condivisa.
+ *
+ * <pre>
+ * FuzzyMappingStrategy mapping = FuzzyMappingStrategy.fromResource("excel/header-synonyms.properties");
+ * mapping.mapHeader("Telefon Nummer"); // "telefono"
+ * </pre>
+ */
+public class FuzzyMappingStrategy implements MappingStrategy
+{
+
+  /** Dizionario incluso nel progetto (italiano, inglese, francese, tedesco, spagnolo, ...) */
+  public static final String DEFAULT_DICTIONARY = "excel/header-synonyms.properties";
+
+  /** Intestazioni memorizzate oltre le quali la memoria viene svuotata */
+  private static final int MEMO_MAX = 10_000;
+
+  /** Segnaposto per le intestazioni non mappabili (ConcurrentHashMap non ammette null) */
+  private static final String UNMATCHED = new String("");
+
+  /** Sinonimi in forma compatta, nell'ordine dell'indice */
+  private final String[] terms;
+
+  /** Campo logico di ogni sinonimo */
+  private final String[] fields;
+
+  private final Map<String, Integer> exact;
+
+  /** Trigramma (tre caratteri in un long) -> indici dei sinonimi che lo contengono */
+  private final Map<Long, int[]> trigrams;
+
+  private final long loadNanos;
+
+  private final Map<String, String> memo = new ConcurrentHashMap<>();
+
+  private volatile int maxEdits = 2;
+  private volatile boolean keepUnmatched;
+
+  /**
+   * @param synonyms
+   *          campo logico -> sinonimi; il nome del campo vale come sinonimo
+   */
+  public FuzzyMappingStrategy(Map<String, ? extends Collection<String>> synonyms)
+  {
+    this(synonyms, System.nanoTime());
+  }
+
+  private FuzzyMappingStrategy(Map<String, ? extends Collection<String>> synonyms, long started)
+  {
+    Map<String, Integer> exactIndex = new HashMap<>();
+    List<String> termList = new ArrayList<>();
+    List<String> fieldList = new ArrayList<>();
+
+    for (Map.Entry<String, ? extends Collection<String>> entry : synonyms.entrySet()) {
+      String field = entry.getKey();
+      List<String> all = new ArrayList<>(entry.getValue());
+      all.add(0, field);
+
+      for (String synonym : all) {
+        String term = compact(synonym);
+        if (term.isEmpty()) {
+          continue;
+        }
+        Integer previous = exactIndex.get(term);
+        if (previous != null) {
+          if (!fieldList.get(previous).equals(field)) {
+            throw new IllegalArgumentException("Sinonimo '" + synonym + "' assegnato a due campi: "
+                + fieldList.get(previous) + ", " + field);
+          }
+          continue;
+        }
+        exactIndex.put(term, termList.size());
+        termList.add(term);
+        fieldList.add(field);
+      }
+    }
+
+    this.terms = termList.toArray(new String[0]);
+    this.fields = fieldList.toArray(new String[0]);
+    this.exact = exactIndex;
+    this.trigrams = buildIndex(terms);
+    this.loadNanos = System.nanoTime() - started;
+  }
+
+  /**
+   * Carica il dizionario da una risorsa del classpath (file properties UTF-8, "campo = sinonimo,
+   * sinonimo, ...").
+   */
+  public static FuzzyMappingStrategy fromResource(String resource) throws IOException
+  {
+    long started = System.nanoTime();
+    InputStream in = FuzzyMappingStrategy.class.getClassLoader().getResourceAsStream(resource);
+    if (in == null) {
+      throw new IOException("Dizionario non trovato nel classpath: " + resource);
+    }
+    try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+      return new FuzzyMappingStrategy(parse(reader), started);
+    }
+  }
+
+  /** Carica il dizionario da file, nello stesso formato di fromResource */
+  public static FuzzyMappingStrategy load(Path file) throws IOException
+  {
+    long started = System.nanoTime();
+    try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      return new FuzzyMappingStrategy(parse(reader), started);
+    }
+  }
+
+  /**
+   * Numero massimo di errori tollerati (default 2). Le intestazioni corte ne tollerano meno: uno
+   * da 4 caratteri, due da 8; fino a 3 caratteri serve la corrispondenza esatta.
+   */
+  public FuzzyMappingStrategy maxEdits(int maxEdits)
+  {
+    if (maxEdits < 0) {
+      throw new IllegalArgumentException("Numero di errori tollerati non valido: " + maxEdits);
+    }
+    this.maxEdits = maxEdits;
+    memo.clear();
+    return this;
+  }
+
+  /** Restituisce l'intestazione stessa invece di null se non c'è corrispondenza */
+  public FuzzyMappingStrategy keepUnmatched(boolean keepUnmatched)
+  {
+    this.keepUnmatched = keepUnmatched;
+    memo.clear();
+    return this;
+  }
+
+  @Override
+  public String mapHeader(String excelHeader)
+  {
+    if (excelHeader == null) {
+      return null;
+    }
+    String field = memo.get(excelHeader);
+    if (field == null) {
+      field = match(excelHeader);
+      if (field == null && keepUnmatched) {
+        field = excelHeader;
+      }
+      if (memo.size() >= MEMO_MAX) {
+        memo.clear();
+      }
+      memo.put(excelHeader, field != null ? field : UNMATCHED);
+      return field;
+    }
+    return field == UNMATCHED ? null : field;
+  }
+
+  /** Tempo di caricamento del dizionario e costruzione dell'indice */
+  public long getLoadNanos()
+  {
+    return loadNanos;
+  }
+
+  /** Sinonimi distinti indicizzati */
+  public int getTermCount()
+  {
+    return terms.length;
+  }
+
+  /** Ricerca senza memoria: esatta, poi candidati dai trigrammi e distanza limitata */
+  private String match(String header)
+  {
+    String query = compact(header);
+    if (query.isEmpty()) {
+      return null;
+    }
+    Integer hit = exact.get(query);
+    if (hit != null) {
+      return fields[hit];
+    }
+
+    int limit = Math.min(maxEdits, query.length() / 4);
+    if (limit == 0) {
+      return null;
+    }
+
+    // Trigrammi in comune con ogni sinonimo
+    long[] grams = distinctTrigrams(query);
+    int[] shared = new int[terms.length];
+    for (long gram : grams) {
+      int[] postings = trigrams.get(gram);
+      if (postings != null) {
+        for (int term : postings) {
+          shared[term]++;
+        }
+      }
+    }
+
+    int best = limit + 1;
+    String bestField = null;
+    boolean ambiguous = false;
+    for (int i = 0; i < terms.length; i++) {
+      // Ogni errore cambia al più 3 trigrammi: sotto questa soglia la distanza è oltre il limite
+      if (shared[i] == 0 || shared[i] < grams.length - 3 * limit) {
+        continue;
+      }
+      if (Math.abs(terms[i].length() - query.length()) > limit) {
+        continue;
+      }
+      int distance = distance(query, terms[i], Math.min(limit, best));
+      if (distance < best) {
+        best = distance;
+        bestField = fields[i];
+        ambiguous = false;
+      } else if (distance == best && !fields[i].equals(bestField)) {
+        ambiguous = true;
+      }
+    }
+    return ambiguous ? null : bestField;
+  }
+
+  /**
+   * Distanza di Levenshtein calcolata nella sola fascia diagonale larga limit.
+   *
+   * @return distanza, oppure limit + 1 se supera il limite
+   */
+  static int distance(String a, String b, int limit)
+  {
+    int n = a.length();
+    int m = b.length();
+    if (Math.abs(n - m) > limit) {
+      return limit + 1;
+    }
+    int outside = limit + 1;
+    int[] previous = new int[m + 1];
+    int[] current = new int[m + 1];
+    for (int j = 0; j <= m; j++) {
+      previous[j] = j <= limit ? j : outside;
+    }
+
+    for (int i = 1; i <= n; i++) {
+      int from = Math.max(1, i - limit);
+      int to = Math.min(m, i + limit);
+      Arrays.fill(current, outside);
+      current[0] = i <= limit ? i : outside;
+      int rowMin = current[0];
+      char ca = a.charAt(i - 1);
+      for (int j = from; j <= to; j++) {
+        int cost = ca == b.charAt(j - 1) ? 0 : 1;
+        int value = Math.min(previous[j - 1] + cost, Math.min(previous[j], current[j - 1]) + 1);
+        current[j] = Math.min(value, outside);
+        rowMin = Math.min(rowMin, current[j]);
+      }
+      if (rowMin > limit) {
+        return outside;
+      }
+      int[] swap = previous;
+      previous = current;
+      current = swap;
+    }
+    return Math.min(previous[m], outside);
+  }
+
+  /** Forma di confronto: minuscole, senza accenti, solo lettere e cifre */
+  static String compact(String text)
+  {
+    String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+    StringBuilder out = new StringBuilder(decomposed.length());
+    for (int i = 0; i < decomposed.length(); i++) {
+      char c = decomposed.charAt(i);
+      if (c == 'ß') {
+        out.append("ss");
+      } else if (Character.isLetterOrDigit(c)) {
+        out.append(Character.toLowerCase(c));
+      }
+    }
+    return out.toString();
+  }
+
+  private static Map<String, List<String>> parse(Reader reader) throws IOException
+  {
+    Properties properties = new Properties();
+    properties.load(reader);
+
+    Map<String, List<String>> synonyms = new LinkedHashMap<>();
+    for (String field : properties.stringPropertyNames()) {
+      List<String> values = new ArrayList<>();
+      for (String value : properties.getProperty(field).split(",")) {
+        if (!value.isBlank()) {
+          values.add(value.trim());
+        }
+      }
+      synonyms.put(field, values);
+    }
+    return synonyms;
+  }
+
+  private static Map<Long, int[]> buildIndex(String[] terms)
+  {
+    Map<Long, List<Integer>> lists = new HashMap<>();
+    for (int i = 0; i < terms.length; i++) {
+      for (long gram : distinctTrigrams(terms[i])) {
+        lists.computeIfAbsent(gram, key -> new ArrayList<>()).add(i);
+      }
+    }
+
+    // Liste compatte: l'indice resta in memoria per tutta la vita della strategia
+    Map<Long, int[]> index = new HashMap<>(lists.size() * 4 / 3 + 1);
+    for (Map.Entry<Long, List<Integer>> entry : lists.entrySet()) {
+      index.put(entry.getKey(), entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+    }
+    return index;
+  }
+
+  /** Trigrammi distinti del termine, con due caratteri di bordo per parte */
+  private static long[] distinctTrigrams(String term)
+  {
+    String padded = "  " + term + "  ";
+    long[] grams = new long[padded.length() - 2];
+    for (int i = 0; i < grams.length; i++) {
+      grams[i] = ((long) padded.charAt(i) << 32) | ((long) padded.charAt(i + 1) << 16)
+          | padded.charAt(i + 2);
+    }
+    return Arrays.stream(grams).distinct().toArray();
+  }
+}
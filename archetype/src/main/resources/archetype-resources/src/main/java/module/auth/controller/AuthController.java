@@ -5,6 +5,7 @@ import ${package}.module.auth.dto.LoginResponseDto;
 import ${package}.module.auth.dto.SessionDto;
 import ${package}.module.auth.service.AuthService;
 import ${package}.module.auth.service.SessionService;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -32,26 +33,30 @@ public class AuthController {
   }
 
   @PostMapping("/logout")
-  public ResponseEntity<Void> logout(@RequestHeader(value = "Authorization", required = false) String token) {
+  public ResponseEntity<Void> logout(@RequestHeader(value = "Authorization", required = false) String authorization) {
+    String token = AuthFilter.token(authorization);
     if (token != null) {
-      authService.logout(token.replace("Bearer ", ""));
+      authService.logout(token);
     }
     return ResponseEntity.ok().build();
   }
 
+  /** Token già verificato da {@link AuthFilter} */
   @GetMapping("/session")
-  public ResponseEntity<SessionDto> getSession(@RequestHeader(value = "Authorization", required = false) String token) {
-    if (token == null) {
+  public ResponseEntity<SessionDto> getSession(@RequestAttribute(name = AuthFilter.SESSION, required = false) SessionDto session) {
+    if (session == null) {
       return ResponseEntity.status(401).build();
     }
-    return sessionService.getSession(token.replace("Bearer ", ""))
-      .map(ResponseEntity::ok)
-      .orElse(ResponseEntity.status(401).build());
+    return ResponseEntity.ok(session);
   }
 
+  /** Con AUTH_MODE=jwt le sessioni non sono registrate: 501 */
   @GetMapping("/sessions")
-  public List<SessionDto> getActiveSessions() {
-    return sessionService.getActiveSessions();
+  public ResponseEntity<List<SessionDto>> getActiveSessions() {
+    if (sessionService.isStateless()) {
+      return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED).build();
+    }
+    return ResponseEntity.ok(sessionService.getActiveSessions());
   }
 
   @PostMapping("/invalidate/{userId}")
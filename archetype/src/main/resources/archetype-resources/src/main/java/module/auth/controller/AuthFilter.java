@@ -0,0 +1,72 @@
+package ${package}.module.auth.controller;
+
+import ${package}.module.auth.dto.SessionDto;
+import ${package}.module.auth.service.SessionService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * Verifica il token una sola volta per richiesta, prima dei controller.
+ *
+ * <p>
+ * Le richieste /api con header Authorization vengono risolte tramite
+ * {@link SessionService#getSession(String)}: se il token non è valido la risposta è 401 senza
+ * arrivare al controller, altrimenti la sessione è disponibile come attributo {@link #SESSION}
+ * (es. {@code @RequestAttribute(name = AuthFilter.SESSION, required = false)}). Le richieste senza
+ * token passano invariate; login e logout non vengono verificati.
+ */
+@Component
+public class AuthFilter extends OncePerRequestFilter {
+  /** Attributo della richiesta con la {@link SessionDto} del token */
+  public static final String SESSION = "auth.session";
+
+  private static final String BEARER = "Bearer ";
+
+  private final SessionService sessionService;
+
+  public AuthFilter(SessionService sessionService) {
+    this.sessionService = sessionService;
+  }
+
+  /** Token dall'header Authorization, con o senza prefisso Bearer; null se assente */
+  public static String token(String authorization) {
+    if (authorization == null) {
+      return null;
+    }
+    String token = authorization.regionMatches(true, 0, BEARER, 0, BEARER.length())
+        ? authorization.substring(BEARER.length())
+        : authorization;
+    token = token.trim();
+    return token.isEmpty() ? null : token;
+  }
+
+  @Override
+  protected boolean shouldNotFilter(HttpServletRequest request) {
+    String path = request.getRequestURI().substring(request.getContextPath().length());
+    return !path.startsWith("/api/")
+        || path.equals("/api/auth/login")
+        || path.equals("/api/auth/logout");
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+      throws ServletException, IOException {
+    String token = token(request.getHeader("Authorization"));
+    if (token != null) {
+      Optional<SessionDto> session = sessionService.getSession(token);
+      if (session.isEmpty() || !session.get().attiva) {
+        response.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+        return;
+      }
+      request.setAttribute(SESSION, session.get());
+    }
+    chain.doFilter(request, response);
+  }
+}
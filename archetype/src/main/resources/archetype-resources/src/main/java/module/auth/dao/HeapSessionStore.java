@@ -0,0 +1,459 @@
+package ${package}.module.auth.dao;
+
+import ${package}.module.auth.dto.SessionDto;
+import ${package}.module.auth.dto.SessionStatsDto;
+import dev.springtools.util.Env;
+import dev.springtools.util.TimingWheel;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Sessioni in una mappa sullo heap, eventualmente come near cache di un {@link SessionDbStore}.
+ *
+ * <p>
+ * Le scadenze sono gestite da una {@link TimingWheel} avanzata ogni secondo da un thread dedicato.
+ * La lettura di una sessione rinnova la scadenza per inattività scrivendo solo l'istante
+ * dell'ultimo accesso (al più una volta per tick): il timer non viene spostato, ma alla sua
+ * scadenza viene riprogrammato se la sessione è stata usata nel frattempo. Una sessione scaduta
+ * e non ancora rimossa non viene mai restituita.
+ *
+ * <p>
+ * Con il database la lettura resta in memoria e solo un token assente viene cercato nel database;
+ * le scritture sono accodate e svuotate da un secondo thread, che legge anche le revoche degli
+ * altri nodi e periodicamente elimina le righe scadute.
+ */
+final class HeapSessionStore implements SessionStore {
+  private static final long TICK_MILLIS = 1000;
+  private static final long SWEEP_MILLIS = 60_000;
+
+  private final Map<String, Entry> sessions = new ConcurrentHashMap<>();
+  private final UserSessionIndex byUser = new UserSessionIndex();
+
+  private final long idleMillis;
+  private final long absoluteMillis;
+  private final TimingWheel<Entry> wheel;
+  private final ScheduledExecutorService ticker;
+
+  private final SessionDbStore store;
+  private final ScheduledExecutorService storeWorker;
+  private final long touchMillis;
+
+  /** Differenza tra l'orologio epoch (database) e quello monotono (scadenze) */
+  private final long clockOffset = System.currentTimeMillis() - now();
+
+  private final LongAdder created = new LongAdder();
+  private final LongAdder removed = new LongAdder();
+  private final LongAdder idleExpired = new LongAdder();
+  private final LongAdder absoluteExpired = new LongAdder();
+  private final LongAdder storeLoads = new LongAdder();
+  private final LongAdder storeErrors = new LongAdder();
+  private final LongAdder remoteRevoked = new LongAdder();
+
+  private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+  private final List<Consumer<SessionDbStore.Revocation>> revocationListeners = new CopyOnWriteArrayList<>();
+
+  /**
+   * @param store
+   *          persistenza su database, null per le sole sessioni in memoria
+   */
+  HeapSessionStore(long idleMillis, long absoluteMillis, SessionDbStore store) {
+    if (idleMillis <= 0 || absoluteMillis <= 0) {
+      throw new IllegalArgumentException("Le durate delle sessioni devono essere positive");
+    }
+    this.idleMillis = idleMillis;
+    this.absoluteMillis = absoluteMillis;
+    this.wheel = new TimingWheel<>(TICK_MILLIS, now());
+    this.touchMillis = Math.max(TICK_MILLIS,
+        Math.min(TimeUnit.SECONDS.toMillis(Env.getInt("SESSION_TOUCH_SECONDS", 60)), idleMillis / 4));
+    this.ticker = Executors.newSingleThreadScheduledExecutor(task -> {
+      Thread thread = new Thread(task, "session-expiry");
+      thread.setDaemon(true);
+      return thread;
+    });
+    ticker.scheduleAtFixedRate(this::expire, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+
+    this.store = store;
+    if (store != null) {
+      // Thread separato: un database lento non ritarda le scadenze
+      this.storeWorker = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "session-store");
+        thread.setDaemon(true);
+        return thread;
+      });
+      long flushMillis = Env.getLong("SESSION_FLUSH_MILLIS", 100L);
+      long pollMillis = Env.getLong("SESSION_POLL_MILLIS", 2000L);
+      storeWorker.scheduleWithFixedDelay(this::flush, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+      storeWorker.scheduleWithFixedDelay(this::poll, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+      storeWorker.scheduleWithFixedDelay(this::sweep, SWEEP_MILLIS, SWEEP_MILLIS, TimeUnit.MILLISECONDS);
+    } else {
+      this.storeWorker = null;
+    }
+  }
+
+  @Override
+  public int writeSnapshot(SessionSnapshot.Writer writer) throws IOException {
+    long now = now();
+    int written = 0;
+    for (Entry entry : sessions.values()) {
+      UUID token = SessionSnapshot.parse(entry.dto.token);
+      if (token != null && now < entry.deadline()) {
+        writer.add(token.getMostSignificantBits(), token.getLeastSignificantBits(), entry.dto.userId,
+            wall(entry.createdAt), wall(entry.lastAccess), entry.dto.username, entry.dto.ruolo);
+        written++;
+      }
+    }
+    return written;
+  }
+
+  /** createdAt viene ricostruito dall'istante di creazione */
+  @Override
+  public int restore(Path file) throws IOException {
+    long now = now();
+    int[] count = new int[1];
+    SessionSnapshot.read(file, (hi, lo, userId, createdMs, lastAccessMs, username, role) -> {
+      SessionDto dto = new SessionDto();
+      dto.token = new UUID(hi, lo).toString();
+      dto.userId = userId;
+      dto.username = username;
+      dto.ruolo = role;
+      dto.attiva = true;
+      dto.createdAt = OffHeapSessionDao.formatCreated(createdMs);
+
+      Entry entry = new Entry(dto, createdMs - clockOffset, lastAccessMs - clockOffset);
+      if (now < entry.deadline() && sessions.putIfAbsent(dto.token, entry) == null) {
+        byUser.add(userId, dto.token);
+        entry.timer = wheel.schedule(entry, entry.deadline());
+        count[0]++;
+      }
+    });
+    return count[0];
+  }
+
+  @Override
+  public void salva(SessionDto dto) {
+    long now = now();
+    Entry entry = new Entry(dto, now, now);
+    Entry previous = sessions.put(dto.token, entry);
+    if (previous != null) {
+      unlink(previous);
+    }
+    byUser.add(dto.userId, dto.token);
+    entry.timer = wheel.schedule(entry, entry.deadline());
+    if (store != null) {
+      store.create(dto, wall(now), wall(now));
+    }
+    created.increment();
+    changed(dto.token);
+  }
+
+  @Override
+  public Optional<SessionDto> find(String token) throws Exception {
+    long now = now();
+    Entry entry = sessions.get(token);
+    if (entry == null) {
+      entry = load(token, now);
+      if (entry == null) {
+        return Optional.empty();
+      }
+    }
+    if (now >= entry.deadline()) {
+      evict(entry, now);
+      return Optional.empty();
+    }
+    // Scrive solo se è passato almeno un tick: letture concorrenti non si contendono la riga di cache
+    if (now - entry.lastAccess >= TICK_MILLIS) {
+      entry.lastAccess = now;
+      if (store != null && now - entry.persistedAccess >= touchMillis) {
+        entry.persistedAccess = now;
+        store.touch(token, wall(now));
+      }
+    }
+    return Optional.of(entry.dto);
+  }
+
+  @Override
+  public boolean isDefinitiveMiss(String token) {
+    return store == null || SessionSnapshot.parse(token) == null || store.isRevoked(token);
+  }
+
+  @Override
+  public void rimuovi(String token) {
+    Entry entry = sessions.get(token);
+    if (store != null) {
+      // Anche se la sessione non è in questo nodo; prima di toglierla dalla cache, per non rileggerla
+      store.revoke(token, entry != null ? entry.dto.userId : null, wall(now()));
+    }
+    entry = sessions.remove(token);
+    if (entry != null) {
+      unlink(entry);
+      removed.increment();
+    }
+    // Anche se la sessione non era in memoria: una cache potrebbe averla letta dal database
+    changed(token);
+  }
+
+  @Override
+  public List<SessionDto> findByUser(Long userId) {
+    List<SessionDto> result = new ArrayList<>();
+    long now = now();
+    for (String token : byUser.tokens(userId)) {
+      Entry entry = sessions.get(token);
+      if (entry != null && now < entry.deadline()) {
+        result.add(entry.dto);
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public List<SessionDto> findAllActive() {
+    List<SessionDto> active = new ArrayList<>();
+    long now = now();
+    for (Entry entry : sessions.values()) {
+      if (entry.dto.attiva && now < entry.deadline()) {
+        active.add(entry.dto);
+      }
+    }
+    return active;
+  }
+
+  @Override
+  public void invalidaByUser(Long userId) {
+    if (store != null) {
+      // Anche le sessioni dell'utente aperte su altri nodi
+      store.revokeUser(userId, wall(now()));
+    }
+    // I login concorrenti finiscono nell'invalidazione oppure in un nuovo indice, mai a metà
+    byUser.invalidate(userId, token -> {
+      Entry entry = sessions.remove(token);
+      if (entry != null) {
+        entry.dto.attiva = false;
+        wheel.cancel(entry.timer);
+        removed.increment();
+      }
+      changed(token);
+    });
+  }
+
+  @Override
+  public void addListener(Consumer<String> listener) {
+    listeners.add(listener);
+  }
+
+  @Override
+  public void addRevocationListener(Consumer<SessionDbStore.Revocation> listener) {
+    revocationListeners.add(listener);
+  }
+
+  @Override
+  public SessionStatsDto getStats() {
+    SessionStatsDto stats = new SessionStatsDto();
+    stats.liveSessions = sessions.size();
+    stats.liveUsers = byUser.size();
+    stats.created = created.sum();
+    stats.removed = removed.sum();
+    stats.idleExpired = idleExpired.sum();
+    stats.absoluteExpired = absoluteExpired.sum();
+    stats.pendingTimers = wheel.size();
+    if (store != null) {
+      stats.storeLoads = storeLoads.sum();
+      stats.storePendingWrites = store.getPending();
+      stats.storeWritten = store.getWritten();
+      stats.storeDropped = store.getDropped();
+      stats.storeErrors = storeErrors.sum();
+      stats.remoteRevoked = remoteRevoked.sum();
+    }
+    return stats;
+  }
+
+  @Override
+  public void close() {
+    ticker.shutdownNow();
+    if (store != null) {
+      storeWorker.shutdown();
+      try {
+        storeWorker.awaitTermination(5, TimeUnit.SECONDS);
+        while (store.flush() > 0) {
+          // fino a coda vuota
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (Exception e) {
+        storeErrors.increment();
+      }
+    }
+  }
+
+  /** Avanza la ruota: rimuove le sessioni scadute e riprogramma quelle usate nel frattempo */
+  private void expire() {
+    long now = now();
+    wheel.advance(now, entry -> {
+      if (sessions.get(entry.dto.token) != entry) {
+        return;
+      }
+      long deadline = entry.deadline();
+      if (now >= deadline) {
+        evict(entry, now);
+      } else {
+        entry.timer = wheel.schedule(entry, deadline);
+      }
+    });
+  }
+
+  private void evict(Entry entry, long now) {
+    if (!drop(entry)) {
+      return;
+    }
+    if (now >= entry.createdAt + absoluteMillis) {
+      absoluteExpired.increment();
+    } else {
+      idleExpired.increment();
+    }
+  }
+
+  /** Toglie dalla cache locale senza scrivere nel database */
+  private boolean drop(Entry entry) {
+    if (!sessions.remove(entry.dto.token, entry)) {
+      return false;
+    }
+    entry.dto.attiva = false;
+    unlink(entry);
+    changed(entry.dto.token);
+    return true;
+  }
+
+  /** Toglie la sessione dall'indice per utente e annulla il timer */
+  private void unlink(Entry entry) {
+    wheel.cancel(entry.timer);
+    byUser.remove(entry.dto.userId, entry.dto.token);
+  }
+
+  /** Cache miss: cerca la sessione nel database (creata da un altro nodo o prima di un riavvio) */
+  private Entry load(String token, long now) throws Exception {
+    if (store == null) {
+      return null;
+    }
+    SessionDbStore.Row row;
+    try {
+      row = store.load(token);
+    } catch (Exception e) {
+      storeErrors.increment();
+      throw e;
+    }
+    if (row == null) {
+      return null;
+    }
+
+    Entry entry = new Entry(row.dto, row.createdMs - clockOffset, row.lastAccessMs - clockOffset);
+    if (now >= entry.deadline()) {
+      return null;
+    }
+    Entry current = sessions.putIfAbsent(token, entry);
+    if (current != null) {
+      return current;
+    }
+    byUser.add(entry.dto.userId, token);
+    entry.timer = wheel.schedule(entry, entry.deadline());
+    storeLoads.increment();
+
+    // Revoca arrivata durante la lettura
+    if (store.isRevoked(token, entry.dto.userId, row.createdMs)) {
+      drop(entry);
+      return null;
+    }
+    return entry;
+  }
+
+  private void changed(String token) {
+    for (Consumer<String> listener : listeners) {
+      listener.accept(token);
+    }
+  }
+
+  private void flush() {
+    try {
+      while (store.flush() > 0 && store.getPending() > 0) {
+        // svuota gli arretrati senza attendere il giro successivo
+      }
+    } catch (Exception e) {
+      storeErrors.increment();
+    }
+  }
+
+  /** Applica alle sessioni in cache le revoche degli altri nodi */
+  private void poll() {
+    List<SessionDbStore.Revocation> revocations;
+    try {
+      revocations = store.pollRevocations();
+    } catch (Exception e) {
+      storeErrors.increment();
+      return;
+    }
+    for (SessionDbStore.Revocation revocation : revocations) {
+      if (revocation.token != null) {
+        Entry entry = sessions.get(revocation.token);
+        if (entry != null && drop(entry)) {
+          remoteRevoked.increment();
+        }
+      } else if (revocation.userId != null) {
+        for (String token : byUser.tokens(revocation.userId)) {
+          Entry entry = sessions.get(token);
+          if (entry != null && wall(entry.createdAt) <= revocation.changedMs && drop(entry)) {
+            remoteRevoked.increment();
+          }
+        }
+      }
+      for (Consumer<SessionDbStore.Revocation> listener : revocationListeners) {
+        listener.accept(revocation);
+      }
+    }
+  }
+
+  private void sweep() {
+    long now = System.currentTimeMillis();
+    try {
+      // Margine di un rinnovo: gli accessi registrati dagli altri nodi arrivano in differita
+      store.sweep(now - idleMillis - touchMillis, now - absoluteMillis);
+    } catch (Exception e) {
+      storeErrors.increment();
+    }
+  }
+
+  private long wall(long monotonic) {
+    return monotonic + clockOffset;
+  }
+
+  private static long now() {
+    return System.nanoTime() / 1_000_000;
+  }
+
+  private final class Entry {
+    final SessionDto dto;
+    final long createdAt;
+    volatile long lastAccess;
+    /** Ultimo accesso accodato per il database */
+    volatile long persistedAccess;
+    volatile TimingWheel.Timer<Entry> timer;
+
+    Entry(SessionDto dto, long createdAt, long lastAccess) {
+      this.dto = dto;
+      this.createdAt = createdAt;
+      this.lastAccess = lastAccess;
+      this.persistedAccess = lastAccess;
+    }
+
+    /** Prima tra la scadenza per inattività e quella assoluta */
+    long deadline() {
+      return Math.min(lastAccess + idleMillis, createdAt + absoluteMillis);
+    }
+  }
+}
@@ -0,0 +1,821 @@
+package ${package}.module.auth.dao;
+
+import ${package}.module.auth.dto.SessionDto;
+import ${package}.module.auth.dto.SessionStatsDto;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+/**
+ * Sessioni in memoria fuori dallo heap, per milioni di sessioni senza pause di GC proporzionali.
+ *
+ * <p>
+ * Ogni sessione è un record da 64 byte in blocchi di ByteBuffer diretti: token UUID come chiave
+ * binaria a 128 bit, utente, creazione e ultimo accesso in millisecondi epoch, username e ruolo
+ * come indici di dizionario. Sullo heap restano solo array primitivi (indice dei token e indice
+ * degli utenti a indirizzamento aperto, lista dei record liberi) e i dizionari, il cui costo per
+ * il GC non dipende dal numero di sessioni. Le sessioni di un utente sono collegate tra loro nei
+ * record stessi.
+ *
+ * <p>
+ * Le letture sono ottimistiche (StampedLock): senza scritture concorrenti non scrivono nulla di
+ * condiviso. Creazioni e rimozioni prendono il lock in scrittura; l'invalidazione per utente è
+ * quindi atomica rispetto ai login. La scadenza è verificata ad ogni lettura e un thread scorre i
+ * record a blocchi, completando un giro ogni SWEEP_ROUND_MILLIS, per liberare quelli scaduti.
+ *
+ * <p>
+ * {@link SessionStore} usato da {@link SessionDao} con SESSION_BACKEND=offheap. Sono ammessi solo
+ * token UUID; createdAt viene ricostruito dai millisecondi (ISO, fuso del sistema).
+ */
+public class OffHeapSessionDao implements SessionStore {
+  private static final int RECORD_BYTES = 64;
+  private static final int CHUNK_BITS = 16;
+  private static final int CHUNK_RECORDS = 1 << CHUNK_BITS;
+
+  private static final int TOKEN_HI = 0;
+  private static final int TOKEN_LO = 8;
+  private static final int USER_ID = 16;
+  private static final int CREATED = 24;
+  private static final int LAST_ACCESS = 32;
+  private static final int USERNAME = 40;
+  private static final int ROLE = 44;
+  private static final int NEXT = 48;
+  private static final int PREV = 52;
+  private static final int USED = 56;
+
+  private static final long TICK_MILLIS = 1000;
+  private static final long SWEEP_ROUND_MILLIS = 30_000;
+
+  /** Accesso atomico a un long allineato di un buffer diretto (ultimo accesso) */
+  private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+  private static final ZoneRules ZONE = ZoneId.systemDefault().getRules();
+
+  private final long idleMillis;
+  private final long absoluteMillis;
+  private final StampedLock lock = new StampedLock();
+
+  private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+  private int highWater;
+  private int[] free = new int[1024];
+  private int freeCount;
+
+  /** Token -> record + 1 (0 = vuoto), linear probing */
+  private int[] tokenTable;
+  private int size;
+
+  /** Utente -> primo record + 1 (0 = vuoto), linear probing */
+  private long[] userKeys;
+  private int[] userHeads;
+  private int users;
+
+  private final Dictionary usernames = new Dictionary();
+  private final Dictionary roles = new Dictionary();
+
+  private final ScheduledExecutorService sweeper;
+  private int sweepCursor;
+
+  private final LongAdder created = new LongAdder();
+  private final LongAdder removed = new LongAdder();
+  private final LongAdder idleExpired = new LongAdder();
+  private final LongAdder absoluteExpired = new LongAdder();
+
+  private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+
+  /**
+   * @param expectedSessions
+   *          dimensione iniziale degli indici (crescono se necessario)
+   */
+  public OffHeapSessionDao(long idleMillis, long absoluteMillis, int expectedSessions) {
+    if (idleMillis <= 0 || absoluteMillis <= 0) {
+      throw new IllegalArgumentException("Le durate delle sessioni devono essere positive");
+    }
+    this.idleMillis = idleMillis;
+    this.absoluteMillis = absoluteMillis;
+    int capacity = tableSize(Math.max(expectedSessions, 1024));
+    this.tokenTable = new int[capacity];
+    this.userKeys = new long[capacity];
+    this.userHeads = new int[capacity];
+    this.sweeper = Executors.newSingleThreadScheduledExecutor(task -> {
+      Thread thread = new Thread(task, "session-sweep");
+      thread.setDaemon(true);
+      return thread;
+    });
+    sweeper.scheduleWithFixedDelay(this::sweep, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public void salva(SessionDto dto) {
+    UUID token = UUID.fromString(dto.token);
+    long now = System.currentTimeMillis();
+    long stamp = lock.writeLock();
+    try {
+      insert(token.getMostSignificantBits(), token.getLeastSignificantBits(), dto.userId, now, now,
+          usernames.encode(dto.username), roles.encode(dto.ruolo));
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+    created.increment();
+    changed(dto.token);
+  }
+
+  @Override
+  public Optional<SessionDto> find(String token) {
+    UUID uuid = SessionSnapshot.parse(token);
+    if (uuid == null) {
+      return Optional.empty();
+    }
+    long hi = uuid.getMostSignificantBits();
+    long lo = uuid.getLeastSignificantBits();
+
+    long stamp = lock.tryOptimisticRead();
+    View view;
+    try {
+      view = read(hi, lo, token);
+    } catch (RuntimeException e) {
+      // Record modificato durante la lettura ottimistica: errore solo se lo stamp è ancora valido
+      if (lock.validate(stamp)) {
+        throw e;
+      }
+      view = null;
+    }
+    if (!lock.validate(stamp)) {
+      stamp = lock.readLock();
+      try {
+        view = read(hi, lo, token);
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+    if (view == null) {
+      return Optional.empty();
+    }
+
+    long now = System.currentTimeMillis();
+    if (now >= deadline(view.createdMs, view.lastAccessMs)) {
+      expire(hi, lo, now);
+      return Optional.empty();
+    }
+    // Al più una scrittura per tick, sotto lock in lettura: il record non può essere riusato
+    if (now - view.lastAccessMs >= TICK_MILLIS) {
+      stamp = lock.readLock();
+      try {
+        int record = findToken(hi, lo);
+        if (record >= 0) {
+          LONGS.setOpaque(chunks[record >>> CHUNK_BITS], offset(record) + LAST_ACCESS, now);
+        }
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+    return Optional.of(view.dto);
+  }
+
+  @Override
+  public void rimuovi(String token) {
+    UUID uuid = SessionSnapshot.parse(token);
+    if (uuid == null) {
+      return;
+    }
+    long stamp = lock.writeLock();
+    try {
+      int record = findToken(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+      if (record < 0) {
+        return;
+      }
+      delete(record);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+    removed.increment();
+    changed(token);
+  }
+
+  @Override
+  public List<SessionDto> findByUser(Long userId) {
+    List<SessionDto> result = new ArrayList<>();
+    long now = System.currentTimeMillis();
+    long stamp = lock.readLock();
+    try {
+      int slot = findUser(userId);
+      int record = slot >= 0 ? userHeads[slot] - 1 : -1;
+      while (record >= 0) {
+        View view = view(record);
+        if (now < deadline(view.createdMs, view.lastAccessMs)) {
+          result.add(view.dto);
+        }
+        record = chunks[record >>> CHUNK_BITS].getInt(offset(record) + NEXT);
+      }
+    } finally {
+      lock.unlockRead(stamp);
+    }
+    return result;
+  }
+
+  @Override
+  public List<SessionDto> findAllActive() {
+    List<SessionDto> active = new ArrayList<>();
+    long now = System.currentTimeMillis();
+    long stamp = lock.readLock();
+    try {
+      for (int record = 0; record < highWater; record++) {
+        if (chunks[record >>> CHUNK_BITS].getInt(offset(record) + USED) == 1) {
+          View view = view(record);
+          if (now < deadline(view.createdMs, view.lastAccessMs)) {
+            active.add(view.dto);
+          }
+        }
+      }
+    } finally {
+      lock.unlockRead(stamp);
+    }
+    return active;
+  }
+
+  @Override
+  public void invalidaByUser(Long userId) {
+    long[] tokens = new long[16];
+    int count = 0;
+    long stamp = lock.writeLock();
+    try {
+      int slot = findUser(userId);
+      while (slot >= 0) {
+        int record = userHeads[slot] - 1;
+        ByteBuffer chunk = chunks[record >>> CHUNK_BITS];
+        if (count * 2 == tokens.length) {
+          tokens = Arrays.copyOf(tokens, tokens.length * 2);
+        }
+        tokens[count * 2] = chunk.getLong(offset(record) + TOKEN_HI);
+        tokens[count * 2 + 1] = chunk.getLong(offset(record) + TOKEN_LO);
+        delete(record);
+        count++;
+        slot = findUser(userId);
+      }
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+    removed.add(count);
+    for (int i = 0; i < count; i++) {
+      changed(tokens[i * 2], tokens[i * 2 + 1]);
+    }
+  }
+
+  @Override
+  public void addListener(Consumer<String> listener) {
+    listeners.add(listener);
+  }
+
+  /** Solo token UUID e nessun database: un token assente non può comparire da altri nodi */
+  @Override
+  public boolean isDefinitiveMiss(String token) {
+    return true;
+  }
+
+  /** Nessun database: non ci sono revoche di altri nodi */
+  @Override
+  public void addRevocationListener(Consumer<SessionDbStore.Revocation> listener) {
+  }
+
+  @Override
+  public SessionStatsDto getStats() {
+    SessionStatsDto stats = new SessionStatsDto();
+    long stamp = lock.readLock();
+    try {
+      stats.liveSessions = size;
+      stats.liveUsers = users;
+      stats.offHeapBytes = (long) chunks.length * CHUNK_RECORDS * RECORD_BYTES;
+    } finally {
+      lock.unlockRead(stamp);
+    }
+    stats.created = created.sum();
+    stats.removed = removed.sum();
+    stats.idleExpired = idleExpired.sum();
+    stats.absoluteExpired = absoluteExpired.sum();
+    return stats;
+  }
+
+  /**
+   * Scrive le sessioni non scadute nello snapshot. Il lock in lettura è preso un blocco di record
+   * alla volta: i login non restano fermi per tutta la scrittura.
+   *
+   * @return sessioni scritte
+   */
+  @Override
+  public int writeSnapshot(SessionSnapshot.Writer writer) throws IOException {
+    long now = System.currentTimeMillis();
+    int written = 0;
+    for (int from = 0; ; from += CHUNK_RECORDS) {
+      long stamp = lock.readLock();
+      try {
+        if (from >= highWater) {
+          return written;
+        }
+        ByteBuffer chunk = chunks[from >>> CHUNK_BITS];
+        int to = Math.min(highWater, from + CHUNK_RECORDS);
+        for (int record = from; record < to; record++) {
+          int base = offset(record);
+          long createdMs = chunk.getLong(base + CREATED);
+          long lastAccessMs = (long) LONGS.getOpaque(chunk, base + LAST_ACCESS);
+          if (chunk.getInt(base + USED) == 1 && now < deadline(createdMs, lastAccessMs)) {
+            writer.add(chunk.getLong(base + TOKEN_HI), chunk.getLong(base + TOKEN_LO), chunk.getLong(base + USER_ID),
+                createdMs, lastAccessMs,
+                usernames.decode(chunk.getInt(base + USERNAME)), roles.decode(chunk.getInt(base + ROLE)));
+            written++;
+          }
+        }
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+  }
+
+  /**
+   * Carica uno snapshot, scartando le sessioni nel frattempo scadute.
+   *
+   * @return sessioni caricate
+   */
+  @Override
+  public int restore(Path file) throws IOException {
+    long now = System.currentTimeMillis();
+    int[] restored = new int[1];
+    long stamp = lock.writeLock();
+    try {
+      SessionSnapshot.read(file, (hi, lo, userId, createdMs, lastAccessMs, username, role) -> {
+        if (now < deadline(createdMs, lastAccessMs)) {
+          insert(hi, lo, userId, createdMs, lastAccessMs, usernames.encode(username), roles.encode(role));
+          restored[0]++;
+        }
+      });
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+    return restored[0];
+  }
+
+  /** Ferma il thread di pulizia; la memoria dei buffer viene liberata con l'oggetto */
+  @Override
+  public void close() {
+    sweeper.shutdownNow();
+  }
+
+  /** Rimuove la sessione se è ancora quella letta ed è scaduta */
+  private void expire(long hi, long lo, long now) {
+    long stamp = lock.writeLock();
+    try {
+      int record = findToken(hi, lo);
+      if (record < 0) {
+        return;
+      }
+      ByteBuffer chunk = chunks[record >>> CHUNK_BITS];
+      int base = offset(record);
+      long createdMs = chunk.getLong(base + CREATED);
+      if (now < deadline(createdMs, (long) LONGS.getOpaque(chunk, base + LAST_ACCESS))) {
+        return;
+      }
+      delete(record);
+      if (now >= createdMs + absoluteMillis) {
+        absoluteExpired.increment();
+      } else {
+        idleExpired.increment();
+      }
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+    changed(hi, lo);
+  }
+
+  /** Scorre un blocco di record in lettura e rimuove quelli scaduti */
+  private void sweep() {
+    long now = System.currentTimeMillis();
+    long[] expired = new long[256];
+    int found = 0;
+
+    long stamp = lock.readLock();
+    try {
+      int batch = (int) Math.max(4096, (long) highWater * TICK_MILLIS / SWEEP_ROUND_MILLIS);
+      int from = sweepCursor < highWater ? sweepCursor : 0;
+      int to = (int) Math.min(highWater, (long) from + batch);
+      for (int record = from; record < to; record++) {
+        ByteBuffer chunk = chunks[record >>> CHUNK_BITS];
+        int base = offset(record);
+        if (chunk.getInt(base + USED) == 1
+            && now >= deadline(chunk.getLong(base + CREATED), (long) LONGS.getOpaque(chunk, base + LAST_ACCESS))) {
+          if (found * 2 == expired.length) {
+            expired = Arrays.copyOf(expired, expired.length * 2);
+          }
+          expired[found * 2] = chunk.getLong(base + TOKEN_HI);
+          expired[found * 2 + 1] = chunk.getLong(base + TOKEN_LO);
+          found++;
+        }
+      }
+      sweepCursor = to;
+    } finally {
+      lock.unlockRead(stamp);
+    }
+
+    for (int i = 0; i < found; i++) {
+      expire(expired[i * 2], expired[i * 2 + 1], now);
+    }
+  }
+
+  /** Fuori dal lock: un listener può rileggere le sessioni */
+  private void changed(String token) {
+    for (Consumer<String> listener : listeners) {
+      listener.accept(token);
+    }
+  }
+
+  private void changed(long hi, long lo) {
+    if (!listeners.isEmpty()) {
+      changed(new UUID(hi, lo).toString());
+    }
+  }
+
+  private long deadline(long createdMs, long lastAccessMs) {
+    return Math.min(lastAccessMs + idleMillis, createdMs + absoluteMillis);
+  }
+
+  // =========================
+  // RECORD
+  // =========================
+
+  /** Lettura senza lock: il chiamante convalida lo stamp, quindi ogni indice va controllato */
+  private View read(long hi, long lo, String token) {
+    int record = findToken(hi, lo);
+    if (record < 0) {
+      return null;
+    }
+    ByteBuffer[] current = chunks;
+    if ((record >>> CHUNK_BITS) >= current.length) {
+      return null;
+    }
+    return view(current, record, token);
+  }
+
+  private View view(int record) {
+    return view(chunks, record, null);
+  }
+
+  /** @param token stringa del token se già nota (evita di ricostruirla) */
+  private View view(ByteBuffer[] current, int record, String token) {
+    ByteBuffer chunk = current[record >>> CHUNK_BITS];
+    int base = offset(record);
+    long createdMs = chunk.getLong(base + CREATED);
+
+    SessionDto dto = new SessionDto();
+    dto.token = token != null ? token : new UUID(chunk.getLong(base + TOKEN_HI), chunk.getLong(base + TOKEN_LO)).toString();
+    dto.userId = chunk.getLong(base + USER_ID);
+    dto.username = usernames.decode(chunk.getInt(base + USERNAME));
+    dto.ruolo = roles.decode(chunk.getInt(base + ROLE));
+    dto.attiva = true;
+    dto.createdAt = formatCreated(createdMs);
+    return new View(dto, createdMs, (long) LONGS.getOpaque(chunk, base + LAST_ACCESS));
+  }
+
+  /**
+   * createdAt come ISO_LOCAL_DATE_TIME nel fuso del sistema (frazione senza zeri finali), scritto
+   * direttamente: è nel percorso di ogni lettura.
+   */
+  static String formatCreated(long epochMillis) {
+    long local = epochMillis + ZONE.getOffset(Instant.ofEpochMilli(epochMillis)).getTotalSeconds() * 1000L;
+    long days = Math.floorDiv(local, 86_400_000L);
+    int millisOfDay = (int) Math.floorMod(local, 86_400_000L);
+
+    // Data civile dal giorno epoch (algoritmo di H. Hinnant)
+    long z = days + 719_468;
+    long era = Math.floorDiv(z, 146_097);
+    int doe = (int) (z - era * 146_097);
+    int yoe = (doe - doe / 1460 + doe / 36_524 - doe / 146_096) / 365;
+    int doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+    int mp = (5 * doy + 2) / 153;
+    int day = doy - (153 * mp + 2) / 5 + 1;
+    int month = mp < 10 ? mp + 3 : mp - 9;
+    long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+
+    char[] out = new char[23];
+    write(out, 0, (int) year, 4);
+    out[4] = '-';
+    write(out, 5, month, 2);
+    out[7] = '-';
+    write(out, 8, day, 2);
+    out[10] = 'T';
+    write(out, 11, millisOfDay / 3_600_000, 2);
+    out[13] = ':';
+    write(out, 14, millisOfDay / 60_000 % 60, 2);
+    out[16] = ':';
+    write(out, 17, millisOfDay / 1000 % 60, 2);
+    int millis = millisOfDay % 1000;
+    if (millis == 0) {
+      return new String(out, 0, 19);
+    }
+    out[19] = '.';
+    write(out, 20, millis, 3);
+    int length = 23;
+    while (out[length - 1] == '0') {
+      length--;
+    }
+    return new String(out, 0, length);
+  }
+
+  private static void write(char[] out, int at, int value, int digits) {
+    for (int i = at + digits - 1; i >= at; i--) {
+      out[i] = (char) ('0' + value % 10);
+      value /= 10;
+    }
+  }
+
+  /** Sotto lock in scrittura; sostituisce una sessione con lo stesso token */
+  private void insert(long hi, long lo, long userId, long createdMs, long lastAccessMs, int username, int role) {
+    int existing = findToken(hi, lo);
+    if (existing >= 0) {
+      delete(existing);
+    }
+    if (size + 1 > tokenTable.length / 2) {
+      tokenTable = rehashTokens(tokenTable.length * 2);
+    }
+    if (users + 1 > userHeads.length / 2) {
+      rehashUsers(userHeads.length * 2);
+    }
+
+    int record = allocate();
+    ByteBuffer chunk = chunks[record >>> CHUNK_BITS];
+    int base = offset(record);
+    chunk.putLong(base + TOKEN_HI, hi);
+    chunk.putLong(base + TOKEN_LO, lo);
+    chunk.putLong(base + USER_ID, userId);
+    chunk.putLong(base + CREATED, createdMs);
+    LONGS.setOpaque(chunk, base + LAST_ACCESS, lastAccessMs);
+    chunk.putInt(base + USERNAME, username);
+    chunk.putInt(base + ROLE, role);
+    chunk.putInt(base + USED, 1);
+
+    insertToken(record);
+    linkUser(record, userId);
+    size++;
+  }
+
+  private int allocate() {
+    if (freeCount > 0) {
+      return free[--freeCount];
+    }
+    if (highWater == chunks.length * CHUNK_RECORDS) {
+      ByteBuffer chunk = ByteBuffer.allocateDirect(CHUNK_RECORDS * RECORD_BYTES + RECORD_BYTES)
+          .alignedSlice(RECORD_BYTES)
+          .order(ByteOrder.nativeOrder());
+      ByteBuffer[] grown = Arrays.copyOf(chunks, chunks.length + 1);
+      grown[chunks.length] = chunk;
+      chunks = grown;
+    }
+    return highWater++;
+  }
+
+  /** Toglie il record da indice token, lista dell'utente e lo rende riutilizzabile */
+  private void delete(int record) {
+    ByteBuffer chunk = chunks[record >>> CHUNK_BITS];
+    int base = offset(record);
+    removeToken(record);
+    unlinkUser(record);
+    chunk.putInt(base + USED, 0);
+    if (freeCount == free.length) {
+      free = Arrays.copyOf(free, free.length * 2);
+    }
+    free[freeCount++] = record;
+    size--;
+  }
+
+  private static int offset(int record) {
+    return (record & (CHUNK_RECORDS - 1)) * RECORD_BYTES;
+  }
+
+  // =========================
+  // INDICE TOKEN
+  // =========================
+
+  private int findToken(long hi, long lo) {
+    int[] table = tokenTable;
+    ByteBuffer[] current = chunks;
+    int mask = table.length - 1;
+    for (int slot = hash(hi, lo) & mask, probes = 0; probes <= mask; slot = (slot + 1) & mask, probes++) {
+      int record = table[slot] - 1;
+      if (record < 0) {
+        return -1;
+      }
+      if ((record >>> CHUNK_BITS) >= current.length) {
+        // Lettura ottimistica incoerente: la convalida dello stamp fallirà
+        return -1;
+      }
+      ByteBuffer chunk = current[record >>> CHUNK_BITS];
+      int base = offset(record);
+      if (chunk.getLong(base + TOKEN_HI) == hi && chunk.getLong(base + TOKEN_LO) == lo) {
+        return record;
+      }
+    }
+    return -1;
+  }
+
+  private void insertToken(int record) {
+    insertToken(tokenTable, record);
+  }
+
+  private void insertToken(int[] table, int record) {
+    int mask = table.length - 1;
+    int slot = recordHash(record) & mask;
+    while (table[slot] != 0) {
+      slot = (slot + 1) & mask;
+    }
+    table[slot] = record + 1;
+  }
+
+  /** Cancellazione con spostamento all'indietro: nessuna lapide nella tabella */
+  private void removeToken(int record) {
+    int[] table = tokenTable;
+    int mask = table.length - 1;
+    int hole = recordHash(record) & mask;
+    while (table[hole] != record + 1) {
+      hole = (hole + 1) & mask;
+    }
+    for (int slot = (hole + 1) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+      int home = recordHash(table[slot] - 1) & mask;
+      if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+        table[hole] = table[slot];
+        hole = slot;
+      }
+    }
+    table[hole] = 0;
+  }
+
+  private int[] rehashTokens(int capacity) {
+    int[] table = new int[capacity];
+    for (int value : tokenTable) {
+      if (value != 0) {
+        insertToken(table, value - 1);
+      }
+    }
+    return table;
+  }
+
+  private int recordHash(int record) {
+    ByteBuffer chunk = chunks[record >>> CHUNK_BITS];
+    int base = offset(record);
+    return hash(chunk.getLong(base + TOKEN_HI), chunk.getLong(base + TOKEN_LO));
+  }
+
+  private static int hash(long hi, long lo) {
+    long h = (hi ^ Long.rotateLeft(lo, 32)) * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  // =========================
+  // INDICE UTENTI
+  // =========================
+
+  private int findUser(long userId) {
+    int mask = userHeads.length - 1;
+    for (int slot = userHash(userId) & mask; userHeads[slot] != 0; slot = (slot + 1) & mask) {
+      if (userKeys[slot] == userId) {
+        return slot;
+      }
+    }
+    return -1;
+  }
+
+  private void linkUser(int record, long userId) {
+    ByteBuffer chunk = chunks[record >>> CHUNK_BITS];
+    int base = offset(record);
+    int slot = findUser(userId);
+    int head = -1;
+    if (slot < 0) {
+      int mask = userHeads.length - 1;
+      slot = userHash(userId) & mask;
+      while (userHeads[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      userKeys[slot] = userId;
+      users++;
+    } else {
+      head = userHeads[slot] - 1;
+      chunks[head >>> CHUNK_BITS].putInt(offset(head) + PREV, record);
+    }
+    chunk.putInt(base + NEXT, head);
+    chunk.putInt(base + PREV, -1);
+    userHeads[slot] = record + 1;
+  }
+
+  private void unlinkUser(int record) {
+    ByteBuffer chunk = chunks[record >>> CHUNK_BITS];
+    int base = offset(record);
+    int next = chunk.getInt(base + NEXT);
+    int prev = chunk.getInt(base + PREV);
+    if (next >= 0) {
+      chunks[next >>> CHUNK_BITS].putInt(offset(next) + PREV, prev);
+    }
+    if (prev >= 0) {
+      chunks[prev >>> CHUNK_BITS].putInt(offset(prev) + NEXT, next);
+      return;
+    }
+
+    int slot = findUser(chunk.getLong(base + USER_ID));
+    if (next >= 0) {
+      userHeads[slot] = next + 1;
+      return;
+    }
+    // Ultima sessione dell'utente: cancellazione con spostamento all'indietro
+    int mask = userHeads.length - 1;
+    int hole = slot;
+    for (int i = (hole + 1) & mask; userHeads[i] != 0; i = (i + 1) & mask) {
+      int home = userHash(userKeys[i]) & mask;
+      if (((i - home) & mask) >= ((i - hole) & mask)) {
+        userKeys[hole] = userKeys[i];
+        userHeads[hole] = userHeads[i];
+        hole = i;
+      }
+    }
+    userHeads[hole] = 0;
+    users--;
+  }
+
+  private void rehashUsers(int capacity) {
+    long[] oldKeys = userKeys;
+    int[] oldHeads = userHeads;
+    userKeys = new long[capacity];
+    userHeads = new int[capacity];
+    int mask = capacity - 1;
+    for (int i = 0; i < oldHeads.length; i++) {
+      if (oldHeads[i] != 0) {
+        int slot = userHash(oldKeys[i]) & mask;
+        while (userHeads[slot] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        userKeys[slot] = oldKeys[i];
+        userHeads[slot] = oldHeads[i];
+      }
+    }
+  }
+
+  private static int userHash(long userId) {
+    long h = userId * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  private static int tableSize(int expected) {
+    return Integer.highestOneBit(Math.max(expected * 2 - 1, 1)) << 1;
+  }
+
+  private static final class View {
+    final SessionDto dto;
+    final long createdMs;
+    final long lastAccessMs;
+
+    View(SessionDto dto, long createdMs, long lastAccessMs) {
+      this.dto = dto;
+      this.createdMs = createdMs;
+      this.lastAccessMs = lastAccessMs;
+    }
+  }
+
+  /** Stringhe ripetute (username, ruoli) codificate come indici; la lettura non prende lock */
+  private static final class Dictionary {
+    private final Map<String, Integer> ids = new HashMap<>();
+    private volatile String[] values = new String[16];
+    private int count;
+
+    /** Sotto il lock in scrittura del DAO */
+    int encode(String value) {
+      if (value == null) {
+        return -1;
+      }
+      Integer id = ids.get(value);
+      if (id != null) {
+        return id;
+      }
+      String[] current = values;
+      if (count == current.length) {
+        current = Arrays.copyOf(current, count * 2);
+      }
+      current[count] = value;
+      values = current;
+      ids.put(value, count);
+      return count++;
+    }
+
+    String decode(int id) {
+      String[] current = values;
+      return id >= 0 && id < current.length ? current[id] : null;
+    }
+  }
+}
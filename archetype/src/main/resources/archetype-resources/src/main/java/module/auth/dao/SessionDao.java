@@ -1,57 +1,282 @@
 package ${package}.module.auth.dao;
 
 import ${package}.module.auth.dto.SessionDto;
+import ${package}.module.auth.dto.SessionStatsDto;
+import dev.springtools.util.Env;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
-import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
+/**
+ * Sessioni con scadenza per inattività (SESSION_IDLE_MINUTES, default 30) e assoluta dalla
+ * creazione (SESSION_MAX_HOURS, default 12).
+ *
+ * <p>
+ * Le sessioni sono gestite da un {@link SessionStore} scelto alla creazione: {@link
+ * HeapSessionStore} (default) o {@link OffHeapSessionDao}. Una sessione scaduta e non ancora
+ * rimossa non viene mai restituita.
+ *
+ * <p>
+ * Con SESSION_STORE=db (default) la mappa in memoria è una near cache di {@link SessionDbStore}: le
+ * sessioni sopravvivono ai riavvii e sono condivise tra i nodi. La lettura resta in memoria; solo
+ * un token assente viene cercato nel database. Creazioni, rinnovi (al più uno ogni
+ * SESSION_TOUCH_SECONDS, default 60) e revoche sono scritti in differita ogni SESSION_FLUSH_MILLIS
+ * (default 100), con al più SESSION_STORE_MAX_PENDING operazioni in coda (default 100000); le
+ * revoche degli altri nodi vengono lette ogni SESSION_POLL_MILLIS (default 2000). La scadenza di
+ * una sessione in cache la toglie solo da questo nodo: le righe scadute sono eliminate dal
+ * database periodicamente, in base agli accessi registrati da tutti i nodi. SESSION_STORE=memory
+ * mantiene le sessioni solo in memoria.
+ *
+ * <p>
+ * Con SESSION_BACKEND=offheap le sessioni sono gestite da {@link OffHeapSessionDao}, solo in
+ * memoria e fuori dallo heap (dimensionata per SESSION_OFFHEAP_EXPECTED sessioni, default
+ * 1000000); SESSION_STORE viene ignorato.
+ *
+ * <p>
+ * Senza database (SESSION_STORE=memory o SESSION_BACKEND=offheap) le sessioni vengono salvate in
+ * uno {@link SessionSnapshot} (SESSION_SNAPSHOT, default data/sessions.snapshot; vuoto per
+ * disabilitarlo) ogni SESSION_SNAPSHOT_SECONDS (default 300) e alla chiusura, e ricaricate alla
+ * creazione del bean, quindi prima che l'applicazione sia pronta. Con il database lo snapshot non
+ * serve e potrebbe riportare in vita sessioni revocate da altri nodi.
+ *
+ * <p>
+ * I listener registrati con {@link #addListener(Consumer)} ricevono il token di ogni sessione
+ * creata o tolta da questo nodo, per tenere allineate eventuali cache dei token.
+ */
 @Repository
 public class SessionDao {
-  private final Map<String, SessionDto> sessions = new ConcurrentHashMap<>();
-  private final Map<Long, List<SessionDto>> byUser = new ConcurrentHashMap<>();
+  private final SessionStore sessions;
+  /** Vero con SESSION_STORE=db: lo snapshot non serve */
+  private final boolean persistent;
+
+  private volatile Path snapshotFile;
+  private ScheduledExecutorService snapshotWorker;
+  private volatile long snapshotRestored;
+  private volatile long snapshotLoadMillis;
+  private volatile long snapshotSaved;
+  private final LongAdder snapshotErrors = new LongAdder();
+
+  @Autowired
+  public SessionDao(DataSource dataSource) {
+    this(TimeUnit.MINUTES.toMillis(Env.getInt("SESSION_IDLE_MINUTES", 30)),
+         TimeUnit.HOURS.toMillis(Env.getInt("SESSION_MAX_HOURS", 12)),
+         offHeapBackend() || "memory".equalsIgnoreCase(Env.get("SESSION_STORE", "db"))
+             ? null
+             : new SessionDbStore(dataSource, Env.get("HOSTNAME", "local") + "-" + UUID.randomUUID().toString().substring(0, 8),
+                                  Env.getInt("SESSION_STORE_MAX_PENDING", SessionDbStore.MAX_PENDING))
+                 // JWT: i token revocati prima dell'avvio vanno rifiutati fino alla loro scadenza
+                 .replay("jwt".equalsIgnoreCase(Env.get("AUTH_MODE", "session"))
+                     ? TimeUnit.SECONDS.toMillis(Env.getLong("JWT_EXPIRY_SECONDS", 3600L))
+                     : 0),
+         offHeapBackend() ? Env.getInt("SESSION_OFFHEAP_EXPECTED", 1_000_000) : 0);
+
+    String file = Env.get("SESSION_SNAPSHOT", "data/sessions.snapshot");
+    if (!persistent && file != null && !file.isBlank()) {
+      snapshot(Path.of(file), TimeUnit.SECONDS.toMillis(Env.getInt("SESSION_SNAPSHOT_SECONDS", 300)));
+    }
+  }
+
+  /**
+   * @param store
+   *          persistenza su database, null per le sole sessioni in memoria
+   */
+  public SessionDao(long idleMillis, long absoluteMillis, SessionDbStore store) {
+    this(idleMillis, absoluteMillis, store, 0);
+  }
+
+  /** Sessioni fuori dallo heap, vedi {@link OffHeapSessionDao} */
+  public static SessionDao offHeap(long idleMillis, long absoluteMillis, int expectedSessions) {
+    return new SessionDao(idleMillis, absoluteMillis, null, Math.max(expectedSessions, 1));
+  }
+
+  private SessionDao(long idleMillis, long absoluteMillis, SessionDbStore store, int offHeapSessions) {
+    this.sessions = offHeapSessions > 0
+        ? new OffHeapSessionDao(idleMillis, absoluteMillis, offHeapSessions)
+        : new HeapSessionStore(idleMillis, absoluteMillis, store);
+    this.persistent = store != null;
+  }
+
+  /**
+   * Abilita lo snapshot: carica subito il file se esiste (un file non valido viene ignorato), poi
+   * lo riscrive ogni intervalMillis e alla chiusura.
+   */
+  public synchronized SessionDao snapshot(Path file, long intervalMillis) {
+    if (intervalMillis <= 0) {
+      throw new IllegalArgumentException("Intervallo dello snapshot non valido: " + intervalMillis);
+    }
+    if (snapshotFile != null) {
+      throw new IllegalStateException("Snapshot già abilitato: " + snapshotFile);
+    }
+    if (Files.exists(file)) {
+      try {
+        loadSnapshot(file);
+      } catch (IOException e) {
+        snapshotErrors.increment();
+      }
+    }
+    snapshotFile = file;
+    snapshotWorker = Executors.newSingleThreadScheduledExecutor(task -> {
+      Thread thread = new Thread(task, "session-snapshot");
+      thread.setDaemon(true);
+      return thread;
+    });
+    snapshotWorker.scheduleWithFixedDelay(() -> {
+      try {
+        saveSnapshot();
+      } catch (IOException e) {
+        snapshotErrors.increment();
+      }
+    }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    return this;
+  }
+
+  /**
+   * Scrive lo snapshot sul file abilitato con {@link #snapshot(Path, long)}.
+   *
+   * @return sessioni scritte
+   */
+  public int saveSnapshot() throws IOException {
+    Path file = snapshotFile;
+    if (file == null) {
+      throw new IllegalStateException("Snapshot non abilitato");
+    }
+    return saveSnapshot(file);
+  }
+
+  /**
+   * Scrive le sessioni non scadute (con token UUID) in uno snapshot.
+   *
+   * @return sessioni scritte
+   */
+  public synchronized int saveSnapshot(Path file) throws IOException {
+    int written;
+    try (SessionSnapshot.Writer writer = new SessionSnapshot.Writer(file)) {
+      written = sessions.writeSnapshot(writer);
+      writer.commit();
+    }
+    snapshotSaved = written;
+    return written;
+  }
+
+  /**
+   * Carica uno snapshot, scartando le sessioni scadute nel frattempo. createdAt viene ricostruito
+   * dall'istante di creazione.
+   *
+   * @return sessioni caricate
+   * @throws IOException
+   *           se il file non è leggibile o non supera la verifica dei checksum
+   */
+  public int loadSnapshot(Path file) throws IOException {
+    long started = System.nanoTime();
+    int restored = sessions.restore(file);
+    snapshotRestored = restored;
+    snapshotLoadMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+    return restored;
+  }
 
   public void salva(SessionDto dto) {
-    sessions.put(dto.token, dto);
-    byUser.computeIfAbsent(dto.userId, k -> Collections.synchronizedList(new ArrayList<>())).add(dto);
+    sessions.salva(dto);
   }
 
   public Optional<SessionDto> get(String token) {
-    return Optional.ofNullable(sessions.get(token));
+    try {
+      return find(token);
+    } catch (Exception e) {
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Come {@link #get(String)}, ma un errore del database viene propagato invece di apparire come
+   * sessione assente: una cache dei token non deve ricordarlo come token non valido.
+   */
+  public Optional<SessionDto> find(String token) throws Exception {
+    return sessions.find(token);
+  }
+
+  /**
+   * Vero se un token non trovato non può comparire in seguito senza passare da questo nodo (che
+   * lo notifica ai listener): sessioni solo locali, token non UUID o revocato da questo nodo. Con
+   * il database un token assente può essere un login di un altro nodo non ancora scritto.
+   */
+  public boolean isDefinitiveMiss(String token) {
+    return sessions.isDefinitiveMiss(token);
   }
 
   public void rimuovi(String token) {
-    SessionDto s = sessions.remove(token);
-    if (s != null) {
-      List<SessionDto> userSessions = byUser.get(s.userId);
-      if (userSessions != null) {
-        userSessions.removeIf(sess -> token.equals(sess.token));
-      }
-    }
+    sessions.rimuovi(token);
   }
 
+  /** Sessioni dell'utente presenti in questo nodo */
   public List<SessionDto> findByUser(Long userId) {
-    return new ArrayList<>(byUser.getOrDefault(userId, Collections.emptyList()));
+    return sessions.findByUser(userId);
   }
 
+  /** Sessioni attive presenti in questo nodo */
   public List<SessionDto> findAllActive() {
-    List<SessionDto> active = new ArrayList<>();
-    for (SessionDto s : sessions.values()) {
-      if (s.attiva) {
-        active.add(s);
-      }
-    }
-    return active;
+    return sessions.findAllActive();
   }
 
   public void invalidaByUser(Long userId) {
-    List<SessionDto> userSessions = byUser.get(userId);
-    if (userSessions != null) {
-      for (SessionDto s : userSessions) {
-        s.attiva = false;
-        sessions.remove(s.token);
+    sessions.invalidaByUser(userId);
+  }
+
+  /**
+   * Registra un listener chiamato con ogni revoca letta dal database (logout e invalidazioni di
+   * altri nodi), anche per sessioni non presenti in questo nodo. Solo con SESSION_STORE=db.
+   */
+  public void addRevocationListener(Consumer<SessionDbStore.Revocation> listener) {
+    sessions.addRevocationListener(listener);
+  }
+
+  /**
+   * Registra un listener chiamato, dopo la modifica, con il token di ogni sessione creata o tolta
+   * da questo nodo: login, logout, invalidazione per utente, scadenza e revoche di altri nodi.
+   */
+  public void addListener(Consumer<String> listener) {
+    sessions.addListener(listener);
+  }
+
+  public SessionStatsDto getStats() {
+    SessionStatsDto stats = sessions.getStats();
+    stats.snapshotRestored = snapshotRestored;
+    stats.snapshotLoadMillis = snapshotLoadMillis;
+    stats.snapshotSaved = snapshotSaved;
+    stats.snapshotErrors = snapshotErrors.sum();
+    return stats;
+  }
+
+  /** Ferma i thread, scrive lo snapshot e le operazioni ancora in coda */
+  @PreDestroy
+  public void close() {
+    synchronized (this) {
+      if (snapshotWorker != null) {
+        snapshotWorker.shutdownNow();
+        try {
+          saveSnapshot();
+        } catch (IOException e) {
+          snapshotErrors.increment();
+        }
+        snapshotWorker = null;
       }
-      userSessions.clear();
     }
+    sessions.close();
+  }
+
+  private static boolean offHeapBackend() {
+    return "offheap".equalsIgnoreCase(Env.get("SESSION_BACKEND", "heap"));
   }
 }
@@ -0,0 +1,560 @@
+package ${package}.module.auth.dao;
+
+import ${package}.module.auth.dto.SessionDto;
+import dev.springtools.util.DB;
+import dev.springtools.util.DB.Record;
+import dev.springtools.util.DB.Recordset;
+
+import javax.sql.DataSource;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Persistenza delle sessioni su database (tabelle auth_sessions e auth_session_revocations).
+ *
+ * <p>
+ * Creazioni, rinnovi e revoche vengono accodati e scritti da {@link #flush()} in un'unica
+ * transazione, a gruppi di istruzioni uguali (JDBC batch) nell'ordine di arrivo. Finché una revoca
+ * non è scritta, il token (o l'utente) resta annotato in memoria e {@link #load(String)} non lo
+ * restituisce, così un nodo non rilegge dal database una sessione appena chiusa.
+ *
+ * <p>
+ * Se il database non è raggiungibile le operazioni tornano in testa alla coda e il flush viene
+ * sospeso con attesa crescente (fino a MAX_BACKOFF_MILLIS). Se fallisce la transazione, ogni
+ * operazione viene riscritta in una transazione propria: quella non valida viene ritentata con
+ * attesa crescente e scartata dopo MAX_ATTEMPTS tentativi (contata in {@link #getDropped()}),
+ * senza bloccare le altre; le operazioni successive sullo stesso token o utente la attendono, per
+ * non invertirne l'ordine. Una revoca scartata resta annotata in memoria. La coda è limitata
+ * (maxPending): oltre il limite le nuove operazioni vengono scartate.
+ *
+ * <p>
+ * Le revoche sono anche registrate in auth_session_revocations: gli altri nodi le leggono con
+ * {@link #pollRevocations()} e chiudono le sessioni che hanno in memoria. Gli istanti sono in
+ * millisecondi epoch, confrontabili tra nodi.
+ *
+ * <p>
+ * Con più nodi che scrivono, un id può diventare visibile dopo un id più alto (transazione
+ * assegnata prima ma completata dopo). Gli id saltati vengono quindi ricordati e riletti ad ogni
+ * poll per GAP_MILLIS; poi sono considerati persi (transazione annullata) e dimenticati.
+ */
+public class SessionDbStore {
+  /** Operazioni scritte al massimo per flush */
+  private static final int MAX_BATCH = 5000;
+  /** Per quanto un id saltato viene riletto, in attesa che la sua transazione sia visibile */
+  private static final long GAP_MILLIS = 60_000;
+  /** Id saltati ricordati al massimo (salti più ampi: incremento non unitario degli id) */
+  private static final int MAX_GAPS = 1000;
+  private static final int PAGE = 1000;
+  /** Operazioni in coda al massimo, se non indicato */
+  public static final int MAX_PENDING = 100_000;
+  /** Tentativi di un'operazione che fallisce da sola, prima di scartarla */
+  private static final int MAX_ATTEMPTS = 5;
+  private static final long RETRY_MILLIS = 1000;
+  private static final long MAX_BACKOFF_MILLIS = 60_000;
+  private static final String REVOCATION_COLUMNS = "SELECT id, node, token, user_id, changed_ms FROM auth_session_revocations ";
+
+  private final DataSource dataSource;
+  private final String node;
+  /** Avvio del nodo: la prima lettura delle revoche parte da qui */
+  private final long started = System.currentTimeMillis();
+
+  private final LinkedBlockingDeque<Op> queue;
+  private final Set<String> pendingTokens = ConcurrentHashMap.newKeySet();
+  private final Map<Long, Long> pendingUsers = new ConcurrentHashMap<>();
+
+  /** Ultima revoca letta (-1 = non ancora inizializzato) */
+  private long lastRevocation = -1;
+  /** Id non ancora visti sotto lastRevocation -> istante in cui sono stati saltati */
+  private final Map<Long, Long> gaps = new LinkedHashMap<>();
+  /** Revoche già presenti restituite dalla prima lettura (0 = nessuna) */
+  private long replayMillis;
+
+  /** Attesa dopo un errore di connessione (0 = nessun errore) e flush sospeso fino a retryAt */
+  private volatile long backoffMillis;
+  private volatile long retryAt;
+
+  private final LongAdder written = new LongAdder();
+  private final LongAdder failures = new LongAdder();
+  private final LongAdder dropped = new LongAdder();
+
+  public SessionDbStore(DataSource dataSource, String node) {
+    this(dataSource, node, MAX_PENDING);
+  }
+
+  /**
+   * @param maxPending
+   *          operazioni in coda al massimo
+   */
+  public SessionDbStore(DataSource dataSource, String node, int maxPending) {
+    if (maxPending < 1) {
+      throw new IllegalArgumentException("maxPending deve essere positivo: " + maxPending);
+    }
+    this.dataSource = dataSource;
+    this.node = node;
+    this.queue = new LinkedBlockingDeque<>(maxPending);
+  }
+
+  /** Riga letta dal database */
+  public static final class Row {
+    public final SessionDto dto;
+    public final long createdMs;
+    public final long lastAccessMs;
+
+    Row(SessionDto dto, long createdMs, long lastAccessMs) {
+      this.dto = dto;
+      this.createdMs = createdMs;
+      this.lastAccessMs = lastAccessMs;
+    }
+  }
+
+  /** Revoca registrata da un altro nodo; token null = sessioni dell'utente create entro changedMs */
+  public static final class Revocation {
+    public final String token;
+    public final Long userId;
+    public final long changedMs;
+
+    Revocation(String token, Long userId, long changedMs) {
+      this.token = token;
+      this.userId = userId;
+      this.changedMs = changedMs;
+    }
+  }
+
+  /**
+   * La prima lettura di {@link #pollRevocations()} restituisce anche le revoche registrate negli
+   * ultimi millis prima dell'avvio, invece delle sole revoche successive: serve a chi deve
+   * rifiutare token che non passano dal database (JWT), anche se revocati prima dell'avvio del
+   * nodo.
+   *
+   * @return this per chaining
+   */
+  public SessionDbStore replay(long millis) {
+    this.replayMillis = millis;
+    return this;
+  }
+
+  public void create(SessionDto dto, long createdMs, long lastAccessMs) {
+    enqueue(new Op(Kind.CREATE, dto.token, dto.userId, createdMs, dto, lastAccessMs));
+  }
+
+  public void touch(String token, long lastAccessMs) {
+    enqueue(new Op(Kind.TOUCH, token, null, lastAccessMs, null, lastAccessMs));
+  }
+
+  /** Anche se la coda è piena il token resta annotato: questo nodo non rilegge la sessione */
+  public void revoke(String token, Long userId, long nowMs) {
+    pendingTokens.add(token);
+    enqueue(new Op(Kind.REVOKE, token, userId, nowMs, null, 0));
+  }
+
+  /** Revoca le sessioni dell'utente create entro nowMs (anche quelle di altri nodi) */
+  public void revokeUser(Long userId, long nowMs) {
+    pendingUsers.merge(userId, nowMs, Math::max);
+    enqueue(new Op(Kind.REVOKE_USER, null, userId, nowMs, null, 0));
+  }
+
+  private void enqueue(Op op) {
+    if (!queue.offer(op)) {
+      dropped.increment();
+    }
+  }
+
+  /**
+   * Cerca una sessione nel database.
+   *
+   * @return riga, oppure null se assente o con una revoca non ancora scritta
+   */
+  public Row load(String token) throws Exception {
+    if (pendingTokens.contains(token)) {
+      return null;
+    }
+    DB db = new DB(dataSource);
+    Recordset rs;
+    try {
+      db.open();
+      rs = db.select(
+          "SELECT user_id, username, ruolo, created_at, created_ms, last_access_ms FROM auth_sessions WHERE token = ?",
+          token);
+    } finally {
+      db.close();
+    }
+    if (rs.isEmpty()) {
+      return null;
+    }
+
+    Record r = rs.get(0);
+    SessionDto dto = new SessionDto();
+    dto.token = token;
+    dto.userId = DB.toLong(r.get("user_id"));
+    dto.username = DB.toString(r.get("username"));
+    dto.ruolo = DB.toString(r.get("ruolo"));
+    dto.createdAt = DB.toString(r.get("created_at"));
+    dto.attiva = true;
+    long createdMs = DB.toLong(r.get("created_ms"));
+    if (isRevoked(token, dto.userId, createdMs)) {
+      return null;
+    }
+    return new Row(dto, createdMs, DB.toLong(r.get("last_access_ms")));
+  }
+
+  /** Vero se c'è una revoca non ancora scritta per il token */
+  public boolean isRevoked(String token) {
+    return pendingTokens.contains(token);
+  }
+
+  /** Vero se c'è una revoca non ancora scritta per il token o per l'utente */
+  public boolean isRevoked(String token, Long userId, long createdMs) {
+    if (isRevoked(token)) {
+      return true;
+    }
+    Long cutoff = pendingUsers.get(userId);
+    return cutoff != null && createdMs <= cutoff;
+  }
+
+  /**
+   * Scrive le operazioni accodate in un'unica transazione; se fallisce, una transazione per
+   * operazione. Non scrive nulla finché è sospeso dopo un errore di connessione.
+   *
+   * @return operazioni scritte
+   */
+  public int flush() throws Exception {
+    long now = System.currentTimeMillis();
+    if (now < retryAt) {
+      return 0;
+    }
+    List<Op> ops = new ArrayList<>();
+    queue.drainTo(ops, MAX_BATCH);
+    if (ops.isEmpty()) {
+      return 0;
+    }
+    List<Op> ready = ready(ops, now);
+    if (ready.isEmpty()) {
+      requeue(ops);
+      return 0;
+    }
+
+    List<Op> done;
+    DB db = new DB(dataSource);
+    try {
+      db.open();
+      try {
+        transaction(db, ready);
+        done = ready;
+      } catch (Exception e) {
+        failures.increment();
+        done = writeEach(db, ready, now);
+      }
+    } catch (Exception e) {
+      // Connessione non disponibile: tutto torna in coda e il flush viene sospeso
+      failures.increment();
+      backoffMillis = Math.min(Math.max(backoffMillis * 2, RETRY_MILLIS), MAX_BACKOFF_MILLIS);
+      retryAt = now + backoffMillis;
+      requeue(ops);
+      throw e;
+    } finally {
+      db.close();
+    }
+    backoffMillis = 0;
+
+    Set<Op> completed = Collections.newSetFromMap(new IdentityHashMap<>());
+    completed.addAll(done);
+    List<Op> remaining = new ArrayList<>();
+    for (Op op : ops) {
+      if (!completed.contains(op) && op.attempts < MAX_ATTEMPTS) {
+        remaining.add(op);
+      }
+    }
+    requeue(remaining);
+
+    for (Op op : done) {
+      if (op.kind == Kind.REVOKE) {
+        pendingTokens.remove(op.token);
+      } else if (op.kind == Kind.REVOKE_USER) {
+        pendingUsers.remove(op.userId, op.time);
+      }
+    }
+    written.add(done.size());
+    return done.size();
+  }
+
+  /**
+   * Operazioni da scrivere ora, nell'ordine di arrivo: esclude quelle in attesa di un nuovo
+   * tentativo e le successive sullo stesso token o utente.
+   */
+  private static List<Op> ready(List<Op> ops, long now) {
+    List<Op> ready = new ArrayList<>(ops.size());
+    Set<String> waitingTokens = null;
+    Set<Long> waitingUsers = null;
+    for (Op op : ops) {
+      boolean waiting = op.retryAt > now
+          || (waitingTokens != null && op.token != null && waitingTokens.contains(op.token))
+          || (waitingUsers != null && op.userId != null && waitingUsers.contains(op.userId));
+      if (!waiting) {
+        ready.add(op);
+        continue;
+      }
+      if (waitingTokens == null) {
+        waitingTokens = new HashSet<>();
+        waitingUsers = new HashSet<>();
+      }
+      if (op.token != null) {
+        waitingTokens.add(op.token);
+      }
+      if (op.userId != null) {
+        waitingUsers.add(op.userId);
+      }
+    }
+    return ready;
+  }
+
+  /**
+   * Una transazione per operazione, per isolare quelle non valide: un'operazione fallita viene
+   * riprogrammata con attesa crescente, o scartata dopo MAX_ATTEMPTS tentativi.
+   *
+   * @return operazioni scritte
+   */
+  private List<Op> writeEach(DB db, List<Op> ops, long now) {
+    List<Op> done = new ArrayList<>(ops.size());
+    Set<String> failedTokens = new HashSet<>();
+    Set<Long> failedUsers = new HashSet<>();
+    for (Op op : ops) {
+      // Le successive sullo stesso token o utente attendono quella fallita (stesso retryAt)
+      if ((op.token != null && failedTokens.contains(op.token))
+          || (op.userId != null && failedUsers.contains(op.userId))) {
+        continue;
+      }
+      try {
+        transaction(db, List.of(op));
+        done.add(op);
+        continue;
+      } catch (Exception e) {
+        failures.increment();
+      }
+      op.attempts++;
+      if (op.attempts >= MAX_ATTEMPTS) {
+        // Una revoca scartata resta in pendingTokens/pendingUsers
+        dropped.increment();
+        continue;
+      }
+      op.retryAt = now + Math.min(RETRY_MILLIS << (op.attempts - 1), MAX_BACKOFF_MILLIS);
+      if (op.token != null) {
+        failedTokens.add(op.token);
+      }
+      if (op.userId != null) {
+        failedUsers.add(op.userId);
+      }
+    }
+    return done;
+  }
+
+  private void transaction(DB db, List<Op> ops) throws Exception {
+    db.begin();
+    try {
+      int from = 0;
+      while (from < ops.size()) {
+        int to = from + 1;
+        while (to < ops.size() && ops.get(to).kind == ops.get(from).kind) {
+          to++;
+        }
+        write(db, ops.get(from).kind, ops.subList(from, to));
+        from = to;
+      }
+      db.commit();
+    } catch (Exception e) {
+      db.rollback();
+      throw e;
+    }
+  }
+
+  /** Rimette in testa alla coda, nell'ordine; con la coda piena le operazioni vengono scartate */
+  private void requeue(List<Op> ops) {
+    for (int i = ops.size() - 1; i >= 0; i--) {
+      if (!queue.offerFirst(ops.get(i))) {
+        dropped.increment();
+      }
+    }
+  }
+
+  /**
+   * Revoche registrate da altri nodi dopo l'ultima lettura, incluse quelle con un id saltato in
+   * precedenza. La prima chiamata restituisce anche le revoche registrate dall'avvio del nodo (o nel
+   * periodo di {@link #replay(long)}), comprese quelle scritte prima della prima lettura.
+   * Chiamato da un solo thread.
+   */
+  public List<Revocation> pollRevocations() throws Exception {
+    List<Revocation> revocations = new ArrayList<>();
+    DB db = new DB(dataSource);
+    try {
+      db.open();
+      long now = System.currentTimeMillis();
+      if (lastRevocation < 0) {
+        // Dall'avvio del nodo (con un margine per gli orologi e i commit fuori ordine): una revoca
+        // scritta prima della prima lettura non va saltata
+        Recordset rs = db.select("SELECT MAX(id) AS id FROM auth_session_revocations WHERE changed_ms < ?",
+                                 started - Math.max(replayMillis, GAP_MILLIS));
+        Long max = rs.isEmpty() ? null : DB.toLong(rs.get(0).get("id"));
+        lastRevocation = max != null ? max : 0;
+      }
+
+      gaps.values().removeIf(skipped -> now - skipped > GAP_MILLIS);
+      if (!gaps.isEmpty()) {
+        Object[] ids = gaps.keySet().toArray();
+        Recordset rs = db.select(
+            REVOCATION_COLUMNS + "WHERE id IN (" + String.join(", ", Collections.nCopies(ids.length, "?")) + ")",
+            ids);
+        for (Record r : rs) {
+          gaps.remove(DB.toLong(r.get("id")));
+          collect(r, revocations);
+        }
+      }
+
+      // A pagine, fino in fondo: un arretrato (es. replay all'avvio) non resta indietro di un poll
+      Recordset rs;
+      do {
+        rs = db.select(REVOCATION_COLUMNS + "WHERE id > ? ORDER BY id LIMIT " + PAGE, lastRevocation);
+        for (Record r : rs) {
+          long id = DB.toLong(r.get("id"));
+          if (id - lastRevocation - 1 <= MAX_GAPS - gaps.size()) {
+            for (long skipped = lastRevocation + 1; skipped < id; skipped++) {
+              gaps.put(skipped, now);
+            }
+          }
+          lastRevocation = id;
+          collect(r, revocations);
+        }
+      } while (rs.size() == PAGE);
+    } finally {
+      db.close();
+    }
+    return revocations;
+  }
+
+  private void collect(Record r, List<Revocation> revocations) {
+    if (!node.equals(DB.toString(r.get("node")))) {
+      revocations.add(new Revocation(
+          DB.toString(r.get("token")),
+          DB.toLong(r.get("user_id")),
+          DB.toLong(r.get("changed_ms"))));
+    }
+  }
+
+  /**
+   * Elimina le sessioni scadute e le revoche più vecchie della durata massima di una sessione.
+   *
+   * @param idleCutoffMs
+   *          ultimo accesso sotto il quale la sessione è scaduta per inattività
+   * @param absoluteCutoffMs
+   *          creazione sotto la quale la sessione è scaduta in assoluto
+   * @return sessioni eliminate
+   */
+  public int sweep(long idleCutoffMs, long absoluteCutoffMs) throws Exception {
+    DB db = new DB(dataSource);
+    try {
+      db.open();
+      int removed = db.query(
+          "DELETE FROM auth_sessions WHERE last_access_ms < ? OR created_ms < ?",
+          idleCutoffMs,
+          absoluteCutoffMs);
+      db.query("DELETE FROM auth_session_revocations WHERE changed_ms < ?", absoluteCutoffMs);
+      return removed;
+    } finally {
+      db.close();
+    }
+  }
+
+  /** Operazioni in attesa di scrittura */
+  public int getPending() {
+    return queue.size();
+  }
+
+  public long getWritten() {
+    return written.sum();
+  }
+
+  public long getFailures() {
+    return failures.sum();
+  }
+
+  /** Operazioni scartate: coda piena o troppi tentativi falliti */
+  public long getDropped() {
+    return dropped.sum();
+  }
+
+  private void write(DB db, Kind kind, List<Op> ops) throws Exception {
+    List<Object[]> rows = new ArrayList<>(ops.size());
+    switch (kind) {
+      case CREATE:
+        // DELETE + INSERT: upsert portabile (un token riusato sostituisce la riga)
+        for (Op op : ops) {
+          rows.add(new Object[]{op.token});
+        }
+        db.batch("DELETE FROM auth_sessions WHERE token = ?", rows);
+        rows.clear();
+        for (Op op : ops) {
+          rows.add(new Object[]{op.token, op.userId, op.dto.username, op.dto.ruolo, op.dto.createdAt, op.time, op.lastAccess});
+        }
+        db.batch("INSERT INTO auth_sessions (token, user_id, username, ruolo, created_at, created_ms, last_access_ms) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?)", rows);
+        break;
+
+      case TOUCH:
+        for (Op op : ops) {
+          rows.add(new Object[]{op.lastAccess, op.token, op.lastAccess});
+        }
+        db.batch("UPDATE auth_sessions SET last_access_ms = ? WHERE token = ? AND last_access_ms < ?", rows);
+        break;
+
+      case REVOKE:
+        for (Op op : ops) {
+          rows.add(new Object[]{op.token});
+        }
+        db.batch("DELETE FROM auth_sessions WHERE token = ?", rows);
+        rows.clear();
+        for (Op op : ops) {
+          rows.add(new Object[]{node, op.token, op.userId, op.time});
+        }
+        db.batch("INSERT INTO auth_session_revocations (node, token, user_id, changed_ms) VALUES (?, ?, ?, ?)", rows);
+        break;
+
+      case REVOKE_USER:
+        for (Op op : ops) {
+          rows.add(new Object[]{op.userId, op.time});
+        }
+        db.batch("DELETE FROM auth_sessions WHERE user_id = ? AND created_ms <= ?", rows);
+        rows.clear();
+        for (Op op : ops) {
+          rows.add(new Object[]{node, null, op.userId, op.time});
+        }
+        db.batch("INSERT INTO auth_session_revocations (node, token, user_id, changed_ms) VALUES (?, ?, ?, ?)", rows);
+        break;
+    }
+  }
+
+  private enum Kind {
+    CREATE, TOUCH, REVOKE, REVOKE_USER
+  }
+
+  private static final class Op {
+    final Kind kind;
+    final String token;
+    final Long userId;
+    /** Creazione (CREATE) o istante della revoca */
+    final long time;
+    final SessionDto dto;
+    final long lastAccess;
+    /** Tentativi falliti da sola e istante del prossimo (solo flush, un thread alla volta) */
+    int attempts;
+    long retryAt;
+
+    Op(Kind kind, String token, Long userId, long time, SessionDto dto, long lastAccess) {
+      this.kind = kind;
+      this.token = token;
+      this.userId = userId;
+      this.time = time;
+      this.dto = dto;
+      this.lastAccess = lastAccess;
+    }
+  }
+}
@@ -0,0 +1,246 @@
+package ${package}.module.auth.dao;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32C;
+
+/**
+ * Snapshot binario delle sessioni, per ripartire senza costringere tutti gli utenti a un nuovo
+ * login.
+ *
+ * <p>
+ * Formato (little endian):
+ * <ul>
+ * <li>intestazione da 40 byte: magic, versione, numero di record, numero di stringhe, CRC32C dei
+ * record, CRC32C del dizionario, istante di scrittura, CRC32C dell'intestazione;</li>
+ * <li>record da 48 byte: token UUID (128 bit), utente, creazione e ultimo accesso in millisecondi
+ * epoch, indici di username e ruolo nel dizionario (-1 = null);</li>
+ * <li>dizionario: stringhe UTF-8 precedute dalla lunghezza.</li>
+ * </ul>
+ * La scrittura avviene su un file temporaneo sostituito con una rename atomica; la lettura mappa il
+ * file in memoria e verifica dimensione e checksum prima di restituire qualsiasi record. Sono
+ * salvate solo le sessioni con token UUID.
+ */
+final class SessionSnapshot {
+  static final int MAGIC = 0x534E5353;
+  static final int VERSION = 1;
+  static final int HEADER_BYTES = 40;
+  static final int RECORD_BYTES = 48;
+
+  private static final int BUFFER_BYTES = 1 << 20;
+
+  private SessionSnapshot() {
+  }
+
+  /** Riceve i record letti, nell'ordine del file */
+  interface Visitor {
+    void accept(long tokenHi, long tokenLo, long userId, long createdMs, long lastAccessMs, String username, String role);
+  }
+
+  /** Scrittura in streaming: i record vanno su disco man mano, il dizionario alla fine */
+  static final class Writer implements AutoCloseable {
+    private final Path file;
+    private final Path temp;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    private final CRC32C recordsCrc = new CRC32C();
+    private final Map<String, Integer> dictionary = new LinkedHashMap<>();
+    private int count;
+    private boolean committed;
+
+    Writer(Path file) throws IOException {
+      this.file = file;
+      Path dir = file.toAbsolutePath().getParent();
+      Files.createDirectories(dir);
+      this.temp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+      this.channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+      channel.position(HEADER_BYTES);
+    }
+
+    void add(long tokenHi, long tokenLo, long userId, long createdMs, long lastAccessMs, String username, String role)
+        throws IOException {
+      if (buffer.remaining() < RECORD_BYTES) {
+        drain(recordsCrc);
+      }
+      buffer.putLong(tokenHi);
+      buffer.putLong(tokenLo);
+      buffer.putLong(userId);
+      buffer.putLong(createdMs);
+      buffer.putLong(lastAccessMs);
+      buffer.putInt(encode(username));
+      buffer.putInt(encode(role));
+      count++;
+    }
+
+    int size() {
+      return count;
+    }
+
+    /** Completa il file e lo sostituisce a quello precedente */
+    void commit() throws IOException {
+      drain(recordsCrc);
+
+      CRC32C dictionaryCrc = new CRC32C();
+      for (String value : dictionary.keySet()) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (buffer.remaining() < 4 + bytes.length) {
+          drain(dictionaryCrc);
+        }
+        if (buffer.remaining() < 4 + bytes.length) {
+          throw new IOException("Stringa troppo lunga per lo snapshot: " + bytes.length + " byte");
+        }
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+      }
+      drain(dictionaryCrc);
+
+      ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+      header.putInt(MAGIC);
+      header.putInt(VERSION);
+      header.putInt(count);
+      header.putInt(dictionary.size());
+      header.putInt((int) recordsCrc.getValue());
+      header.putInt((int) dictionaryCrc.getValue());
+      header.putLong(System.currentTimeMillis());
+      header.putInt(headerCrc(header));
+      header.putInt(0);
+      header.flip();
+      channel.write(header, 0);
+
+      channel.force(true);
+      channel.close();
+      Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      committed = true;
+    }
+
+    /** Senza commit il file temporaneo viene eliminato e lo snapshot precedente resta valido */
+    @Override
+    public void close() throws IOException {
+      if (!committed) {
+        channel.close();
+        Files.deleteIfExists(temp);
+      }
+    }
+
+    private int encode(String value) {
+      if (value == null) {
+        return -1;
+      }
+      Integer id = dictionary.get(value);
+      if (id == null) {
+        id = dictionary.size();
+        dictionary.put(value, id);
+      }
+      return id;
+    }
+
+    private void drain(CRC32C crc) throws IOException {
+      buffer.flip();
+      crc.update(buffer.duplicate());
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      buffer.clear();
+    }
+  }
+
+  /**
+   * Legge uno snapshot.
+   *
+   * @return record letti
+   * @throws IOException
+   *           se il file è incompleto, di un'altra versione o con checksum errato
+   */
+  static int read(Path file, Visitor visitor) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size < HEADER_BYTES) {
+        throw new IOException("Snapshot sessioni troncato: " + file);
+      }
+      MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      map.order(ByteOrder.LITTLE_ENDIAN);
+
+      if (map.getInt(0) != MAGIC || map.getInt(4) != VERSION) {
+        throw new IOException("Snapshot sessioni non riconosciuto: " + file);
+      }
+      if (headerCrc(map) != map.getInt(32)) {
+        throw new IOException("Checksum dell'intestazione errato: " + file);
+      }
+      int count = map.getInt(8);
+      int strings = map.getInt(12);
+      long recordsEnd = HEADER_BYTES + (long) count * RECORD_BYTES;
+      if (count < 0 || strings < 0 || recordsEnd > size) {
+        throw new IOException("Snapshot sessioni troncato: " + file);
+      }
+
+      if (crc(map, HEADER_BYTES, recordsEnd) != map.getInt(16)) {
+        throw new IOException("Checksum dei record errato: " + file);
+      }
+      if (crc(map, recordsEnd, size) != map.getInt(20)) {
+        throw new IOException("Checksum del dizionario errato: " + file);
+      }
+
+      String[] dictionary = new String[strings];
+      int position = (int) recordsEnd;
+      for (int i = 0; i < strings; i++) {
+        int length = map.getInt(position);
+        if (length < 0 || position + 4L + length > size) {
+          throw new IOException("Dizionario dello snapshot non valido: " + file);
+        }
+        byte[] bytes = new byte[length];
+        map.get(position + 4, bytes);
+        dictionary[i] = new String(bytes, StandardCharsets.UTF_8);
+        position += 4 + length;
+      }
+
+      for (int i = 0; i < count; i++) {
+        int base = HEADER_BYTES + i * RECORD_BYTES;
+        int username = map.getInt(base + 40);
+        int role = map.getInt(base + 44);
+        if (username >= strings || role >= strings) {
+          throw new IOException("Indice di dizionario non valido nel record " + i + ": " + file);
+        }
+        visitor.accept(
+            map.getLong(base),
+            map.getLong(base + 8),
+            map.getLong(base + 16),
+            map.getLong(base + 24),
+            map.getLong(base + 32),
+            username >= 0 ? dictionary[username] : null,
+            role >= 0 ? dictionary[role] : null);
+      }
+      return count;
+    }
+  }
+
+  /** Token UUID come coppia di long, null se il token non è un UUID */
+  static UUID parse(String token) {
+    if (token == null || token.length() != 36) {
+      return null;
+    }
+    try {
+      return UUID.fromString(token);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  private static int headerCrc(ByteBuffer header) {
+    return crc(header, 0, 32);
+  }
+
+  private static int crc(ByteBuffer buffer, long from, long to) {
+    CRC32C crc = new CRC32C();
+    crc.update(buffer.duplicate().position((int) from).limit((int) to));
+    return (int) crc.getValue();
+  }
+}
@@ -0,0 +1,59 @@
+package ${package}.module.auth.dao;
+
+import ${package}.module.auth.dto.SessionDto;
+import ${package}.module.auth.dto.SessionStatsDto;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Memorizzazione delle sessioni usata da {@link SessionDao}: {@link HeapSessionStore} (mappa sullo
+ * heap, eventualmente con database) o {@link OffHeapSessionDao} (SESSION_BACKEND=offheap). Il
+ * {@link SessionDao} sceglie l'implementazione alla creazione e gestisce lo snapshot.
+ */
+interface SessionStore {
+
+  void salva(SessionDto dto);
+
+  /** Un errore del database viene propagato, vedi {@link SessionDao#find(String)} */
+  Optional<SessionDto> find(String token) throws Exception;
+
+  /** Vedi {@link SessionDao#isDefinitiveMiss(String)} */
+  boolean isDefinitiveMiss(String token);
+
+  void rimuovi(String token);
+
+  List<SessionDto> findByUser(Long userId);
+
+  List<SessionDto> findAllActive();
+
+  void invalidaByUser(Long userId);
+
+  /** Vedi {@link SessionDao#addListener(Consumer)} */
+  void addListener(Consumer<String> listener);
+
+  /** Vedi {@link SessionDao#addRevocationListener(Consumer)} */
+  void addRevocationListener(Consumer<SessionDbStore.Revocation> listener);
+
+  SessionStatsDto getStats();
+
+  /**
+   * Scrive le sessioni non scadute (con token UUID) nello snapshot, senza chiuderlo.
+   *
+   * @return sessioni scritte
+   */
+  int writeSnapshot(SessionSnapshot.Writer writer) throws IOException;
+
+  /**
+   * Carica uno snapshot, scartando le sessioni nel frattempo scadute.
+   *
+   * @return sessioni caricate
+   */
+  int restore(Path file) throws IOException;
+
+  /** Ferma i thread e scrive le operazioni ancora in coda */
+  void close();
+}
@@ -0,0 +1,102 @@
+package ${package}.module.auth.dao;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Indice concorrente utente -> token di sessione, senza lock globali.
+ *
+ * <p>
+ * Aggiunta e rimozione di un token sono O(1) e non bloccano gli altri utenti né, nel caso
+ * normale, gli altri token dello stesso utente (es. account di servizio con molti login). Ogni
+ * insieme di token ha un flag closed: chi aggiunge un token lo inserisce e poi verifica il flag;
+ * chi chiude l'insieme scrive il flag e poi ne legge il contenuto. Con questo ordine un token
+ * aggiunto a un insieme non chiuso è sempre visto da chi lo chiude, quindi:
+ * <ul>
+ * <li>invalidate rimuove l'insieme e lo chiude definitivamente: ogni login concorrente è incluso
+ * nell'invalidazione oppure finisce in un nuovo insieme, mai perso a metà;</li>
+ * <li>un insieme rimasto vuoto viene eliminato chiudendolo solo se, a flag scritto, è ancora vuoto;
+ * altrimenti viene riaperto.</li>
+ * </ul>
+ */
+final class UserSessionIndex {
+  private final Map<Long, Tokens> byUser = new ConcurrentHashMap<>();
+
+  private static final class Tokens {
+    final Set<String> tokens = ConcurrentHashMap.newKeySet();
+    volatile boolean closed;
+  }
+
+  void add(Long userId, String token) {
+    for (;;) {
+      Tokens current = byUser.get(userId);
+      if (current == null) {
+        Tokens created = new Tokens();
+        current = byUser.putIfAbsent(userId, created);
+        if (current == null) {
+          current = created;
+        }
+      }
+
+      current.tokens.add(token);
+      if (!current.closed) {
+        return;
+      }
+      if (!current.tokens.remove(token)) {
+        // Preso da un'invalidazione concorrente: il login è avvenuto prima dell'invalidazione
+        return;
+      }
+      // Insieme in chiusura: riprova su quello che lo sostituisce (o sullo stesso, se riaperto)
+      Thread.onSpinWait();
+    }
+  }
+
+  void remove(Long userId, String token) {
+    Tokens current = byUser.get(userId);
+    if (current != null && current.tokens.remove(token) && current.tokens.isEmpty()) {
+      byUser.computeIfPresent(userId, (k, tokens) -> {
+        if (tokens != current) {
+          return tokens;
+        }
+        tokens.closed = true;
+        if (tokens.tokens.isEmpty()) {
+          return null;
+        }
+        // Login concorrente: l'insieme resta
+        tokens.closed = false;
+        return tokens;
+      });
+    }
+  }
+
+  /**
+   * Rimuove tutti i token dell'utente, in modo atomico rispetto ai login concorrenti.
+   *
+   * @param removed
+   *          riceve ogni token rimosso, una sola volta
+   */
+  void invalidate(Long userId, Consumer<String> removed) {
+    Tokens current = byUser.remove(userId);
+    if (current == null) {
+      return;
+    }
+    current.closed = true;
+    for (String token : current.tokens) {
+      if (current.tokens.remove(token)) {
+        removed.accept(token);
+      }
+    }
+  }
+
+  /** Token correnti dell'utente (vista non bloccante) */
+  Set<String> tokens(Long userId) {
+    Tokens current = byUser.get(userId);
+    return current != null ? Collections.unmodifiableSet(current.tokens) : Collections.emptySet();
+  }
+
+  /** Utenti con almeno un token */
+  int size() {
+    return byUser.size();
+  }
+}
@@ -0,0 +1,26 @@
+package ${package}.module.auth.dto;
+
+public class SessionStatsDto {
+  public long liveSessions;
+  public long liveUsers;
+  public long created;
+  public long removed;
+  public long idleExpired;
+  public long absoluteExpired;
+  public long pendingTimers;
+  public long storeLoads;
+  public long storePendingWrites;
+  public long storeWritten;
+  public long storeDropped;
+  public long storeErrors;
+  public long remoteRevoked;
+  public long offHeapBytes;
+  public long snapshotRestored;
+  public long snapshotLoadMillis;
+  public long snapshotSaved;
+  public long snapshotErrors;
+  public long cacheHits;
+  public long cacheMisses;
+  public long cacheErrors;
+  public long cacheSize;
+}
@@ -16,11 +16,14 @@ import java.util.UUID;
 public class AuthService {
   private final UserDao userDao;
   private final SessionDao sessionDao;
+  private final SessionService sessionService;
 
   public AuthService(UserDao userDao,
-                     SessionDao sessionDao) {
+                     SessionDao sessionDao,
+                     SessionService sessionService) {
     this.userDao = userDao;
     this.sessionDao = sessionDao;
+    this.sessionService = sessionService;
   }
 
   public LoginResponseDto login(LoginRequestDto dto) {
@@ -33,6 +36,16 @@ public class AuthService {
       return null;
     }
 
+    // Stateless: il JWT contiene già utente e ruolo, nessuna sessione da salvare
+    if (sessionService.isStateless()) {
+      LoginResponseDto resp = new LoginResponseDto();
+      resp.token = sessionService.issueToken(user.id, user.username, user.ruolo);
+      resp.userId = user.id;
+      resp.username = user.username;
+      resp.ruolo = user.ruolo;
+      return resp;
+    }
+
     // Crea sessione
     SessionDto session = new SessionDto();
     session.userId = user.id;
@@ -52,7 +65,8 @@ public class AuthService {
     return resp;
   }
 
+  /** Con AUTH_MODE=jwt il token viene revocato fino alla sua scadenza */
   public void logout(String token) {
-    sessionDao.rimuovi(token);
+    sessionService.revoke(token);
   }
 }
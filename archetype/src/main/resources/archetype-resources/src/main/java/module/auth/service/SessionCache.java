@@ -0,0 +1,164 @@
+package ${package}.module.auth.service;
+
+import ${package}.module.auth.dto.SessionDto;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Cache limitata dei token già verificati, sia validi sia non validi: una richiesta già vista
+ * costa una sola lettura da una ConcurrentHashMap, senza lock.
+ *
+ * <p>
+ * Un token valido vale al più ttl millisecondi; {@link #invalidate(String)} lo toglie subito. Un
+ * token non trovato vale ttl solo se l'assenza è definitiva (vedi SessionDao.isDefinitiveMiss),
+ * altrimenti negativeTtl: con il database un login appena fatto su un altro nodo potrebbe non
+ * essere ancora scritto. Un errore del loader non viene mai messo in cache.
+ *
+ * <p>
+ * Per non rimettere in cache un risultato letto prima di un'invalidazione concorrente, ogni token
+ * appartiene a una di STRIPES sequenze: l'invalidazione incrementa la sequenza e poi rimuove il
+ * token, la lettura annota la sequenza, interroga il loader, inserisce il risultato e lo ritira se
+ * nel frattempo la sequenza è cambiata.
+ *
+ * <p>
+ * Oltre maxEntries un solo thread alla volta libera spazio fino a tre quarti della capienza,
+ * togliendo prima i risultati scaduti e quelli negativi: una raffica di token falsi non svuota la
+ * cache delle sessioni valide.
+ */
+final class SessionCache {
+  private static final int STRIPES = 64;
+  /** Token più lunghi non vengono messi in cache */
+  private static final int MAX_TOKEN_LENGTH = 1024;
+
+  /** Ricerca di una sessione; un'eccezione indica un esito incerto */
+  interface Loader {
+    Optional<SessionDto> load(String token) throws Exception;
+  }
+
+  private final Loader loader;
+  private final Predicate<String> definitiveMiss;
+  private final int maxEntries;
+  private final long ttlNanos;
+  private final long negativeTtlNanos;
+
+  private final Map<String, Cached> entries = new ConcurrentHashMap<>();
+  private final AtomicLongArray sequences = new AtomicLongArray(STRIPES);
+  private final AtomicBoolean evicting = new AtomicBoolean();
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder errors = new LongAdder();
+
+  /**
+   * @param negativeTtlMillis
+   *          durata di un'assenza non definitiva (0 = non metterla in cache)
+   */
+  SessionCache(Loader loader, Predicate<String> definitiveMiss, int maxEntries, long ttlMillis, long negativeTtlMillis) {
+    if (maxEntries <= 0 || ttlMillis <= 0 || negativeTtlMillis < 0) {
+      throw new IllegalArgumentException("Dimensione e durata della cache devono essere positive");
+    }
+    this.loader = loader;
+    this.definitiveMiss = definitiveMiss;
+    this.maxEntries = maxEntries;
+    this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+    this.negativeTtlNanos = TimeUnit.MILLISECONDS.toNanos(Math.min(negativeTtlMillis, ttlMillis));
+  }
+
+  Optional<SessionDto> get(String token) {
+    long now = System.nanoTime();
+    Cached cached = entries.get(token);
+    if (cached != null && now - cached.expires < 0) {
+      hits.increment();
+      return cached.session;
+    }
+    misses.increment();
+
+    int stripe = stripe(token);
+    long sequence = sequences.get(stripe);
+    Optional<SessionDto> session;
+    try {
+      session = loader.load(token);
+    } catch (Exception e) {
+      // Database non raggiungibile: la richiesta fallisce, la successiva riprova
+      errors.increment();
+      return Optional.empty();
+    }
+    if (token.length() > MAX_TOKEN_LENGTH) {
+      return session;
+    }
+    long ttl = session.isPresent() || definitiveMiss.test(token) ? ttlNanos : negativeTtlNanos;
+    if (ttl == 0) {
+      return session;
+    }
+    Cached fresh = new Cached(session, now + ttl);
+    entries.put(token, fresh);
+    if (sequences.get(stripe) != sequence) {
+      // Invalidazione concorrente: il risultato potrebbe essere già superato
+      entries.remove(token, fresh);
+    } else if (entries.size() > maxEntries) {
+      evict(now);
+    }
+    return session;
+  }
+
+  void invalidate(String token) {
+    sequences.incrementAndGet(stripe(token));
+    entries.remove(token);
+  }
+
+  long getHits() {
+    return hits.sum();
+  }
+
+  long getMisses() {
+    return misses.sum();
+  }
+
+  long getErrors() {
+    return errors.sum();
+  }
+
+  int size() {
+    return entries.size();
+  }
+
+  private void evict(long now) {
+    if (!evicting.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      int target = maxEntries - maxEntries / 4;
+      entries.values().removeIf(cached -> now - cached.expires >= 0 || cached.session.isEmpty());
+      Iterator<Cached> it = entries.values().iterator();
+      while (entries.size() > target && it.hasNext()) {
+        it.next();
+        it.remove();
+      }
+    } finally {
+      evicting.set(false);
+    }
+  }
+
+  private static int stripe(String token) {
+    int h = token.hashCode();
+    return (h ^ (h >>> 16)) & (STRIPES - 1);
+  }
+
+  private static final class Cached {
+    final Optional<SessionDto> session;
+    final long expires;
+
+    Cached(Optional<SessionDto> session, long expires) {
+      this.session = session;
+      this.expires = expires;
+    }
+  }
+}
@@ -2,32 +2,197 @@ package ${package}.module.auth.service;
 
 import ${package}.module.auth.dao.SessionDao;
 import ${package}.module.auth.dto.SessionDto;
+import ${package}.module.auth.dto.SessionStatsDto;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import dev.springtools.util.Env;
+import dev.springtools.util.JwtUtil;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Le verifiche dei token passano da una {@link SessionCache} (AUTH_CACHE_SIZE token, default
+ * 100000, per AUTH_CACHE_MILLIS, default 5000), svuotata dal {@link SessionDao} ad ogni login,
+ * logout, invalidazione o scadenza. Una sessione usata solo tramite la cache rinnova la scadenza
+ * per inattività una volta ogni AUTH_CACHE_MILLIS. Un token non trovato nel database condiviso
+ * resta in cache solo AUTH_CACHE_NEGATIVE_MILLIS (default 100, 0 per non memorizzarlo): potrebbe
+ * essere un login di un altro nodo non ancora scritto.
+ *
+ * <p>
+ * Con AUTH_MODE=jwt il login emette JWT firmati con JWT_SECRET e validi JWT_EXPIRY_SECONDS
+ * (default 3600). I token verificati restano nella cache di {@link JwtUtil} (AUTH_CACHE_SIZE)
+ * fino a exp. Logout e invalidazione per utente annotano il jti del token, o l'istante di
+ * invalidazione dell'utente, in una lista di revoche tenuta fino alla scadenza dei token
+ * interessati e controllata ad ogni verifica. Con SESSION_STORE=db le revoche passano agli altri
+ * nodi tramite auth_session_revocations e vengono rilette all'avvio per JWT_EXPIRY_SECONDS;
+ * altrimenti valgono solo sul nodo che le riceve. JWT_EXPIRY_SECONDS non deve superare
+ * SESSION_MAX_HOURS, oltre la quale il database dimentica le revoche. L'elenco delle sessioni
+ * attive non è disponibile.
+ */
 @Service
 public class SessionService {
   private final SessionDao dao;
+  private final SessionCache cache;
+  /** Null se le sessioni sono gestite dal {@link SessionDao} */
+  private final JwtUtil jwt;
+  /** JWT revocati: jti -> scadenza del token (millisecondi epoch) */
+  private final Map<String, Long> revokedIds = new ConcurrentHashMap<>();
+  /** Utenti invalidati: userId -> istante di invalidazione, token emessi entro sono revocati */
+  private final Map<Long, Long> revokedUsers = new ConcurrentHashMap<>();
 
   public SessionService(SessionDao dao) {
     this.dao = dao;
+    this.cache = new SessionCache(dao::find, dao::isDefinitiveMiss,
+        Env.getInt("AUTH_CACHE_SIZE", 100_000),
+        Env.getLong("AUTH_CACHE_MILLIS", 5000L),
+        Env.getLong("AUTH_CACHE_NEGATIVE_MILLIS", 100L));
+    dao.addListener(cache::invalidate);
+
+    if ("jwt".equalsIgnoreCase(Env.get("AUTH_MODE", "session"))) {
+      String secret = Env.get("JWT_SECRET");
+      if (secret == null || secret.length() < 32) {
+        throw new IllegalArgumentException("Con AUTH_MODE=jwt serve JWT_SECRET di almeno 32 caratteri");
+      }
+      this.jwt = new JwtUtil(secret,
+          Env.getLong("JWT_EXPIRY_SECONDS", 3600L),
+          Env.getInt("AUTH_CACHE_SIZE", 100_000));
+      dao.addRevocationListener(revocation -> {
+        if (revocation.token != null) {
+          revokeId(revocation.token);
+        } else if (revocation.userId != null) {
+          revokedUsers.merge(revocation.userId, revocation.changedMs, Math::max);
+        }
+      });
+    } else {
+      this.jwt = null;
+    }
+  }
+
+  /** Vero con AUTH_MODE=jwt */
+  public boolean isStateless() {
+    return jwt != null;
+  }
+
+  /** Emette un JWT (solo con AUTH_MODE=jwt) */
+  public String issueToken(Long userId, String username, String ruolo) {
+    if (jwt == null) {
+      throw new IllegalStateException("Token JWT non abilitati (AUTH_MODE=session)");
+    }
+    return jwt.generate(userId, username, ruolo);
   }
 
   public Optional<SessionDto> getSession(String token) {
-    return dao.get(token);
+    if (jwt != null) {
+      return verify(token);
+    }
+    return cache.get(token);
   }
 
   public boolean isValid(String token) {
-    return dao.get(token).map(s -> s.attiva).orElse(false);
+    return getSession(token).map(s -> s.attiva).orElse(false);
   }
 
   public List<SessionDto> getActiveSessions() {
+    if (jwt != null) {
+      throw new IllegalStateException("Elenco sessioni non disponibile con AUTH_MODE=jwt");
+    }
     return dao.findAllActive();
   }
 
+  /** Logout: chiude la sessione o revoca il JWT fino alla sua scadenza */
+  public void revoke(String token) {
+    if (jwt != null) {
+      if (!revokeId(token)) {
+        return;
+      }
+      purge();
+    }
+    // Con AUTH_MODE=jwt propaga la revoca agli altri nodi (SESSION_STORE=db)
+    dao.rimuovi(token);
+  }
+
   public void invalidateUser(Long userId) {
+    if (jwt != null) {
+      revokedUsers.merge(userId, System.currentTimeMillis(), Math::max);
+      purge();
+    }
     dao.invalidaByUser(userId);
   }
+
+  public SessionStatsDto getStats() {
+    SessionStatsDto stats = dao.getStats();
+    if (jwt != null) {
+      stats.cacheHits = jwt.getHits();
+      stats.cacheMisses = jwt.getMisses();
+      stats.cacheSize = jwt.cached();
+      return stats;
+    }
+    stats.cacheHits = cache.getHits();
+    stats.cacheMisses = cache.getMisses();
+    stats.cacheErrors = cache.getErrors();
+    stats.cacheSize = cache.size();
+    return stats;
+  }
+
+  /** Annota il jti di un JWT valido tra i revocati; falso se il token non è valido */
+  private boolean revokeId(String token) {
+    JwtUtil.Claims claims;
+    try {
+      claims = jwt.verify(token);
+    } catch (JWTVerificationException | NumberFormatException e) {
+      return false;
+    }
+    if (claims.id == null) {
+      return false;
+    }
+    revokedIds.put(claims.id, claims.getExpiresAtMillis());
+    return true;
+  }
+
+  /** Toglie le revoche dei token ormai scaduti */
+  private void purge() {
+    long now = System.currentTimeMillis();
+    long lifetime = TimeUnit.SECONDS.toMillis(jwt.getExpirySeconds());
+    revokedIds.values().removeIf(expires -> now >= expires);
+    revokedUsers.values().removeIf(cutoff -> now - cutoff >= lifetime);
+  }
+
+  private boolean isRevoked(JwtUtil.Claims claims) {
+    if (claims.id != null && revokedIds.containsKey(claims.id)) {
+      return true;
+    }
+    Long cutoff = revokedUsers.get(claims.userId);
+    // iat ha la precisione del secondo: un token dello stesso secondo dell'invalidazione è revocato
+    return cutoff != null && (claims.issuedAt == null || claims.issuedAt.toEpochMilli() <= cutoff);
+  }
+
+  private Optional<SessionDto> verify(String token) {
+    JwtUtil.Claims claims;
+    try {
+      claims = jwt.verify(token);
+    } catch (JWTVerificationException | NumberFormatException e) {
+      return Optional.empty();
+    }
+    if (isRevoked(claims)) {
+      return Optional.empty();
+    }
+    SessionDto dto = new SessionDto();
+    dto.token = token;
+    dto.userId = claims.userId;
+    dto.username = claims.username;
+    dto.ruolo = claims.ruolo;
+    dto.attiva = true;
+    if (claims.issuedAt != null) {
+      dto.createdAt = LocalDateTime.ofInstant(claims.issuedAt, ZoneId.systemDefault())
+          .format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+    }
+    return Optional.of(dto);
+  }
 }
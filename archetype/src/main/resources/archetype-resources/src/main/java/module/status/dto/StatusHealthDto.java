@@ -1,9 +1,51 @@
 package ${package}.module.status.dto;
 
+/** Stato del nodo con i contatori delle sessioni (gauge e totali dall'avvio). */
 public class StatusHealthDto {
     private String status;
+    private long liveSessions;
+    private long liveUsers;
+    private long sessionsCreated;
+    private long sessionsRemoved;
+    private long sessionsIdleExpired;
+    private long sessionsAbsoluteExpired;
+    private long sessionTimers;
 
     public StatusHealthDto() {}
     public StatusHealthDto(String status) { this.status = status; }
+
+    public StatusHealthDto(String status, long liveSessions, long liveUsers, long sessionsCreated,
+                           long sessionsRemoved, long sessionsIdleExpired, long sessionsAbsoluteExpired,
+                           long sessionTimers) {
+        this.status = status;
+        this.liveSessions = liveSessions;
+        this.liveUsers = liveUsers;
+        this.sessionsCreated = sessionsCreated;
+        this.sessionsRemoved = sessionsRemoved;
+        this.sessionsIdleExpired = sessionsIdleExpired;
+        this.sessionsAbsoluteExpired = sessionsAbsoluteExpired;
+        this.sessionTimers = sessionTimers;
+    }
+
     public String getStatus() { return status; }
+
+    /** Sessioni in memoria (gauge) */
+    public long getLiveSessions() { return liveSessions; }
+
+    /** Utenti con almeno una sessione (gauge) */
+    public long getLiveUsers() { return liveUsers; }
+
+    public long getSessionsCreated() { return sessionsCreated; }
+
+    /** Sessioni chiuse da logout o invalidazione */
+    public long getSessionsRemoved() { return sessionsRemoved; }
+
+    /** Sessioni scadute per inattività */
+    public long getSessionsIdleExpired() { return sessionsIdleExpired; }
+
+    /** Sessioni scadute per durata massima */
+    public long getSessionsAbsoluteExpired() { return sessionsAbsoluteExpired; }
+
+    /** Scadenze programmate nella timing wheel (gauge) */
+    public long getSessionTimers() { return sessionTimers; }
 }
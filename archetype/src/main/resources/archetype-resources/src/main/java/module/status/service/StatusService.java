@@ -1,5 +1,7 @@
 package ${package}.module.status.service;
 
+import ${package}.module.auth.dto.SessionStatsDto;
+import ${package}.module.auth.service.SessionService;
 import ${package}.module.status.dao.StatusDao;
 import ${package}.module.status.dto.StatusHealthDto;
 import ${package}.module.status.dto.StatusLogDto;
@@ -11,17 +13,29 @@ public class StatusService
 {
 
   private final StatusDao dao;
+  private final SessionService sessions;
 
-  public StatusService(StatusDao dao)
+  public StatusService(StatusDao dao, SessionService sessions)
   {
     this.dao = dao;
+    this.sessions = sessions;
   }
 
   public StatusHealthDto getHealth()
   {
     StatusHealthDto result;
-
-    result = new StatusHealthDto("UP", 0, 0, 0, 0, 0, 0, 0);
+    SessionStatsDto stats;
+
+    stats = sessions.getStats();
+    result = new StatusHealthDto(
+        "UP",
+        stats.liveSessions,
+        stats.liveUsers,
+        stats.created,
+        stats.removed,
+        stats.idleExpired,
+        stats.absoluteExpired,
+        stats.pendingTimers);
 
     return result;
   }
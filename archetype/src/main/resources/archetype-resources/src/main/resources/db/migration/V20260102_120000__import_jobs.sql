@@ -0,0 +1,15 @@
+-- Job di importazione asincroni (stato e checkpoint per la ripresa)
+CREATE TABLE IF NOT EXISTS import_jobs (
+    id TEXT PRIMARY KEY,
+    node TEXT NOT NULL,
+    source TEXT NOT NULL,
+    status TEXT NOT NULL,
+    checkpoint_row INTEGER NOT NULL DEFAULT 0,
+    rows_written INTEGER NOT NULL DEFAULT 0,
+    expected_rows INTEGER NOT NULL DEFAULT 0,
+    error TEXT,
+    created_at TIMESTAMP NOT NULL,
+    updated_at TIMESTAMP NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_import_jobs_node_status ON import_jobs (node, status);
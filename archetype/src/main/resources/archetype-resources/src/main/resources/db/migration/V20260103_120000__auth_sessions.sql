@@ -0,0 +1,25 @@
+-- Sessioni di autenticazione persistenti (istanti in millisecondi epoch)
+CREATE TABLE IF NOT EXISTS auth_sessions (
+    token TEXT PRIMARY KEY,
+    user_id INTEGER NOT NULL,
+    username TEXT NOT NULL,
+    ruolo TEXT,
+    created_at TEXT,
+    created_ms INTEGER NOT NULL,
+    last_access_ms INTEGER NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_auth_sessions_user ON auth_sessions (user_id);
+CREATE INDEX IF NOT EXISTS idx_auth_sessions_last_access ON auth_sessions (last_access_ms);
+
+-- Revoche (logout, invalidazione per utente) lette dagli altri nodi; token NULL = tutte le sessioni
+-- dell'utente user_id create entro changed_ms
+CREATE TABLE IF NOT EXISTS auth_session_revocations (
+    id INTEGER PRIMARY KEY AUTOINCREMENT,
+    node TEXT NOT NULL,
+    token TEXT,
+    user_id INTEGER,
+    changed_ms INTEGER NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_auth_session_revocations_changed ON auth_session_revocations (changed_ms);
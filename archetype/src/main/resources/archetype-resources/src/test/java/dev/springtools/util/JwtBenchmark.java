@@ -0,0 +1,106 @@
+package dev.springtools.util;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Benchmark JMH: autenticazione di una richiesta (validazione, utente e ruolo) con la versione
+ * precedente di {@link JwtUtil} (verificatore ricostruito e firma ricalcolata ad ogni chiamata),
+ * con un solo decode senza cache e con la cache dei token verificati.
+ *
+ * <p>
+ * Esecuzione: {@code ./mvnw test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=dev.springtools.util.JwtBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtBenchmark
+{
+
+  private static final String SECRET = "benchmark-secret-benchmark-secret";
+  private static final int TOKENS = 1024;
+
+  private String[] tokens;
+  private Algorithm algorithm;
+  private JwtUtil uncached;
+  private JwtUtil cached;
+  private int next;
+
+  @Setup
+  public void setup()
+  {
+    algorithm = Algorithm.HMAC256(SECRET);
+    uncached = new JwtUtil(SECRET, 3600, 0);
+    cached = new JwtUtil(SECRET, 3600, TOKENS * 2);
+
+    tokens = new String[TOKENS];
+    for (int i = 0; i < TOKENS; i++) {
+      tokens[i] = cached.generate((long) i, "user" + i, i % 10 == 0 ? "ADMIN" : "OPERATORE");
+    }
+  }
+
+  @Benchmark
+  public void legacy(Blackhole bh)
+  {
+    String token = token();
+    bh.consume(legacyValidate(token));
+    bh.consume(Long.parseLong(legacyValidate(token).getSubject()));
+    bh.consume(legacyValidate(token).getClaim("ruolo").asString());
+  }
+
+  @Benchmark
+  public void decodeOnce(Blackhole bh)
+  {
+    JwtUtil.Claims claims = uncached.verify(token());
+    bh.consume(claims.userId);
+    bh.consume(claims.ruolo);
+  }
+
+  @Benchmark
+  public void cachedVerify(Blackhole bh)
+  {
+    JwtUtil.Claims claims = cached.verify(token());
+    bh.consume(claims.userId);
+    bh.consume(claims.ruolo);
+  }
+
+  private String token()
+  {
+    next = (next + 1) & (TOKENS - 1);
+    return tokens[next];
+  }
+
+  /** Come JwtUtil.validate prima della cache del verificatore */
+  private DecodedJWT legacyValidate(String token)
+  {
+    return JWT.require(algorithm).build().verify(token);
+  }
+
+  public static void main(String[] args) throws Exception
+  {
+    Options options = new OptionsBuilder()
+        .include(JwtBenchmark.class.getSimpleName())
+        .build();
+    new Runner(options).run();
+  }
+}
@@ -0,0 +1,112 @@
+package dev.springtools.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class TimingWheelTest
+{
+
+  /** Scadenze a cavallo dei confini dei livelli (64, 4096, 262144 tick) e oltre l'orizzonte */
+  private static final long[] DEADLINES = {
+      1, 63, 64, 65, 127, 128, 4095, 4096, 4097, 4160, 262143, 262144, 262145, 300_000,
+      (1L << 24) - 1, 1L << 24, (1L << 24) + 4097, 3L << 24 };
+
+  @Test
+  void firesExactlyAtDeadlineAcrossLevels()
+  {
+    TimingWheel<Long> wheel = new TimingWheel<>(1, 0);
+    // Ordine di inserimento diverso da quello di scadenza
+    for (int i = DEADLINES.length - 1; i >= 0; i--) {
+      wheel.schedule(DEADLINES[i], DEADLINES[i]);
+    }
+    assertEquals(DEADLINES.length, wheel.size());
+
+    List<Long> fired = new ArrayList<>();
+    for (long deadline : DEADLINES) {
+      assertEquals(0, wheel.advance(deadline - 1, fired::add), "prima di " + deadline);
+      assertEquals(1, wheel.advance(deadline, fired::add), "a " + deadline);
+      assertEquals(deadline, fired.get(fired.size() - 1));
+    }
+    assertEquals(0, wheel.size());
+  }
+
+  @Test
+  void deliversInDeadlineOrderWhenAdvancingFar()
+  {
+    TimingWheel<Long> wheel = new TimingWheel<>(1, 0);
+    for (int i = DEADLINES.length - 1; i >= 0; i--) {
+      wheel.schedule(DEADLINES[i], DEADLINES[i]);
+    }
+
+    List<Long> fired = new ArrayList<>();
+    assertEquals(DEADLINES.length, wheel.advance(3L << 24, fired::add));
+    for (int i = 0; i < DEADLINES.length; i++) {
+      assertEquals(DEADLINES[i], fired.get(i));
+    }
+  }
+
+  @Test
+  void cancelsBeforeAndAfterCascade()
+  {
+    TimingWheel<String> wheel = new TimingWheel<>(1, 0);
+    TimingWheel.Timer<String> upper = wheel.schedule("livello 2", 5000);
+    TimingWheel.Timer<String> cascaded = wheel.schedule("ridistribuito", 4200);
+    TimingWheel.Timer<String> kept = wheel.schedule("mantenuto", 4300);
+
+    assertTrue(wheel.cancel(upper));
+    assertFalse(wheel.cancel(upper));
+
+    // Al tick 4096 i timer del livello 1 scendono al livello 0
+    List<String> fired = new ArrayList<>();
+    assertEquals(0, wheel.advance(4100, fired::add));
+    assertTrue(wheel.cancel(cascaded));
+    assertEquals(1, wheel.size());
+
+    assertEquals(1, wheel.advance(10_000, fired::add));
+    assertEquals(List.of("mantenuto"), fired);
+    assertFalse(wheel.cancel(kept));
+    assertEquals(0, wheel.size());
+  }
+
+  @Test
+  void reschedulesFromConsumerAcrossLevels()
+  {
+    TimingWheel<String> wheel = new TimingWheel<>(1, 0);
+    wheel.schedule("sessione", 60);
+    long[] now = {0};
+    List<Long> fired = new ArrayList<>();
+
+    // Riprogrammata dal consumer oltre il livello 0 (70 e 5000 tick dopo), poi lasciata scadere
+    long[] delays = {70, 5000};
+    for (now[0] = 1; now[0] <= 20_000; now[0]++) {
+      wheel.advance(now[0], value -> {
+        fired.add(now[0]);
+        if (fired.size() <= delays.length) {
+          wheel.schedule(value, now[0] + delays[fired.size() - 1]);
+        }
+      });
+    }
+    assertEquals(List.of(60L, 130L, 5130L), fired);
+    assertEquals(0, wheel.size());
+  }
+
+  @Test
+  void roundsDeadlinesUpToTicks()
+  {
+    TimingWheel<String> wheel = new TimingWheel<>(10, 1000);
+    wheel.schedule("passata", 500);
+    wheel.schedule("arrotondata", 1015);
+
+    List<String> fired = new ArrayList<>();
+    assertEquals(0, wheel.advance(1009, fired::add));
+    assertEquals(1, wheel.advance(1010, fired::add));
+    assertEquals(0, wheel.advance(1019, fired::add));
+    assertEquals(1, wheel.advance(1020, fired::add));
+    assertEquals(List.of("passata", "arrotondata"), fired);
+  }
+}
@@ -0,0 +1,97 @@
+package dev.springtools.util.excel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ExternalSorterTest
+{
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void spillsAndMergesInStableOrder() throws Exception
+  {
+    Random random = new Random(42);
+    int rows = 5000;
+    List<long[]> delivered = new ArrayList<>();
+
+    // Budget minimo: poche righe per sequenza, oltre MAX_FAN_IN sequenze (fusione in più passaggi)
+    try (ExternalSorter sorter = new ExternalSorter(new String[]{"codice"}, new MemoryGovernor(2048), directory)) {
+      for (int i = 1; i <= rows; i++) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("codice", (long) random.nextInt(50));
+        row.put("seq", (long) i);
+        sorter.add(row, i, 0);
+      }
+      sorter.drain((row, rowNumber, sheet) -> {
+        assertEquals(row.get("seq"), rowNumber);
+        assertEquals(2, row.size());
+        delivered.add(new long[]{(Long) row.get("codice"), rowNumber});
+      });
+      assertTrue(sorter.getRuns() > 64, "sequenze scritte: " + sorter.getRuns());
+    }
+
+    assertEquals(rows, delivered.size());
+    for (int i = 1; i < delivered.size(); i++) {
+      long[] previous = delivered.get(i - 1);
+      long[] current = delivered.get(i);
+      assertTrue(previous[0] <= current[0], "ordine per codice alla posizione " + i);
+      if (previous[0] == current[0]) {
+        assertTrue(previous[1] < current[1], "ordine di arrivo a parità di codice alla posizione " + i);
+      }
+    }
+    try (Stream<Path> left = Files.list(directory)) {
+      assertEquals(0, left.count(), "sequenze non eliminate");
+    }
+  }
+
+  @Test
+  void inMemorySortKeepsNullsLast() throws Exception
+  {
+    List<Object> delivered = new ArrayList<>();
+    try (ExternalSorter sorter = new ExternalSorter(new String[]{"codice"}, new MemoryGovernor(1 << 20), directory)) {
+      Object[] values = {"B", null, 3L, "A", null, 1.5};
+      for (int i = 0; i < values.length; i++) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("codice", values[i]);
+        sorter.add(row, i + 1, 0);
+      }
+      sorter.drain((row, rowNumber, sheet) -> delivered.add(row.get("codice")));
+      assertEquals(0, sorter.getRuns());
+    }
+    assertEquals(Arrays.asList(1.5, 3L, "A", "B", null, null), delivered);
+  }
+
+  @Test
+  void mixedTypesHaveTotalOrder()
+  {
+    Object[] values = {9.5, 10.0, "9", "10", 9L, 10, "abc", true, false, null};
+    for (Object a : values) {
+      assertEquals(0, ExternalSorter.compareValues(a, a));
+      for (Object b : values) {
+        assertEquals(
+            Integer.signum(ExternalSorter.compareValues(a, b)),
+            -Integer.signum(ExternalSorter.compareValues(b, a)),
+            a + " / " + b);
+        for (Object c : values) {
+          if (ExternalSorter.compareValues(a, b) < 0 && ExternalSorter.compareValues(b, c) < 0) {
+            assertTrue(ExternalSorter.compareValues(a, c) < 0, a + " < " + b + " < " + c);
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,111 @@
+package dev.springtools.util.excel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sqlite.SQLiteDataSource;
+
+class ImportJobManagerTest
+{
+
+  private static final int ROWS_PER_SHEET = 500;
+
+  @TempDir
+  Path directory;
+
+  private ImportJobManager manager;
+
+  @BeforeEach
+  void open() throws Exception
+  {
+    SQLiteDataSource dataSource = new SQLiteDataSource();
+    dataSource.setUrl("jdbc:sqlite:" + directory.resolve("jobs.db"));
+    String ddl;
+    try (InputStream in = getClass().getResourceAsStream("/db/migration/V20260102_120000__import_jobs.sql")) {
+      ddl = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+    try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+      for (String sql : ddl.split(";")) {
+        if (!sql.isBlank()) {
+          statement.execute(sql);
+        }
+      }
+    }
+    manager = new ImportJobManager(dataSource, 1, 10).scheduler(new ImportScheduler(Long.MAX_VALUE));
+  }
+
+  @AfterEach
+  void close()
+  {
+    manager.close();
+  }
+
+  @Test
+  void resumesMultiSheetJobFromStart() throws Exception
+  {
+    ImportTask task = () -> new ExcelImporter(
+        List.of(sheet("primo", 0), sheet("secondo", ROWS_PER_SHEET)),
+        header -> header,
+        row -> row);
+
+    // Prima esecuzione: fallisce dopo diversi intervalli di checkpoint
+    AtomicInteger delivered = new AtomicInteger();
+    ImportJob job = manager.submit("fogli.xlsx", 2 * ROWS_PER_SHEET, task, row -> {
+      if (delivered.incrementAndGet() == 100) {
+        throw new IllegalStateException("errore simulato");
+      }
+    });
+    assertTrue(job.await(30, TimeUnit.SECONDS));
+    assertEquals(ImportJob.Status.FAILED, job.getStatus());
+
+    List<ImportProgress> resumable = manager.findResumable();
+    assertEquals(1, resumable.size());
+    assertEquals(0, resumable.get(0).getCheckpointRow());
+
+    // Ripresa: riparte dall'inizio e consegna tutte le righe di entrambi i fogli
+    Set<Object> ids = ConcurrentHashMap.newKeySet();
+    ImportJob resumed = manager.resume(job.getId(), task, row -> ids.add(row.get("id")));
+    assertTrue(resumed.await(30, TimeUnit.SECONDS));
+    assertEquals(ImportJob.Status.COMPLETED, resumed.getStatus(), resumed.getError());
+    assertEquals(2 * ROWS_PER_SHEET, ids.size());
+  }
+
+  private static SheetReader sheet(String name, int firstId)
+  {
+    return new SheetReader()
+    {
+      @Override
+      public String getName()
+      {
+        return name;
+      }
+
+      @Override
+      public void read(RowConsumer consumer) throws Exception
+      {
+        for (int i = 0; i < ROWS_PER_SHEET; i++) {
+          Map<String, Object> row = new HashMap<>();
+          row.put("id", (long) (firstId + i));
+          row.put("nome", name + " " + i);
+          consumer.accept(row);
+        }
+      }
+    };
+  }
+}
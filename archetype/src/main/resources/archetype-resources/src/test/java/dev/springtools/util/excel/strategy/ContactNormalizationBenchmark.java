@@ -0,0 +1,196 @@
+package dev.springtools.util.excel.strategy;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Benchmark JMH: confronta la normalizzazione contatti basata su regex (implementazione
+ * precedente) con {@link ContactNormalizationStrategy} basata su {@link ContactNormalizers}.
+ *
+ * <p>
+ * Esecuzione: {@code ./mvnw test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=dev.springtools.util.excel.strategy.ContactNormalizationBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContactNormalizationBenchmark
+{
+
+  /** clean: valori già normalizzati (fast path), dirty: valori da ripulire */
+  @Param({"clean", "dirty"})
+  public String dataset;
+
+  private List<Map<String, Object>> rows;
+  private NormalizationStrategy legacy;
+  private NormalizationStrategy current;
+  private NormalizationStrategy currentE164;
+
+  @Setup
+  public void setup()
+  {
+    Random random = new Random(42);
+    boolean dirty = "dirty".equals(dataset);
+
+    rows = new ArrayList<>();
+    for (int i = 0; i < 1024; i++) {
+      Map<String, Object> row = new HashMap<>();
+      long number = 3_000_000_000L + random.nextInt(999_999_999);
+      if (dirty) {
+        row.put("telefono", "(" + (number / 10_000_000) + ") " + (number % 10_000_000 / 1000) + "-" + (number % 1000));
+        row.put("email", "  Mario.Rossi" + i + "@Example.COM ");
+        row.put("nome", " mARIO ");
+        row.put("cognome", "ROSSI");
+        row.put("citta", " Roma ");
+      } else {
+        row.put("telefono", String.valueOf(number));
+        row.put("email", "mario.rossi" + i + "@example.com");
+        row.put("nome", "Mario");
+        row.put("cognome", "Rossi");
+        row.put("citta", "Roma");
+      }
+      rows.add(row);
+    }
+
+    legacy = new LegacyContactNormalizationStrategy();
+    current = new ContactNormalizationStrategy();
+    currentE164 = new ContactNormalizationStrategy(true, "39");
+  }
+
+  @Benchmark
+  public void legacy(Blackhole bh)
+  {
+    for (Map<String, Object> row : rows) {
+      bh.consume(legacy.normalize(row));
+    }
+  }
+
+  @Benchmark
+  public void current(Blackhole bh)
+  {
+    for (Map<String, Object> row : rows) {
+      bh.consume(current.normalize(row));
+    }
+  }
+
+  @Benchmark
+  public void currentE164(Blackhole bh)
+  {
+    for (Map<String, Object> row : rows) {
+      bh.consume(currentE164.normalize(row));
+    }
+  }
+
+  public static void main(String[] args) throws Exception
+  {
+    Options opt = new OptionsBuilder()
+        .include(ContactNormalizationBenchmark.class.getSimpleName())
+        .build();
+    new Runner(opt).run();
+  }
+
+  /** Copia dell'implementazione precedente (regex + substring), usata come baseline */
+  static class LegacyContactNormalizationStrategy implements NormalizationStrategy
+  {
+
+    @Override
+    public Map<String, Object> normalize(Map<String, Object> row)
+    {
+      Map<String, Object> normalized = new HashMap<>();
+
+      for (Map.Entry<String, Object> entry : row.entrySet()) {
+        String key = entry.getKey();
+        Object value = entry.getValue();
+
+        if (value == null) {
+          normalized.put(key, null);
+          continue;
+        }
+
+        switch (key.toLowerCase()) {
+          case "telefono" :
+          case "phone" :
+          case "tel" :
+            normalized.put(key, normalizePhone(value));
+            break;
+
+          case "email" :
+          case "mail" :
+            normalized.put(key, normalizeEmail(value));
+            break;
+
+          case "nome" :
+          case "name" :
+          case "first_name" :
+          case "firstname" :
+          case "cognome" :
+          case "surname" :
+          case "last_name" :
+          case "lastname" :
+            normalized.put(key, normalizeName(value));
+            break;
+
+          default :
+            if (value instanceof String) {
+              normalized.put(key, ((String) value).trim());
+            } else {
+              normalized.put(key, value);
+            }
+        }
+      }
+
+      return normalized;
+    }
+
+    private String normalizePhone(Object value)
+    {
+      String phone;
+
+      if (value instanceof Number) {
+        phone = String.valueOf(((Number) value).longValue());
+      } else {
+        phone = value.toString();
+      }
+
+      phone = phone.replaceAll("[\\s\\-\\(\\)\\.]", "");
+      return phone.isEmpty() ? null : phone;
+    }
+
+    private String normalizeEmail(Object value)
+    {
+      String email = value.toString().trim().toLowerCase();
+      return email.isEmpty() ? null : email;
+    }
+
+    private String normalizeName(Object value)
+    {
+      String name = value.toString().trim();
+      if (name.isEmpty()) {
+        return null;
+      }
+      return name.substring(0, 1).toUpperCase() + name.substring(1).toLowerCase();
+    }
+  }
+}
@@ -0,0 +1,103 @@
+package ${package}.module.auth.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import ${package}.module.auth.dto.SessionDto;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class OffHeapSessionDaoTest {
+
+  private final OffHeapSessionDao dao =
+      new OffHeapSessionDao(TimeUnit.MINUTES.toMillis(30), TimeUnit.HOURS.toMillis(12), 1024);
+
+  @AfterEach
+  void close() {
+    dao.close();
+  }
+
+  @Test
+  void insertsAndFindsSessions() {
+    SessionDto dto = session(7, UUID.randomUUID().toString());
+    dao.salva(dto);
+
+    Optional<SessionDto> found = dao.find(dto.token);
+    assertTrue(found.isPresent());
+    assertEquals(dto.token, found.get().token);
+    assertEquals(7L, found.get().userId);
+    assertEquals("utente7", found.get().username);
+    assertEquals("OPERATORE", found.get().ruolo);
+
+    assertFalse(dao.find(UUID.randomUUID().toString()).isPresent());
+    assertFalse(dao.find("non-un-uuid").isPresent());
+  }
+
+  @Test
+  void deleteKeepsProbeChainsIntact() {
+    // Tabella da 2048 posizioni quasi piena a metà: molte catene di collisione, anche a cavallo
+    // di quelle svuotate dallo spostamento all'indietro
+    Random random = new Random(42);
+    List<String> tokens = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      String token = new UUID(random.nextLong(), random.nextLong()).toString();
+      tokens.add(token);
+      dao.salva(session(i % 50, token));
+    }
+
+    List<String> removed = new ArrayList<>();
+    for (int i = 0; i < tokens.size(); i += 3) {
+      dao.rimuovi(tokens.get(i));
+      removed.add(tokens.get(i));
+    }
+
+    for (int i = 0; i < tokens.size(); i++) {
+      assertEquals(i % 3 != 0, dao.find(tokens.get(i)).isPresent(), "token " + i);
+    }
+    assertEquals(tokens.size() - removed.size(), dao.findAllActive().size());
+    // Utente 0: sessioni 0, 50, 100... di cui rimosse quelle multiple di 3
+    assertEquals(13, dao.findByUser(0L).size());
+
+    // Reinserimento nei record e nelle posizioni liberati
+    for (String token : removed) {
+      dao.salva(session(99, token));
+    }
+    for (String token : tokens) {
+      assertTrue(dao.find(token).isPresent(), token);
+    }
+    assertEquals(removed.size(), dao.findByUser(99L).size());
+    assertEquals(tokens.size(), dao.findAllActive().size());
+  }
+
+  @Test
+  void saveReplacesSessionWithSameToken() {
+    String token = UUID.randomUUID().toString();
+    dao.salva(session(1, token));
+    dao.salva(session(2, token));
+
+    assertEquals(2L, dao.find(token).get().userId);
+    assertTrue(dao.findByUser(1L).isEmpty());
+    assertEquals(1, dao.findAllActive().size());
+
+    dao.rimuovi(token);
+    assertFalse(dao.find(token).isPresent());
+    assertTrue(dao.findAllActive().isEmpty());
+  }
+
+  private static SessionDto session(int userId, String token) {
+    SessionDto dto = new SessionDto();
+    dto.userId = (long) userId;
+    dto.username = "utente" + userId;
+    dto.token = token;
+    dto.ruolo = "OPERATORE";
+    dto.attiva = true;
+    return dto;
+  }
+}
@@ -0,0 +1,118 @@
+package ${package}.module.auth.dao;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark JMH multi-thread: confronta l'indice per utente precedente (synchronizedList con
+ * removeIf) con {@link UserSessionIndex}.
+ *
+ * <p>
+ * Ogni operazione è un login seguito dal logout della stessa sessione, su un utente casuale che ha
+ * già sessions sessioni aperte; con users = 4 tutti i thread lavorano sugli stessi account di
+ * servizio. Con un solo core la contesa sui lock non emerge: il confronto significativo richiede
+ * almeno tanti core quanti thread.
+ *
+ * <p>
+ * Esecuzione: {@code ./mvnw test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=<package>.module.auth.dao.SessionIndexBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class SessionIndexBenchmark {
+
+  @Param({"4", "1024"})
+  public int users;
+
+  /** Sessioni già aperte per utente */
+  @Param({"16", "512"})
+  public int sessions;
+
+  private LegacyIndex legacy;
+  private UserSessionIndex current;
+
+  @Setup
+  public void setup() {
+    legacy = new LegacyIndex();
+    current = new UserSessionIndex();
+    for (long user = 0; user < users; user++) {
+      for (int i = 0; i < sessions; i++) {
+        String token = "seed-" + user + "-" + i;
+        legacy.add(user, token);
+        current.add(user, token);
+      }
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Tokens {
+    private final String prefix = UUID.randomUUID() + "-";
+    private long next;
+
+    String next() {
+      return prefix + next++;
+    }
+  }
+
+  @Benchmark
+  public void legacy(Tokens tokens) {
+    Long user = (long) ThreadLocalRandom.current().nextInt(users);
+    String token = tokens.next();
+    legacy.add(user, token);
+    legacy.remove(user, token);
+  }
+
+  @Benchmark
+  public void current(Tokens tokens) {
+    Long user = (long) ThreadLocalRandom.current().nextInt(users);
+    String token = tokens.next();
+    current.add(user, token);
+    current.remove(user, token);
+  }
+
+  public static void main(String[] args) throws Exception {
+    Options opt = new OptionsBuilder()
+        .include(SessionIndexBenchmark.class.getSimpleName())
+        .build();
+    new Runner(opt).run();
+  }
+
+  /** Copia dell'indice precedente di SessionDao, usata come baseline */
+  static class LegacyIndex {
+    private final Map<Long, List<String>> byUser = new ConcurrentHashMap<>();
+
+    void add(Long userId, String token) {
+      byUser.computeIfAbsent(userId, k -> Collections.synchronizedList(new ArrayList<>())).add(token);
+    }
+
+    void remove(Long userId, String token) {
+      List<String> userSessions = byUser.get(userId);
+      if (userSessions != null) {
+        userSessions.removeIf(token::equals);
+      }
+    }
+  }
+}
@@ -0,0 +1,105 @@
+package ${package}.module.auth.dao;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SessionSnapshotTest {
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void roundTrip() throws IOException {
+    Path file = directory.resolve("sessions.snapshot");
+    write(file);
+
+    List<String> records = read(file);
+    assertEquals(List.of(
+        "1/2 utente 10 1000 2000 mario ADMIN",
+        "3/4 utente 11 1100 2100 luigi ADMIN",
+        "-5/-6 utente 12 1200 2200 null null"), records);
+  }
+
+  @Test
+  void uncommittedWriteKeepsPreviousSnapshot() throws IOException {
+    Path file = directory.resolve("sessions.snapshot");
+    write(file);
+    byte[] before = Files.readAllBytes(file);
+
+    try (SessionSnapshot.Writer writer = new SessionSnapshot.Writer(file)) {
+      writer.add(7, 8, 13, 1300, 2300, "anna", "OPERATORE");
+    }
+
+    assertArrayEquals(before, Files.readAllBytes(file));
+    try (Stream<Path> files = Files.list(directory)) {
+      assertEquals(1, files.count());
+    }
+  }
+
+  @Test
+  void rejectsTruncatedFile() throws IOException {
+    Path file = directory.resolve("sessions.snapshot");
+    write(file);
+    byte[] bytes = Files.readAllBytes(file);
+
+    // Dentro i record, poi dentro l'intestazione
+    Files.write(file, Arrays.copyOf(bytes, SessionSnapshot.HEADER_BYTES + SessionSnapshot.RECORD_BYTES));
+    IOException e = assertThrows(IOException.class, () -> read(file));
+    assertTrue(e.getMessage().contains("troncato"), e.getMessage());
+
+    Files.write(file, Arrays.copyOf(bytes, SessionSnapshot.HEADER_BYTES - 1));
+    e = assertThrows(IOException.class, () -> read(file));
+    assertTrue(e.getMessage().contains("troncato"), e.getMessage());
+  }
+
+  @Test
+  void rejectsBadChecksum() throws IOException {
+    Path file = directory.resolve("sessions.snapshot");
+    write(file);
+    byte[] bytes = Files.readAllBytes(file);
+
+    // Un bit cambiato in un record, nel dizionario e nell'intestazione
+    int[] positions = {
+        SessionSnapshot.HEADER_BYTES + SessionSnapshot.RECORD_BYTES + 17,
+        bytes.length - 1,
+        8 };
+    String[] messages = { "record", "dizionario", "intestazione" };
+    for (int i = 0; i < positions.length; i++) {
+      byte[] corrupted = bytes.clone();
+      corrupted[positions[i]] ^= 1;
+      Files.write(file, corrupted);
+      IOException e = assertThrows(IOException.class, () -> read(file));
+      assertTrue(e.getMessage().contains("Checksum") && e.getMessage().contains(messages[i]), e.getMessage());
+    }
+  }
+
+  private static void write(Path file) throws IOException {
+    try (SessionSnapshot.Writer writer = new SessionSnapshot.Writer(file)) {
+      writer.add(1, 2, 10, 1000, 2000, "mario", "ADMIN");
+      writer.add(3, 4, 11, 1100, 2100, "luigi", "ADMIN");
+      writer.add(-5, -6, 12, 1200, 2200, null, null);
+      assertEquals(3, writer.size());
+      writer.commit();
+    }
+  }
+
+  private static List<String> read(Path file) throws IOException {
+    List<String> records = new ArrayList<>();
+    int count = SessionSnapshot.read(file, (hi, lo, userId, createdMs, lastAccessMs, username, role) ->
+        records.add(hi + "/" + lo + " utente " + userId + " " + createdMs + " " + lastAccessMs + " " + username + " " + role));
+    assertEquals(records.size(), count);
+    return records;
+  }
+}
@@ -0,0 +1,138 @@
+package ${package}.module.auth.dao;
+
+import ${package}.module.auth.dto.SessionDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark JMH: sessioni sullo heap ({@link SessionDao}) contro fuori dallo heap
+ * ({@link OffHeapSessionDao}) con molte sessioni vive.
+ *
+ * <p>
+ * Dopo il caricamento stampa lo heap occupato e la durata di una GC completa; durante la misura
+ * il profiler GC riporta allocazioni e tempo di GC per operazione (lookup e login/logout).
+ *
+ * <p>
+ * Esecuzione: {@code ./mvnw test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=<package>.module.auth.dao.SessionStoreGcBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx4g", "-XX:MaxDirectMemorySize=2g"})
+public class SessionStoreGcBenchmark {
+
+  @Param({"heap", "offheap"})
+  public String backend;
+
+  @Param({"2000000"})
+  public int sessions;
+
+  private SessionDao dao;
+  private String[] tokens;
+
+  /** Username condivisi tra le sessioni dello stesso utente, come in AuthService */
+  private String[] usernames;
+
+  @Setup
+  public void setup() {
+    long idle = TimeUnit.HOURS.toMillis(1);
+    long absolute = TimeUnit.HOURS.toMillis(12);
+    dao = "offheap".equals(backend)
+        ? SessionDao.offHeap(idle, absolute, sessions)
+        : new SessionDao(idle, absolute, null);
+
+    usernames = new String[sessions / 4 + 1];
+    for (int i = 0; i < usernames.length; i++) {
+      usernames[i] = "user" + i;
+    }
+    tokens = new String[sessions];
+    String createdAt = LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+    for (int i = 0; i < sessions; i++) {
+      tokens[i] = UUID.randomUUID().toString();
+      dao.salva(session(i % usernames.length, tokens[i], createdAt));
+    }
+
+    System.gc();
+    long used = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+    long before = gcMillis();
+    long started = System.nanoTime();
+    System.gc();
+    System.out.printf("%n[%s] sessioni: %d, heap occupato: %d MB, off-heap: %d MB, GC completa: %d ms (contatori GC: %d ms)%n",
+        backend,
+        sessions,
+        used >> 20,
+        dao.getStats().offHeapBytes >> 20,
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started),
+        gcMillis() - before);
+  }
+
+  @TearDown
+  public void tearDown() {
+    dao.close();
+  }
+
+  @Benchmark
+  public void lookup(Blackhole bh) {
+    bh.consume(dao.get(tokens[ThreadLocalRandom.current().nextInt(tokens.length)]));
+  }
+
+  @Benchmark
+  public void loginLogout() {
+    String token = UUID.randomUUID().toString();
+    dao.salva(session(ThreadLocalRandom.current().nextInt(1000), token, "2026-01-01T00:00:00"));
+    dao.rimuovi(token);
+  }
+
+  public static void main(String[] args) throws Exception {
+    Options opt = new OptionsBuilder()
+        .include(SessionStoreGcBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class)
+        .build();
+    new Runner(opt).run();
+  }
+
+  private SessionDto session(int userId, String token, String createdAt) {
+    SessionDto dto = new SessionDto();
+    dto.userId = (long) userId;
+    dto.username = usernames[userId];
+    dto.token = token;
+    dto.ruolo = userId % 10 == 0 ? "ADMIN" : "OPERATORE";
+    dto.attiva = true;
+    dto.createdAt = createdAt;
+    return dto;
+  }
+
+  private static long gcMillis() {
+    long total = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      total += Math.max(0, gc.getCollectionTime());
+    }
+    return total;
+  }
+}